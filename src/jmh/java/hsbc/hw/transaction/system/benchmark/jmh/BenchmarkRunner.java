@@ -0,0 +1,34 @@
+package hsbc.hw.transaction.system.benchmark.jmh;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 按多个线程数依次运行 JMH 基准，观察竞争随并发度的变化。
+ * <p>
+ * 参数：基准名正则（默认全部）、逗号分隔的线程数（默认 1,4,8）。每个线程数的结果写入
+ * target/jmh-result-t{线程数}.json，可与上一版本的结果对比发现性能回退。
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="RepositoryBenchmark 1,4,8"
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        String[] threads = (args.length > 1 ? args[1] : "1,4,8").split(",");
+        for (String thread : threads) {
+            int count = Integer.parseInt(thread.trim());
+            Options options = new OptionsBuilder()
+                    .include(BenchmarkRunner.class.getPackageName() + "\\..*" + include)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-result-t" + count + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package hsbc.hw.transaction.system.benchmark.jmh;
+
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InMemoryTransactionRepository 的读写基准。写入覆盖已有交易，存储规模在测量期间保持不变。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RepositoryBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int storeSize;
+
+    InMemoryTransactionRepository repository;
+
+    /**
+     * 预先生成待写入的交易，避免把对象构造计入写入耗时
+     */
+    Transaction[] updates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new InMemoryTransactionRepository();
+        TransactionFixtures.fill(repository, storeSize);
+        updates = new Transaction[Math.min(storeSize, 100_000)];
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < updates.length; i++) {
+            updates[i] = TransactionFixtures.transaction(i * (storeSize / updates.length), now);
+        }
+    }
+
+    @Benchmark
+    public Transaction save() {
+        return repository.save(updates[ThreadLocalRandom.current().nextInt(updates.length)]);
+    }
+
+    @Benchmark
+    public Optional<Transaction> findById() {
+        return repository.findById("bench-" + ThreadLocalRandom.current().nextInt(storeSize));
+    }
+
+    @Benchmark
+    public List<Transaction> findByUserId() {
+        return repository.findByUserId("user" + ThreadLocalRandom.current().nextInt(TransactionFixtures.USERS));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Transaction> findAll() {
+        return repository.findAll();
+    }
+}
@@ -0,0 +1,35 @@
+package hsbc.hw.transaction.system.benchmark.jmh;
+
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionResponse.from 的转换开销，列表和分页接口每返回一笔交易都要调用一次。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseMappingBenchmark {
+
+    Transaction transaction = TransactionFixtures.transaction(42, LocalDateTime.now());
+
+    @Benchmark
+    public TransactionResponse from() {
+        return TransactionResponse.from(transaction);
+    }
+}
@@ -0,0 +1,67 @@
+package hsbc.hw.transaction.system.benchmark.jmh;
+
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.service.TransactionCacheInvalidator;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionServiceImpl;
+import hsbc.hw.transaction.system.service.UserLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionServiceImpl.getAllTransactions 的分页基准。服务直接构造，不经过 Spring 缓存代理，
+ * 测量的是缓存未命中时的代价：首页，以及在前 1000 页中随机取页。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ServiceBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10000", "100000", "1000000"})
+    int storeSize;
+
+    TransactionServiceImpl service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository();
+        TransactionFixtures.fill(repository, storeSize);
+        service = new TransactionServiceImpl(repository, new TransactionCacheInvalidator(new NoOpCacheManager()),
+                new UserLedger(repository), new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public Page<TransactionResponse> getAllTransactionsFirstPage() {
+        return service.getAllTransactions(PageRequest.of(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Page<TransactionResponse> getAllTransactionsRandomPage() {
+        int pages = Math.min(1000, storeSize / PAGE_SIZE);
+        return service.getAllTransactions(PageRequest.of(ThreadLocalRandom.current().nextInt(pages), PAGE_SIZE));
+    }
+}
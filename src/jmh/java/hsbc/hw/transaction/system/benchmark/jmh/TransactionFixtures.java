@@ -0,0 +1,49 @@
+package hsbc.hw.transaction.system.benchmark.jmh;
+
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 基准共用的测试数据。
+ */
+final class TransactionFixtures {
+
+    /**
+     * 用户数，每个用户平均持有 storeSize / USERS 笔交易
+     */
+    static final int USERS = 10_000;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private TransactionFixtures() {
+    }
+
+    static Transaction transaction(int i, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId("bench-" + i);
+        transaction.setUserId("user" + (i % USERS));
+        transaction.setAmount(new BigDecimal((i % 100000) + ".25"));
+        transaction.setType(TYPES[i % TYPES.length]);
+        transaction.setTransactionSummary("转账");
+        transaction.setCounterpartyName("张三");
+        transaction.setCounterpartyAccountNumber("6222000000" + (i % 1000));
+        transaction.setDescription("第" + i + "笔");
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+
+    /**
+     * 写入 size 笔交易，创建时间按毫秒递增
+     */
+    static void fill(TransactionRepository repository, int size) {
+        LocalDateTime start = LocalDateTime.now().minusNanos(size * 1_000_000L);
+        for (int i = 0; i < size; i++) {
+            repository.save(transaction(i, start.plusNanos(i * 1_000_000L)));
+        }
+    }
+}
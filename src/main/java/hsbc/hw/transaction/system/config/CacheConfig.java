@@ -1,24 +1,54 @@
 package hsbc.hw.transaction.system.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.TimeUnit;
+import java.util.Collection;
 
+/**
+ * 按查询形态拆分的缓存：单笔交易、用户交易列表、分页结果各自独立限制容量和过期时间，
+ * 互不挤占。幂等键存储也在这里注册，共用容量和过期配置。
+ * 所有缓存开启统计，由 actuator 发布到 /actuator/metrics 的 cache.* 指标。
+ */
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(TransactionCacheProperties.class)
 public class CacheConfig {
+
+    public static final String TRANSACTION_BY_ID = "transactionById";
+    public static final String TRANSACTIONS_BY_USER = "transactionsByUser";
+    public static final String TRANSACTION_PAGES = "transactionPages";
+    public static final String IDEMPOTENCY = "idempotency";
+
     @Bean
-    public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager("transactions");
-        cacheManager.setCaffeine(Caffeine.newBuilder()
-                .expireAfterWrite(10, TimeUnit.MINUTES)
-                .maximumSize(1000)
-                .recordStats());
+    public CacheManager cacheManager(TransactionCacheProperties properties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(TRANSACTION_BY_ID, build(properties.getById()));
+        cacheManager.registerCustomCache(TRANSACTIONS_BY_USER, build(properties.getByUser()));
+        cacheManager.registerCustomCache(TRANSACTION_PAGES, build(properties.getPages()));
+        cacheManager.registerCustomCache(IDEMPOTENCY, build(properties.getIdempotency()));
         return cacheManager;
     }
-} 
\ No newline at end of file
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> build(TransactionCacheProperties.Spec spec) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if (spec.getMaximumWeight() != null) {
+            // 列表类缓存按元素个数计权重，长列表占用更多配额
+            builder.maximumWeight(spec.getMaximumWeight())
+                    .weigher((key, value) -> value instanceof Collection<?> collection
+                            ? Math.max(1, collection.size())
+                            : 1);
+        } else if (spec.getMaximumSize() != null) {
+            builder.maximumSize(spec.getMaximumSize());
+        }
+        if (spec.getExpireAfterWrite() != null) {
+            builder.expireAfterWrite(spec.getExpireAfterWrite());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,59 @@
+package hsbc.hw.transaction.system.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.service.ClusterClient;
+import hsbc.hw.transaction.system.service.ClusteredTransactionService;
+import hsbc.hw.transaction.system.service.ConsistentHashRing;
+import hsbc.hw.transaction.system.service.TransactionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 集群模式：transaction.cluster.enabled=true 时，控制器、写入通道和导入使用的交易服务换成
+ * {@link ClusteredTransactionService}，按用户ID把请求路由到所属节点，本节点的数据仍由
+ * {@link hsbc.hw.transaction.system.service.TransactionServiceImpl} 处理。
+ * 节点间通过 HTTP 转发请求，只支持 Servlet 技术栈，reactive profile 下开启时拒绝启动。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "transaction.cluster", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(TransactionClusterProperties.class)
+public class ClusterConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ClusterClient clusterClient(ObjectMapper objectMapper, TransactionClusterProperties properties) {
+        return new ClusterClient(objectMapper, properties.getSecret(), properties.getConnectTimeout(),
+                properties.getRequestTimeout());
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public TransactionService clusteredTransactionService(
+            @Qualifier("transactionServiceImpl") TransactionService local,
+            ClusterClient clusterClient,
+            TransactionClusterProperties properties) {
+        ConsistentHashRing ring = new ConsistentHashRing(properties.getNodes(), properties.getVirtualNodes());
+        log.info("Cluster mode enabled - self: {}, nodes: {}", properties.getSelf(), ring.nodes());
+        return new ClusteredTransactionService(local, clusterClient, ring, properties.getSelf());
+    }
+
+    /**
+     * WebFlux 下不会注册转发的服务，节点只会处理自己收到的请求，数据按节点分裂，因此直接拒绝启动
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class ReactiveStackGuard {
+
+        ReactiveStackGuard() {
+            throw new IllegalStateException("集群模式只支持 Servlet 技术栈，reactive profile 下不能开启 transaction.cluster.enabled");
+        }
+    }
+}
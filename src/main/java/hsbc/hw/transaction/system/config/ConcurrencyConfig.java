@@ -0,0 +1,50 @@
+package hsbc.hw.transaction.system.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.service.ClusterClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * 请求执行模式和并发保护。
+ * <p>
+ * transaction.concurrency.virtual-threads=true 时，Tomcat 为每个请求创建一个虚拟线程，
+ * 阻塞（如等待日志落盘）时不再占用平台线程；请求数不再受线程池大小限制，
+ * 因此在业务接口前加一道并发上限，超出的请求排队，排队过多或超时返回 503。
+ * 流式接口和集群节点之间转发的请求不受该上限限制，见 {@link ConcurrencyLimitFilter}。
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(TransactionConcurrencyProperties.class)
+public class ConcurrencyConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "transaction.concurrency", name = "virtual-threads", havingValue = "true")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadExecutorCustomizer() {
+        log.info("Serving requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            TransactionConcurrencyProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            ObjectProvider<ClusterClient> clusterClient) {
+        // 非集群模式没有转发请求，集群模式按共享密钥识别
+        ClusterClient client = clusterClient.getIfAvailable();
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(properties, objectMapper, meterRegistry,
+                        request -> client != null && client.isForwarded(request)));
+        registration.addUrlPatterns("/api/*");
+        registration.setEnabled(properties.getMaxConcurrent() > 0);
+        return registration;
+    }
+}
@@ -0,0 +1,142 @@
+package hsbc.hw.transaction.system.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.exception.GlobalExceptionHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * 限制同时进入业务层的请求数。
+ * <p>
+ * 未超过上限的请求直接放行；超过上限的请求按到达顺序排队等待，排队数超过 maxQueued
+ * 或等待超过 queueTimeout 时返回 503。进行中和排队中的请求数发布为
+ * transaction.requests.active / transaction.requests.queued 指标。
+ * <p>
+ * 不限制的请求：流式接口（导出、导入、事件推送）在整个传输期间都会占用许可，少量慢客户端就能占满上限；
+ * 集群中其他节点转发来的请求已在入口节点占用过许可，再次排队会让节点之间互相等待对方的许可。
+ */
+@Slf4j
+class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * 不经过并发限制的流式接口
+     */
+    static final Set<String> STREAMING_PATHS = Set.of(
+            "/api/transactions/export", "/api/transactions/import", "/api/transactions/events");
+
+    private final Semaphore permits;
+    private final int maxQueued;
+    private final long queueTimeoutNanos;
+    private final ObjectMapper objectMapper;
+    private final Predicate<HttpServletRequest> forwarded;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter rejected;
+    private final Timer queueWait;
+
+    /**
+     * @param forwarded 判断请求是否由集群中的其他节点转发
+     */
+    ConcurrencyLimitFilter(TransactionConcurrencyProperties properties, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry, Predicate<HttpServletRequest> forwarded) {
+        // 公平模式，排队的请求按到达顺序获得许可
+        this.permits = new Semaphore(Math.max(1, properties.getMaxConcurrent()), true);
+        this.maxQueued = properties.getMaxQueued();
+        this.queueTimeoutNanos = properties.getQueueTimeout().toNanos();
+        this.objectMapper = objectMapper;
+        this.forwarded = forwarded;
+        Gauge.builder("transaction.requests.active", active, AtomicInteger::get)
+                .description("Requests currently executing in the service layer")
+                .register(meterRegistry);
+        Gauge.builder("transaction.requests.queued", queued, AtomicInteger::get)
+                .description("Requests waiting for a concurrency permit")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("transaction.requests.rejected")
+                .description("Requests rejected because the queue was full or the wait timed out")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("transaction.requests.queue.wait")
+                .description("Time spent waiting for a concurrency permit")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return STREAMING_PATHS.contains(path) || forwarded.test(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!acquire()) {
+            rejected.increment();
+            reject(response);
+            return;
+        }
+        active.incrementAndGet();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    private boolean acquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        long started = System.nanoTime();
+        try {
+            return permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+            queueWait.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        log.warn("Rejecting request, {} active and {} queued", active.get(), queued.get());
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(),
+                new GlobalExceptionHandler.ErrorResponse("服务繁忙，请稍后重试", HttpStatus.SERVICE_UNAVAILABLE.value()));
+    }
+
+    int active() {
+        return active.get();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+}
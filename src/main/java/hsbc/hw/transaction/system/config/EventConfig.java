@@ -0,0 +1,21 @@
+package hsbc.hw.transaction.system.config;
+
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 交易事件推送：写操作把事件发布到环形缓冲区，每个 SSE 连接独立读取，停止应用时关闭所有订阅。
+ */
+@Configuration
+@EnableConfigurationProperties(TransactionEventProperties.class)
+public class EventConfig {
+
+    @Bean(destroyMethod = "close")
+    public TransactionEventBus transactionEventBus(TransactionEventProperties properties,
+                                                   MeterRegistry meterRegistry) {
+        return new TransactionEventBus(properties, meterRegistry);
+    }
+}
@@ -0,0 +1,23 @@
+package hsbc.hw.transaction.system.config;
+
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import hsbc.hw.transaction.system.repository.journal.FileTransactionJournal;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 持久化模式：transaction.journal.enabled=true 时为内存仓库提供基于文件的预写日志和快照，
+ * 重启后从 transaction.journal.directory 恢复数据。未开启时数据只保存在内存中。
+ */
+@Configuration
+@EnableConfigurationProperties(TransactionJournalProperties.class)
+public class JournalConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "transaction.journal", name = "enabled", havingValue = "true")
+    public TransactionJournal transactionJournal(TransactionJournalProperties properties) {
+        return new FileTransactionJournal(properties);
+    }
+}
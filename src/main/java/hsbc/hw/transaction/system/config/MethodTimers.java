@@ -0,0 +1,89 @@
+package hsbc.hw.transaction.system.config;
+
+import io.prometheus.client.Histogram;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按接口方法计时的代理。
+ * <p>
+ * 耗时记录到带 method 和 exception 标签的 Prometheus 直方图中，分位数在查询端用 histogram_quantile 计算。
+ * 没有使用 Micrometer 的 Timer：带直方图的 Timer 每次记录都要读取两次墙上时钟并维护最大值，
+ * 在微秒级的仓库操作上开销超过操作本身；这里每次调用只有两次 nanoTime 和一次桶计数。
+ * 返回 Stream 的方法只统计创建 Stream 的时间，不包括调用方消费的时间。
+ */
+public final class MethodTimers {
+
+    /**
+     * 桶上限（秒），从 1 微秒的仓库操作到等待日志落盘的服务调用
+     */
+    private static final double[] BUCKETS = {
+            1e-6, 2.5e-6, 5e-6, 1e-5, 2.5e-5, 5e-5, 1e-4, 2.5e-4, 5e-4,
+            1e-3, 2.5e-3, 5e-3, 1e-2, 2.5e-2, 5e-2, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private MethodTimers() {
+    }
+
+    /**
+     * 创建以 method、exception 为标签的耗时直方图，name 需以 _seconds 结尾
+     */
+    public static Histogram histogram(String name, String help) {
+        return Histogram.build(name, help)
+                .labelNames("method", "exception")
+                .buckets(BUCKETS)
+                .withoutExemplars()
+                .create();
+    }
+
+    /**
+     * 返回实现 type 的代理，调用转发给 target 并把耗时记录到 histogram。
+     * target 实现了 {@link AutoCloseable} 时代理也实现它，保证 destroyMethod="close" 仍然生效。
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T wrap(T target, Class<T> type, Histogram histogram) {
+        Class<?>[] interfaces = target instanceof AutoCloseable
+                ? new Class<?>[]{type, AutoCloseable.class}
+                : new Class<?>[]{type};
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), interfaces, new TimingHandler(target, histogram));
+    }
+
+    private static final class TimingHandler implements InvocationHandler {
+
+        private final Object target;
+        private final Histogram histogram;
+        private final Map<Method, Histogram.Child> succeeded = new ConcurrentHashMap<>();
+
+        TimingHandler(Object target, Histogram histogram) {
+            this.target = target;
+            this.histogram = histogram;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(target, args);
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = method.invoke(target, args);
+                Histogram.Child child = succeeded.get(method);
+                if (child == null) {
+                    child = succeeded.computeIfAbsent(method, m -> histogram.labels(m.getName(), "none"));
+                }
+                child.observe((System.nanoTime() - start) / 1e9);
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                // 异常路径较少，直接按标签查找
+                histogram.labels(method.getName(), cause.getClass().getSimpleName())
+                        .observe((System.nanoTime() - start) / 1e9);
+                throw cause;
+            }
+        }
+    }
+}
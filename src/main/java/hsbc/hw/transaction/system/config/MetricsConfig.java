@@ -0,0 +1,63 @@
+package hsbc.hw.transaction.system.config;
+
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.service.ClusteredTransactionService;
+import hsbc.hw.transaction.system.service.TransactionService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 热点路径的耗时和存储规模指标，通过 /actuator/prometheus 导出。
+ * <p>
+ * 接口耗时使用 Spring MVC 自带的 http.server.requests（按 uri 区分）；
+ * 服务层和仓库层分别包一层 {@link MethodTimers} 代理，记录 transaction_service_seconds
+ * 和 transaction_repository_seconds，集群模式下路由层另记 transaction_cluster_seconds。
+ * 后置处理器没有声明顺序，排在缓存代理之后执行，服务层耗时包含缓存命中的调用。
+ */
+@Configuration
+@EnableConfigurationProperties(TransactionMetricsProperties.class)
+public class MetricsConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "transaction.metrics", name = "method-timers", havingValue = "true",
+            matchIfMissing = true)
+    public static BeanPostProcessor methodTimersPostProcessor(ObjectProvider<CollectorRegistry> collectorRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ClusteredTransactionService service) {
+                    return MethodTimers.wrap(service, TransactionService.class, register(
+                            "transaction_cluster_seconds", "Time spent in clustered TransactionService methods"));
+                }
+                if (bean instanceof TransactionService service) {
+                    return MethodTimers.wrap(service, TransactionService.class, register(
+                            "transaction_service_seconds", "Time spent in TransactionService methods"));
+                }
+                if (bean instanceof TransactionRepository repository) {
+                    return MethodTimers.wrap(repository, TransactionRepository.class, register(
+                            "transaction_repository_seconds", "Time spent in TransactionRepository methods"));
+                }
+                return bean;
+            }
+
+            private Histogram register(String name, String help) {
+                return MethodTimers.histogram(name, help).register(collectorRegistry.getObject());
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder transactionStoreMetrics(TransactionRepository repository) {
+        return registry -> Gauge.builder("transaction.store.size", repository, TransactionRepository::count)
+                .description("Transactions currently held in the store")
+                .register(registry);
+    }
+}
@@ -0,0 +1,99 @@
+package hsbc.hw.transaction.system.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.repository.replication.ReplicationLog;
+import hsbc.hw.transaction.system.service.ReplicationFollower;
+import hsbc.hw.transaction.system.service.TransactionCacheInvalidator;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.UserLedger;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.util.StringUtils;
+
+/**
+ * 主从复制：transaction.replication.role=primary 时，仓库的写操作经 {@link ReplicationLog} 记录后通过
+ * /replication/changes 推送；role=replica 时由 {@link ReplicationFollower} 从主节点同步数据，
+ * /api 下只接受读请求。变更日志接在仓库的持久化日志上，只支持 heap 和 sharded 存储，只支持 Servlet 技术栈，
+ * reactive profile 下配置了角色时拒绝启动。
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(TransactionReplicationProperties.class)
+public class ReplicationConfig {
+
+    /**
+     * 包装持久化日志（未开启时为 NONE），作为首选的日志注入仓库
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    @ConditionalOnProperty(prefix = "transaction.replication", name = "role", havingValue = "primary")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ReplicationLog replicationLog(@Qualifier("transactionJournal") ObjectProvider<TransactionJournal> journal,
+                                         TransactionReplicationProperties properties,
+                                         TransactionStoreProperties storeProperties,
+                                         MeterRegistry meterRegistry) {
+        if (storeProperties.getType() == TransactionStoreProperties.StoreType.MAPPED) {
+            throw new IllegalStateException("mapped 存储不记录变更日志，不能作为复制的主节点");
+        }
+        log.info("Replication primary enabled - buffer size: {}", properties.getBufferSize());
+        return new ReplicationLog(journal.getIfAvailable(() -> TransactionJournal.NONE), properties.getBufferSize(),
+                meterRegistry);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "transaction.replication", name = "role", havingValue = "replica")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ReplicationFollower replicationFollower(TransactionReplicationProperties properties,
+                                                   TransactionRepository repository,
+                                                   UserLedger ledger,
+                                                   TransactionCacheInvalidator cacheInvalidator,
+                                                   TransactionEventBus eventBus,
+                                                   ObjectMapper objectMapper,
+                                                   MeterRegistry meterRegistry) {
+        if (!StringUtils.hasText(properties.getPrimary())) {
+            throw new IllegalStateException("从节点必须配置 transaction.replication.primary");
+        }
+        return new ReplicationFollower(properties, repository, ledger, cacheInvalidator, eventBus, objectMapper,
+                meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "transaction.replication", name = "role", havingValue = "replica")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<ReadOnlyReplicaFilter> readOnlyReplicaFilter(
+            TransactionReplicationProperties properties, ObjectMapper objectMapper) {
+        FilterRegistrationBean<ReadOnlyReplicaFilter> registration = new FilterRegistrationBean<>(
+                new ReadOnlyReplicaFilter(properties.getPrimary(), objectMapper));
+        registration.addUrlPatterns("/api/*");
+        // 在并发限制之前拒绝写请求，不占用许可
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        return registration;
+    }
+
+    /**
+     * WebFlux 下没有推送变更的接口，也没有只读过滤器，配置的角色不会生效，因此直接拒绝启动
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class ReactiveStackGuard {
+
+        ReactiveStackGuard(TransactionReplicationProperties properties) {
+            if (properties.getRole() != TransactionReplicationProperties.Role.NONE) {
+                throw new IllegalStateException("主从复制只支持 Servlet 技术栈，reactive profile 下不能配置 transaction.replication.role="
+                        + properties.getRole().name().toLowerCase());
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package hsbc.hw.transaction.system.config;
+
+import hsbc.hw.transaction.system.repository.ShardedTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.repository.mapped.MappedTransactionRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 存储后端选择：transaction.store.type=mapped 时使用内存映射文件存储，sharded 时使用按用户分片的堆内存储，
+ * 默认（heap）使用 {@link hsbc.hw.transaction.system.repository.InMemoryTransactionRepository}。
+ */
+@Configuration
+@EnableConfigurationProperties({TransactionStoreProperties.class, TransactionSearchProperties.class})
+public class StoreConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "transaction.store", name = "type", havingValue = "mapped")
+    public TransactionRepository mappedTransactionRepository(TransactionStoreProperties properties) {
+        return new MappedTransactionRepository(properties.getDirectory(), (int) properties.getChunkSize().toBytes());
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "transaction.store", name = "type", havingValue = "sharded")
+    public TransactionRepository shardedTransactionRepository(TransactionStoreProperties properties,
+                                                              TransactionSearchProperties searchProperties,
+                                                              ObjectProvider<TransactionJournal> journal) {
+        return new ShardedTransactionRepository(properties.getShards(), properties.getParallelism(),
+                journal.getIfAvailable(() -> TransactionJournal.NONE), searchProperties.getText().isEnabled());
+    }
+}
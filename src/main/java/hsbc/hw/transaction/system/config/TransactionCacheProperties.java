@@ -0,0 +1,50 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 各查询缓存的容量与过期时间配置，对应 application.yml 中的 transaction.cache。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.cache")
+public class TransactionCacheProperties {
+
+    /**
+     * 单笔交易缓存，按条目数限制。
+     */
+    private Spec byId = new Spec(10000L, null, Duration.ofMinutes(10));
+
+    /**
+     * 用户交易列表缓存，按列表中的交易总条数限制。
+     */
+    private Spec byUser = new Spec(null, 50000L, Duration.ofMinutes(10));
+
+    /**
+     * 分页结果缓存，按页数限制。
+     */
+    private Spec pages = new Spec(200L, null, Duration.ofMinutes(1));
+
+    /**
+     * 幂等键与首次请求结果，过期时间即重试去重的时间窗口。
+     */
+    private Spec idempotency = new Spec(50000L, null, Duration.ofHours(24));
+
+    @Data
+    public static class Spec {
+        private Long maximumSize;
+        private Long maximumWeight;
+        private Duration expireAfterWrite;
+
+        public Spec() {
+        }
+
+        public Spec(Long maximumSize, Long maximumWeight, Duration expireAfterWrite) {
+            this.maximumSize = maximumSize;
+            this.maximumWeight = maximumWeight;
+            this.expireAfterWrite = expireAfterWrite;
+        }
+    }
+}
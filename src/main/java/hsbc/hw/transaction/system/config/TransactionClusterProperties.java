@@ -0,0 +1,52 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 集群模式配置，对应 application.yml 中的 transaction.cluster。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.cluster")
+public class TransactionClusterProperties {
+
+    /**
+     * 是否以集群模式运行
+     */
+    private boolean enabled = false;
+
+    /**
+     * 本节点的地址，必须是 nodes 中的一项
+     */
+    private String self;
+
+    /**
+     * 全部节点的地址，如 http://localhost:8081，各节点的配置必须相同
+     */
+    private List<String> nodes = new ArrayList<>();
+
+    /**
+     * 节点间转发请求使用的共享密钥，各节点的配置必须相同。
+     * 只有携带该密钥的请求才被当作转发请求在本地执行，集群模式下必须配置
+     */
+    private String secret;
+
+    /**
+     * 每个节点在哈希环上的虚拟节点数，越多数据分布越均匀
+     */
+    private int virtualNodes = 128;
+
+    /**
+     * 建立节点间连接的超时时间
+     */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * 节点间单次请求的超时时间，不包括流式导出
+     */
+    private Duration requestTimeout = Duration.ofSeconds(10);
+}
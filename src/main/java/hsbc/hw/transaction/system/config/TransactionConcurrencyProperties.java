@@ -0,0 +1,34 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 请求执行配置，对应 application.yml 中的 transaction.concurrency。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.concurrency")
+public class TransactionConcurrencyProperties {
+
+    /**
+     * 是否用虚拟线程处理 Tomcat 请求，关闭时使用默认的平台线程池
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * 同时进入业务层的最大请求数，小于等于 0 时不限制
+     */
+    private int maxConcurrent = 200;
+
+    /**
+     * 超过并发上限时最多排队的请求数，队列满时直接返回 503
+     */
+    private int maxQueued = 1000;
+
+    /**
+     * 排队的最长等待时间，超时返回 503
+     */
+    private Duration queueTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,45 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 交易事件推送配置，对应 application.yml 中的 transaction.events。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.events")
+public class TransactionEventProperties {
+
+    /**
+     * 环形缓冲区容量，向上取整为2的幂，也是断线重连时最多能补发的事件数
+     */
+    private int bufferSize = 16384;
+
+    /**
+     * 单个订阅者允许落后的最大事件数，超过后按 slowSubscriberPolicy 处理，不能超过 bufferSize
+     */
+    private int maxLag = 8192;
+
+    /**
+     * 慢订阅者的处理方式
+     */
+    private SlowSubscriberPolicy slowSubscriberPolicy = SlowSubscriberPolicy.DISCONNECT;
+
+    /**
+     * 没有事件时发送心跳注释的间隔，用于保持连接和发现已断开的客户端
+     */
+    private Duration heartbeat = Duration.ofSeconds(15);
+
+    public enum SlowSubscriberPolicy {
+        /**
+         * 断开连接，客户端重连后通过 Last-Event-ID 从缓冲区中仍保留的事件续传
+         */
+        DISCONNECT,
+        /**
+         * 跳过积压的事件直接从最新事件继续，并发送 skipped 事件告知跳过的条数
+         */
+        SKIP
+    }
+}
@@ -0,0 +1,53 @@
+package hsbc.hw.transaction.system.config;
+
+import hsbc.hw.transaction.system.repository.journal.FsyncPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 持久化日志配置，对应 application.yml 中的 transaction.journal。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.journal")
+public class TransactionJournalProperties {
+
+    /**
+     * 是否开启持久化，关闭时数据只保存在内存中
+     */
+    private boolean enabled = false;
+
+    /**
+     * 日志段和快照文件所在目录
+     */
+    private Path directory = Path.of("data");
+
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+
+    /**
+     * INTERVAL 策略下的 fsync 间隔
+     */
+    private Duration fsyncInterval = Duration.ofMillis(200);
+
+    /**
+     * 写线程每批最多处理的日志条数
+     */
+    private int maxBatchSize = 1024;
+
+    /**
+     * 允许积压的待写日志条数，超过时写请求在离开仓库临界区后等待写线程追上
+     */
+    private int queueCapacity = 65536;
+
+    /**
+     * 快照检查间隔
+     */
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+
+    /**
+     * 距上次快照至少新增多少条日志才生成新快照
+     */
+    private long snapshotMinRecords = 10000;
+}
@@ -0,0 +1,17 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 服务层和仓库层的耗时统计配置，对应 application.yml 中的 transaction.metrics。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.metrics")
+public class TransactionMetricsProperties {
+
+    /**
+     * 是否为 TransactionService 和 TransactionRepository 的每个方法记录耗时直方图
+     */
+    private boolean methodTimers = true;
+}
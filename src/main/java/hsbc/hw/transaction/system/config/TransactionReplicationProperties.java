@@ -0,0 +1,59 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 主从复制配置，对应 application.yml 中的 transaction.replication。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.replication")
+public class TransactionReplicationProperties {
+
+    /**
+     * 本节点的角色
+     */
+    private Role role = Role.NONE;
+
+    /**
+     * 主节点地址，如 http://localhost:8081，只对从节点有效
+     */
+    private String primary;
+
+    /**
+     * 主节点变更日志的环形缓冲区容量，向上取整为2的幂，也是从节点断线后不需要重新同步快照能补齐的最大变更数
+     */
+    private int bufferSize = 65536;
+
+    /**
+     * 主节点没有变更时发送心跳的间隔，心跳携带主节点最新的变更序号，从节点据此计算复制延迟
+     */
+    private Duration heartbeat = Duration.ofSeconds(1);
+
+    /**
+     * 从节点超过该时间没有收到任何数据时认为连接已失效，主动断开重连，应大于 heartbeat
+     */
+    private Duration idleTimeout = Duration.ofSeconds(5);
+
+    /**
+     * 从节点断线后重连的间隔
+     */
+    private Duration reconnectDelay = Duration.ofSeconds(1);
+
+    public enum Role {
+        /**
+         * 不参与复制
+         */
+        NONE,
+        /**
+         * 主节点：接受读写，通过 /replication/changes 向从节点推送变更
+         */
+        PRIMARY,
+        /**
+         * 从节点：从主节点同步数据，只接受读请求
+         */
+        REPLICA
+    }
+}
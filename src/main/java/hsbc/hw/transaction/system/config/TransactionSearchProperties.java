@@ -0,0 +1,24 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 交易搜索配置，对应 application.yml 中的 transaction.search。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.search")
+public class TransactionSearchProperties {
+
+    private Text text = new Text();
+
+    @Data
+    public static class Text {
+
+        /**
+         * 是否为 heap / sharded 存储维护关键字搜索的 n-gram 倒排索引。索引约占交易本身数倍的堆内存，
+         * 关闭时关键字搜索逐条扫描全部交易
+         */
+        private boolean enabled = false;
+    }
+}
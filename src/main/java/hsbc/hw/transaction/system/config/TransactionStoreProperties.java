@@ -0,0 +1,55 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * 交易存储配置，对应 application.yml 中的 transaction.store。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.store")
+public class TransactionStoreProperties {
+
+    /**
+     * 存储后端
+     */
+    private StoreType type = StoreType.HEAP;
+
+    /**
+     * MAPPED 模式下记录文件和字符串文件所在目录
+     */
+    private Path directory = Path.of("data/store");
+
+    /**
+     * MAPPED 模式下每次映射的文件块大小，文件按块增长
+     */
+    private DataSize chunkSize = DataSize.ofMegabytes(64);
+
+    /**
+     * SHARDED 模式下的分片数
+     */
+    private int shards = 16;
+
+    /**
+     * SHARDED 模式下并行查询各分片的线程数，不大于 0 时取可用核数
+     */
+    private int parallelism = 0;
+
+    public enum StoreType {
+        /**
+         * 交易对象保存在 ConcurrentHashMap 中
+         */
+        HEAP,
+        /**
+         * 交易以定长二进制记录保存在内存映射文件中，堆内只保留紧凑索引
+         */
+        MAPPED,
+        /**
+         * 按用户ID分成多个堆内分片，各自维护索引，跨分片查询并行执行
+         */
+        SHARDED
+    }
+}
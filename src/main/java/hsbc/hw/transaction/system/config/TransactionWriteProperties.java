@@ -0,0 +1,50 @@
+package hsbc.hw.transaction.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 创建交易的写入模式配置，对应 application.yml 中的 transaction.write。
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.write")
+public class TransactionWriteProperties {
+
+    /**
+     * 写入模式
+     */
+    private WriteMode mode = WriteMode.SYNC;
+
+    /**
+     * ASYNC 模式下等待写入的请求队列容量
+     */
+    private int queueCapacity = 65536;
+
+    /**
+     * 队列满时提交方最多等待的时间，超时返回 503
+     */
+    private Duration enqueueTimeout = Duration.ofSeconds(1);
+
+    /**
+     * ASYNC 模式下单批最多写入的请求数
+     */
+    private int maxBatchSize = 1024;
+
+    /**
+     * 异步受理的请求状态保留时间
+     */
+    private Duration statusRetention = Duration.ofMinutes(10);
+
+    public enum WriteMode {
+        /**
+         * 请求线程直接校验并写入
+         */
+        SYNC,
+        /**
+         * 请求线程只做校验后入队，单个写线程按批写入，每批只失效一次缓存
+         */
+        ASYNC
+    }
+}
@@ -0,0 +1,24 @@
+package hsbc.hw.transaction.system.config;
+
+import hsbc.hw.transaction.system.service.TransactionService;
+import hsbc.hw.transaction.system.service.TransactionWritePipeline;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 创建交易的写入模式：默认同步写入；transaction.write.mode=async 时启动批量写线程，
+ * 停止时先写完已入队的请求。
+ */
+@Configuration
+@EnableConfigurationProperties(TransactionWriteProperties.class)
+public class WriteConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public TransactionWritePipeline transactionWritePipeline(TransactionService transactionService,
+                                                             TransactionWriteProperties properties,
+                                                             MeterRegistry meterRegistry) {
+        return new TransactionWritePipeline(transactionService, properties, meterRegistry);
+    }
+}
@@ -0,0 +1,419 @@
+package hsbc.hw.transaction.system.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.ImportResult;
+import hsbc.hw.transaction.system.dto.TransactionCursorPage;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.dto.TransactionSearchRequest;
+import hsbc.hw.transaction.system.dto.TransactionStatusRequest;
+import hsbc.hw.transaction.system.dto.TransferRequest;
+import hsbc.hw.transaction.system.dto.TransferResponse;
+import hsbc.hw.transaction.system.dto.WriteStatusResponse;
+import hsbc.hw.transaction.system.enums.ImportFormat;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import hsbc.hw.transaction.system.service.IdempotencyStore;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionImporter;
+import hsbc.hw.transaction.system.service.TransactionService;
+import hsbc.hw.transaction.system.service.TransactionWritePipeline;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+/**
+ * reactive profile 下的交易接口，路径和语义与 {@link TransactionController} 相同，返回 Mono / Flux。
+ * <p>
+ * 读操作直接访问内存中的存储，在 Netty 事件循环线程上执行；写操作可能等待账户锁、日志落盘或写线程，
+ * 放到 boundedElastic 线程池执行，不阻塞事件循环。
+ * 用户交易、分页和导出以 Flux 从仓库的惰性 Stream 拉取，客户端读得慢时按需拉取（背压），
+ * 不会先在内存中构建完整的列表；按 Accept 输出 JSON 数组、NDJSON 或 SSE。
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/transactions")
+@CrossOrigin(origins = "*")  // 允许跨域请求
+public class ReactiveTransactionController {
+
+    /**
+     * 导入时请求体管道的缓冲区大小
+     */
+    private static final int IMPORT_PIPE_SIZE = 64 * 1024;
+
+    /**
+     * JSON 数组和 NDJSON 输出时每批编码的交易条数
+     */
+    private static final int ENCODE_BATCH = 256;
+
+    /**
+     * 事件订阅在等待新事件时阻塞，每个订阅在独立的虚拟线程上读取，不占用事件循环和 boundedElastic
+     */
+    private static final Scheduler EVENT_SCHEDULER =
+            Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "transaction-events");
+
+    private final TransactionService service;
+    private final TransactionImporter importer;
+    private final IdempotencyStore idempotencyStore;
+    private final TransactionWritePipeline writePipeline;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final ObjectWriter eventWriter;
+    private final TransactionEventBus eventBus;
+
+    public ReactiveTransactionController(TransactionService service, TransactionImporter importer,
+                                         IdempotencyStore idempotencyStore, TransactionWritePipeline writePipeline,
+                                         ObjectMapper objectMapper, TransactionEventBus eventBus) {
+        this.service = service;
+        this.importer = importer;
+        this.idempotencyStore = idempotencyStore;
+        this.writePipeline = writePipeline;
+        this.objectMapper = objectMapper;
+        this.eventBus = eventBus;
+        this.eventWriter = TransactionController.eventWriter(objectMapper);
+        this.writer = objectMapper.writerFor(TransactionResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * 创建交易，幂等键和 Prefer: respond-async 的处理与 {@link TransactionController#create} 相同
+     */
+    @PostMapping
+    public Mono<ResponseEntity<TransactionResponse>> create(
+            @RequestBody TransactionRequest request,
+            @RequestHeader(value = TransactionController.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestHeader(value = TransactionController.PREFER, required = false) String prefer) {
+        return blocking(() -> {
+            boolean async = writePipeline.isAsync() && TransactionController.RESPOND_ASYNC.equalsIgnoreCase(prefer);
+            if (idempotencyKey == null) {
+                return async
+                        ? TransactionController.accepted(writePipeline.submit(request), null)
+                        : ResponseEntity.status(HttpStatus.CREATED).body(writePipeline.create(request));
+            }
+            IdempotencyStore.Outcome<Object> outcome = idempotencyStore.execute(idempotencyKey, request,
+                    () -> async ? writePipeline.submit(request) : writePipeline.create(request));
+            return TransactionController.respond(outcome);
+        });
+    }
+
+    @GetMapping("/writes/{ticket}")
+    public Mono<WriteStatusResponse> getWriteStatus(@PathVariable String ticket) {
+        return Mono.fromCallable(() -> writePipeline.status(ticket)
+                .orElseThrow(() -> new TransactionNotFoundException("未找到写入请求: " + ticket)));
+    }
+
+    @PostMapping("/batch")
+    public Mono<BatchCreateResponse> createBatch(@RequestBody List<TransactionRequest> requests) {
+        return blocking(() -> service.createTransactions(requests));
+    }
+
+    @PostMapping("/transfer")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<TransferResponse> transfer(@RequestBody TransferRequest request) {
+        return blocking(() -> service.transfer(request));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<TransactionResponse> getById(@PathVariable String id) {
+        return Mono.fromCallable(() -> service.getTransactionById(id));
+    }
+
+    /**
+     * 用户的全部交易，从用户索引逐条拉取，不经过按用户的列表缓存，不保证顺序
+     */
+    @GetMapping(value = "/user/{userId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> getByUserId(@PathVariable String userId, ServerHttpResponse response) {
+        return encode(userHistory(userId), response.bufferFactory(), true);
+    }
+
+    @GetMapping(value = "/user/{userId}", produces = TransactionController.NDJSON)
+    public Flux<DataBuffer> streamByUserId(@PathVariable String userId, ServerHttpResponse response) {
+        return encode(userHistory(userId), response.bufferFactory(), false);
+    }
+
+    /**
+     * SSE 每条交易是一个事件，逐条刷出
+     */
+    @GetMapping(value = "/user/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<TransactionResponse> eventsByUserId(@PathVariable String userId) {
+        return userHistory(userId);
+    }
+
+    private Flux<TransactionResponse> userHistory(String userId) {
+        return Flux.fromStream(() -> service.exportTransactions(userId, null, null));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Page<TransactionResponse>> getAllTransactions(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return Mono.fromCallable(() ->
+                service.getAllTransactions(PageRequest.of(page, size, Sort.by("timestamp").descending())));
+    }
+
+    /**
+     * 以 NDJSON 或 SSE 请求分页时只输出当前页的交易，按创建时间倒序从时间索引逐条拉取，不计算总数
+     */
+    @GetMapping(produces = {TransactionController.NDJSON, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<TransactionResponse> streamPage(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        PageRequest pageable = PageRequest.of(page, size);
+        return Flux.fromStream(() -> service.exportTransactions(null, null, null))
+                .skip(pageable.getOffset())
+                .take(pageable.getPageSize());
+    }
+
+    @GetMapping("/search")
+    public Mono<Page<TransactionResponse>> search(TransactionSearchRequest request,
+                                                  @RequestParam(defaultValue = "0") int page,
+                                                  @RequestParam(defaultValue = "20") int size) {
+        return Mono.fromCallable(() -> service.searchTransactions(request, PageRequest.of(page, size)));
+    }
+
+    @GetMapping("/search/text")
+    public Mono<Page<TransactionResponse>> searchByKeyword(@RequestParam String q,
+                                                           @RequestParam(defaultValue = "0") int page,
+                                                           @RequestParam(defaultValue = "20") int size) {
+        return Mono.fromCallable(() -> service.searchTransactionsByKeyword(q, PageRequest.of(page, size)));
+    }
+
+    @GetMapping("/cursor")
+    public Mono<TransactionCursorPage> getTransactionsAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        return Mono.fromCallable(() -> service.getTransactionsAfter(after, size));
+    }
+
+    @GetMapping(value = "/export", produces = TransactionController.NDJSON)
+    public Flux<DataBuffer> export(
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            ServerHttpResponse response) {
+        return encode(Flux.fromStream(() -> service.exportTransactions(userId, from, to)), response.bufferFactory(),
+                false);
+    }
+
+    /**
+     * 每 ENCODE_BATCH 条编码为一个缓冲区，输出 JSON 数组或 NDJSON。
+     * 默认的编码器每条交易单独分配缓冲区并刷新一次，长列表的总耗时和分配量都远高于整体序列化；
+     * 按批编码后上游每次只拉取一批，背压的粒度仍然是一批交易
+     */
+    private Flux<DataBuffer> encode(Flux<TransactionResponse> transactions, DataBufferFactory bufferFactory,
+                                    boolean array) {
+        Flux<DataBuffer> batches = transactions.buffer(ENCODE_BATCH)
+                .index()
+                .map(batch -> write(bufferFactory, batch.getT2(), array, array && batch.getT1() > 0));
+        if (array) {
+            batches = Flux.concat(Mono.fromCallable(() -> bufferFactory.wrap(new byte[]{'['})), batches,
+                    Mono.fromCallable(() -> bufferFactory.wrap(new byte[]{']'})));
+        }
+        // 客户端断开时已编码但未写出的缓冲区需要释放
+        return batches.doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private DataBuffer write(DataBufferFactory bufferFactory, List<TransactionResponse> batch, boolean array,
+                             boolean leadingSeparator) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(batch.size() * 512);
+        boolean release = true;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer.asOutputStream())) {
+            generator.setRootValueSeparator(null);
+            for (int i = 0; i < batch.size(); i++) {
+                if (array && (i > 0 || leadingSeparator)) {
+                    generator.writeRaw(',');
+                }
+                writer.writeValue(generator, batch.get(i));
+                if (!array) {
+                    generator.writeRaw('\n');
+                }
+            }
+            release = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (release) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * 以 SSE 推送交易事件，与 {@link TransactionController#events} 相同。
+     * 只在客户端请求下一个元素时才从缓冲区读取，客户端读得慢时读取位置停止前进，落后过多时按配置断开或跳过。
+     * 已到达的事件每次最多取 EVENT_BATCH 条编码为一个缓冲区，直接写入响应并刷新；
+     * 默认的 SSE 编码器逐条编码、逐条刷新，事件密集时跟不上写入
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<Void> events(
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String type,
+            @RequestHeader(value = TransactionController.LAST_EVENT_ID, required = false) Long lastEventId,
+            ServerHttpResponse response) {
+        // 在返回前订阅，参数错误时直接由异常处理返回 400
+        TransactionEventBus.Subscription subscription = eventBus.subscribe(userId, type, lastEventId);
+        Sinks.Empty<Void> closed = Sinks.empty();
+        subscription.onClose(closed::tryEmitEmpty);
+        DataBufferFactory bufferFactory = response.bufferFactory();
+        Flux<DataBuffer> frames = Flux.<DataBuffer>generate(sink -> {
+                    try {
+                        DataBuffer buffer = nextEvents(subscription, bufferFactory);
+                        if (buffer == null) {
+                            sink.complete();
+                        } else {
+                            sink.next(buffer);
+                        }
+                    } catch (InterruptedException e) {
+                        sink.complete();
+                    }
+                })
+                .subscribeOn(EVENT_SCHEDULER)
+                // 响应头随第一个元素发出，先发一条注释让客户端立即收到响应
+                .startWith(Mono.fromCallable(() -> bufferFactory.wrap(
+                        (":subscriber " + subscription.getId() + "\n\n").getBytes(StandardCharsets.UTF_8))))
+                // 订阅被断开时立即结束响应，即使客户端不再请求数据
+                .takeUntilOther(closed.asMono())
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .doFinally(signal -> subscription.close());
+        response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+        return response.writeAndFlushWith(frames.map(Mono::just));
+    }
+
+    /**
+     * 等待下一批事件并编码为 SSE 格式，超时返回心跳注释；订阅已关闭时返回 null
+     */
+    private DataBuffer nextEvents(TransactionEventBus.Subscription subscription, DataBufferFactory bufferFactory)
+            throws InterruptedException {
+        List<TransactionEvent> events = subscription.poll(eventBus.heartbeat(), TransactionController.EVENT_BATCH);
+        long missed = subscription.takeMissed();
+        if (events.isEmpty() && missed == 0) {
+            return subscription.isClosed() ? null
+                    : bufferFactory.wrap(":heartbeat\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+        DataBuffer buffer = bufferFactory.allocateBuffer(events.size() * 512 + 64);
+        boolean release = true;
+        try (OutputStream out = buffer.asOutputStream()) {
+            TransactionController.writeEvents(out, eventWriter, missed, events);
+            release = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (release) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * 流式导入。请求体经管道交给导入线程边读边写入存储，每写入一批输出一行进度，最后一行是最终结果
+     */
+    @PostMapping(value = "/import", produces = TransactionController.NDJSON)
+    public Flux<ImportResult> importTransactions(
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            @RequestBody Flux<DataBuffer> body) {
+        ImportFormat importFormat = ImportFormat.resolve(format != null ? format : contentType);
+        if (importFormat == null) {
+            return Flux.error(new InvalidTransactionException("无法识别的导入格式，请通过 format 参数指定 ndjson 或 csv"));
+        }
+        return Flux.<ImportResult>create(sink -> {
+            try {
+                importFrom(body, importFormat, sink);
+            } catch (IOException e) {
+                sink.error(e);
+            }
+        }, FluxSink.OverflowStrategy.BUFFER).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private void importFrom(Flux<DataBuffer> body, ImportFormat format, FluxSink<ImportResult> sink)
+            throws IOException {
+        PipedOutputStream output = new PipedOutputStream();
+        try (Reader reader = new InputStreamReader(new PipedInputStream(output, IMPORT_PIPE_SIZE),
+                StandardCharsets.UTF_8)) {
+            // 管道写满时写入方阻塞，因此在另一个工作线程上写入，事件循环只负责接收
+            DataBufferUtils.write(body.publishOn(Schedulers.boundedElastic()), output)
+                    .doFinally(signal -> closeQuietly(output))
+                    .subscribe(DataBufferUtils.releaseConsumer(), sink::error);
+            sink.next(importer.importTransactions(reader, format, sink::next));
+            sink.complete();
+        }
+    }
+
+    private static void closeQuietly(PipedOutputStream output) {
+        try {
+            output.close();
+        } catch (IOException ignored) {
+            // 读取方已关闭
+        }
+    }
+
+    @PutMapping("/{id}")
+    public Mono<TransactionResponse> update(@PathVariable String id, @RequestBody TransactionRequest request) {
+        return blocking(() -> service.updateTransaction(id, request));
+    }
+
+    @PatchMapping("/{id}/status")
+    public Mono<TransactionResponse> updateStatus(@PathVariable String id,
+                                                  @RequestBody TransactionStatusRequest request) {
+        return blocking(() -> service.updateTransactionStatus(id, request));
+    }
+
+    @GetMapping("/status/{status}")
+    public Flux<TransactionResponse> getByStatus(@PathVariable String status,
+                                                 @RequestParam(defaultValue = "100") int size) {
+        return Mono.fromCallable(() -> service.getTransactionsByStatus(status, size))
+                .flatMapIterable(transactions -> transactions);
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable String id) {
+        return Mono.fromRunnable(() -> service.deleteTransaction(id))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * 可能阻塞的写操作放到 boundedElastic 线程池执行
+     */
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
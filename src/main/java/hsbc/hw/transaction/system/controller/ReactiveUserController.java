@@ -0,0 +1,38 @@
+package hsbc.hw.transaction.system.controller;
+
+import hsbc.hw.transaction.system.dto.UserSummaryResponse;
+import hsbc.hw.transaction.system.service.TransactionService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.time.YearMonth;
+
+/**
+ * reactive profile 下的用户汇总接口，与 {@link UserController} 相同。
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/users")
+@CrossOrigin(origins = "*")  // 允许跨域请求
+public class ReactiveUserController {
+
+    private final TransactionService service;
+
+    public ReactiveUserController(TransactionService service) {
+        this.service = service;
+    }
+
+    @GetMapping("/{userId}/summary")
+    public Mono<UserSummaryResponse> getSummary(@PathVariable String userId) {
+        return Mono.fromCallable(() -> service.getUserSummary(userId));
+    }
+
+    @GetMapping("/{userId}/summary/{month}")
+    public Mono<UserSummaryResponse.MonthlySummary> getMonthlySummary(
+            @PathVariable String userId,
+            @PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        return Mono.fromCallable(() -> service.getUserMonthlySummary(userId, month));
+    }
+}
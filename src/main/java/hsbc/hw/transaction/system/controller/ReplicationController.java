@@ -0,0 +1,117 @@
+package hsbc.hw.transaction.system.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import hsbc.hw.transaction.system.config.TransactionReplicationProperties;
+import hsbc.hw.transaction.system.dto.ReplicationRecord;
+import hsbc.hw.transaction.system.repository.replication.ReplicationLog;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 主节点向从节点推送变更日志。
+ * <p>
+ * 不在 /api 下，不经过并发限制，从节点的长连接不会占用业务请求的许可。
+ */
+@Slf4j
+@RestController
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "transaction.replication", name = "role", havingValue = "primary")
+@RequestMapping("/replication")
+public class ReplicationController {
+
+    /**
+     * 每次最多取出并写出的变更数
+     */
+    private static final int BATCH = 256;
+
+    /**
+     * 快照每写出多少条刷新一次输出流
+     */
+    private static final int SNAPSHOT_FLUSH_INTERVAL = 1000;
+
+    private final ReplicationLog replicationLog;
+    private final ObjectMapper objectMapper;
+    private final Duration heartbeat;
+
+    public ReplicationController(ReplicationLog replicationLog, ObjectMapper objectMapper,
+                                 TransactionReplicationProperties properties) {
+        this.replicationLog = replicationLog;
+        this.objectMapper = objectMapper;
+        this.heartbeat = properties.getHeartbeat();
+    }
+
+    /**
+     * 以 NDJSON 长连接推送变更，连接一直保持到从节点断开或落后过多。
+     * 日志ID与当前日志相同且 after 之后的变更仍在缓冲区中时直接续传，否则先发送全量快照。
+     * 每批变更之后和空闲时发送心跳，携带当前最新序号。
+     * @param logId 从节点上次同步的日志ID
+     * @param after 从节点已应用的最后一条变更的序号
+     */
+    @GetMapping(value = "/changes", produces = TransactionController.NDJSON)
+    public void changes(@RequestParam(required = false) String logId,
+                        @RequestParam(defaultValue = "-1") long after,
+                        HttpServletResponse response) throws IOException {
+        response.setContentType(TransactionController.NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (ReplicationLog.Reader reader = replicationLog.subscribe(logId, after);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            ObjectWriter writer = objectMapper.writerFor(ReplicationRecord.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (Stream<ReplicationRecord> snapshot = reader.snapshot()) {
+                long written = 0;
+                for (Iterator<ReplicationRecord> it = snapshot.iterator(); it.hasNext(); ) {
+                    write(writer, generator, it.next());
+                    if (++written % SNAPSHOT_FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+            }
+            write(writer, generator, heartbeat());
+            generator.flush();
+            while (!reader.isClosed()) {
+                List<ReplicationRecord> records = reader.poll(heartbeat, BATCH);
+                for (ReplicationRecord record : records) {
+                    write(writer, generator, record);
+                }
+                if (!reader.isClosed()) {
+                    write(writer, generator, heartbeat());
+                }
+                generator.flush();
+            }
+        } catch (IOException e) {
+            // 写出失败说明从节点已断开，响应已经提交，不再交给异常处理器
+            log.info("Replication stream closed: {}", e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ReplicationRecord heartbeat() {
+        return new ReplicationRecord(replicationLog.head(), ReplicationRecord.Type.HEARTBEAT, null, null,
+                System.currentTimeMillis());
+    }
+
+    private static void write(ObjectWriter writer, JsonGenerator generator, ReplicationRecord record)
+            throws IOException {
+        writer.writeValue(generator, record);
+        generator.writeRaw('\n');
+    }
+}
@@ -1,31 +1,181 @@
 package hsbc.hw.transaction.system.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.ImportResult;
+import hsbc.hw.transaction.system.dto.TransactionCursorPage;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
 import hsbc.hw.transaction.system.dto.TransactionRequest;
 import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.dto.TransactionSearchRequest;
+import hsbc.hw.transaction.system.dto.TransactionStatusRequest;
+import hsbc.hw.transaction.system.dto.TransferRequest;
+import hsbc.hw.transaction.system.dto.TransferResponse;
+import hsbc.hw.transaction.system.dto.WriteStatusResponse;
+import hsbc.hw.transaction.system.enums.ImportFormat;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import hsbc.hw.transaction.system.service.IdempotencyStore;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionImporter;
 import hsbc.hw.transaction.system.service.TransactionService;
+import hsbc.hw.transaction.system.service.TransactionWritePipeline;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/transactions")
 @CrossOrigin(origins = "*")  // 允许跨域请求
 public class TransactionController {
 
+    static final String NDJSON = "application/x-ndjson";
+
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    /**
+     * 响应由幂等键重放时附带该响应头
+     */
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    /**
+     * 异步写入模式下，请求头 Prefer: respond-async 表示只受理不等待写入
+     */
+    static final String PREFER = "Prefer";
+    static final String RESPOND_ASYNC = "respond-async";
+
+    /**
+     * SSE 断线重连时浏览器携带的最后一个事件 id
+     */
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    /**
+     * 慢订阅者跳过积压事件时发送的 SSE 事件名，数据为跳过的条数
+     */
+    static final String SKIPPED_EVENT = "skipped";
+
+    /**
+     * SSE 推送时已到达的事件每次最多合并写出的条数，合并后只刷新一次
+     */
+    static final int EVENT_BATCH = 256;
+
+    /**
+     * NDJSON 导出时每写入多少条刷新一次输出流
+     */
+    private static final int EXPORT_FLUSH_INTERVAL = 1000;
+
     private final TransactionService service;
+    private final TransactionImporter importer;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyStore idempotencyStore;
+    private final TransactionWritePipeline writePipeline;
+    private final TransactionEventBus eventBus;
+    private final ObjectWriter eventWriter;
 
-    public TransactionController(TransactionService service) {
+    public TransactionController(TransactionService service, TransactionImporter importer, ObjectMapper objectMapper,
+                                 IdempotencyStore idempotencyStore, TransactionWritePipeline writePipeline,
+                                 TransactionEventBus eventBus) {
         this.service = service;
+        this.importer = importer;
+        this.objectMapper = objectMapper;
+        this.idempotencyStore = idempotencyStore;
+        this.writePipeline = writePipeline;
+        this.eventBus = eventBus;
+        this.eventWriter = eventWriter(objectMapper);
     }
 
+    /**
+     * 创建交易。携带 Idempotency-Key 时，时间窗口内同一个键的重试直接返回首次创建的结果，并发的重复请求只执行一次。
+     * 异步写入模式下携带 Prefer: respond-async 时校验后立即返回 202，Location 为处理状态地址；
+     * 同时携带幂等键时，重试返回首次受理的同一个 Location，不会重复入队。
+     */
     @PostMapping
+    public ResponseEntity<TransactionResponse> create(
+            @RequestBody TransactionRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestHeader(value = PREFER, required = false) String prefer) {
+        boolean async = writePipeline.isAsync() && RESPOND_ASYNC.equalsIgnoreCase(prefer);
+        if (idempotencyKey == null) {
+            return async
+                    ? accepted(writePipeline.submit(request), null)
+                    : ResponseEntity.status(HttpStatus.CREATED).body(writePipeline.create(request));
+        }
+        IdempotencyStore.Outcome<Object> outcome = idempotencyStore.execute(idempotencyKey, request,
+                () -> async ? writePipeline.submit(request) : writePipeline.create(request));
+        return respond(outcome);
+    }
+
+    /**
+     * 幂等请求的响应：保存的结果是受理凭证时返回 202，是交易时返回 201
+     */
+    static ResponseEntity<TransactionResponse> respond(IdempotencyStore.Outcome<Object> outcome) {
+        if (outcome.value() instanceof TransactionWritePipeline.PendingWrite write) {
+            return accepted(write, outcome.replayed());
+        }
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAYED, String.valueOf(outcome.replayed()))
+                .body((TransactionResponse) outcome.value());
+    }
+
+    static ResponseEntity<TransactionResponse> accepted(TransactionWritePipeline.PendingWrite write, Boolean replayed) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.accepted()
+                .location(URI.create("/api/transactions/writes/" + write.ticket()));
+        if (replayed != null) {
+            builder.header(IDEMPOTENT_REPLAYED, String.valueOf(replayed));
+        }
+        return builder.build();
+    }
+
+    /**
+     * 异步受理的创建请求的处理状态，保留时间见 transaction.write.status-retention。
+     */
+    @GetMapping("/writes/{ticket}")
+    public WriteStatusResponse getWriteStatus(@PathVariable String ticket) {
+        return writePipeline.status(ticket)
+                .orElseThrow(() -> new TransactionNotFoundException("未找到写入请求: " + ticket));
+    }
+
+    @PostMapping("/batch")
+    public BatchCreateResponse createBatch(@RequestBody List<TransactionRequest> requests) {
+        return service.createTransactions(requests);
+    }
+
+    /**
+     * 转账：余额不足返回 400，交易ID已存在返回 409。
+     */
+    @PostMapping("/transfer")
     @ResponseStatus(HttpStatus.CREATED)
-    public TransactionResponse create(@RequestBody TransactionRequest request) {
-        return service.createTransaction(request);
+    public TransferResponse transfer(@RequestBody TransferRequest request) {
+        return service.transfer(request);
     }
 
     @GetMapping("/{id}")
@@ -45,11 +195,188 @@ public class TransactionController {
         return service.getAllTransactions(PageRequest.of(page, size, Sort.by("timestamp").descending()));
     }
 
+    /**
+     * 多条件查询，条件通过查询参数传入：userId、type、status、counterpartyAccountNumber、minAmount、maxAmount、from、to
+     */
+    @GetMapping("/search")
+    public Page<TransactionResponse> search(TransactionSearchRequest request,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "20") int size) {
+        return service.searchTransactions(request, PageRequest.of(page, size));
+    }
+
+    /**
+     * 关键字搜索对方户名、交易摘要和描述，结果按相关度排序
+     */
+    @GetMapping("/search/text")
+    public Page<TransactionResponse> searchByKeyword(@RequestParam String q,
+                                                     @RequestParam(defaultValue = "0") int page,
+                                                     @RequestParam(defaultValue = "20") int size) {
+        return service.searchTransactionsByKeyword(q, PageRequest.of(page, size));
+    }
+
+    @GetMapping("/cursor")
+    public TransactionCursorPage getTransactionsAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        return service.getTransactionsAfter(after, size);
+    }
+
+    /**
+     * 以换行分隔的 JSON 流式导出交易，边遍历边写出，内存占用与数据量无关。
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public void export(@RequestParam(required = false) String userId,
+                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                       HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        try (Stream<TransactionResponse> transactions = service.exportTransactions(userId, from, to);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // 输出流由容器管理，不随生成器关闭；换行由下面手动写出，不使用默认的空格分隔符
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            ObjectWriter writer = objectMapper.writerFor(TransactionResponse.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            long written = 0;
+            for (Iterator<TransactionResponse> it = transactions.iterator(); it.hasNext(); ) {
+                writer.writeValue(generator, it.next());
+                generator.writeRaw('\n');
+                // 第一条立即刷出，之后按批刷新，客户端无需等待遍历结束
+                if (++written % EXPORT_FLUSH_INTERVAL == 1) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+    }
+
+    /**
+     * 以 SSE 推送交易的创建、更新和删除事件，可按用户和交易类型过滤。
+     * 每个连接由一个虚拟线程从事件缓冲区读取并写出，写出阻塞只影响该连接；落后过多时按配置断开或跳过积压事件。
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@RequestParam(required = false) String userId,
+                             @RequestParam(required = false) String type,
+                             @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId) {
+        TransactionEventBus.Subscription subscription = eventBus.subscribe(userId, type, lastEventId);
+        // 不设超时，连接一直保持到客户端断开、订阅被断开或应用停止
+        SseEmitter emitter = new SseEmitter(0L);
+        Thread sender = Thread.ofVirtual()
+                .name("transaction-events-" + subscription.getId())
+                .unstarted(() -> sendEvents(subscription, emitter));
+        subscription.onClose(sender::interrupt);
+        emitter.onCompletion(subscription::close);
+        emitter.onError(e -> subscription.close());
+        sender.start();
+        return emitter;
+    }
+
+    /**
+     * 事件的序列化器，写入后不关闭也不刷新输出流
+     */
+    static ObjectWriter eventWriter(ObjectMapper objectMapper) {
+        return objectMapper.writerFor(TransactionEvent.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private void sendEvents(TransactionEventBus.Subscription subscription, SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().comment("subscriber " + subscription.getId()));
+            while (!subscription.isClosed()) {
+                List<TransactionEvent> events = subscription.poll(eventBus.heartbeat(), EVENT_BATCH);
+                long missed = subscription.takeMissed();
+                if (!events.isEmpty() || missed > 0) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(events.size() * 512 + 64);
+                    writeEvents(out, eventWriter, missed, events);
+                    emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(out.toByteArray(),
+                            MediaType.TEXT_EVENT_STREAM)));
+                } else if (!subscription.isClosed()) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            }
+            emitter.complete();
+        } catch (InterruptedException e) {
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开，容器随后回调 onError / onCompletion
+        } finally {
+            subscription.close();
+        }
+    }
+
+    /**
+     * 按 SSE 格式写出一批事件，事件 id 为序号；有跳过的事件时先写出一个 skipped 事件。
+     * 整批编码后只写出、刷新一次，逐条通过消息转换器写出时事件密集的情况下跟不上写入
+     */
+    static void writeEvents(OutputStream out, ObjectWriter eventWriter, long missed, List<TransactionEvent> events)
+            throws IOException {
+        if (missed > 0) {
+            out.write(("event:" + SKIPPED_EVENT + "\ndata:" + missed + "\n\n").getBytes(StandardCharsets.UTF_8));
+        }
+        for (TransactionEvent event : events) {
+            out.write(("id:" + event.getSequence() + "\ndata:").getBytes(StandardCharsets.UTF_8));
+            eventWriter.writeValue(out, event);
+            out.write('\n');
+            out.write('\n');
+        }
+    }
+
+    /**
+     * 从请求体流式导入 NDJSON 或 CSV 文件。格式取自 format 参数，未指定时按 Content-Type 判断。
+     * 响应为 NDJSON：每写入一批输出一行进度，最后一行是包含错误明细的最终结果。
+     */
+    @PostMapping(value = "/import", produces = NDJSON)
+    public void importTransactions(@RequestParam(required = false) String format,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        ImportFormat importFormat = ImportFormat.resolve(format != null ? format : request.getContentType());
+        if (importFormat == null) {
+            throw new InvalidTransactionException("无法识别的导入格式，请通过 format 参数指定 ndjson 或 csv");
+        }
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        ObjectWriter writer = objectMapper.writerFor(ImportResult.class);
+        Consumer<ImportResult> writeLine = result -> {
+            try {
+                out.write(writer.writeValueAsBytes(result));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try (Reader reader = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)) {
+            writeLine.accept(importer.importTransactions(reader, importFormat, writeLine));
+        }
+    }
+
     @PutMapping("/{id}")
     public TransactionResponse update(@PathVariable String id, @RequestBody TransactionRequest request) {
         return service.updateTransaction(id, request);
     }
 
+    /**
+     * 修改交易状态。非法流转或当前状态与期望不符时返回 409，多个处理方可以用 expectedStatus=CREATED 并发认领同一笔交易
+     */
+    @PatchMapping("/{id}/status")
+    public TransactionResponse updateStatus(@PathVariable String id, @RequestBody TransactionStatusRequest request) {
+        return service.updateTransactionStatus(id, request);
+    }
+
+    /**
+     * 查询某个状态最新的交易，只访问该状态的索引，按创建时间倒序
+     */
+    @GetMapping("/status/{status}")
+    public List<TransactionResponse> getByStatus(@PathVariable String status,
+                                                 @RequestParam(defaultValue = "100") int size) {
+        return service.getTransactionsByStatus(status, size);
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void delete(@PathVariable String id) {
@@ -0,0 +1,37 @@
+package hsbc.hw.transaction.system.controller;
+
+import hsbc.hw.transaction.system.dto.UserSummaryResponse;
+import hsbc.hw.transaction.system.service.TransactionService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/users")
+@CrossOrigin(origins = "*")  // 允许跨域请求
+public class UserController {
+
+    private final TransactionService service;
+
+    public UserController(TransactionService service) {
+        this.service = service;
+    }
+
+    @GetMapping("/{userId}/summary")
+    public UserSummaryResponse getSummary(@PathVariable String userId) {
+        return service.getUserSummary(userId);
+    }
+
+    /**
+     * 单月汇总，月份格式为 yyyy-MM。
+     */
+    @GetMapping("/{userId}/summary/{month}")
+    public UserSummaryResponse.MonthlySummary getMonthlySummary(
+            @PathVariable String userId,
+            @PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        return service.getUserMonthlySummary(userId, month);
+    }
+}
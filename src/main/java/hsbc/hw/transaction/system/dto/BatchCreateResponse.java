@@ -0,0 +1,45 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量创建结果，results 与请求列表一一对应。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCreateResponse {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<ItemResult> results;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        /**
+         * 在请求列表中的下标。
+         */
+        private int index;
+        private String id;
+        private boolean success;
+        /**
+         * 失败原因，成功时为空。
+         */
+        private String message;
+        private TransactionResponse transaction;
+
+        public static ItemResult success(int index, TransactionResponse transaction) {
+            return new ItemResult(index, transaction.getId(), true, null, transaction);
+        }
+
+        public static ItemResult failure(int index, String id, String message) {
+            return new ItemResult(index, id, false, message, null);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量导入的进度与结果。导入过程中按批次输出快照，done 为 true 的是最终结果。
+ */
+@Data
+@NoArgsConstructor
+public class ImportResult {
+    /**
+     * 最多保留的错误明细条数，超出部分只计数
+     */
+    public static final int MAX_ERRORS = 100;
+
+    private long processed;
+    private long imported;
+    private long failed;
+    private long elapsedMillis;
+    private boolean done;
+    private List<ImportError> errors = new ArrayList<>();
+
+    public void addError(long line, String id, String message) {
+        failed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new ImportError(line, id, message));
+        }
+    }
+
+    /**
+     * 进度快照，不携带错误明细。
+     */
+    public ImportResult progress() {
+        ImportResult snapshot = new ImportResult();
+        snapshot.setProcessed(processed);
+        snapshot.setImported(imported);
+        snapshot.setFailed(failed);
+        snapshot.setElapsedMillis(elapsedMillis);
+        snapshot.setErrors(List.of());
+        return snapshot;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ImportError {
+        /**
+         * 记录在文件中的起始行号，从 1 开始。
+         */
+        private long line;
+        private String id;
+        private String message;
+    }
+}
@@ -0,0 +1,46 @@
+package hsbc.hw.transaction.system.dto;
+
+import hsbc.hw.transaction.system.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 主节点推送给从节点的变更记录，通过 /replication/changes 以 NDJSON 逐行发送。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicationRecord {
+    /**
+     * 变更序号，同一个变更日志内连续递增；快照内的记录和快照首尾记录都是快照对应的序号，心跳是主节点最新的序号
+     */
+    private long sequence;
+    private Type type;
+    /**
+     * 交易ID；快照开始和结束记录中是变更日志的ID，主节点每次启动生成一个新ID
+     */
+    private String id;
+    /**
+     * 保存后的交易，只有 SAVE 记录有
+     */
+    private Transaction transaction;
+    /**
+     * 主节点记录该变更的时间（毫秒时间戳），心跳为发送时间
+     */
+    private long timestamp;
+
+    public enum Type {
+        SAVE,
+        DELETE,
+        /**
+         * 全量快照开始，之后是全部交易的 SAVE 记录
+         */
+        SNAPSHOT_START,
+        /**
+         * 全量快照结束，从节点删除快照中没有出现的交易
+         */
+        SNAPSHOT_END,
+        HEARTBEAT
+    }
+}
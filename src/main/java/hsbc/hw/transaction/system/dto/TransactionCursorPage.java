@@ -0,0 +1,22 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionCursorPage {
+    private List<TransactionResponse> content;
+    /**
+     * 下一页的游标，作为下次请求的 after 参数；没有更多数据时为空。
+     */
+    private String nextCursor;
+    private boolean hasNext;
+}
@@ -0,0 +1,32 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 交易变更事件，通过 /api/transactions/events 推送。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionEvent {
+    /**
+     * 全局递增的事件序号，同时作为 SSE 的事件 id，断线重连时通过 Last-Event-ID 续传
+     */
+    private long sequence;
+    private Type type;
+    private LocalDateTime occurredAt;
+    /**
+     * 变更后的交易；删除事件为删除前的交易
+     */
+    private TransactionResponse transaction;
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
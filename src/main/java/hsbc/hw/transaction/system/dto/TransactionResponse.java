@@ -13,6 +13,8 @@ public class TransactionResponse {
     private BigDecimal amount;
     private String type;
     private String typeName;
+    private String status;
+    private String statusName;
     private String transactionSummary;
     private String counterpartyName;
     private String counterpartyAccountNumber;
@@ -33,6 +35,10 @@ public class TransactionResponse {
         response.setAmount(transaction.getAmount());
         response.setType(transaction.getType().name());
         response.setTypeName(transaction.getType().getLabel());
+        if (transaction.getStatus() != null) {
+            response.setStatus(transaction.getStatus().name());
+            response.setStatusName(transaction.getStatus().getLabel());
+        }
         response.setTransactionSummary(transaction.getTransactionSummary());
         response.setCounterpartyName(transaction.getCounterpartyName());
         response.setCounterpartyAccountNumber(transaction.getCounterpartyAccountNumber());
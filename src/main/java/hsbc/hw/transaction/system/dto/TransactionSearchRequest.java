@@ -0,0 +1,24 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 多条件查询的请求参数，为空的条件不参与过滤，金额和时间的上下限都包含边界。
+ */
+@Data
+public class TransactionSearchRequest {
+    private String userId;
+    private String type;
+    private String status;
+    private String counterpartyAccountNumber;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+}
@@ -0,0 +1,18 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.Data;
+
+/**
+ * 修改交易状态的请求。
+ */
+@Data
+public class TransactionStatusRequest {
+    /**
+     * 目标状态
+     */
+    private String status;
+    /**
+     * 期望的当前状态（可选），为空时以读取到的当前状态为准
+     */
+    private String expectedStatus;
+}
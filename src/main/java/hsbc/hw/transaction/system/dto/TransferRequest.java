@@ -0,0 +1,17 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 转账请求，id 作为转出交易的ID，转入交易的ID为 id 加 "-in" 后缀。
+ */
+@Data
+public class TransferRequest {
+    private String id;
+    private String fromUserId;
+    private String toUserId;
+    private BigDecimal amount;
+    private String description;
+}
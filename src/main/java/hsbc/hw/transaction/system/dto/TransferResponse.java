@@ -0,0 +1,22 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 转账结果，包含转出和转入两笔交易。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResponse {
+    private TransactionResponse debit;
+    private TransactionResponse credit;
+    /**
+     * 转出方转账后的余额。
+     */
+    private BigDecimal fromBalance;
+}
@@ -0,0 +1,52 @@
+package hsbc.hw.transaction.system.dto;
+
+import hsbc.hw.transaction.system.enums.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户交易汇总：余额、按类型和按月份的笔数与金额。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummaryResponse {
+    private String userId;
+    /**
+     * 净余额，入账类型（存款、收入、退款）为正，其余类型为负。
+     */
+    private BigDecimal balance;
+    private long transactionCount;
+    private Map<TransactionType, TypeTotal> byType;
+    /**
+     * 按月份升序排列，月份按交易创建时间归属。
+     */
+    private List<MonthlySummary> months;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TypeTotal {
+        private long count;
+        private BigDecimal amount;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MonthlySummary {
+        private YearMonth month;
+        /**
+         * 当月净发生额。
+         */
+        private BigDecimal net;
+        private long transactionCount;
+        private Map<TransactionType, TypeTotal> byType;
+    }
+}
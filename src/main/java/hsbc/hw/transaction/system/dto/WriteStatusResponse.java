@@ -0,0 +1,31 @@
+package hsbc.hw.transaction.system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 异步受理的创建请求的处理状态。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WriteStatusResponse {
+    private String ticket;
+    private String transactionId;
+    private Status status;
+    /**
+     * 失败原因，其余状态为空。
+     */
+    private String message;
+    /**
+     * 写入成功后的交易。
+     */
+    private TransactionResponse transaction;
+
+    public enum Status {
+        PENDING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,44 @@
+package hsbc.hw.transaction.system.enums;
+
+import java.util.Locale;
+
+/**
+ * 批量导入支持的文件格式。
+ */
+public enum ImportFormat {
+
+    NDJSON("application/x-ndjson", "每行一个 JSON 格式的交易请求"),
+    CSV("text/csv", "首行为表头、列名与交易请求字段一致的 CSV 文件");
+
+    private final String contentType;
+    private final String description;
+
+    ImportFormat(String contentType, String description) {
+        this.contentType = contentType;
+        this.description = description;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 按格式名或 Content-Type 解析，无法识别时返回 null。
+     */
+    public static ImportFormat resolve(String value) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (ImportFormat format : values()) {
+            if (normalized.equals(format.name().toLowerCase(Locale.ROOT)) || normalized.startsWith(format.contentType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -1,6 +1,13 @@
 package hsbc.hw.transaction.system.enums;
+
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
- * 交易状态枚举,后期扩展备用
+ * 交易状态枚举。
+ * <p>
+ * 允许的状态流转：CREATED -> PROCESSING / CANCELLED，PROCESSING -> COMPLETED / FAILED / CANCELLED，
+ * FAILED -> PROCESSING（重试）。COMPLETED 和 CANCELLED 为终态。
  */
 public enum TransactionStatus {
 
@@ -12,6 +19,15 @@ public enum TransactionStatus {
 
     private final String label;
     private final String description;
+    private Set<TransactionStatus> next;
+
+    static {
+        CREATED.next = EnumSet.of(PROCESSING, CANCELLED);
+        PROCESSING.next = EnumSet.of(COMPLETED, FAILED, CANCELLED);
+        COMPLETED.next = EnumSet.noneOf(TransactionStatus.class);
+        CANCELLED.next = EnumSet.noneOf(TransactionStatus.class);
+        FAILED.next = EnumSet.of(PROCESSING);
+    }
 
     TransactionStatus(String label, String description) {
         this.label = label;
@@ -25,4 +41,24 @@ public enum TransactionStatus {
     public String getDescription() {
         return description;
     }
+
+    /**
+     * 是否允许从当前状态流转到目标状态
+     * @param target 目标状态
+     * @return 允许时返回 true
+     */
+    public boolean canTransitionTo(TransactionStatus target) {
+        return target != null && next.contains(target);
+    }
+
+    public boolean isTerminal() {
+        return next.isEmpty();
+    }
+
+    /**
+     * 是否计入余额和用户汇总，已取消和失败的交易不计入；失败后重试回到处理中时重新计入
+     */
+    public boolean isEffective() {
+        return this != CANCELLED && this != FAILED;
+    }
 }
@@ -1,24 +1,29 @@
 package hsbc.hw.transaction.system.enums;
 
+import java.math.BigDecimal;
+
 /**
  * 交易类型枚举，定义银行系统中常见的交易种类。
  */
 public enum TransactionType {
 
-    DEPOSIT("存款", "将资金存入银行账户"),
-    WITHDRAWAL("取款", "从银行账户中取出资金"),
-    TRANSFER("转账", "将资金从一个账户转移到另一个账户"),
-    EXPENSE("消费", "使用银行账户进行购物、支付等消费行为"),
-    INCOME("收入", "收到的工资、奖金、利息等收入"),
-    PAYMENT("缴费", "缴纳各种费用，如水电费、电话费、物业费等"),
-    REFUND("退款", "收到的退款或退货款项");
+    DEPOSIT("存款", "将资金存入银行账户", true),
+    WITHDRAWAL("取款", "从银行账户中取出资金", false),
+    TRANSFER("转账", "将资金从一个账户转移到另一个账户", false),
+    EXPENSE("消费", "使用银行账户进行购物、支付等消费行为", false),
+    INCOME("收入", "收到的工资、奖金、利息等收入", true),
+    PAYMENT("缴费", "缴纳各种费用，如水电费、电话费、物业费等", false),
+    REFUND("退款", "收到的退款或退货款项", true),
+    TRANSFER_IN("转入", "从其他账户转入的资金", true);
 
     private final String label;
     private final String description;
+    private final boolean credit;
 
-    TransactionType(String label, String description) {
+    TransactionType(String label, String description, boolean credit) {
         this.label = label;
         this.description = description;
+        this.credit = credit;
     }
 
     public String getLabel() {
@@ -28,4 +33,23 @@ public enum TransactionType {
     public String getDescription() {
         return description;
     }
+
+    /**
+     * @return 是否为入账类型，入账增加余额，其余类型减少余额
+     */
+    public boolean isCredit() {
+        return credit;
+    }
+
+    /**
+     * 按交易方向给金额加上符号
+     * @param amount 交易金额，为空时按0处理
+     * @return 对余额的影响
+     */
+    public BigDecimal signed(BigDecimal amount) {
+        if (amount == null) {
+            return BigDecimal.ZERO;
+        }
+        return credit ? amount : amount.negate();
+    }
 }
@@ -0,0 +1,10 @@
+package hsbc.hw.transaction.system.exception;
+
+/**
+ * 集群模式下请求需要转发的节点无法连接或超时。
+ */
+public class ClusterNodeUnavailableException extends RuntimeException {
+    public ClusterNodeUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package hsbc.hw.transaction.system.exception;
+
+public class TransactionStateException extends RuntimeException {
+    public TransactionStateException(String message) {
+        super(message);
+    }
+}
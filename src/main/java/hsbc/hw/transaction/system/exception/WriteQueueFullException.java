@@ -0,0 +1,10 @@
+package hsbc.hw.transaction.system.exception;
+
+/**
+ * ASYNC 写入模式下队列已满，等待超时仍无法入队。
+ */
+public class WriteQueueFullException extends RuntimeException {
+    public WriteQueueFullException(String message) {
+        super(message);
+    }
+}
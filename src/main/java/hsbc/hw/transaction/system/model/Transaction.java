@@ -3,6 +3,7 @@ package hsbc.hw.transaction.system.model;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+import hsbc.hw.transaction.system.enums.TransactionStatus;
 import hsbc.hw.transaction.system.enums.TransactionType;
 import lombok.Data;
 /**
@@ -31,6 +32,11 @@ public class Transaction {
      */
     private TransactionType type;
 
+    /**
+     * 交易状态，参考 TransactionStatus 枚举，新建交易为 CREATED。
+     */
+    private TransactionStatus status = TransactionStatus.CREATED;
+
     /**
      * 交易摘要，描述交易性质，如"转账"、"取现"、"汇入"等。
      */
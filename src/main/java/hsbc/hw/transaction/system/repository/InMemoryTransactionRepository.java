@@ -1,43 +1,708 @@
 package hsbc.hw.transaction.system.repository;
 
+import hsbc.hw.transaction.system.config.TransactionSearchProperties;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
 import hsbc.hw.transaction.system.model.Transaction;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * 基于 ConcurrentHashMap 的内存交易存储。
+ * <p>
+ * 除主表外还维护 userId -> 交易ID 的二级索引，按用户查询只访问该用户自己的交易；
+ * 按 (createdAt 倒序, id) 排序的跳表索引，分页查询只需遍历 offset + size 个元素；
+ * 按状态、类型和对方账号的交易ID集合，以及按金额排序的跳表索引，供多条件查询选择驱动索引；
+ * 开启 transaction.search.text.enabled 时维护对方户名、摘要和描述的 {@link TextIndex} 供关键字搜索使用。
+ * 索引的维护都放在主表对应 key 的 compute 回调中完成，同一笔交易的并发写入会被串行化，
+ * 保证主表与索引一致。保存的实体视为快照，更新时应传入新对象而不是修改已保存的对象。
+ * <p>
+ * 配置了 {@link TransactionJournal} 时，每次写入同时记录日志，启动时从日志恢复数据。
+ */
 @Repository
-public class InMemoryTransactionRepository {
+@ConditionalOnProperty(prefix = "transaction.store", name = "type", havingValue = "heap", matchIfMissing = true)
+public class InMemoryTransactionRepository implements TransactionRepository {
     private final Map<String, Transaction> transactions = new ConcurrentHashMap<>();
 
+    private final TransactionJournal journal;
+
+    /**
+     * 记录日志的写操作持有读锁；生成快照前获取一次写锁，等待已记录日志但尚未写入主表的操作完成。
+     */
+    private final ReadWriteLock snapshotBarrier = new ReentrantReadWriteLock();
+
+    /**
+     * 用户ID到交易ID集合的二级索引。
+     */
+    private final Map<String, Set<String>> userIndex = new ConcurrentHashMap<>();
+
+    /**
+     * 按创建时间倒序排列的交易索引，创建时间相同时按交易ID升序。
+     */
+    private final ConcurrentSkipListMap<TimeKey, Transaction> timeIndex = new ConcurrentSkipListMap<>(TimeKey.ORDER);
+
+    /**
+     * 交易状态到时间索引键的索引，与时间索引顺序相同；每个状态的集合在构造时创建，之后只修改集合内容。
+     */
+    private final Map<TransactionStatus, ConcurrentSkipListSet<TimeKey>> statusIndex =
+            new EnumMap<>(TransactionStatus.class);
+
+    /**
+     * 每个状态的交易数，跳表的 size() 需要遍历，查询规划和计数都读这里
+     */
+    private final Map<TransactionStatus, LongAdder> statusCounts = new EnumMap<>(TransactionStatus.class);
+
+    /**
+     * 交易类型到交易ID集合的索引，与状态索引一样只修改集合内容。
+     */
+    private final Map<TransactionType, Set<String>> typeIndex = new EnumMap<>(TransactionType.class);
+
+    /**
+     * 对方账号到交易ID集合的二级索引。
+     */
+    private final Map<String, Set<String>> counterpartyIndex = new ConcurrentHashMap<>();
+
+    /**
+     * 按金额升序排列的交易索引，金额相同时按交易ID升序，金额为空的交易不进入索引。
+     */
+    private final ConcurrentSkipListMap<AmountKey, Transaction> amountIndex =
+            new ConcurrentSkipListMap<>(AmountKey.ORDER);
+
+    /**
+     * 关键字搜索的倒排索引，未开启时为空
+     */
+    private final TextIndex textIndex;
+
+    public InMemoryTransactionRepository() {
+        this(TransactionJournal.NONE);
+    }
+
+    @Autowired
+    public InMemoryTransactionRepository(ObjectProvider<TransactionJournal> journal,
+                                         ObjectProvider<TransactionSearchProperties> searchProperties) {
+        this(journal.getIfAvailable(() -> TransactionJournal.NONE),
+                searchProperties.getIfAvailable(TransactionSearchProperties::new).getText().isEnabled());
+    }
+
+    public InMemoryTransactionRepository(TransactionJournal journal) {
+        this(journal, false);
+    }
+
+    /**
+     * @param journal 持久化日志
+     * @param textIndex 是否维护关键字搜索的倒排索引
+     */
+    public InMemoryTransactionRepository(TransactionJournal journal, boolean textIndex) {
+        this.journal = journal;
+        this.textIndex = textIndex ? new TextIndex() : null;
+        for (TransactionStatus status : TransactionStatus.values()) {
+            statusIndex.put(status, new ConcurrentSkipListSet<>(TimeKey.ORDER));
+            statusCounts.put(status, new LongAdder());
+        }
+        for (TransactionType type : TransactionType.values()) {
+            typeIndex.put(type, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * 从日志恢复数据，恢复过程不再写日志。
+     */
+    @PostConstruct
+    public void open() {
+        journal.open(t -> store(t, false), id -> remove(id, false), () -> {
+            snapshotBarrier.writeLock().lock();
+            snapshotBarrier.writeLock().unlock();
+            return transactions.values().stream();
+        });
+    }
+
+    @Override
     public Transaction save(Transaction transaction) {
-        transactions.put(transaction.getId(), transaction);
+        journal.awaitDurable(store(transaction, true));
         return transaction;
     }
 
+    @Override
+    public boolean saveIfAbsent(Transaction transaction) {
+        long sequence = insert(transaction);
+        if (sequence < 0) {
+            return false;
+        }
+        journal.awaitDurable(sequence);
+        return true;
+    }
+
+    /**
+     * 批量保存，逐条维护索引，适用于批量创建和导入。整批只等待一次日志落盘。
+     * @param transactions 待保存的交易
+     * @return 传入的交易列表
+     */
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions) {
+        long sequence = 0;
+        for (Transaction transaction : transactions) {
+            sequence = store(transaction, true);
+        }
+        journal.awaitDurable(sequence);
+        return transactions;
+    }
+
+    /**
+     * 批量保存ID不存在的交易，逐条原子地检查和写入，整批只等待一次日志落盘。
+     * @param transactions 待保存的交易
+     * @return 实际保存的交易
+     */
+    @Override
+    public List<Transaction> saveAllIfAbsent(List<Transaction> transactions) {
+        List<Transaction> saved = new ArrayList<>(transactions.size());
+        long sequence = 0;
+        for (Transaction transaction : transactions) {
+            long logged = insert(transaction);
+            if (logged >= 0) {
+                saved.add(transaction);
+                sequence = Math.max(sequence, logged);
+            }
+        }
+        journal.awaitDurable(sequence);
+        return saved;
+    }
+
+    /**
+     * ID不存在时写入并记录日志，不等待落盘
+     * @return 日志序号，ID已存在时为 -1
+     */
+    private long insert(Transaction transaction) {
+        long[] sequence = {-1};
+        withBarrier(true, () -> transactions.computeIfAbsent(transaction.getId(), id -> {
+            sequence[0] = journal.logSave(transaction);
+            reindex(id, null, transaction);
+            return transaction;
+        }));
+        return sequence[0];
+    }
+
+    @Override
     public Optional<Transaction> findById(String id) {
         return Optional.ofNullable(transactions.get(id));
     }
 
+    @Override
     public List<Transaction> findAll() {
         return transactions.values().stream()
                 .collect(Collectors.toList());
     }
 
+    @Override
     public void deleteById(String id) {
-        transactions.remove(id);
+        journal.awaitDurable(remove(id, true));
     }
 
+    @Override
     public boolean existsById(String id) {
         return transactions.containsKey(id);
     }
 
+    @Override
     public List<Transaction> findByUserId(String userId) {
-        return transactions.values().stream()
-                .filter(t -> t.getUserId().equals(userId))
-                .collect(Collectors.toList());
+        return streamByUserId(userId).collect(Collectors.toList());
+    }
+
+    /**
+     * 按创建时间倒序分页查询，只遍历 offset + size 个索引元素。
+     * @param offset 跳过的记录数
+     * @param size 返回的最大记录数
+     * @return 当前页的交易列表
+     */
+    @Override
+    public List<Transaction> findPage(long offset, int size) {
+        List<Transaction> page = new ArrayList<>(Math.min(Math.max(0, size), 1024));
+        Iterator<Transaction> iterator = after(null, null).iterator();
+        for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+        while (page.size() < size && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * 游标分页：返回排在 (createdAt, id) 之后的最多 size 笔交易，代价与游标位置无关。
+     * @param createdAt 上一页最后一笔交易的创建时间，与 id 同时为空时从第一笔开始
+     * @param id 上一页最后一笔交易的ID
+     * @param size 返回的最大记录数
+     * @return 按创建时间倒序排列的交易列表
+     */
+    @Override
+    public List<Transaction> findAfter(LocalDateTime createdAt, String id, int size) {
+        List<Transaction> page = new ArrayList<>(Math.min(Math.max(0, size), 1024));
+        Iterator<Transaction> iterator = after(createdAt, id).iterator();
+        while (page.size() < size && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * 排在 (createdAt, id) 之后的交易，按创建时间倒序的弱一致视图，供分页和分片存储的归并使用
+     * @param createdAt 游标的创建时间，与 id 同时为空时从第一笔开始
+     * @param id 游标的交易ID
+     */
+    Collection<Transaction> after(LocalDateTime createdAt, String id) {
+        return (id == null ? timeIndex : timeIndex.tailMap(new TimeKey(createdAt, id), false)).values();
+    }
+
+    /**
+     * 按创建时间倒序流式遍历交易，不复制数据。遍历是弱一致的，期间的并发写入可能可见也可能不可见。
+     * @param from 创建时间下限（含），为空表示不限
+     * @param to 创建时间上限（含），为空表示不限
+     * @return 惰性求值的交易流
+     */
+    @Override
+    public Stream<Transaction> streamByCreatedAt(LocalDateTime from, LocalDateTime to) {
+        return timeRange(from, to).values().stream();
+    }
+
+    /**
+     * 流式遍历某个用户的交易，只访问该用户的索引，不保证顺序。
+     * @param userId 用户ID
+     * @return 惰性求值的交易流
+     */
+    @Override
+    public Stream<Transaction> streamByUserId(String userId) {
+        Set<String> ids = userIndex.get(userId);
+        if (ids == null) {
+            return Stream.empty();
+        }
+        return ids.stream()
+                .map(transactions::get)
+                .filter(t -> t != null && t.getUserId().equals(userId));
+    }
+
+    /**
+     * 在主表对应 key 的 compute 回调中比较并修改状态，与同一笔交易的其他写入串行，不需要额外加锁。
+     */
+    @Override
+    public Optional<Transaction> compareAndSetStatus(String id, TransactionStatus expected, TransactionStatus target,
+                                                     LocalDateTime updatedAt) {
+        long[] sequence = {-1};
+        Transaction[] updated = new Transaction[1];
+        withBarrier(true, () -> transactions.computeIfPresent(id, (key, previous) -> {
+            if (previous.getStatus() != expected) {
+                return previous;
+            }
+            Transaction transaction = withStatus(previous, target, updatedAt);
+            sequence[0] = journal.logSave(transaction);
+            reindex(key, previous, transaction);
+            updated[0] = transaction;
+            return transaction;
+        }));
+        if (updated[0] == null) {
+            return Optional.empty();
+        }
+        journal.awaitDurable(sequence[0]);
+        return Optional.of(updated[0]);
+    }
+
+    /**
+     * 与 {@link #compareAndSetStatus} 一样在主表的 compute 回调中读取当前状态，两者对同一笔交易串行执行。
+     */
+    @Override
+    public Optional<Transaction> updateKeepingStatus(Transaction transaction) {
+        long[] sequence = {-1};
+        withBarrier(true, () -> transactions.computeIfPresent(transaction.getId(), (id, previous) -> {
+            transaction.setStatus(previous.getStatus());
+            sequence[0] = journal.logSave(transaction);
+            reindex(id, previous, transaction);
+            return transaction;
+        }));
+        if (sequence[0] < 0) {
+            return Optional.empty();
+        }
+        journal.awaitDurable(sequence[0]);
+        return Optional.of(transaction);
+    }
+
+    /**
+     * 多条件查询。每个条件对应一个候选来源：状态、类型、用户和对方账号的ID集合大小是精确的；
+     * 金额和创建时间范围在跳表上计数，计到当前最小候选数即停止，规划代价不超过最终选中的候选数。
+     * 选出候选最少的来源驱动查询，其余条件对候选逐条过滤（交集），结果按创建时间倒序分页。
+     * 没有任何条件时与分页查询相同。
+     * @param query 查询条件
+     * @param offset 跳过的记录数
+     * @param size 返回的最大记录数
+     * @return 当前页、满足条件的总数和执行计划
+     */
+    @Override
+    public TransactionSearchResult search(TransactionQuery query, long offset, int size) {
+        if (query.isEmpty()) {
+            return new TransactionSearchResult(findPage(offset, size), count(), "all");
+        }
+        Candidates best = null;
+        if (query.status() != null) {
+            best = smaller(best, byStatus(query.status()));
+        }
+        if (query.type() != null) {
+            best = smaller(best, byIds("type=" + query.type(), typeIndex.get(query.type())));
+        }
+        if (query.userId() != null) {
+            best = smaller(best, byIds("userId", userIndex.getOrDefault(query.userId(), Set.of())));
+        }
+        if (query.counterpartyAccountNumber() != null) {
+            best = smaller(best, byIds("counterparty",
+                    counterpartyIndex.getOrDefault(query.counterpartyAccountNumber(), Set.of())));
+        }
+        long limit = best == null ? Long.MAX_VALUE : best.size();
+        if (query.hasAmountRange()) {
+            best = smaller(best, byRange("amount", amountRange(query.minAmount(), query.maxAmount()), limit, false));
+            limit = best.size();
+        }
+        if (query.hasTimeRange()) {
+            best = smaller(best, byRange("createdAt", timeRange(query.from(), query.to()), limit, true));
+        }
+
+        List<Transaction> page = new ArrayList<>(Math.min(Math.max(0, size), 1024));
+        long total = 0;
+        if (best.timeOrdered()) {
+            // 候选已按创建时间倒序排列，边遍历边截取当前页
+            for (Transaction transaction : best.transactions()) {
+                if (query.matches(transaction)) {
+                    if (total >= offset && page.size() < size) {
+                        page.add(transaction);
+                    }
+                    total++;
+                }
+            }
+        } else {
+            // 只保留按创建时间倒序最靠前的 offset + size 条，堆顶是其中最靠后的一条
+            long keep = offset + Math.max(0, size);
+            Comparator<Transaction> order = Comparator.comparing(TimeKey::of, TimeKey.ORDER);
+            PriorityQueue<Transaction> top = new PriorityQueue<>(order.reversed());
+            for (Transaction transaction : best.transactions()) {
+                if (query.matches(transaction)) {
+                    total++;
+                    if (top.size() < keep) {
+                        top.add(transaction);
+                    } else if (keep > 0 && order.compare(transaction, top.peek()) < 0) {
+                        top.poll();
+                        top.add(transaction);
+                    }
+                }
+            }
+            List<Transaction> sorted = new ArrayList<>(top);
+            sorted.sort(order);
+            for (long i = offset; i < sorted.size(); i++) {
+                page.add(sorted.get((int) i));
+            }
+        }
+        return new TransactionSearchResult(page, total, best.name() + " candidates=" + best.size());
+    }
+
+    /**
+     * 关键字搜索，候选来自倒排索引，按当前主表中的交易检查和计算相关度；未开启索引时逐条扫描
+     */
+    @Override
+    public TransactionSearchResult searchText(String text, long offset, int size) {
+        if (textIndex == null) {
+            return TransactionRepository.super.searchText(text, offset, size);
+        }
+        return textIndex.search(text, offset, size, transactions::get);
+    }
+
+    private Candidates byIds(String name, Set<String> ids) {
+        Iterable<Transaction> transactions = () -> ids.stream()
+                .map(this.transactions::get)
+                .filter(Objects::nonNull)
+                .iterator();
+        return new Candidates(name, ids.size(), transactions, false);
+    }
+
+    /**
+     * 状态索引已按创建时间倒序排列，候选数取自计数器
+     */
+    private Candidates byStatus(TransactionStatus status) {
+        Iterable<Transaction> transactions = () -> statusIndex.get(status).stream()
+                .map(key -> this.transactions.get(key.id()))
+                .filter(Objects::nonNull)
+                .iterator();
+        return new Candidates("status=" + status, statusCounts.get(status).sum(), transactions, true);
+    }
+
+    /**
+     * 范围索引的候选数需要遍历计数，超过 limit 时不可能被选中，提前停止
+     */
+    private static Candidates byRange(String name, Map<?, Transaction> range, long limit, boolean timeOrdered) {
+        long size = 0;
+        Iterator<Transaction> iterator = range.values().iterator();
+        while (size <= limit && iterator.hasNext()) {
+            iterator.next();
+            size++;
+        }
+        return new Candidates(name, size, range.values(), timeOrdered);
+    }
+
+    private static Candidates smaller(Candidates best, Candidates candidates) {
+        return best == null || candidates.size() < best.size() ? candidates : best;
+    }
+
+    private NavigableMap<AmountKey, Transaction> amountRange(BigDecimal min, BigDecimal max) {
+        NavigableMap<AmountKey, Transaction> range = amountIndex;
+        if (min != null) {
+            range = range.tailMap(new AmountKey(min, ""), true);
+        }
+        if (max != null) {
+            // ID 为空的键排在同一金额的所有交易之后
+            range = range.headMap(new AmountKey(max, null), true);
+        }
+        return range;
+    }
+
+    private NavigableMap<TimeKey, Transaction> timeRange(LocalDateTime from, LocalDateTime to) {
+        NavigableMap<TimeKey, Transaction> range = timeIndex;
+        if (to != null) {
+            // 倒序排列，上限时间对应的第一个键是 (to, "")
+            range = range.tailMap(new TimeKey(to, ""), true);
+        }
+        if (from != null) {
+            range = range.headMap(new TimeKey(from.minusNanos(1), ""), false);
+        }
+        return range;
+    }
+
+    /**
+     * 流式遍历某个状态的交易，只访问该状态的索引，按创建时间倒序、相同时按ID升序。
+     * @param status 交易状态
+     * @return 惰性求值的交易流
+     */
+    @Override
+    public Stream<Transaction> streamByStatus(TransactionStatus status) {
+        return statusIndex.get(status).stream()
+                .map(key -> transactions.get(key.id()))
+                .filter(t -> t != null && t.getStatus() == status);
+    }
+
+    @Override
+    public long countByStatus(TransactionStatus status) {
+        return statusCounts.get(status).sum();
+    }
+
+    /**
+     * 交易总数。ConcurrentHashMap 内部用分段计数器维护元素个数，这里不需要遍历。
+     */
+    @Override
+    public long count() {
+        return transactions.size();
+    }
+
+    /**
+     * 写入主表并维护索引。
+     * <p>
+     * 所有 compute 回调都先记录日志再改索引：日志写入失败时抛出异常，主表的 compute 不生效，
+     * 索引也还没有改动，主表和索引保持一致。
+     * @return 日志序号，未记录日志时为 0
+     */
+    private long store(Transaction transaction, boolean logged) {
+        long[] sequence = new long[1];
+        withBarrier(logged, () -> transactions.compute(transaction.getId(), (id, previous) -> {
+            if (logged) {
+                sequence[0] = journal.logSave(transaction);
+            }
+            reindex(id, previous, transaction);
+            return transaction;
+        }));
+        return sequence[0];
+    }
+
+    private long remove(String id, boolean logged) {
+        long[] sequence = new long[1];
+        withBarrier(logged, () -> transactions.computeIfPresent(id, (key, previous) -> {
+            if (logged) {
+                sequence[0] = journal.logDelete(key);
+            }
+            reindex(key, previous, null);
+            return null;
+        }));
+        return sequence[0];
+    }
+
+    private void withBarrier(boolean logged, Runnable write) {
+        if (!logged || journal == TransactionJournal.NONE) {
+            write.run();
+            return;
+        }
+        snapshotBarrier.readLock().lock();
+        try {
+            write.run();
+        } finally {
+            snapshotBarrier.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把交易从旧值的索引项移到新值的索引项，只在主表对应 key 的 compute 回调中调用
+     * @param previous 旧值，新增时为空
+     * @param transaction 新值，删除时为空
+     */
+    private void reindex(String id, Transaction previous, Transaction transaction) {
+        moveKey(userIndex, previous == null ? null : previous.getUserId(),
+                transaction == null ? null : transaction.getUserId(), id);
+        moveKey(counterpartyIndex, previous == null ? null : previous.getCounterpartyAccountNumber(),
+                transaction == null ? null : transaction.getCounterpartyAccountNumber(), id);
+        moveStatus(previous, transaction);
+        moveEnum(typeIndex, previous == null ? null : previous.getType(),
+                transaction == null ? null : transaction.getType(), id);
+        if (textIndex != null) {
+            textIndex.update(id, previous, transaction);
+        }
+        // 排序索引的值是交易对象本身，键不变时也要替换为新对象
+        if (previous != null) {
+            timeIndex.remove(TimeKey.of(previous));
+            if (previous.getAmount() != null) {
+                amountIndex.remove(AmountKey.of(previous));
+            }
+        }
+        if (transaction != null) {
+            timeIndex.put(TimeKey.of(transaction), transaction);
+            if (transaction.getAmount() != null) {
+                amountIndex.put(AmountKey.of(transaction), transaction);
+            }
+        }
+    }
+
+    private static <K> void moveKey(Map<K, Set<String>> index, K previous, K current, String id) {
+        if (Objects.equals(previous, current)) {
+            return;
+        }
+        if (previous != null) {
+            // 集合为空时移除整个条目，避免已清空的用户或账号长期占用索引
+            index.computeIfPresent(previous, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (current != null) {
+            index.compute(current, (key, ids) -> {
+                if (ids == null) {
+                    ids = ConcurrentHashMap.newKeySet();
+                }
+                ids.add(id);
+                return ids;
+            });
+        }
+    }
+
+    /**
+     * 枚举索引的集合在构造时创建，这里只修改集合内容
+     */
+    private static <E> void moveEnum(Map<E, Set<String>> index, E previous, E current, String id) {
+        if (previous == current) {
+            return;
+        }
+        if (previous != null) {
+            index.get(previous).remove(id);
+        }
+        if (current != null) {
+            index.get(current).add(id);
+        }
+    }
+
+    /**
+     * 状态或创建时间变化时移动状态索引中的键
+     */
+    private void moveStatus(Transaction previous, Transaction transaction) {
+        TransactionStatus from = previous == null ? null : previous.getStatus();
+        TransactionStatus to = transaction == null ? null : transaction.getStatus();
+        if (from == to && (from == null || Objects.equals(previous.getCreatedAt(), transaction.getCreatedAt()))) {
+            return;
+        }
+        if (from != null) {
+            statusIndex.get(from).remove(TimeKey.of(previous));
+            statusCounts.get(from).decrement();
+        }
+        if (to != null) {
+            statusIndex.get(to).add(TimeKey.of(transaction));
+            statusCounts.get(to).increment();
+        }
+    }
+
+    /**
+     * 复制交易并修改状态，已保存的对象视为快照不做修改
+     */
+    private static Transaction withStatus(Transaction previous, TransactionStatus status, LocalDateTime updatedAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(previous.getId());
+        transaction.setUserId(previous.getUserId());
+        transaction.setAmount(previous.getAmount());
+        transaction.setType(previous.getType());
+        transaction.setStatus(status);
+        transaction.setTransactionSummary(previous.getTransactionSummary());
+        transaction.setCounterpartyName(previous.getCounterpartyName());
+        transaction.setCounterpartyAccountNumber(previous.getCounterpartyAccountNumber());
+        transaction.setDescription(previous.getDescription());
+        transaction.setCreatedAt(previous.getCreatedAt());
+        transaction.setUpdatedAt(updatedAt);
+        return transaction;
+    }
+
+    /**
+     * 查询的驱动候选
+     * @param name 索引名称
+     * @param size 候选数，范围索引超过计数上限时为上限加一
+     * @param transactions 候选交易，可能包含已不满足条件的旧索引项，需要再次过滤
+     * @param timeOrdered 是否已按创建时间倒序排列
+     */
+    private record Candidates(String name, long size, Iterable<Transaction> transactions, boolean timeOrdered) {
+    }
+
+    /**
+     * 金额索引的键：金额按数值升序（10 与 10.00 相等），金额相同时按交易ID升序，ID 为空的键只用作范围上限。
+     */
+    record AmountKey(BigDecimal amount, String id) {
+        static final Comparator<AmountKey> ORDER = Comparator
+                .comparing(AmountKey::amount)
+                .thenComparing(AmountKey::id, Comparator.nullsLast(Comparator.<String>naturalOrder()));
+
+        static AmountKey of(Transaction transaction) {
+            return new AmountKey(transaction.getAmount(), transaction.getId());
+        }
+    }
+
+    /**
+     * 时间索引的键：创建时间倒序（为空的排在最后），时间相同时按交易ID升序。
+     */
+    record TimeKey(LocalDateTime createdAt, String id) {
+        static final Comparator<TimeKey> ORDER = Comparator
+                .comparing(TimeKey::createdAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                .thenComparing(TimeKey::id);
+
+        static TimeKey of(Transaction transaction) {
+            return new TimeKey(transaction.getCreatedAt(), transaction.getId());
+        }
     }
 }
@@ -0,0 +1,63 @@
+package hsbc.hw.transaction.system.repository;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * k 路归并：每个来源已按 order 排序，堆中保存各来源的当前元素，每次取出最小的一个并补充该来源的下一个元素。
+ * 用于合并多个分片或多个节点各自排好序的结果，只在调用 next 时读取来源。
+ */
+public final class MergingIterator<T> implements Iterator<T> {
+
+    private final PriorityQueue<Head<T>> heads;
+
+    private MergingIterator(List<? extends Iterator<T>> sources, Comparator<? super T> order) {
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> order.compare(a.value, b.value));
+        for (Iterator<T> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source));
+            }
+        }
+    }
+
+    /**
+     * @param sources 各自按 order 排好序的来源
+     * @param order 排序规则
+     * @return 按 order 排序的合并结果，只有一个来源时直接返回该来源
+     */
+    public static <T> Iterator<T> merge(List<? extends Iterator<T>> sources, Comparator<? super T> order) {
+        return sources.size() == 1 ? sources.get(0) : new MergingIterator<>(sources, order);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        T value = head.value;
+        if (head.source.hasNext()) {
+            head.value = head.source.next();
+            heads.add(head);
+        }
+        return value;
+    }
+
+    private static final class Head<T> {
+        private T value;
+        private final Iterator<T> source;
+
+        Head(T value, Iterator<T> source) {
+            this.value = value;
+            this.source = source;
+        }
+    }
+}
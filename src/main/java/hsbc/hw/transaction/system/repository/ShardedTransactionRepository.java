@@ -0,0 +1,483 @@
+package hsbc.hw.transaction.system.repository;
+
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.model.Transaction;
+import jakarta.annotation.PostConstruct;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 按用户ID分片的内存交易存储。
+ * <p>
+ * 交易按 userId 的哈希分到 N 个分片，每个分片是一个独立的 {@link InMemoryTransactionRepository}，有自己的主表和全部索引。
+ * 另外维护交易ID到分片号的路由表：按ID读取只访问一个分片，按用户查询只访问该用户所在的分片；
+ * 同一交易ID的写入在路由表对应 key 的 compute 回调中串行化，跨分片的ID唯一性检查、用户变更时的迁移和日志记录都在其中完成。
+ * <p>
+ * 全量读取、多条件查询和关键字搜索在 ForkJoinPool 上对各分片并行执行（scatter-gather），每个分片返回自己的前
+ * offset + size 条，再按排序规则做 k 路归并；计数直接对各分片求和。按创建时间分页、游标分页和流式遍历只需要
+ * 前 offset + size 条，直接在各分片的时间索引上惰性地做 k 路归并，总共只遍历 offset + size 个元素。
+ * <p>
+ * 用户变更导致交易跨分片迁移时，先写入新分片再从旧分片删除，期间遍历可能短暂看到同一交易的两个版本。
+ */
+public class ShardedTransactionRepository implements TransactionRepository, AutoCloseable {
+
+    /**
+     * 与 {@link InMemoryTransactionRepository.TimeKey#ORDER} 相同的顺序，直接比较交易字段，归并时不为每次比较创建键
+     */
+    private static final Comparator<Transaction> TIME_ORDER = Comparator
+            .comparing(Transaction::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(Transaction::getId);
+
+    private final InMemoryTransactionRepository[] shards;
+
+    /**
+     * 交易ID到分片号，分片号小于 128 时装箱使用缓存的 Integer，不额外分配
+     */
+    private final ConcurrentHashMap<String, Integer> owners = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool pool;
+
+    private final TransactionJournal journal;
+
+    /**
+     * 与 {@link InMemoryTransactionRepository} 相同：记录日志的写操作持有读锁，生成快照前获取一次写锁
+     */
+    private final ReadWriteLock snapshotBarrier = new ReentrantReadWriteLock();
+
+    public ShardedTransactionRepository(int shards, int parallelism) {
+        this(shards, parallelism, TransactionJournal.NONE);
+    }
+
+    /**
+     * @param shards 分片数
+     * @param parallelism 并行查询的线程数，不大于 0 时取可用核数
+     * @param journal 持久化日志，各分片本身不记录日志
+     */
+    public ShardedTransactionRepository(int shards, int parallelism, TransactionJournal journal) {
+        this(shards, parallelism, journal, false);
+    }
+
+    /**
+     * @param shards 分片数
+     * @param parallelism 并行查询的线程数，不大于 0 时取可用核数
+     * @param journal 持久化日志，各分片本身不记录日志
+     * @param textIndex 各分片是否维护关键字搜索的倒排索引
+     */
+    public ShardedTransactionRepository(int shards, int parallelism, TransactionJournal journal, boolean textIndex) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("分片数必须大于0: " + shards);
+        }
+        this.shards = new InMemoryTransactionRepository[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new InMemoryTransactionRepository(TransactionJournal.NONE, textIndex);
+        }
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.journal = journal;
+    }
+
+    /**
+     * 从日志恢复数据，恢复过程不再写日志。
+     */
+    @PostConstruct
+    public void open() {
+        journal.open(t -> store(t, false), id -> remove(id, false), () -> {
+            snapshotBarrier.writeLock().lock();
+            snapshotBarrier.writeLock().unlock();
+            return Arrays.stream(shards).flatMap(shard -> shard.streamByCreatedAt(null, null));
+        });
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public Transaction save(Transaction transaction) {
+        journal.awaitDurable(store(transaction, true));
+        return transaction;
+    }
+
+    @Override
+    public boolean saveIfAbsent(Transaction transaction) {
+        long sequence = insert(transaction);
+        if (sequence < 0) {
+            return false;
+        }
+        journal.awaitDurable(sequence);
+        return true;
+    }
+
+    /**
+     * 批量保存，整批只等待一次日志落盘。
+     */
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions) {
+        long sequence = 0;
+        for (Transaction transaction : transactions) {
+            sequence = store(transaction, true);
+        }
+        journal.awaitDurable(sequence);
+        return transactions;
+    }
+
+    /**
+     * 批量保存ID不存在的交易，路由表上逐条原子地检查和写入，整批只等待一次日志落盘。
+     */
+    @Override
+    public List<Transaction> saveAllIfAbsent(List<Transaction> transactions) {
+        List<Transaction> saved = new ArrayList<>(transactions.size());
+        long sequence = 0;
+        for (Transaction transaction : transactions) {
+            long logged = insert(transaction);
+            if (logged >= 0) {
+                saved.add(transaction);
+                sequence = Math.max(sequence, logged);
+            }
+        }
+        journal.awaitDurable(sequence);
+        return saved;
+    }
+
+    /**
+     * ID不存在时写入所属分片并记录日志，不等待落盘
+     * @return 日志序号，ID已存在时为 -1
+     */
+    private long insert(Transaction transaction) {
+        int target = shardOf(transaction.getUserId());
+        long[] sequence = {-1};
+        withBarrier(true, () -> owners.computeIfAbsent(transaction.getId(), id -> {
+            sequence[0] = journal.logSave(transaction);
+            shards[target].save(transaction);
+            return target;
+        }));
+        return sequence[0];
+    }
+
+    /**
+     * 按路由表访问一个分片。路由到的分片没有找到时交易可能正在跨分片迁移，再检查一遍其他分片。
+     */
+    @Override
+    public Optional<Transaction> findById(String id) {
+        Integer owner = owners.get(id);
+        if (owner == null) {
+            return Optional.empty();
+        }
+        Optional<Transaction> transaction = shards[owner].findById(id);
+        if (transaction.isPresent() || !owners.containsKey(id)) {
+            return transaction;
+        }
+        for (InMemoryTransactionRepository shard : shards) {
+            transaction = shard.findById(id);
+            if (transaction.isPresent()) {
+                return transaction;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 各分片并行复制后拼接，结果不保证顺序。
+     */
+    @Override
+    public List<Transaction> findAll() {
+        List<List<Transaction>> parts = scatter(InMemoryTransactionRepository::findAll);
+        List<Transaction> all = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        parts.forEach(all::addAll);
+        return all;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        journal.awaitDurable(remove(id, true));
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return owners.containsKey(id);
+    }
+
+    @Override
+    public List<Transaction> findByUserId(String userId) {
+        return shards[shardOf(userId)].findByUserId(userId);
+    }
+
+    /**
+     * 各分片的时间索引惰性归并，只遍历 offset + size 个元素。
+     */
+    @Override
+    public List<Transaction> findPage(long offset, int size) {
+        return page(merge(shard -> shard.after(null, null).iterator(), TIME_ORDER), offset, size);
+    }
+
+    @Override
+    public List<Transaction> findAfter(LocalDateTime createdAt, String id, int size) {
+        return page(merge(shard -> shard.after(createdAt, id).iterator(), TIME_ORDER), 0, size);
+    }
+
+    /**
+     * 各分片的时间范围惰性归并，遍历是弱一致的。
+     */
+    @Override
+    public Stream<Transaction> streamByCreatedAt(LocalDateTime from, LocalDateTime to) {
+        Iterator<Transaction> merged = merge(shard -> shard.streamByCreatedAt(from, to).iterator(), TIME_ORDER);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Stream<Transaction> streamByUserId(String userId) {
+        return shards[shardOf(userId)].streamByUserId(userId);
+    }
+
+    @Override
+    public Optional<Transaction> compareAndSetStatus(String id, TransactionStatus expected, TransactionStatus target,
+                                                     LocalDateTime updatedAt) {
+        long[] sequence = {-1};
+        Transaction[] updated = new Transaction[1];
+        withBarrier(true, () -> owners.computeIfPresent(id, (key, owner) -> {
+            Optional<Transaction> previous = shards[owner].findById(key);
+            shards[owner].compareAndSetStatus(key, expected, target, updatedAt).ifPresent(transaction -> {
+                // 状态的复制在分片内完成，日志写入失败时恢复旧值，分片与日志保持一致
+                try {
+                    sequence[0] = journal.logSave(transaction);
+                } catch (RuntimeException e) {
+                    shards[owner].save(previous.orElseThrow());
+                    throw e;
+                }
+                updated[0] = transaction;
+            });
+            return owner;
+        }));
+        if (updated[0] == null) {
+            return Optional.empty();
+        }
+        journal.awaitDurable(sequence[0]);
+        return Optional.of(updated[0]);
+    }
+
+    /**
+     * 同一笔交易的写入都在路由表的 compute 回调中串行，回调内从所属分片读到的就是当前状态。
+     * 用户变更时先写入新分片再从旧分片删除。
+     */
+    @Override
+    public Optional<Transaction> updateKeepingStatus(Transaction transaction) {
+        int target = shardOf(transaction.getUserId());
+        long[] sequence = {-1};
+        withBarrier(true, () -> owners.computeIfPresent(transaction.getId(), (id, owner) -> {
+            Optional<Transaction> current = shards[owner].findById(id);
+            if (current.isEmpty()) {
+                return owner;
+            }
+            transaction.setStatus(current.get().getStatus());
+            sequence[0] = journal.logSave(transaction);
+            shards[target].save(transaction);
+            if (owner != target) {
+                shards[owner].deleteById(id);
+            }
+            return target;
+        }));
+        if (sequence[0] < 0) {
+            return Optional.empty();
+        }
+        journal.awaitDurable(sequence[0]);
+        return Optional.of(transaction);
+    }
+
+    /**
+     * 各分片的状态索引已按时间排序，惰性归并
+     */
+    @Override
+    public Stream<Transaction> streamByStatus(TransactionStatus status) {
+        Iterator<Transaction> merged = merge(shard -> shard.streamByStatus(status).iterator(), TIME_ORDER);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public long countByStatus(TransactionStatus status) {
+        long count = 0;
+        for (InMemoryTransactionRepository shard : shards) {
+            count += shard.countByStatus(status);
+        }
+        return count;
+    }
+
+    /**
+     * 指定用户时只查询该用户所在的分片；否则各分片并行按自己的查询计划取前 offset + size 条，
+     * 总数求和，结果按创建时间倒序归并。执行计划列出各分片选中的驱动索引。
+     */
+    @Override
+    public TransactionSearchResult search(TransactionQuery query, long offset, int size) {
+        if (query.isEmpty()) {
+            return new TransactionSearchResult(findPage(offset, size), count(), "all");
+        }
+        if (query.userId() != null) {
+            return shards[shardOf(query.userId())].search(query, offset, size);
+        }
+        int keep = keep(offset, size);
+        List<TransactionSearchResult> results = scatter(shard -> shard.search(query, 0, keep));
+        List<Transaction> page = page(merge(results.stream().map(r -> r.transactions().iterator()).toList(),
+                TIME_ORDER), offset, size);
+        long total = results.stream().mapToLong(TransactionSearchResult::total).sum();
+        String plan = results.stream()
+                .map(r -> r.plan().replaceFirst(" candidates=\\d+$", ""))
+                .distinct()
+                .collect(Collectors.joining(",", "scatter(" + shards.length + ") ", ""));
+        return new TransactionSearchResult(page, total, plan);
+    }
+
+    /**
+     * 各分片并行搜索后按相关度降序归并。相关度相同时各分片内是写入顺序倒序，分片之间按创建时间倒序。
+     */
+    @Override
+    public TransactionSearchResult searchText(String text, long offset, int size) {
+        List<String> terms = TextIndex.terms(text);
+        int keep = keep(offset, size);
+        List<TransactionSearchResult> results = scatter(shard -> shard.searchText(text, 0, keep));
+        List<Iterator<Scored>> sources = results.stream()
+                .map(r -> r.transactions().stream()
+                        .map(t -> new Scored(TextIndex.score(terms, t), t))
+                        .iterator())
+                .toList();
+        Comparator<Scored> order = Comparator.comparingInt(Scored::score).reversed()
+                .thenComparing(Scored::transaction, TIME_ORDER);
+        List<Transaction> page = page(merge(sources, order), offset, size).stream()
+                .map(Scored::transaction)
+                .toList();
+        long total = results.stream().mapToLong(TransactionSearchResult::total).sum();
+        return new TransactionSearchResult(page, total, "scatter(" + shards.length + ") " + results.get(0).plan());
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (InMemoryTransactionRepository shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    int shardOf(String userId) {
+        if (userId == null) {
+            return 0;
+        }
+        int hash = userId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * 在路由表中写入分片号并保存到目标分片。用户变更时先写入新分片再从旧分片删除。
+     * 先记录日志再改分片：日志写入失败时路由表的 compute 不生效，分片也还没有改动，不会留下没有路由的交易。
+     * @return 日志序号，未记录日志时为 0
+     */
+    private long store(Transaction transaction, boolean logged) {
+        int target = shardOf(transaction.getUserId());
+        long[] sequence = new long[1];
+        withBarrier(logged, () -> owners.compute(transaction.getId(), (id, owner) -> {
+            if (logged) {
+                sequence[0] = journal.logSave(transaction);
+            }
+            shards[target].save(transaction);
+            if (owner != null && owner != target) {
+                shards[owner].deleteById(id);
+            }
+            return target;
+        }));
+        return sequence[0];
+    }
+
+    private long remove(String id, boolean logged) {
+        long[] sequence = new long[1];
+        withBarrier(logged, () -> owners.computeIfPresent(id, (key, owner) -> {
+            if (logged) {
+                sequence[0] = journal.logDelete(key);
+            }
+            shards[owner].deleteById(key);
+            return null;
+        }));
+        return sequence[0];
+    }
+
+    private void withBarrier(boolean logged, Runnable write) {
+        if (!logged || journal == TransactionJournal.NONE) {
+            write.run();
+            return;
+        }
+        snapshotBarrier.readLock().lock();
+        try {
+            write.run();
+        } finally {
+            snapshotBarrier.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在 ForkJoinPool 上对每个分片执行 task，调用线程自己处理第一个分片
+     * @return 按分片顺序排列的结果
+     */
+    private <T> List<T> scatter(Function<InMemoryTransactionRepository, T> task) {
+        List<ForkJoinTask<T>> forks = new ArrayList<>(shards.length - 1);
+        for (int i = 1; i < shards.length; i++) {
+            InMemoryTransactionRepository shard = shards[i];
+            forks.add(pool.submit(() -> task.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        results.add(task.apply(shards[0]));
+        for (ForkJoinTask<T> fork : forks) {
+            results.add(fork.join());
+        }
+        return results;
+    }
+
+    private <T> Iterator<T> merge(Function<InMemoryTransactionRepository, Iterator<T>> source,
+                                  Comparator<? super T> order) {
+        return merge(Arrays.stream(shards).map(source).toList(), order);
+    }
+
+    private static <T> Iterator<T> merge(List<Iterator<T>> sources, Comparator<? super T> order) {
+        return MergingIterator.merge(sources, order);
+    }
+
+    private static <T> List<T> page(Iterator<T> iterator, long offset, int size) {
+        List<T> page = new ArrayList<>(Math.min(Math.max(0, size), 1024));
+        for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+        while (page.size() < size && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * 每个分片需要返回的条数
+     */
+    private static int keep(long offset, int size) {
+        return (int) Math.min(Integer.MAX_VALUE, offset + Math.max(0, size));
+    }
+
+    private record Scored(int score, Transaction transaction) {
+    }
+}
@@ -0,0 +1,651 @@
+package hsbc.hw.transaction.system.repository;
+
+import hsbc.hw.transaction.system.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * 对方户名、交易摘要和描述的 n-gram 倒排索引。
+ * <p>
+ * 这些字段通常是中文，没有空格可以分词，因此把文本转为小写后按一到三个相邻的字切分（unigram、bigram、trigram），
+ * 每个字段的每个 gram 对应一个按文档号升序排列的 int 数组，字段开头的 gram 另外记录一份，用于判断前缀匹配。
+ * 查询时一到三个字的词直接查同样长度的 gram，更长的词查它的全部 trigram，对倒排表求交集得到每个字段的命中。
+ * <p>
+ * 一到三个字的词只对应一个 gram，倒排表就是精确结果，相关度和排序只用倒排表计算，
+ * 代价与命中数成正比但每条只有几次数组操作；更长的词在 gram 都出现但不相邻时会误命中，
+ * 需要用索引保存的文本逐条检查候选。两种情况都只为当前页读取交易。相关度相同时按文本写入顺序倒序，即最近写入的在前。
+ * <p>
+ * 索引按交易ID分成 {@value #SEGMENTS} 段，每段有自己的倒排表和读写锁：写入只锁交易所在的段，
+ * 不同段的写入互不等待；查询逐段持有读锁取出候选，同一时刻最多阻塞一段的写入，各段结果按相关度和全局写入序号归并。
+ * 段内每个版本的文本分配一个递增的文档号，倒排表只追加，天然有序；文本更新或交易删除时旧文档号标记为失效，
+ * 失效文档数超过有效文档数时压缩该段的倒排表。
+ */
+final class TextIndex {
+
+    /**
+     * 各字段的权重，依次为对方户名、交易摘要、描述
+     */
+    private static final int[] WEIGHTS = {3, 2, 1};
+
+    /**
+     * 段数，交易ID按哈希分配到段
+     */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * 一段的失效文档数超过该值且超过有效文档数时压缩该段
+     */
+    private static final int COMPACT_THRESHOLD = 256;
+
+    /**
+     * gram 的键：低 48 位是最多三个字符，之后两位是 gram 长度，一位标记是否位于字段开头，最高几位是字段
+     */
+    private static final int LENGTH_SHIFT = 48;
+
+    private static final long START = 1L << 50;
+
+    private static final int FIELD_SHIFT = 51;
+
+    /**
+     * 只对应一个 gram 的最长查询词
+     */
+    private static final int MAX_GRAM = 3;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * 全局写入序号，跨段归并时相关度相同的按它倒序
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    TextIndex() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * 用新版本的文本替换旧版本，只修改状态或金额等其他字段时不做任何操作
+     * @param id 交易ID
+     * @param previous 旧值，新增时为空
+     * @param transaction 新值，删除时为空
+     */
+    void update(String id, Transaction previous, Transaction transaction) {
+        if (previous != null && transaction != null && sameText(previous, transaction)) {
+            return;
+        }
+        String[] texts = transaction == null ? null : texts(transaction);
+        long[] grams = texts == null ? new long[0] : grams(texts);
+        segments[(id.hashCode() & Integer.MAX_VALUE) % SEGMENTS].update(id, texts, grams);
+    }
+
+    /**
+     * 按关键字搜索，结果按相关度降序、写入顺序倒序排列
+     * @param text 关键字，多个词用空格分隔，每个词都要在某个字段中出现
+     * @param offset 跳过的记录数
+     * @param size 返回的最大记录数
+     * @param lookup 按交易ID读取当前的交易
+     * @return 当前页、命中总数和执行计划
+     */
+    TransactionSearchResult search(String text, long offset, int size, Function<String, Transaction> lookup) {
+        List<String> terms = terms(text);
+        long keep = offset + Math.max(0, size);
+        boolean exact = terms.stream().allMatch(term -> term.length() <= MAX_GRAM);
+        Ranking<String> ranking = new Ranking<>(keep);
+        long candidates = 0;
+        String[] texts = new String[WEIGHTS.length];
+        for (Segment segment : segments) {
+            Candidates found = segment.collect(terms, exact, keep);
+            candidates += found.matched();
+            for (int i = 0; i < found.ids().size(); i++) {
+                int score;
+                if (exact) {
+                    score = found.scores()[i];
+                } else {
+                    // 排除 gram 都出现但不相邻的误命中，逐条检查在锁外进行
+                    System.arraycopy(found.texts(), i * WEIGHTS.length, texts, 0, WEIGHTS.length);
+                    score = score(terms, texts);
+                }
+                ranking.offer(found.ids().get(i), score, found.sequences()[i]);
+            }
+        }
+        // 精确匹配时每段只取前 keep 条参与归并，总数是各段命中数之和
+        long total = exact ? candidates : ranking.total;
+        List<Transaction> page = ranking.page(offset).stream()
+                .map(lookup)
+                .filter(Objects::nonNull)
+                .toList();
+        return new TransactionSearchResult(page, total,
+                (exact ? "text(index)" : "text(verify)") + " candidates=" + candidates);
+    }
+
+    /**
+     * 不使用索引时逐条计算相关度，相关度相同时保持候选的顺序
+     * @param candidates 候选交易，可能包含不满足条件的交易
+     * @param terms 查询词
+     * @param plan 执行计划说明
+     */
+    static TransactionSearchResult rank(Iterable<Transaction> candidates, List<String> terms, long offset, int size,
+                                        String plan) {
+        Ranking<Transaction> ranking = new Ranking<>(offset + Math.max(0, size));
+        long position = 0;
+        for (Transaction transaction : candidates) {
+            ranking.offer(transaction, score(terms, texts(transaction)), -position++);
+        }
+        return new TransactionSearchResult(ranking.page(offset), ranking.total, plan);
+    }
+
+    /**
+     * 交易对查询词的相关度，为 0 表示没有命中
+     */
+    static int score(List<String> terms, Transaction transaction) {
+        return score(terms, texts(transaction));
+    }
+
+    static int score(List<String> terms, String counterpartyName, String transactionSummary, String description) {
+        return score(terms, new String[]{normalize(counterpartyName), normalize(transactionSummary),
+                normalize(description)});
+    }
+
+    /**
+     * 相关度：每个词取它在各字段中的最高得分再求和，任何一个词没有出现时为 0。
+     * 字段得分为字段权重乘以匹配方式：是字段前缀为 2，出现在字段其他位置为 1
+     */
+    private static int score(List<String> terms, String[] texts) {
+        int total = 0;
+        for (String term : terms) {
+            int best = 0;
+            for (int field = 0; field < texts.length; field++) {
+                String text = texts[field];
+                if (text == null || !text.contains(term)) {
+                    continue;
+                }
+                best = Math.max(best, WEIGHTS[field] * (text.startsWith(term) ? 2 : 1));
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    /**
+     * 把关键字拆分为去重后的小写查询词
+     */
+    static List<String> terms(String text) {
+        return Arrays.stream(normalize(text).split("\\s+"))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * 一到三个字的词就是一个 gram，更长的词用全部 trigram，第一个 gram 用于判断前缀
+     */
+    private static long[] termGrams(String term) {
+        int length = Math.min(term.length(), MAX_GRAM);
+        long[] grams = new long[term.length() - length + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(term, i, length);
+        }
+        return grams;
+    }
+
+    /**
+     * 文档各字段的全部 unigram、bigram、trigram 和字段开头的 gram，去重后升序排列
+     */
+    private static long[] grams(String[] texts) {
+        int count = 0;
+        for (String text : texts) {
+            count += text == null ? 0 : (text.length() + 1) * MAX_GRAM;
+        }
+        long[] grams = new long[count];
+        int n = 0;
+        for (int field = 0; field < texts.length; field++) {
+            String text = texts[field];
+            if (text == null) {
+                continue;
+            }
+            for (int length = 1; length <= MAX_GRAM && length <= text.length(); length++) {
+                grams[n++] = key(field, START | gram(text, 0, length));
+                for (int i = 0; i + length <= text.length(); i++) {
+                    grams[n++] = key(field, gram(text, i, length));
+                }
+            }
+        }
+        Arrays.sort(grams, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || grams[i] != grams[distinct - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static long gram(String text, int from, int length) {
+        long gram = (long) length << LENGTH_SHIFT;
+        for (int i = 0; i < length; i++) {
+            gram |= (long) text.charAt(from + i) << (16 * i);
+        }
+        return gram;
+    }
+
+    private static long key(int field, long gram) {
+        return (long) field << FIELD_SHIFT | gram;
+    }
+
+    private static boolean sameText(Transaction previous, Transaction transaction) {
+        return Objects.equals(previous.getCounterpartyName(), transaction.getCounterpartyName())
+                && Objects.equals(previous.getTransactionSummary(), transaction.getTransactionSummary())
+                && Objects.equals(previous.getDescription(), transaction.getDescription());
+    }
+
+    private static String[] texts(Transaction transaction) {
+        return new String[]{normalize(transaction.getCounterpartyName()),
+                normalize(transaction.getTransactionSummary()), normalize(transaction.getDescription())};
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 索引的一段，字段只在持有本段的锁时访问
+     */
+    private final class Segment {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final Map<Long, Postings> postings = new HashMap<>();
+
+        /**
+         * 交易ID到当前文档号
+         */
+        private final Map<String, Integer> docIds = new HashMap<>();
+
+        /**
+         * 文档号到交易ID，失效的文档为空
+         */
+        private String[] docs = new String[64];
+
+        /**
+         * 文档号 * 字段数 + 字段到规范化后的文本，与交易共用同一个字符串对象（已是小写且没有首尾空白时）
+         */
+        private String[] docTexts = new String[64 * WEIGHTS.length];
+
+        /**
+         * 文档号到全局写入序号，段内与文档号同序
+         */
+        private long[] docSequences = new long[64];
+
+        private int nextDoc;
+
+        private int stale;
+
+        void update(String id, String[] texts, long[] grams) {
+            lock.writeLock().lock();
+            try {
+                Integer doc = docIds.remove(id);
+                if (doc != null) {
+                    docs[doc] = null;
+                    stale++;
+                }
+                if (grams.length > 0) {
+                    add(id, texts, grams);
+                }
+                if (stale > COMPACT_THRESHOLD && stale > docIds.size()) {
+                    compact();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * 在读锁内取出本段的候选：精确匹配时只取按相关度和写入顺序排在前 keep 的命中及其得分，
+         * 否则复制全部候选的ID和文本引用，由调用方在锁外逐条检查
+         */
+        Candidates collect(List<String> terms, boolean exact, long keep) {
+            lock.readLock().lock();
+            try {
+                Matches matches = match(terms);
+                int[] selected = exact ? matches.top(keep) : null;
+                int count = exact ? selected.length : matches.count;
+                List<String> ids = new ArrayList<>(count);
+                long[] sequences = new long[count];
+                int[] scores = exact ? new int[count] : null;
+                String[] texts = exact ? null : new String[count * WEIGHTS.length];
+                for (int i = 0; i < count; i++) {
+                    int index = exact ? selected[i] : i;
+                    int doc = matches.docs[index];
+                    ids.add(docs[doc]);
+                    sequences[i] = docSequences[doc];
+                    if (exact) {
+                        scores[i] = matches.scores[index];
+                    } else {
+                        System.arraycopy(docTexts, doc * WEIGHTS.length, texts, i * WEIGHTS.length, WEIGHTS.length);
+                    }
+                }
+                return new Candidates(ids, sequences, scores, texts, matches.count);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 每个词在各字段的命中取最高分合并，多个词之间求交集并累加得分，最后去掉失效文档
+         */
+        private Matches match(List<String> terms) {
+            Matches result = null;
+            for (String term : terms) {
+                Matches matches = matchTerm(term);
+                result = result == null ? matches : result.intersect(matches);
+                if (result.count == 0) {
+                    break;
+                }
+            }
+            if (result == null) {
+                return new Matches(0);
+            }
+            int kept = 0;
+            for (int i = 0; i < result.count; i++) {
+                if (docs[result.docs[i]] != null) {
+                    result.docs[kept] = result.docs[i];
+                    result.scores[kept++] = result.scores[i];
+                }
+            }
+            result.count = kept;
+            return result;
+        }
+
+        private Matches matchTerm(String term) {
+            long[] grams = termGrams(term);
+            Matches result = new Matches(0);
+            for (int field = 0; field < WEIGHTS.length; field++) {
+                int[] contains = intersect(field, grams);
+                if (contains.length == 0) {
+                    continue;
+                }
+                Postings start = postings.get(key(field, START | grams[0]));
+                Matches matches = new Matches(contains.length);
+                int s = 0;
+                for (int doc : contains) {
+                    while (start != null && s < start.size && start.values[s] < doc) {
+                        s++;
+                    }
+                    boolean prefix = start != null && s < start.size && start.values[s] == doc;
+                    matches.add(doc, WEIGHTS[field] * (prefix ? 2 : 1));
+                }
+                result = result.union(matches);
+            }
+            return result;
+        }
+
+        /**
+         * 对一个字段的全部 gram 的倒排表求交集，从最短的表开始，逐个在其余表中二分查找
+         */
+        private int[] intersect(int field, long[] grams) {
+            Postings[] lists = new Postings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(key(field, grams[i]));
+                if (lists[i] == null) {
+                    return new int[0];
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(Postings::size));
+            int[] matched = Arrays.copyOf(lists[0].values, lists[0].size);
+            int count = matched.length;
+            for (int l = 1; l < lists.length && count > 0; l++) {
+                Postings list = lists[l];
+                int kept = 0;
+                int from = 0;
+                for (int i = 0; i < count; i++) {
+                    int found = Arrays.binarySearch(list.values, from, list.size, matched[i]);
+                    if (found >= 0) {
+                        matched[kept++] = matched[i];
+                        from = found + 1;
+                    } else {
+                        from = -found - 1;
+                    }
+                }
+                count = kept;
+            }
+            return count == matched.length ? matched : Arrays.copyOf(matched, count);
+        }
+
+        private void add(String id, String[] texts, long[] grams) {
+            if (nextDoc == docs.length) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+                docTexts = Arrays.copyOf(docTexts, docs.length * WEIGHTS.length);
+                docSequences = Arrays.copyOf(docSequences, docs.length);
+            }
+            int doc = nextDoc++;
+            docs[doc] = id;
+            docSequences[doc] = sequence.incrementAndGet();
+            System.arraycopy(texts, 0, docTexts, doc * WEIGHTS.length, WEIGHTS.length);
+            docIds.put(id, doc);
+            for (long gram : grams) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+            }
+        }
+
+        /**
+         * 去掉失效文档并重新编号，新旧文档号保持相同的顺序，倒排表仍然有序
+         */
+        private void compact() {
+            int[] remap = new int[nextDoc];
+            int live = 0;
+            for (int doc = 0; doc < nextDoc; doc++) {
+                if (docs[doc] != null) {
+                    docs[live] = docs[doc];
+                    docSequences[live] = docSequences[doc];
+                    System.arraycopy(docTexts, doc * WEIGHTS.length, docTexts, live * WEIGHTS.length, WEIGHTS.length);
+                    docIds.put(docs[doc], live);
+                    remap[doc] = live++;
+                } else {
+                    remap[doc] = -1;
+                }
+            }
+            Arrays.fill(docs, live, nextDoc, null);
+            Arrays.fill(docTexts, live * WEIGHTS.length, nextDoc * WEIGHTS.length, null);
+            nextDoc = live;
+            stale = 0;
+            postings.values().removeIf(list -> {
+                int kept = 0;
+                for (int i = 0; i < list.size; i++) {
+                    int doc = remap[list.values[i]];
+                    if (doc >= 0) {
+                        list.values[kept++] = doc;
+                    }
+                }
+                list.size = kept;
+                return kept == 0;
+            });
+        }
+
+    }
+
+    /**
+     * 一段的候选
+     * @param scores 精确匹配时的相关度，否则为空
+     * @param texts 需要逐条检查时各候选的文本，否则为空
+     * @param matched 本段倒排表的命中数
+     */
+    private record Candidates(List<String> ids, long[] sequences, int[] scores, String[] texts, int matched) {
+    }
+
+    /**
+     * 按文档号升序排列的命中及其得分
+     */
+    private static final class Matches {
+        private final int[] docs;
+        private final int[] scores;
+        private int count;
+
+        Matches(int capacity) {
+            this.docs = new int[capacity];
+            this.scores = new int[capacity];
+        }
+
+        void add(int doc, int score) {
+            docs[count] = doc;
+            scores[count++] = score;
+        }
+
+        /**
+         * 并集，同一文档取较高的得分
+         */
+        Matches union(Matches other) {
+            Matches result = new Matches(count + other.count);
+            int i = 0;
+            int j = 0;
+            while (i < count || j < other.count) {
+                if (j == other.count || (i < count && docs[i] < other.docs[j])) {
+                    result.add(docs[i], scores[i++]);
+                } else if (i == count || other.docs[j] < docs[i]) {
+                    result.add(other.docs[j], other.scores[j++]);
+                } else {
+                    result.add(docs[i], Math.max(scores[i++], other.scores[j++]));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 交集，得分相加
+         */
+        Matches intersect(Matches other) {
+            Matches result = new Matches(Math.min(count, other.count));
+            int i = 0;
+            int j = 0;
+            while (i < count && j < other.count) {
+                if (docs[i] < other.docs[j]) {
+                    i++;
+                } else if (other.docs[j] < docs[i]) {
+                    j++;
+                } else {
+                    result.add(docs[i], scores[i++] + other.scores[j++]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 按得分降序、文档号降序取前 limit 条，返回它们的下标。
+         * 得分是很小的整数，先按得分计数找到第 limit 条所在的分数，再从文档号大的一端遍历一次放入各分数的区间
+         */
+        int[] top(long limit) {
+            int selected = (int) Math.min(limit, count);
+            if (selected == 0) {
+                return new int[0];
+            }
+            int max = 0;
+            for (int i = 0; i < count; i++) {
+                max = Math.max(max, scores[i]);
+            }
+            int[] histogram = new int[max + 1];
+            for (int i = 0; i < count; i++) {
+                histogram[scores[i]]++;
+            }
+            int threshold = max;
+            int above = 0;
+            while (above + histogram[threshold] < selected) {
+                above += histogram[threshold--];
+            }
+            int atThreshold = selected - above;
+            int[] positions = new int[max + 1];
+            for (int score = max, position = 0; score > threshold; score--) {
+                positions[score] = position;
+                position += histogram[score];
+            }
+            positions[threshold] = above;
+            int[] result = new int[selected];
+            for (int i = count - 1; i >= 0; i--) {
+                int score = scores[i];
+                if (score < threshold || (score == threshold && atThreshold-- <= 0)) {
+                    continue;
+                }
+                result[positions[score]++] = i;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 只保留按相关度降序、序号降序排在前 keep 的命中
+     */
+    private static final class Ranking<T> {
+        private final Comparator<Hit<T>> order = Comparator.<Hit<T>>comparingInt(Hit::score)
+                .thenComparingLong(Hit::sequence)
+                .reversed();
+
+        private final long keep;
+        // 堆顶是保留的命中中排在最后的一条
+        private final PriorityQueue<Hit<T>> top = new PriorityQueue<>(order.reversed());
+        private long total;
+
+        Ranking(long keep) {
+            this.keep = keep;
+        }
+
+        /**
+         * @param score 相关度，为 0 表示没有命中
+         */
+        void offer(T value, int score, long sequence) {
+            if (score == 0) {
+                return;
+            }
+            total++;
+            Hit<T> hit = new Hit<>(score, sequence, value);
+            if (top.size() < keep) {
+                top.add(hit);
+            } else if (keep > 0 && order.compare(hit, top.peek()) < 0) {
+                top.poll();
+                top.add(hit);
+            }
+        }
+
+        List<T> page(long offset) {
+            List<Hit<T>> hits = new ArrayList<>(top);
+            hits.sort(order);
+            List<T> page = new ArrayList<>();
+            for (long i = offset; i < hits.size(); i++) {
+                page.add(hits.get((int) i).value());
+            }
+            return page;
+        }
+    }
+
+    private record Hit<T>(int score, long sequence, T value) {
+    }
+
+    private static final class Postings {
+        private int[] values = new int[2];
+        private int size;
+
+        void add(int doc) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = doc;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package hsbc.hw.transaction.system.repository;
+
+import hsbc.hw.transaction.system.model.Transaction;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 仓库写操作的持久化日志。
+ * <p>
+ * 仓库在每次保存和删除时，于该交易ID的临界区内调用 {@link #logSave} / {@link #logDelete}，
+ * 保证同一笔交易的日志顺序与内存中的写入顺序一致；离开临界区后再调用 {@link #awaitDurable}，
+ * 按落盘策略决定是否等待。实现必须保证 log 方法足够轻量，不能在其中做磁盘 IO 或阻塞等待，
+ * 临界区内阻塞会让同一个哈希桶和日志锁上的其他写入一起停顿；需要的背压放在 {@link #awaitDurable} 中。
+ */
+public interface TransactionJournal {
+
+    /**
+     * 不做任何持久化的默认实现。
+     */
+    TransactionJournal NONE = new TransactionJournal() {
+    };
+
+    /**
+     * 启动时恢复数据并开始记录日志。
+     * @param restore 回放保存记录
+     * @param remove 回放删除记录
+     * @param snapshotSource 生成快照时遍历当前全部交易，调用前已记录日志的写入都已反映在结果中
+     */
+    default void open(Consumer<Transaction> restore, Consumer<String> remove,
+                      Supplier<Stream<Transaction>> snapshotSource) {
+    }
+
+    /**
+     * 记录一次保存
+     * @return 日志序号，用于 {@link #awaitDurable}
+     */
+    default long logSave(Transaction transaction) {
+        return 0;
+    }
+
+    /**
+     * 记录一次删除
+     * @return 日志序号，用于 {@link #awaitDurable}
+     */
+    default long logDelete(String id) {
+        return 0;
+    }
+
+    /**
+     * 按落盘策略等待指定序号及之前的日志持久化
+     */
+    default void awaitDurable(long sequence) {
+    }
+}
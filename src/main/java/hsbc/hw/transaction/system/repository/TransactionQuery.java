@@ -0,0 +1,66 @@
+package hsbc.hw.transaction.system.repository;
+
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 多条件查询的条件，为空的条件不参与过滤，金额和创建时间的上下限都包含边界。
+ */
+public record TransactionQuery(String userId,
+                               TransactionType type,
+                               TransactionStatus status,
+                               String counterpartyAccountNumber,
+                               BigDecimal minAmount,
+                               BigDecimal maxAmount,
+                               LocalDateTime from,
+                               LocalDateTime to) {
+
+    public boolean isEmpty() {
+        return userId == null && type == null && status == null && counterpartyAccountNumber == null
+                && !hasAmountRange() && !hasTimeRange();
+    }
+
+    public boolean hasAmountRange() {
+        return minAmount != null || maxAmount != null;
+    }
+
+    public boolean hasTimeRange() {
+        return from != null || to != null;
+    }
+
+    /**
+     * 逐条检查交易是否满足全部条件，用于对驱动索引取出的候选做交集过滤
+     */
+    public boolean matches(Transaction transaction) {
+        if (userId != null && !userId.equals(transaction.getUserId())) {
+            return false;
+        }
+        if (type != null && type != transaction.getType()) {
+            return false;
+        }
+        if (status != null && status != transaction.getStatus()) {
+            return false;
+        }
+        if (counterpartyAccountNumber != null
+                && !counterpartyAccountNumber.equals(transaction.getCounterpartyAccountNumber())) {
+            return false;
+        }
+        if (hasAmountRange()) {
+            BigDecimal amount = transaction.getAmount();
+            if (amount == null || (minAmount != null && amount.compareTo(minAmount) < 0)
+                    || (maxAmount != null && amount.compareTo(maxAmount) > 0)) {
+                return false;
+            }
+        }
+        if (hasTimeRange()) {
+            LocalDateTime createdAt = transaction.getCreatedAt();
+            return createdAt != null && (from == null || !createdAt.isBefore(from))
+                    && (to == null || !createdAt.isAfter(to));
+        }
+        return true;
+    }
+}
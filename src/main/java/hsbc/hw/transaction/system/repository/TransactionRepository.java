@@ -0,0 +1,167 @@
+package hsbc.hw.transaction.system.repository;
+
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.model.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * 交易存储。
+ * <p>
+ * 默认实现为 {@link InMemoryTransactionRepository}，数据保存在堆内；配置 transaction.store.type=mapped 时
+ * 使用 {@link hsbc.hw.transaction.system.repository.mapped.MappedTransactionRepository}，数据以定长二进制
+ * 记录保存在内存映射文件中。保存的实体视为快照，更新时应传入新对象而不是修改已保存的对象。
+ */
+public interface TransactionRepository {
+
+    Transaction save(Transaction transaction);
+
+    /**
+     * 交易ID不存在时保存，检查和写入是原子的，并发创建同一ID时只有一个成功
+     * @param transaction 待保存的交易
+     * @return 是否已保存，ID已存在时返回 false
+     */
+    boolean saveIfAbsent(Transaction transaction);
+
+    /**
+     * 批量保存，适用于批量创建和导入
+     * @param transactions 待保存的交易
+     * @return 传入的交易列表
+     */
+    List<Transaction> saveAll(List<Transaction> transactions);
+
+    /**
+     * 批量保存ID不存在的交易，每条的检查和写入是原子的，与并发的 {@link #saveIfAbsent} 和同类批量互斥
+     * @param transactions 待保存的交易
+     * @return 实际保存的交易，ID已存在的被跳过，顺序与传入一致
+     */
+    List<Transaction> saveAllIfAbsent(List<Transaction> transactions);
+
+    Optional<Transaction> findById(String id);
+
+    List<Transaction> findAll();
+
+    void deleteById(String id);
+
+    boolean existsById(String id);
+
+    List<Transaction> findByUserId(String userId);
+
+    /**
+     * 按创建时间倒序分页查询，创建时间相同时按交易ID升序
+     * @param offset 跳过的记录数
+     * @param size 返回的最大记录数
+     * @return 当前页的交易列表
+     */
+    List<Transaction> findPage(long offset, int size);
+
+    /**
+     * 游标分页：返回排在 (createdAt, id) 之后的最多 size 笔交易
+     * @param createdAt 上一页最后一笔交易的创建时间，与 id 同时为空时从第一笔开始
+     * @param id 上一页最后一笔交易的ID
+     * @param size 返回的最大记录数
+     * @return 按创建时间倒序排列的交易列表
+     */
+    List<Transaction> findAfter(LocalDateTime createdAt, String id, int size);
+
+    /**
+     * 按创建时间倒序流式遍历交易，遍历是弱一致的
+     * @param from 创建时间下限（含），为空表示不限
+     * @param to 创建时间上限（含），为空表示不限
+     * @return 惰性求值的交易流
+     */
+    Stream<Transaction> streamByCreatedAt(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * 流式遍历某个用户的交易，不保证顺序
+     * @param userId 用户ID
+     * @return 惰性求值的交易流
+     */
+    Stream<Transaction> streamByUserId(String userId);
+
+    /**
+     * 状态比较并交换：交易当前状态等于 expected 时改为 target，检查和写入是原子的，
+     * 并发修改同一笔交易的状态时只有一个成功
+     * @param id 交易ID
+     * @param expected 期望的当前状态
+     * @param target 目标状态
+     * @param updatedAt 新的更新时间
+     * @return 更新后的交易，交易不存在或当前状态不等于 expected 时为空
+     */
+    Optional<Transaction> compareAndSetStatus(String id, TransactionStatus expected, TransactionStatus target,
+                                              LocalDateTime updatedAt);
+
+    /**
+     * 更新交易内容但保留当前状态：状态在写入时从当前值读取，读取和写入是原子的，不会覆盖并发的状态变更
+     * @param transaction 新的交易内容，保存前其状态会被替换为当前状态
+     * @return 更新后的交易，交易不存在时为空
+     */
+    Optional<Transaction> updateKeepingStatus(Transaction transaction);
+
+    /**
+     * 流式遍历某个状态的交易，只访问该状态的索引，按创建时间倒序、相同时按ID升序
+     * @param status 交易状态
+     * @return 惰性求值的交易流
+     */
+    Stream<Transaction> streamByStatus(TransactionStatus status);
+
+    long countByStatus(TransactionStatus status);
+
+    /**
+     * 多条件分页查询，结果按创建时间倒序。
+     * <p>
+     * 默认实现按创建时间范围遍历并逐条过滤，代价与时间范围内的交易数成正比；
+     * {@link InMemoryTransactionRepository} 按条件选择候选最少的索引驱动查询。
+     * @param query 查询条件
+     * @param offset 跳过的记录数
+     * @param size 返回的最大记录数
+     * @return 当前页、满足条件的总数和执行计划
+     */
+    default TransactionSearchResult search(TransactionQuery query, long offset, int size) {
+        List<Transaction> page = new ArrayList<>(Math.min(Math.max(0, size), 1024));
+        long total = 0;
+        try (Stream<Transaction> candidates = streamByCreatedAt(query.from(), query.to())) {
+            for (Iterator<Transaction> it = candidates.iterator(); it.hasNext(); ) {
+                Transaction transaction = it.next();
+                if (query.matches(transaction)) {
+                    if (total >= offset && page.size() < size) {
+                        page.add(transaction);
+                    }
+                    total++;
+                }
+            }
+        }
+        return new TransactionSearchResult(page, total, "scan(createdAt)");
+    }
+
+    /**
+     * 按关键字搜索对方户名、交易摘要和描述，结果按相关度降序、创建时间倒序分页。
+     * <p>
+     * 默认实现遍历全部交易逐条匹配；{@link InMemoryTransactionRepository} 通过 n-gram 倒排索引只检查候选交易。
+     * @param text 关键字，多个词用空格分隔，每个词都要在某个字段中出现
+     * @param offset 跳过的记录数
+     * @param size 返回的最大记录数
+     * @return 当前页、命中总数和执行计划
+     */
+    default TransactionSearchResult searchText(String text, long offset, int size) {
+        try (Stream<Transaction> candidates = streamByCreatedAt(null, null)) {
+            return TextIndex.rank(candidates::iterator, TextIndex.terms(text), offset, size, "scan(text)");
+        }
+    }
+
+    long count();
+
+    /**
+     * {@link #searchText} 使用的相关度，合并多个存储各自的搜索结果时按它排序
+     * @param text 关键字
+     * @return 相关度，为 0 表示没有命中
+     */
+    static int relevance(String text, String counterpartyName, String transactionSummary, String description) {
+        return TextIndex.score(TextIndex.terms(text), counterpartyName, transactionSummary, description);
+    }
+}
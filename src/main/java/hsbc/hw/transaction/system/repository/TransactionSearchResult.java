@@ -0,0 +1,14 @@
+package hsbc.hw.transaction.system.repository;
+
+import hsbc.hw.transaction.system.model.Transaction;
+
+import java.util.List;
+
+/**
+ * 多条件查询的结果
+ * @param transactions 当前页的交易，按创建时间倒序
+ * @param total 满足条件的交易总数
+ * @param plan 驱动查询的索引及其候选数量，用于排查慢查询
+ */
+public record TransactionSearchResult(List<Transaction> transactions, long total, String plan) {
+}
@@ -0,0 +1,609 @@
+package hsbc.hw.transaction.system.repository.journal;
+
+import hsbc.hw.transaction.system.config.TransactionJournalProperties;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 基于本地文件的预写日志与快照。
+ * <p>
+ * 写入方只在内存中编码日志并放入队列，由单个写线程批量追加到日志段文件，
+ * 一批只做一次 write 和（按策略）一次 fsync，即组提交。仓库在交易ID的临界区内调用 log 方法，
+ * 入队从不阻塞；积压超过 queueCapacity 时，由写入方离开临界区后在 {@link #awaitDurable} 中等待写线程追上。日志段格式为连续的帧：
+ * <pre>[int 长度][int CRC32][long 序号][byte 操作][数据]</pre>
+ * 定期生成快照：先让写线程切换到新日志段 N，再遍历内存数据写出快照并原子重命名，
+ * 最后删除旧快照和编号小于 N 的日志段。快照遍历期间的并发写入既可能出现在快照中，
+ * 也一定记录在日志段 N 里，保存和删除记录都是幂等的，按顺序回放即可得到最终状态。
+ * <p>
+ * 启动时加载最新快照，再按顺序回放其后的日志段。最后一个日志段末尾不完整或校验失败的帧
+ * 视为宕机时未写完的记录，直接截断；中间日志段损坏则拒绝启动。
+ */
+@Slf4j
+public class FileTransactionJournal implements TransactionJournal {
+
+    /**
+     * 增加交易状态之前的保存记录，只在恢复时读取
+     */
+    private static final byte OP_SAVE_V1 = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_SAVE = 3;
+
+    private static final int SNAPSHOT_MAGIC = 0x54584E53;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{20})\\.log");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{20})\\.snap");
+
+    /**
+     * 通知写线程退出的标记
+     */
+    private static final Entry STOP = new Entry(0, null, null);
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final int maxBatchSize;
+    private final long snapshotMinRecords;
+    private final long snapshotIntervalMillis;
+    private final int queueCapacity;
+    /**
+     * 不设上限，入队在仓库的临界区内进行，不能阻塞；积压由 awaitDurable 限制
+     */
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 序号分配和入队在同一把锁内完成，保证队列中的日志按序号排列。
+     * 这里和下面的等待都使用 ReentrantLock 而不是 synchronized，虚拟线程阻塞时可以让出载体线程
+     */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private long lastSequence;
+
+    /**
+     * 已写入日志段（ALWAYS 策略下已 fsync）的最大序号，写请求在 durableAdvanced 上等待
+     */
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    private volatile long durableSequence;
+    private volatile IOException failure;
+
+    private FileChannel segment;
+    private long segmentNumber;
+    private long lastForceNanos;
+    private volatile long snapshotSequence;
+
+    private Supplier<Stream<Transaction>> snapshotSource;
+    private Thread writer;
+    private ScheduledExecutorService snapshotScheduler;
+
+    public FileTransactionJournal(TransactionJournalProperties properties) {
+        this.directory = properties.getDirectory();
+        this.fsyncPolicy = properties.getFsyncPolicy();
+        this.fsyncIntervalNanos = properties.getFsyncInterval().toNanos();
+        this.maxBatchSize = properties.getMaxBatchSize();
+        this.snapshotMinRecords = properties.getSnapshotMinRecords();
+        this.snapshotIntervalMillis = properties.getSnapshotInterval().toMillis();
+        this.queueCapacity = Math.max(1, properties.getQueueCapacity());
+    }
+
+    @Override
+    public void open(Consumer<Transaction> restore, Consumer<String> remove,
+                     Supplier<Stream<Transaction>> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+        try {
+            Files.createDirectories(directory);
+            long started = System.nanoTime();
+            long records = recover(restore, remove);
+            log.info("Recovered {} journal records from {} in {} ms", records, directory,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            openSegment(segmentNumber + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("交易日志恢复失败: " + directory, e);
+        }
+        durableSequence = lastSequence;
+        snapshotSequence = lastSequence;
+
+        writer = new Thread(this::writeLoop, "transaction-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        if (snapshotIntervalMillis > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "transaction-journal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::snapshotIfNeeded,
+                    snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public long logSave(Transaction transaction) {
+        return append(OP_SAVE, out -> TransactionCodec.write(out, transaction));
+    }
+
+    @Override
+    public long logDelete(String id) {
+        return append(OP_DELETE, out -> TransactionCodec.writeString(out, id));
+    }
+
+    /**
+     * ALWAYS 策略等待该序号落盘；其他策略只在尚未写出的日志超过 queueCapacity 时等待写线程追上，
+     * 避免写线程落后过多。调用方已离开临界区，等待期间不会阻塞其他交易的写入。
+     */
+    @Override
+    public void awaitDurable(long sequence) {
+        long target = fsyncPolicy == FsyncPolicy.ALWAYS ? sequence : sequence - queueCapacity;
+        if (sequence <= 0 || durableSequence >= target) {
+            checkFailure();
+            return;
+        }
+        durableLock.lock();
+        try {
+            while (durableSequence < target) {
+                durableAdvanced.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待交易日志落盘时被中断", e);
+        } finally {
+            durableLock.unlock();
+        }
+        // 写线程失败时会唤醒所有等待者，这里不能把失败当作已落盘
+        checkFailure();
+    }
+
+    /**
+     * 立即生成一次快照，不检查距上次快照的日志条数。
+     */
+    public void snapshot() {
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            throw new UncheckedIOException("生成交易快照失败", e);
+        }
+    }
+
+    /**
+     * 停止接收日志，等待队列写完并落盘后关闭文件。
+     */
+    @PreDestroy
+    public void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        if (writer == null) {
+            return;
+        }
+        try {
+            queue.add(STOP);
+            // 写线程已因 IO 失败退出时不会再读取队列，不能无限等待
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        log.info("Transaction journal closed at sequence {}", lastSequence);
+    }
+
+    // ---------------------------------------------------------------- 写入
+
+    private interface Encoder {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * 队列元素：一条已编码的日志，或切换日志段的请求（rotation 不为空）。
+     */
+    private record Entry(long sequence, byte[] frame, CompletableFuture<Long> rotation) {
+    }
+
+    private long append(byte op, Encoder encoder) {
+        checkFailure();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            // 先占位序号，入队前再回填，编码放在锁外
+            out.writeLong(0);
+            out.writeByte(op);
+            encoder.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = buffer.toByteArray();
+        appendLock.lock();
+        try {
+            long sequence = ++lastSequence;
+            ByteBuffer.wrap(payload).putLong(0, sequence);
+            enqueue(new Entry(sequence, frame(payload), null));
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        return frame.array();
+    }
+
+    private void enqueue(Entry entry) {
+        queue.add(entry);
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        long pollNanos = fsyncPolicy == FsyncPolicy.INTERVAL ? fsyncIntervalNanos : TimeUnit.MILLISECONDS.toNanos(100);
+        boolean running = true;
+        while (running) {
+            try {
+                Entry first = queue.poll(pollNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    // 空闲时把 INTERVAL 策略下尚未落盘的数据刷到磁盘
+                    forceIfDue(true);
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                long last = 0;
+                for (Entry entry : batch) {
+                    if (entry == STOP) {
+                        running = false;
+                        break;
+                    }
+                    if (entry.rotation() != null) {
+                        writeBuffer(buffer);
+                        entry.rotation().complete(rotate());
+                        continue;
+                    }
+                    buffer.write(entry.frame());
+                    last = entry.sequence();
+                }
+                writeBuffer(buffer);
+                if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                    segment.force(false);
+                } else {
+                    forceIfDue(false);
+                }
+                if (last > 0) {
+                    markDurable(last);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                log.error("Transaction journal write failed, journal is now read-only", e);
+                failure = e;
+                batch.stream().filter(entry -> entry.rotation() != null)
+                        .forEach(entry -> entry.rotation().completeExceptionally(e));
+                markDurable(Long.MAX_VALUE);
+                running = false;
+            } finally {
+                batch.clear();
+                buffer.reset();
+            }
+        }
+        try {
+            segment.force(false);
+            segment.close();
+        } catch (IOException e) {
+            log.error("Failed to close transaction journal segment", e);
+        }
+    }
+
+    private void writeBuffer(ByteArrayOutputStream buffer) throws IOException {
+        if (buffer.size() == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            segment.write(bytes);
+        }
+        buffer.reset();
+    }
+
+    private void forceIfDue(boolean idle) throws IOException {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (idle || now - lastForceNanos >= fsyncIntervalNanos) {
+            segment.force(false);
+            lastForceNanos = now;
+        }
+    }
+
+    private void markDurable(long sequence) {
+        durableLock.lock();
+        try {
+            durableSequence = sequence;
+            durableAdvanced.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("交易日志写入失败", failure);
+        }
+    }
+
+    /**
+     * 关闭当前日志段并打开下一个，只在写线程中调用。
+     * @return 新日志段编号
+     */
+    private long rotate() throws IOException {
+        segment.force(false);
+        segment.close();
+        openSegment(segmentNumber + 1);
+        return segmentNumber;
+    }
+
+    private void openSegment(long number) throws IOException {
+        segment = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentNumber = number;
+        lastForceNanos = System.nanoTime();
+    }
+
+    // ---------------------------------------------------------------- 快照
+
+    private void snapshotIfNeeded() {
+        try {
+            if (lastSequence() - snapshotSequence >= snapshotMinRecords) {
+                writeSnapshot();
+            }
+        } catch (Exception e) {
+            log.error("Failed to write transaction snapshot", e);
+        }
+    }
+
+    private synchronized void writeSnapshot() throws IOException {
+        long sequence;
+        CompletableFuture<Long> rotation = new CompletableFuture<>();
+        appendLock.lock();
+        try {
+            sequence = lastSequence;
+            enqueue(new Entry(0, null, rotation));
+        } finally {
+            appendLock.unlock();
+        }
+        long newSegment;
+        try {
+            newSegment = rotation.get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("切换日志段失败", e);
+        }
+        long replayFrom = newSegment;
+        long started = System.nanoTime();
+
+        Path target = snapshotPath(newSegment);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(replayFrom);
+            out.writeLong(sequence);
+            Iterator<Transaction> iterator = snapshotSource.get().iterator();
+            while (iterator.hasNext()) {
+                out.writeBoolean(true);
+                TransactionCodec.write(out, iterator.next());
+                count++;
+            }
+            out.writeBoolean(false);
+            out.writeLong(count);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        snapshotSequence = sequence;
+
+        deleteOlderThan(SNAPSHOT_NAME, newSegment);
+        deleteOlderThan(SEGMENT_NAME, replayFrom);
+        log.info("Wrote snapshot {} with {} transactions in {} ms", target.getFileName(), count,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private void deleteOlderThan(Pattern pattern, long number) throws IOException {
+        for (long existing : list(pattern)) {
+            if (existing < number) {
+                Path path = pattern == SNAPSHOT_NAME ? snapshotPath(existing) : segmentPath(existing);
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 恢复
+
+    /**
+     * 加载最新快照并回放其后的日志段。
+     * @return 回放的记录数（快照中的交易加日志记录）
+     */
+    private long recover(Consumer<Transaction> restore, Consumer<String> remove) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // 删除生成快照时中断留下的临时文件
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".tmp")).toList()) {
+                Files.delete(file);
+            }
+        }
+        long records = 0;
+        long replayFrom = 0;
+        List<Long> snapshots = list(SNAPSHOT_NAME);
+        if (!snapshots.isEmpty()) {
+            long latest = snapshots.get(snapshots.size() - 1);
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(snapshotPath(latest)), 64 * 1024))) {
+                int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+                if (version != 1 && version != SNAPSHOT_VERSION) {
+                    throw new IOException("无法识别的快照文件: " + snapshotPath(latest));
+                }
+                replayFrom = in.readLong();
+                lastSequence = in.readLong();
+                long count = 0;
+                while (in.readBoolean()) {
+                    restore.accept(TransactionCodec.read(in, version >= 2));
+                    count++;
+                }
+                if (in.readLong() != count || in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("快照文件不完整: " + snapshotPath(latest));
+                }
+                records += count;
+            }
+            segmentNumber = latest;
+        }
+
+        List<Long> segments = list(SEGMENT_NAME);
+        for (int i = 0; i < segments.size(); i++) {
+            long number = segments.get(i);
+            segmentNumber = Math.max(segmentNumber, number);
+            if (number >= replayFrom) {
+                records += replay(segmentPath(number), i == segments.size() - 1, restore, remove);
+            }
+        }
+        return records;
+    }
+
+    private long replay(Path path, boolean lastSegment, Consumer<Transaction> restore,
+                        Consumer<String> remove) throws IOException {
+        long records = 0;
+        long validLength = 0;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            DataInputStream in = new DataInputStream(stream);
+            while (true) {
+                byte[] payload = readFrame(in);
+                if (payload == null) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                long sequence = record.readLong();
+                byte op = record.readByte();
+                if (op == OP_SAVE || op == OP_SAVE_V1) {
+                    restore.accept(TransactionCodec.read(record, op == OP_SAVE));
+                } else if (op == OP_DELETE) {
+                    remove.accept(TransactionCodec.readString(record));
+                } else {
+                    throw new IOException("未知的日志操作类型: " + op + ", 文件: " + path);
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+                validLength += 8 + payload.length;
+                records++;
+            }
+        }
+        long size = Files.size(path);
+        if (validLength < size) {
+            if (!lastSegment) {
+                throw new IOException("日志段损坏: " + path + ", 有效长度 " + validLength + ", 文件长度 " + size);
+            }
+            log.warn("Truncating torn tail of {} from {} to {} bytes", path.getFileName(), size, validLength);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 读取一帧并校验。
+     * @return 帧内容，文件结束或遇到不完整、校验失败的帧时返回 null
+     */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 9) {
+                return null;
+            }
+            byte[] payload = in.readNBytes(length);
+            if (payload.length < length) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private List<Long> list(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(f -> pattern.matcher(f.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(m -> Long.parseLong(m.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("wal-%020d.log", number));
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("snapshot-%020d.snap", number));
+    }
+
+    /**
+     * 当前日志序号，测试和基准使用
+     */
+    public long lastSequence() {
+        appendLock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package hsbc.hw.transaction.system.repository.journal;
+
+/**
+ * 日志落盘策略。
+ */
+public enum FsyncPolicy {
+
+    /**
+     * 每批日志写入后立即 fsync，写请求等待所在批次落盘后才返回。并发写入共享一次 fsync（组提交）。
+     */
+    ALWAYS,
+
+    /**
+     * 按固定间隔 fsync，写请求不等待。进程崩溃不丢数据，宕机最多丢失一个间隔内的写入。
+     */
+    INTERVAL,
+
+    /**
+     * 只写入操作系统缓冲区，由操作系统决定何时落盘。
+     */
+    NEVER
+}
@@ -0,0 +1,105 @@
+package hsbc.hw.transaction.system.repository.journal;
+
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 交易实体的二进制编码，用于日志和快照。所有字段均可为空。
+ * <p>
+ * 交易状态追加在最后；增加状态之前写入的记录不含该字段，按已完成处理。
+ */
+public final class TransactionCodec {
+
+    private TransactionCodec() {
+    }
+
+    public static void write(DataOutput out, Transaction transaction) throws IOException {
+        writeString(out, transaction.getId());
+        writeString(out, transaction.getUserId());
+        // BigDecimal 的字符串形式可以无损还原精度
+        writeString(out, transaction.getAmount() == null ? null : transaction.getAmount().toString());
+        out.writeByte(transaction.getType() == null ? -1 : transaction.getType().ordinal());
+        writeString(out, transaction.getTransactionSummary());
+        writeString(out, transaction.getCounterpartyName());
+        writeString(out, transaction.getCounterpartyAccountNumber());
+        writeString(out, transaction.getDescription());
+        writeDateTime(out, transaction.getCreatedAt());
+        writeDateTime(out, transaction.getUpdatedAt());
+        out.writeByte(transaction.getStatus() == null ? -1 : transaction.getStatus().ordinal());
+    }
+
+    public static Transaction read(DataInput in) throws IOException {
+        return read(in, true);
+    }
+
+    /**
+     * @param withStatus 记录是否包含交易状态
+     */
+    public static Transaction read(DataInput in, boolean withStatus) throws IOException {
+        Transaction transaction = new Transaction();
+        transaction.setId(readString(in));
+        transaction.setUserId(readString(in));
+        String amount = readString(in);
+        transaction.setAmount(amount == null ? null : new BigDecimal(amount));
+        byte type = in.readByte();
+        transaction.setType(type < 0 ? null : TransactionType.values()[type]);
+        transaction.setTransactionSummary(readString(in));
+        transaction.setCounterpartyName(readString(in));
+        transaction.setCounterpartyAccountNumber(readString(in));
+        transaction.setDescription(readString(in));
+        transaction.setCreatedAt(readDateTime(in));
+        transaction.setUpdatedAt(readDateTime(in));
+        if (withStatus) {
+            byte status = in.readByte();
+            transaction.setStatus(status < 0 ? null : TransactionStatus.values()[status]);
+        } else {
+            transaction.setStatus(TransactionStatus.COMPLETED);
+        }
+        return transaction;
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long epochSecond = in.readLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, in.readInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,115 @@
+package hsbc.hw.transaction.system.repository.mapped;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按固定大小分块映射的文件。单个 MappedByteBuffer 最大 2GB，分块后文件可以继续增长，
+ * 调用方需保证单次读写不跨块。读方法只使用绝对位置，可以并发调用；写方法由调用方串行化。
+ */
+class MappedRegion implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+    MappedRegion(Path file, int chunkSize) {
+        this.chunkSize = chunkSize;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            // 重新打开时映射已有的全部块
+            long size = channel.size();
+            do {
+                mapNextChunk();
+            } while ((long) chunks.size() * chunkSize < size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法映射文件: " + file, e);
+        }
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 确保 [position, position + length) 已映射，必要时扩展文件
+     */
+    void ensure(long position, int length) {
+        while (position + length > (long) chunks.size() * chunkSize) {
+            try {
+                mapNextChunk();
+            } catch (IOException e) {
+                throw new UncheckedIOException("无法扩展映射文件", e);
+            }
+        }
+    }
+
+    private void mapNextChunk() throws IOException {
+        // READ_WRITE 模式映射超出文件长度的区域时会自动扩展文件
+        chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * chunkSize, chunkSize));
+    }
+
+    byte getByte(long position) {
+        return chunk(position).get(offset(position));
+    }
+
+    int getInt(long position) {
+        return chunk(position).getInt(offset(position));
+    }
+
+    long getLong(long position) {
+        return chunk(position).getLong(offset(position));
+    }
+
+    void getBytes(long position, byte[] target) {
+        chunk(position).get(offset(position), target);
+    }
+
+    void putByte(long position, byte value) {
+        chunk(position).put(offset(position), value);
+    }
+
+    void putInt(long position, int value) {
+        chunk(position).putInt(offset(position), value);
+    }
+
+    void putLong(long position, long value) {
+        chunk(position).putLong(offset(position), value);
+    }
+
+    void putBytes(long position, byte[] value) {
+        chunk(position).put(offset(position), value);
+    }
+
+    private MappedByteBuffer chunk(long position) {
+        return chunks.get((int) (position / chunkSize));
+    }
+
+    private int offset(long position) {
+        return (int) (position % chunkSize);
+    }
+
+    /**
+     * 把已修改的页写回文件
+     */
+    void force() {
+        chunks.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
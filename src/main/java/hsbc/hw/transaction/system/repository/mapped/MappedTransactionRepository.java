@@ -0,0 +1,871 @@
+package hsbc.hw.transaction.system.repository.mapped;
+
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于内存映射文件的紧凑交易存储。
+ * <p>
+ * 每笔交易保存为 64 字节的定长记录：金额为 long 型最小单位值加小数位数，时间为 epoch 毫秒，
+ * 交易类型为枚举序号，交易状态为枚举序号加 1（0 表示增加状态之前写入的记录，按已完成处理），
+ * 字符串字段保存为字符串文件中的偏移。用户ID、摘要、对方户名和账号这类
+ * 取值重复度高的字段通过字典去重，同一个值只存一份。
+ * <p>
+ * 堆内只保留基本类型数组构成的索引：交易ID的开放寻址哈希表（记录槽位）、按 (createdAt 倒序, id)
+ * 排序的槽位数组、用户ID到槽位列表的映射，以及每个状态的槽位列表，每笔交易约占 20 ~ 30 字节堆内存。查询时按需把记录
+ * 解码为 {@link Transaction}，解码出的对象不会被存储持有。
+ * <p>
+ * 写操作互斥，读操作共享一把读写锁。记录文件会在重启后重新加载，但不保证宕机时的一致性，
+ * 更新或删除后旧字符串占用的空间不会回收。
+ */
+@Slf4j
+public class MappedTransactionRepository implements TransactionRepository, AutoCloseable {
+
+    static final int RECORD_SIZE = 64;
+
+    private static final int MAGIC = 0x54584D50;
+    private static final int VERSION = 1;
+    private static final int RECORDS_HEADER = 64;
+    private static final int STRINGS_HEADER = 16;
+
+    private static final byte STATE_LIVE = 1;
+    private static final byte STATE_FREE = 2;
+
+    // 记录内各字段的偏移
+    private static final int STATE = 0;
+    private static final int TYPE = 1;
+    private static final int AMOUNT_SCALE = 2;
+    private static final int AMOUNT_PRESENT = 3;
+    private static final int STATUS = 4;
+    private static final int AMOUNT = 8;
+    private static final int CREATED_AT = 16;
+    private static final int UPDATED_AT = 24;
+    private static final int ID = 32;
+    private static final int USER_ID = 36;
+    private static final int SUMMARY = 40;
+    private static final int COUNTERPARTY_NAME = 44;
+    private static final int COUNTERPARTY_ACCOUNT = 48;
+    private static final int DESCRIPTION = 52;
+    private static final int ID_HASH = 56;
+
+    /**
+     * 时间为空时的取值，按倒序排列时自然排在最后
+     */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * 字典最多缓存的不同取值个数，超过后新值直接追加，不再去重
+     */
+    private static final int DICTIONARY_LIMIT = 1 << 20;
+
+    private static final int STREAM_BATCH_SIZE = 512;
+
+    /**
+     * 与时间索引相同的顺序：创建时间倒序，相同时按ID升序
+     */
+    private static final Comparator<Transaction> TIME_ORDER = Comparator
+            .comparing(Transaction::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(Transaction::getId);
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final MappedRegion records;
+    private final MappedRegion strings;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int slotCount;
+    private long stringEnd;
+    private int liveCount;
+
+    /**
+     * 交易ID哈希表：bucketSlots 中 0 表示空，-1 表示已删除，其余为槽位 + 1
+     */
+    private int[] bucketSlots = new int[1024];
+    private int[] bucketHashes = new int[1024];
+    private int tombstones;
+
+    /**
+     * 按 (createdAt 倒序, id 升序) 的逆序排列的槽位，数组末尾是最新的交易，新增交易通常只需追加
+     */
+    private int[] order = new int[1024];
+    private int orderSize;
+
+    private final Map<String, IntList> userIndex = new HashMap<>();
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final IntList freeSlots = new IntList();
+
+    /**
+     * 按状态序号分组的槽位列表，statusPositions 记录每个槽位在所属列表中的下标，状态变化时 O(1) 移除
+     */
+    private final IntList[] statusSlots = new IntList[STATUSES.length];
+    private int[] statusPositions = new int[1024];
+
+    public MappedTransactionRepository(Path directory, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize % RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("映射块大小必须是 " + RECORD_SIZE + " 的正整数倍: " + chunkSize);
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法创建存储目录: " + directory, e);
+        }
+        this.records = new MappedRegion(directory.resolve("transactions.dat"), chunkSize);
+        this.strings = new MappedRegion(directory.resolve("strings.dat"), chunkSize);
+        for (int i = 0; i < statusSlots.length; i++) {
+            statusSlots[i] = new IntList();
+        }
+        load();
+    }
+
+    // ---------------------------------------------------------------- 写操作
+
+    @Override
+    public Transaction save(Transaction transaction) {
+        lock.writeLock().lock();
+        try {
+            store(transaction);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return transaction;
+    }
+
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions) {
+        lock.writeLock().lock();
+        try {
+            transactions.forEach(this::store);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return transactions;
+    }
+
+    @Override
+    public boolean saveIfAbsent(Transaction transaction) {
+        lock.writeLock().lock();
+        try {
+            if (findBucket(transaction.getId(), hash(transaction.getId())) >= 0) {
+                return false;
+            }
+            store(transaction);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> saveAllIfAbsent(List<Transaction> transactions) {
+        List<Transaction> saved = new ArrayList<>(transactions.size());
+        lock.writeLock().lock();
+        try {
+            for (Transaction transaction : transactions) {
+                if (findBucket(transaction.getId(), hash(transaction.getId())) < 0) {
+                    store(transaction);
+                    saved.add(transaction);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return saved;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        lock.writeLock().lock();
+        try {
+            int bucket = findBucket(id, hash(id));
+            if (bucket < 0) {
+                return;
+            }
+            int slot = bucketSlots[bucket] - 1;
+            removeFromOrder(slot);
+            unindexUser(readString(ref(slot, USER_ID)), slot);
+            unindexStatus(slot);
+            bucketSlots[bucket] = -1;
+            tombstones++;
+            records.putByte(position(slot) + STATE, STATE_FREE);
+            freeSlots.add(slot);
+            liveCount--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void store(Transaction transaction) {
+        checkAmount(transaction.getAmount());
+        String id = transaction.getId();
+        int hash = hash(id);
+        int bucket = findBucket(id, hash);
+        int slot;
+        int idRef;
+        if (bucket >= 0) {
+            slot = bucketSlots[bucket] - 1;
+            // 排序键和用户可能变化，先按旧记录移除索引
+            removeFromOrder(slot);
+            unindexUser(readString(ref(slot, USER_ID)), slot);
+            unindexStatus(slot);
+            idRef = ref(slot, ID);
+        } else {
+            slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.removeLast();
+            idRef = appendString(id);
+        }
+        writeRecord(slot, transaction, idRef, hash);
+        if (bucket < 0) {
+            insertBucket(hash, slot);
+            liveCount++;
+            records.putInt(12, slotCount);
+        }
+        insertIntoOrder(slot);
+        indexUser(transaction.getUserId(), slot);
+        indexStatus(slot);
+    }
+
+    private void writeRecord(int slot, Transaction transaction, int idRef, int hash) {
+        long position = position(slot);
+        records.ensure(position, RECORD_SIZE);
+        BigDecimal amount = transaction.getAmount();
+        records.putByte(position + AMOUNT_PRESENT, (byte) (amount == null ? 0 : 1));
+        if (amount != null) {
+            records.putByte(position + AMOUNT_SCALE, (byte) amount.scale());
+            records.putLong(position + AMOUNT, amount.unscaledValue().longValue());
+        }
+        records.putByte(position + TYPE, (byte) (transaction.getType() == null ? -1 : transaction.getType().ordinal()));
+        records.putByte(position + STATUS,
+                (byte) (transaction.getStatus() == null ? 0 : transaction.getStatus().ordinal() + 1));
+        records.putLong(position + CREATED_AT, toMillis(transaction.getCreatedAt()));
+        records.putLong(position + UPDATED_AT, toMillis(transaction.getUpdatedAt()));
+        records.putInt(position + ID, idRef);
+        records.putInt(position + USER_ID, intern(transaction.getUserId()));
+        records.putInt(position + SUMMARY, intern(transaction.getTransactionSummary()));
+        records.putInt(position + COUNTERPARTY_NAME, intern(transaction.getCounterpartyName()));
+        records.putInt(position + COUNTERPARTY_ACCOUNT, intern(transaction.getCounterpartyAccountNumber()));
+        records.putInt(position + DESCRIPTION, appendString(transaction.getDescription()));
+        records.putInt(position + ID_HASH, hash);
+        // 状态最后写入，重新加载时只识别完整写入的记录
+        records.putByte(position + STATE, STATE_LIVE);
+    }
+
+    /**
+     * 在修改索引之前检查金额，避免写到一半失败
+     */
+    private static void checkAmount(BigDecimal amount) {
+        if (amount != null && (amount.scale() > Byte.MAX_VALUE || amount.scale() < Byte.MIN_VALUE
+                || amount.unscaledValue().bitLength() > 63)) {
+            throw new IllegalArgumentException("交易金额超出存储范围: " + amount);
+        }
+    }
+
+    @Override
+    public Optional<Transaction> compareAndSetStatus(String id, TransactionStatus expected, TransactionStatus target,
+                                                     LocalDateTime updatedAt) {
+        lock.writeLock().lock();
+        try {
+            int bucket = findBucket(id, hash(id));
+            if (bucket < 0) {
+                return Optional.empty();
+            }
+            int slot = bucketSlots[bucket] - 1;
+            if (status(slot) != expected) {
+                return Optional.empty();
+            }
+            // 只改状态和更新时间，排序键和用户不变
+            unindexStatus(slot);
+            records.putByte(position(slot) + STATUS, (byte) (target.ordinal() + 1));
+            records.putLong(position(slot) + UPDATED_AT, toMillis(updatedAt));
+            indexStatus(slot);
+            return Optional.of(decode(slot));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Transaction> updateKeepingStatus(Transaction transaction) {
+        lock.writeLock().lock();
+        try {
+            int bucket = findBucket(transaction.getId(), hash(transaction.getId()));
+            if (bucket < 0) {
+                return Optional.empty();
+            }
+            transaction.setStatus(status(bucketSlots[bucket] - 1));
+            store(transaction);
+            return Optional.of(transaction);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- 读操作
+
+    @Override
+    public Optional<Transaction> findById(String id) {
+        lock.readLock().lock();
+        try {
+            int bucket = findBucket(id, hash(id));
+            return bucket < 0 ? Optional.empty() : Optional.of(decode(bucketSlots[bucket] - 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        lock.readLock().lock();
+        try {
+            return findBucket(id, hash(id)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Transaction> all = new ArrayList<>(liveCount);
+            for (int i = orderSize - 1; i >= 0; i--) {
+                all.add(decode(order[i]));
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findByUserId(String userId) {
+        lock.readLock().lock();
+        try {
+            IntList slots = userIndex.get(userId);
+            if (slots == null) {
+                return new ArrayList<>();
+            }
+            List<Transaction> result = new ArrayList<>(slots.size());
+            for (int i = 0; i < slots.size(); i++) {
+                result.add(decode(slots.get(i)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findPage(long offset, int size) {
+        lock.readLock().lock();
+        try {
+            List<Transaction> page = new ArrayList<>(Math.min(Math.max(0, size), 1024));
+            for (long i = orderSize - 1 - offset; i >= 0 && page.size() < size; i--) {
+                page.add(decode(order[(int) i]));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findAfter(LocalDateTime createdAt, String id, int size) {
+        return scan(toMillis(createdAt), id, size, NO_TIME);
+    }
+
+    /**
+     * 分批读取，每批持有一次读锁，遍历期间的并发写入可能可见也可能不可见。
+     */
+    @Override
+    public Stream<Transaction> streamByCreatedAt(LocalDateTime from, LocalDateTime to) {
+        // 毫秒精度下，上限向下取整、下限向上取整都不会漏掉范围内的记录
+        long floor = from == null ? NO_TIME : ceilMillis(from);
+        Iterator<Transaction> iterator = new Iterator<>() {
+            private List<Transaction> batch = to == null
+                    ? scan(NO_TIME, null, STREAM_BATCH_SIZE, floor)
+                    : scan(toMillis(to), "", STREAM_BATCH_SIZE, floor);
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                if (index == batch.size() && batch.size() == STREAM_BATCH_SIZE) {
+                    Transaction last = batch.get(index - 1);
+                    batch = scan(toMillis(last.getCreatedAt()), last.getId(), STREAM_BATCH_SIZE, floor);
+                    index = 0;
+                }
+                return index < batch.size();
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(index++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Stream<Transaction> streamByUserId(String userId) {
+        return findByUserId(userId).stream();
+    }
+
+    @Override
+    public Stream<Transaction> streamByStatus(TransactionStatus status) {
+        lock.readLock().lock();
+        try {
+            IntList slots = statusSlots[status.ordinal()];
+            List<Transaction> result = new ArrayList<>(slots.size());
+            for (int i = 0; i < slots.size(); i++) {
+                result.add(decode(slots.get(i)));
+            }
+            // 状态索引按槽位记录，读出后按与时间索引相同的顺序排列
+            result.sort(TIME_ORDER);
+            return result.stream();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long countByStatus(TransactionStatus status) {
+        lock.readLock().lock();
+        try {
+            return statusSlots[status.ordinal()].size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 返回排在 (createdAt, id) 之后、创建时间不早于 floor 的最多 size 笔交易
+     * @param id 为空时从第一笔开始
+     */
+    private List<Transaction> scan(long createdAt, String id, int size, long floor) {
+        lock.readLock().lock();
+        try {
+            List<Transaction> result = new ArrayList<>(Math.min(Math.max(0, size), 1024));
+            int start = id == null ? orderSize : countAfter(createdAt, id);
+            for (int i = start - 1; i >= 0 && result.size() < size; i--) {
+                int slot = order[i];
+                if (floor != NO_TIME && createdAt(slot) < floor) {
+                    break;
+                }
+                result.add(decode(slot));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Transaction decode(int slot) {
+        long position = position(slot);
+        Transaction transaction = new Transaction();
+        transaction.setId(readString(records.getInt(position + ID)));
+        transaction.setUserId(readString(records.getInt(position + USER_ID)));
+        if (records.getByte(position + AMOUNT_PRESENT) != 0) {
+            transaction.setAmount(BigDecimal.valueOf(records.getLong(position + AMOUNT),
+                    records.getByte(position + AMOUNT_SCALE)));
+        }
+        byte type = records.getByte(position + TYPE);
+        transaction.setType(type < 0 ? null : TYPES[type]);
+        transaction.setStatus(status(slot));
+        transaction.setTransactionSummary(readString(records.getInt(position + SUMMARY)));
+        transaction.setCounterpartyName(readString(records.getInt(position + COUNTERPARTY_NAME)));
+        transaction.setCounterpartyAccountNumber(readString(records.getInt(position + COUNTERPARTY_ACCOUNT)));
+        transaction.setDescription(readString(records.getInt(position + DESCRIPTION)));
+        transaction.setCreatedAt(toDateTime(records.getLong(position + CREATED_AT)));
+        transaction.setUpdatedAt(toDateTime(records.getLong(position + UPDATED_AT)));
+        return transaction;
+    }
+
+    // ---------------------------------------------------------------- 时间排序索引
+
+    /**
+     * 按 (createdAt 倒序, id 升序) 比较槽位与给定键
+     * @return 槽位排在给定键之后时为正数
+     */
+    private int compareToKey(int slot, long createdAt, String id) {
+        int byTime = Long.compare(createdAt, createdAt(slot));
+        return byTime != 0 ? byTime : readString(ref(slot, ID)).compareTo(id);
+    }
+
+    /**
+     * 排在给定键之后的记录个数，它们位于 order 数组的前缀
+     */
+    private int countAfter(long createdAt, String id) {
+        int low = 0;
+        int high = orderSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToKey(order[mid], createdAt, id) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void insertIntoOrder(int slot) {
+        int index = countAfter(createdAt(slot), readString(ref(slot, ID)));
+        if (orderSize == order.length) {
+            order = Arrays.copyOf(order, order.length * 2);
+        }
+        System.arraycopy(order, index, order, index + 1, orderSize - index);
+        order[index] = slot;
+        orderSize++;
+    }
+
+    private void removeFromOrder(int slot) {
+        int index = countAfter(createdAt(slot), readString(ref(slot, ID)));
+        if (index >= orderSize || order[index] != slot) {
+            throw new IllegalStateException("时间索引与记录不一致, 槽位: " + slot);
+        }
+        System.arraycopy(order, index + 1, order, index, orderSize - index - 1);
+        orderSize--;
+    }
+
+    // ---------------------------------------------------------------- 交易ID哈希表
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return 交易所在的桶，不存在时返回 -1
+     */
+    private int findBucket(String id, int hash) {
+        if (id == null) {
+            return -1;
+        }
+        int mask = bucketSlots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int entry = bucketSlots[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (entry > 0 && bucketHashes[i] == hash && readString(ref(entry - 1, ID)).equals(id)) {
+                return i;
+            }
+        }
+    }
+
+    private void insertBucket(int hash, int slot) {
+        // 装载因子（含已删除标记）不超过 0.5，保证线性探测足够短
+        if ((liveCount + tombstones + 1) * 2 > bucketSlots.length) {
+            rehash(liveCount * 4 > bucketSlots.length ? bucketSlots.length * 2 : bucketSlots.length);
+        }
+        int mask = bucketSlots.length - 1;
+        int i = hash & mask;
+        while (bucketSlots[i] > 0) {
+            i = (i + 1) & mask;
+        }
+        if (bucketSlots[i] < 0) {
+            tombstones--;
+        }
+        bucketSlots[i] = slot + 1;
+        bucketHashes[i] = hash;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldSlots = bucketSlots;
+        int[] oldHashes = bucketHashes;
+        bucketSlots = new int[capacity];
+        bucketHashes = new int[capacity];
+        tombstones = 0;
+        int mask = capacity - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] > 0) {
+                int i = oldHashes[j] & mask;
+                while (bucketSlots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                bucketSlots[i] = oldSlots[j];
+                bucketHashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 用户索引
+
+    private void indexUser(String userId, int slot) {
+        if (userId != null) {
+            userIndex.computeIfAbsent(userId, key -> new IntList()).add(slot);
+        }
+    }
+
+    private void unindexUser(String userId, int slot) {
+        if (userId == null) {
+            return;
+        }
+        IntList slots = userIndex.get(userId);
+        if (slots != null && slots.remove(slot) && slots.isEmpty()) {
+            userIndex.remove(userId);
+        }
+    }
+
+    // ---------------------------------------------------------------- 状态索引
+
+    private TransactionStatus status(int slot) {
+        byte status = records.getByte(position(slot) + STATUS);
+        return status == 0 ? TransactionStatus.COMPLETED : STATUSES[status - 1];
+    }
+
+    private void indexStatus(int slot) {
+        if (slot >= statusPositions.length) {
+            statusPositions = Arrays.copyOf(statusPositions, Math.max(slot + 1, statusPositions.length * 2));
+        }
+        IntList slots = statusSlots[status(slot).ordinal()];
+        statusPositions[slot] = slots.size();
+        slots.add(slot);
+    }
+
+    private void unindexStatus(int slot) {
+        IntList slots = statusSlots[status(slot).ordinal()];
+        int index = statusPositions[slot];
+        int last = slots.removeLast();
+        if (last != slot) {
+            slots.set(index, last);
+            statusPositions[last] = index;
+        }
+    }
+
+    // ---------------------------------------------------------------- 字符串区
+
+    /**
+     * 重复度高的字段先查字典，已有相同取值时复用其偏移
+     */
+    private int intern(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer existing = dictionary.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int ref = appendString(value);
+        if (dictionary.size() < DICTIONARY_LIMIT) {
+            dictionary.put(value, ref);
+        }
+        return ref;
+    }
+
+    /**
+     * 字符串按 8 字节对齐追加，格式为 [int 长度][UTF-8 字节]，引用值为位置除以 8，0 表示空。
+     */
+    private int appendString(String value) {
+        if (value == null) {
+            return 0;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = 4 + bytes.length;
+        if (length > strings.chunkSize()) {
+            throw new IllegalArgumentException("字段长度超出存储限制: " + bytes.length + " 字节");
+        }
+        long position = stringEnd;
+        // 不跨映射块
+        if (position / strings.chunkSize() != (position + length - 1) / strings.chunkSize()) {
+            position = (position / strings.chunkSize() + 1) * strings.chunkSize();
+        }
+        if ((position >>> 3) > Integer.MAX_VALUE) {
+            throw new IllegalStateException("字符串文件已满");
+        }
+        strings.ensure(position, length);
+        strings.putInt(position, bytes.length);
+        strings.putBytes(position + 4, bytes);
+        stringEnd = (position + length + 7) & ~7L;
+        strings.putLong(8, stringEnd);
+        return (int) (position >>> 3);
+    }
+
+    private String readString(int ref) {
+        if (ref == 0) {
+            return null;
+        }
+        long position = (long) ref << 3;
+        byte[] bytes = new byte[strings.getInt(position)];
+        strings.getBytes(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---------------------------------------------------------------- 加载与关闭
+
+    private void load() {
+        if (records.getInt(0) != MAGIC) {
+            records.putInt(0, MAGIC);
+            records.putInt(4, VERSION);
+            records.putInt(8, RECORD_SIZE);
+            records.putInt(12, 0);
+            strings.putInt(0, MAGIC);
+            strings.putInt(4, VERSION);
+            strings.putLong(8, STRINGS_HEADER);
+        } else if (records.getInt(4) != VERSION || records.getInt(8) != RECORD_SIZE || strings.getInt(0) != MAGIC) {
+            throw new IllegalStateException("无法识别的存储文件版本");
+        }
+        slotCount = records.getInt(12);
+        stringEnd = strings.getLong(8);
+
+        long started = System.nanoTime();
+        List<Integer> live = new ArrayList<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            long position = position(slot);
+            if (records.getByte(position + STATE) != STATE_LIVE) {
+                freeSlots.add(slot);
+                continue;
+            }
+            insertBucket(records.getInt(position + ID_HASH), slot);
+            liveCount++;
+            live.add(slot);
+            indexUser(readString(ref(slot, USER_ID)), slot);
+            indexStatus(slot);
+            for (int field : new int[] {USER_ID, SUMMARY, COUNTERPARTY_NAME, COUNTERPARTY_ACCOUNT}) {
+                int ref = ref(slot, field);
+                if (ref != 0 && dictionary.size() < DICTIONARY_LIMIT) {
+                    dictionary.putIfAbsent(readString(ref), ref);
+                }
+            }
+        }
+        live.sort((a, b) -> -compareToKey(a, createdAt(b), readString(ref(b, ID))));
+        order = new int[Math.max(1024, live.size() * 2)];
+        for (int slot : live) {
+            order[orderSize++] = slot;
+        }
+        if (liveCount > 0) {
+            log.info("Loaded {} transactions from mapped store in {} ms", liveCount,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    /**
+     * 把已修改的页写回文件
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            records.close();
+            strings.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- 工具方法
+
+    private static long position(int slot) {
+        return RECORDS_HEADER + (long) slot * RECORD_SIZE;
+    }
+
+    private int ref(int slot, int field) {
+        return records.getInt(position(slot) + field);
+    }
+
+    private long createdAt(int slot) {
+        return records.getLong(position(slot) + CREATED_AT);
+    }
+
+    private static long toMillis(LocalDateTime value) {
+        return value == null ? NO_TIME : value.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static long ceilMillis(LocalDateTime value) {
+        long millis = toMillis(value);
+        return value.getNano() % 1_000_000 == 0 ? millis : millis + 1;
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return millis == NO_TIME ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    /**
+     * 可增长的 int 列表，避免装箱
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+
+        /**
+         * 删除一个元素，用末尾元素填补空位，不保持顺序
+         */
+        boolean remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package hsbc.hw.transaction.system.repository.replication;
+
+import hsbc.hw.transaction.system.dto.ReplicationRecord;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 主节点的变更日志，以 {@link TransactionJournal} 的形式接入仓库，推送给从节点。
+ * <p>
+ * 仓库在每个交易ID的临界区内调用 logSave / logDelete，这里先交给被包装的日志（文件日志或 NONE），
+ * 成功后再把变更追加到环形缓冲区：被包装的日志写入失败时主节点拒绝这次写入，从节点也不会收到它。
+ * 同一笔交易的变更顺序与内存中的写入顺序一致。追加通过一个很短的锁分配连续序号，
+ * 每个从节点连接持有自己的读取位置；主节点从不等待从节点，读取的槽位已被覆盖时关闭该连接，
+ * 从节点重连后通过快照重新同步。
+ * <p>
+ * 快照先读取当前最新序号 H，再经过仓库的快照屏障遍历全部交易，序号不超过 H 的变更都已反映在快照中，
+ * 之后从 H+1 继续推送。快照期间的变更可能既出现在快照中又被再次推送，从节点重复应用的结果相同。
+ * 序号只在本次启动内有效，主节点重启后生成新的日志ID，从节点发现日志ID不同时重新同步快照。
+ */
+@Slf4j
+public class ReplicationLog implements TransactionJournal, AutoCloseable {
+
+    private final TransactionJournal delegate;
+    private final String logId = UUID.randomUUID().toString();
+    private final AtomicReferenceArray<ReplicationRecord> ring;
+    private final int capacity;
+    private final int mask;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    /**
+     * 最后一条变更的序号，槽位写入后才更新，读取方先读它再读槽位
+     */
+    private final AtomicLong head = new AtomicLong(-1);
+    private final AtomicLong readerIds = new AtomicLong();
+    private final Set<Reader> readers = ConcurrentHashMap.newKeySet();
+    private final MeterRegistry meterRegistry;
+    private final Counter snapshots;
+    private volatile Supplier<Stream<Transaction>> snapshotSource = Stream::empty;
+
+    /**
+     * @param delegate 被包装的持久化日志，不需要持久化时为 {@link TransactionJournal#NONE}
+     * @param bufferSize 环形缓冲区容量，向上取整为2的幂
+     */
+    public ReplicationLog(TransactionJournal delegate, int bufferSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.capacity = Math.max(2, Integer.highestOneBit(Math.max(1, bufferSize - 1)) << 1);
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.meterRegistry = meterRegistry;
+        this.snapshots = Counter.builder("transaction.replication.snapshots")
+                .description("Full snapshots sent to followers")
+                .register(meterRegistry);
+        Gauge.builder("transaction.replication.sequence", head, AtomicLong::get)
+                .description("Sequence of the last change in the replication log")
+                .register(meterRegistry);
+        Gauge.builder("transaction.replication.followers", readers, Set::size)
+                .description("Connected followers")
+                .register(meterRegistry);
+    }
+
+    public String logId() {
+        return logId;
+    }
+
+    /**
+     * 最后一条变更的序号，还没有变更时为 -1
+     */
+    public long head() {
+        return head.get();
+    }
+
+    @Override
+    public void open(Consumer<Transaction> restore, Consumer<String> remove,
+                     Supplier<Stream<Transaction>> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+        delegate.open(restore, remove, snapshotSource);
+    }
+
+    @Override
+    public long logSave(Transaction transaction) {
+        long sequence = delegate.logSave(transaction);
+        append(ReplicationRecord.Type.SAVE, transaction.getId(), transaction);
+        return sequence;
+    }
+
+    @Override
+    public long logDelete(String id) {
+        long sequence = delegate.logDelete(id);
+        append(ReplicationRecord.Type.DELETE, id, null);
+        return sequence;
+    }
+
+    @Override
+    public void awaitDurable(long sequence) {
+        delegate.awaitDurable(sequence);
+    }
+
+    private void append(ReplicationRecord.Type type, String id, Transaction transaction) {
+        long timestamp = System.currentTimeMillis();
+        appendLock.lock();
+        try {
+            long sequence = head.get() + 1;
+            ring.setRelease((int) sequence & mask, new ReplicationRecord(sequence, type, id, transaction, timestamp));
+            head.set(sequence);
+        } finally {
+            appendLock.unlock();
+        }
+        for (Reader reader : readers) {
+            Thread waiter = reader.waiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * 创建从节点的读取位置
+     * @param logId 从节点上次同步的日志ID，首次同步时为空
+     * @param after 从节点已应用的最后一条变更的序号
+     * @return 读取位置，使用完毕后需要关闭；日志ID不同或 after 之后的变更已不在缓冲区中时，需要先发送 {@link Reader#snapshot()}
+     */
+    public Reader subscribe(String logId, long after) {
+        long last = head.get();
+        long oldest = Math.max(0, last + 1 - capacity);
+        boolean resume = this.logId.equals(logId) && after <= last && after + 1 >= oldest;
+        Reader reader = new Reader(String.valueOf(readerIds.incrementAndGet()), resume ? after + 1 : last + 1,
+                !resume);
+        readers.add(reader);
+        if (resume) {
+            log.info("Replication follower {} resumed from sequence {}", reader.id, after + 1);
+        } else {
+            snapshots.increment();
+            log.info("Replication follower {} connected, sending snapshot at sequence {}", reader.id, last);
+        }
+        return reader;
+    }
+
+    @Override
+    public void close() {
+        readers.forEach(Reader::close);
+    }
+
+    /**
+     * 单个从节点的读取位置。snapshot 和 poll 只能由一个线程调用，close 可以在任意线程调用。
+     */
+    public final class Reader implements AutoCloseable {
+
+        private final String id;
+        private final boolean needsSnapshot;
+        /**
+         * 快照对应的序号，即创建读取位置时的最新序号
+         */
+        private final long snapshotSequence;
+        private final Gauge lag;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /**
+         * 下一个要读取的序号，只由读取线程修改
+         */
+        private volatile long position;
+        private volatile Thread waiter;
+
+        private Reader(String id, long position, boolean needsSnapshot) {
+            this.id = id;
+            this.position = position;
+            this.needsSnapshot = needsSnapshot;
+            this.snapshotSequence = position - 1;
+            this.lag = Gauge.builder("transaction.replication.follower.lag", this, Reader::lag)
+                    .description("Changes not yet sent to the follower")
+                    .tag("follower", id)
+                    .register(meterRegistry);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        /**
+         * 已记录但尚未发送的变更数
+         */
+        public long lag() {
+            return Math.max(0, head.get() + 1 - position);
+        }
+
+        /**
+         * 需要发送的快照：快照开始记录、全部交易的 SAVE 记录和快照结束记录，不需要快照时为空。
+         * 返回的流需要关闭。
+         */
+        public Stream<ReplicationRecord> snapshot() {
+            if (!needsSnapshot) {
+                return Stream.empty();
+            }
+            long timestamp = System.currentTimeMillis();
+            Stream<Transaction> transactions = snapshotSource.get();
+            return Stream.concat(Stream.concat(
+                            Stream.of(new ReplicationRecord(snapshotSequence, ReplicationRecord.Type.SNAPSHOT_START,
+                                    logId, null, timestamp)),
+                            transactions.map(t -> new ReplicationRecord(snapshotSequence, ReplicationRecord.Type.SAVE,
+                                    t.getId(), t, timestamp))),
+                    Stream.of(new ReplicationRecord(snapshotSequence, ReplicationRecord.Type.SNAPSHOT_END,
+                            logId, null, timestamp)));
+        }
+
+        /**
+         * 等待至少一条变更，然后一并取出已到达的变更
+         * @param timeout 等待第一条变更的最长时间
+         * @param maxRecords 最多取出的变更数
+         * @return 按序号排列的变更；超时或读取位置已关闭时为空
+         */
+        public List<ReplicationRecord> poll(Duration timeout, int maxRecords) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            List<ReplicationRecord> records = new ArrayList<>();
+            while (!closed.get()) {
+                long last = head.get();
+                while (position <= last && records.size() < maxRecords) {
+                    long next = position;
+                    ReplicationRecord record = ring.getAcquire((int) next & mask);
+                    if (record.getSequence() != next) {
+                        // 读取前槽位已被覆盖，已取出的变更也不再发送，从节点重连后重新同步快照
+                        log.warn("Replication follower {} fell behind the log by more than {} changes", id, capacity);
+                        close();
+                        return List.of();
+                    }
+                    records.add(record);
+                    position = next + 1;
+                }
+                if (!records.isEmpty()) {
+                    return records;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return records;
+                }
+                waiter = Thread.currentThread();
+                // 登记后再检查一次，避免错过登记前追加的变更
+                if (head.get() < position && !closed.get()) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                waiter = null;
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return records;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            readers.remove(this);
+            meterRegistry.remove(lag);
+            Thread thread = waiter;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+            log.info("Replication follower {} disconnected at sequence {}", id, position - 1);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package hsbc.hw.transaction.system.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按用户分段的账户锁。
+ * <p>
+ * 用户ID散列到固定数量的锁上，不相关的账户大概率落在不同分段，互不竞争。
+ * 同时锁定多个账户时按分段下标升序加锁，两个方向相反的转账不会互相等待形成死锁。
+ * 使用 {@link ReentrantLock} 而不是 synchronized，虚拟线程等待时不会固定载体线程。
+ */
+class AccountLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripes 分段数，向上取整为2的幂；为1时退化为全局锁
+     */
+    AccountLocks(int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 锁定一个或多个用户，返回的句柄关闭时释放
+     */
+    Held lock(String... userIds) {
+        return lock(Arrays.asList(userIds));
+    }
+
+    Held lock(Collection<String> userIds) {
+        int[] indexes = userIds.stream()
+                .mapToInt(this::stripe)
+                .sorted()
+                .distinct()
+                .toArray();
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                locked++;
+            }
+        } catch (RuntimeException | Error e) {
+            unlock(indexes, locked);
+            throw e;
+        }
+        return () -> unlock(indexes, indexes.length);
+    }
+
+    private int stripe(String userId) {
+        int h = userId == null ? 0 : userId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void unlock(int[] indexes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,224 @@
+package hsbc.hw.transaction.system.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.exception.ClusterNodeUnavailableException;
+import hsbc.hw.transaction.system.exception.DuplicateTransactionException;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import hsbc.hw.transaction.system.exception.TransactionStateException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 集群节点之间转发请求的 HTTP 客户端。
+ * <p>
+ * 请求直接调用对方节点的 REST 接口，并在 {@link #FORWARDED_HEADER} 中带上集群密钥，对方核对密钥后只在本地执行，不会再次转发；
+ * 外部客户端不知道密钥，带上该请求头也会按普通请求处理。
+ * 所有调用都是异步的，分发到多个节点的查询并行等待；对方返回的错误按状态码还原成本地的异常类型，
+ * 连接失败或超时抛出 {@link ClusterNodeUnavailableException}。
+ */
+@Slf4j
+public class ClusterClient implements AutoCloseable {
+
+    /**
+     * 节点转发的请求带有该请求头，值为集群密钥
+     */
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final byte[] secret;
+    private final Duration requestTimeout;
+
+    public ClusterClient(ObjectMapper objectMapper, String secret, Duration connectTimeout, Duration requestTimeout) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("集群模式必须配置 transaction.cluster.secret");
+        }
+        this.objectMapper = objectMapper;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * @param node 节点地址
+     * @param method HTTP 方法
+     * @param path 以 / 开头的路径，包括查询参数
+     * @param body 请求体，为空时不发送
+     * @param type 响应体类型，为空时忽略响应体
+     * @return 解析后的响应体
+     */
+    public <T> CompletableFuture<T> send(String node, String method, String path, Object body, Class<T> type) {
+        return send(node, method, path, body, type == null ? null : objectMapper.constructType(type));
+    }
+
+    public <T> CompletableFuture<T> send(String node, String method, String path, Object body,
+                                         TypeReference<T> type) {
+        return send(node, method, path, body, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    private <T> CompletableFuture<T> send(String node, String method, String path, Object body, JavaType type) {
+        HttpRequest request = request(node, path)
+                .timeout(requestTimeout)
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(toJson(body)))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw unavailable(node, error);
+                    }
+                    if (response.statusCode() >= 300) {
+                        throw toException(node, method, response.statusCode(),
+                                new String(response.body(), StandardCharsets.UTF_8));
+                    }
+                    return type == null || response.body().length == 0 ? null : fromJson(response.body(), type);
+                });
+    }
+
+    /**
+     * 以 NDJSON 流读取对方节点的导出接口，响应头到达后即返回，调用方负责关闭返回的流
+     */
+    public CompletableFuture<Stream<TransactionResponse>> stream(String node, String path) {
+        HttpRequest request = request(node, path).GET().build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw unavailable(node, error);
+                    }
+                    if (response.statusCode() >= 300) {
+                        String message;
+                        try (Stream<String> lines = response.body()) {
+                            message = lines.collect(Collectors.joining("\n"));
+                        }
+                        throw toException(node, "GET", response.statusCode(), message);
+                    }
+                    return response.body()
+                            .filter(line -> !line.isEmpty())
+                            .map(line -> fromJson(line.getBytes(StandardCharsets.UTF_8),
+                                    objectMapper.constructType(TransactionResponse.class)));
+                });
+    }
+
+    /**
+     * 请求是否由集群中的其他节点转发，请求头必须与本节点的集群密钥相同
+     */
+    public boolean isForwarded(HttpServletRequest request) {
+        String value = request.getHeader(FORWARDED_HEADER);
+        return value != null && MessageDigest.isEqual(secret, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 等待异步调用完成，还原调用中抛出的异常
+     */
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 路径中的一段，按 UTF-8 编码
+     */
+    static String encode(String segment) {
+        return URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /**
+     * 由参数名和值交替组成的查询字符串，值为空的参数被忽略
+     */
+    static String query(Object... pairs) {
+        StringJoiner query = new StringJoiner("&", "?", "").setEmptyValue("");
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (pairs[i + 1] != null) {
+                query.add(pairs[i] + "=" + encode(pairs[i + 1].toString()));
+            }
+        }
+        return query.toString();
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+
+    private HttpRequest.Builder request(String node, String path) {
+        return HttpRequest.newBuilder(URI.create(node + path))
+                .header(FORWARDED_HEADER, new String(secret, StandardCharsets.UTF_8))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json, application/x-ndjson");
+    }
+
+    private RuntimeException toException(String node, String method, int status, String body) {
+        String message = message(body);
+        return switch (status) {
+            case 400 -> new InvalidTransactionException(message);
+            case 404 -> new TransactionNotFoundException(message);
+            // 只有修改状态的接口用 409 表示状态冲突，其余接口的 409 都是交易ID重复
+            case 409 -> "PATCH".equals(method)
+                    ? new TransactionStateException(message)
+                    : new DuplicateTransactionException(message);
+            case 503 -> new ClusterNodeUnavailableException("节点不可用: " + node + ", " + message, null);
+            default -> new IllegalStateException("节点 " + node + " 返回 " + status + ": " + message);
+        };
+    }
+
+    private ClusterNodeUnavailableException unavailable(String node, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        log.warn("Cluster node {} unavailable: {}", node, cause.toString());
+        return new ClusterNodeUnavailableException("节点不可用: " + node, cause);
+    }
+
+    private String message(String body) {
+        try {
+            JsonNode message = objectMapper.readTree(body).get("message");
+            return message != null ? message.asText() : body;
+        } catch (IOException e) {
+            return body;
+        }
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T fromJson(byte[] json, JavaType type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package hsbc.hw.transaction.system.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.TransactionCursorPage;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.dto.TransactionSearchRequest;
+import hsbc.hw.transaction.system.dto.TransactionStatusRequest;
+import hsbc.hw.transaction.system.dto.TransferRequest;
+import hsbc.hw.transaction.system.dto.TransferResponse;
+import hsbc.hw.transaction.system.dto.UserSummaryResponse;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import hsbc.hw.transaction.system.repository.MergingIterator;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 集群模式下的交易服务，按用户ID把数据分区到多个节点。
+ * <p>
+ * 用户ID经一致性哈希环确定所属节点，该用户的交易、账本和汇总都只保存在这个节点上。
+ * 按用户的写入和查询转发给所属节点；按交易ID的操作先在本节点查找，找不到时并行询问其他节点；
+ * 不按用户过滤的分页、搜索和导出分发到所有节点，再按与单节点相同的顺序归并。
+ * 其他节点转发来的请求（{@link ClusterClient#FORWARDED_HEADER} 与集群密钥相符）直接由本节点的 {@link TransactionServiceImpl} 执行。
+ * <p>
+ * 限制：交易ID只在所属节点上检查重复；不支持跨节点转账，也不能把交易改到其他节点的用户；
+ * 页码分页每个节点都要返回前 offset + size 条，因此 offset + size 不能超过 {@value TransactionServiceImpl#MAX_CURSOR_PAGE_SIZE}，
+ * 更深的翻页使用游标分页。
+ */
+@Slf4j
+public class ClusteredTransactionService implements TransactionService {
+
+    private static final String TRANSACTIONS = "/api/transactions";
+
+    /**
+     * 与仓库的时间索引相同的顺序：创建时间倒序，相同时按ID升序
+     */
+    static final Comparator<TransactionResponse> TIME_ORDER = Comparator
+            .comparing(TransactionResponse::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(TransactionResponse::getId);
+
+    private final TransactionService local;
+    private final ClusterClient client;
+    private final ConsistentHashRing ring;
+    private final String self;
+    private final List<String> peers;
+
+    public ClusteredTransactionService(TransactionService local, ClusterClient client, ConsistentHashRing ring,
+                                       String self) {
+        if (!ring.nodes().contains(self)) {
+            throw new IllegalArgumentException("本节点地址不在集群节点列表中: " + self);
+        }
+        this.local = local;
+        this.client = client;
+        this.ring = ring;
+        this.self = self;
+        this.peers = ring.nodes().stream().filter(node -> !node.equals(self)).toList();
+    }
+
+    @Override
+    public TransactionResponse createTransaction(TransactionRequest request) {
+        TransactionServiceImpl.validateCreateRequest(request);
+        String owner = owner(request.getUserId());
+        if (owner.equals(self)) {
+            return local.createTransaction(request);
+        }
+        log.debug("Forwarding create of transaction {} to {}", request.getId(), owner);
+        return call(owner, "POST", TRANSACTIONS, request, TransactionResponse.class);
+    }
+
+    /**
+     * 按所属节点拆成子批次并行写入，结果中的下标还原为原请求列表中的位置。
+     * 各节点的子批次独立提交，某个节点失败时只把它的请求标记为失败，其他节点已写入的结果照常返回
+     */
+    @Override
+    public BatchCreateResponse createTransactions(List<TransactionRequest> requests) {
+        if (forwarded() || requests == null || requests.isEmpty()
+                || requests.size() > TransactionServiceImpl.MAX_BATCH_SIZE) {
+            return local.createTransactions(requests);
+        }
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i);
+            groups.computeIfAbsent(owner(request == null ? null : request.getUserId()), node -> new ArrayList<>())
+                    .add(i);
+        }
+        if (groups.size() == 1 && groups.containsKey(self)) {
+            return local.createTransactions(requests);
+        }
+
+        Map<String, CompletableFuture<BatchCreateResponse>> futures = new LinkedHashMap<>();
+        groups.forEach((node, indexes) -> {
+            List<TransactionRequest> batch = indexes.stream().map(requests::get).toList();
+            if (!node.equals(self)) {
+                futures.put(node, client.send(node, "POST", TRANSACTIONS + "/batch", batch,
+                        BatchCreateResponse.class));
+            }
+        });
+        if (groups.containsKey(self)) {
+            List<TransactionRequest> batch = groups.get(self).stream().map(requests::get).toList();
+            CompletableFuture<BatchCreateResponse> result;
+            try {
+                result = CompletableFuture.completedFuture(local.createTransactions(batch));
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            futures.put(self, result);
+        }
+
+        BatchCreateResponse.ItemResult[] results = new BatchCreateResponse.ItemResult[requests.size()];
+        int succeeded = 0;
+        for (Map.Entry<String, CompletableFuture<BatchCreateResponse>> entry : futures.entrySet()) {
+            List<Integer> indexes = groups.get(entry.getKey());
+            BatchCreateResponse response;
+            try {
+                response = ClusterClient.join(entry.getValue());
+            } catch (RuntimeException e) {
+                log.warn("Batch create of {} transactions on {} failed: {}", indexes.size(), entry.getKey(),
+                        e.getMessage());
+                for (int index : indexes) {
+                    TransactionRequest request = requests.get(index);
+                    results[index] = BatchCreateResponse.ItemResult.failure(index,
+                            request == null ? null : request.getId(), e.getMessage());
+                }
+                continue;
+            }
+            for (BatchCreateResponse.ItemResult item : response.getResults()) {
+                item.setIndex(indexes.get(item.getIndex()));
+                results[item.getIndex()] = item;
+            }
+            succeeded += response.getSucceeded();
+        }
+        return new BatchCreateResponse(requests.size(), succeeded, requests.size() - succeeded, List.of(results));
+    }
+
+    /**
+     * 余额检查和两笔交易的写入需要在同一个节点上原子完成，只支持双方属于同一节点的转账
+     */
+    @Override
+    public TransferResponse transfer(TransferRequest request) {
+        if (forwarded() || request == null || !StringUtils.hasText(request.getFromUserId())
+                || !StringUtils.hasText(request.getToUserId())) {
+            return local.transfer(request);
+        }
+        String owner = ring.owner(request.getFromUserId());
+        if (!owner.equals(ring.owner(request.getToUserId()))) {
+            throw new InvalidTransactionException("集群模式下不支持跨节点转账: "
+                    + request.getFromUserId() + " -> " + request.getToUserId());
+        }
+        return owner.equals(self) ? local.transfer(request)
+                : call(owner, "POST", TRANSACTIONS + "/transfer", request, TransferResponse.class);
+    }
+
+    @Override
+    public TransactionResponse getTransactionById(String id) {
+        if (forwarded() || peers.isEmpty()) {
+            return local.getTransactionById(id);
+        }
+        try {
+            return local.getTransactionById(id);
+        } catch (TransactionNotFoundException e) {
+            List<CompletableFuture<TransactionResponse>> futures = peers.stream()
+                    .map(node -> findRemote(node, id))
+                    .toList();
+            for (CompletableFuture<TransactionResponse> future : futures) {
+                TransactionResponse response = ClusterClient.join(future);
+                if (response != null) {
+                    return response;
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<TransactionResponse> getTransactionsByUserId(String userId) {
+        String owner = owner(userId);
+        return owner.equals(self) ? local.getTransactionsByUserId(userId)
+                : call(owner, "GET", TRANSACTIONS + "/user/" + ClusterClient.encode(userId), null,
+                new TypeReference<List<TransactionResponse>>() {
+                });
+    }
+
+    @Override
+    public Page<TransactionResponse> getAllTransactions(Pageable pageable) {
+        if (forwarded()) {
+            return local.getAllTransactions(pageable);
+        }
+        int keep = keep(pageable);
+        Sort sort = Sort.by("timestamp").descending();
+        List<RemotePage> pages = scatter(
+                service -> RemotePage.of(service.getAllTransactions(PageRequest.of(0, keep, sort))),
+                node -> client.send(node, "GET", TRANSACTIONS + ClusterClient.query("page", 0, "size", keep), null,
+                        RemotePage.class));
+        return mergePages(pages, pageable, TIME_ORDER);
+    }
+
+    @Override
+    public Page<TransactionResponse> searchTransactions(TransactionSearchRequest request, Pageable pageable) {
+        if (forwarded()) {
+            return local.searchTransactions(request, pageable);
+        }
+        if (request != null && StringUtils.hasText(request.getUserId())) {
+            String owner = ring.owner(request.getUserId());
+            if (owner.equals(self)) {
+                return local.searchTransactions(request, pageable);
+            }
+            RemotePage page = call(owner, "GET", TRANSACTIONS + "/search" + searchQuery(request,
+                    pageable.getPageNumber(), pageable.getPageSize()), null, RemotePage.class);
+            return new PageImpl<>(page.content(), pageable, page.totalElements());
+        }
+        int keep = keep(pageable);
+        List<RemotePage> pages = scatter(
+                service -> RemotePage.of(service.searchTransactions(request, PageRequest.of(0, keep))),
+                node -> client.send(node, "GET", TRANSACTIONS + "/search" + searchQuery(request, 0, keep), null,
+                        RemotePage.class));
+        return mergePages(pages, pageable, TIME_ORDER);
+    }
+
+    /**
+     * 各节点按相同的相关度排序，相关度由交易的文本字段计算，归并时重新计算即可，不需要节点返回
+     */
+    @Override
+    public Page<TransactionResponse> searchTransactionsByKeyword(String keyword, Pageable pageable) {
+        if (forwarded() || !StringUtils.hasText(keyword)) {
+            return local.searchTransactionsByKeyword(keyword, pageable);
+        }
+        int keep = keep(pageable);
+        List<RemotePage> pages = scatter(
+                service -> RemotePage.of(service.searchTransactionsByKeyword(keyword, PageRequest.of(0, keep))),
+                node -> client.send(node, "GET", TRANSACTIONS + "/search/text"
+                        + ClusterClient.query("q", keyword, "page", 0, "size", keep), null, RemotePage.class));
+        Comparator<TransactionResponse> order = Comparator.<TransactionResponse>comparingInt(t ->
+                        -TransactionRepository.relevance(keyword, t.getCounterpartyName(),
+                                t.getTransactionSummary(), t.getDescription()))
+                .thenComparing(TIME_ORDER);
+        return mergePages(pages, pageable, order);
+    }
+
+    /**
+     * 每个节点返回游标之后的前 size 条，全局的前 size 条一定在它们的并集中
+     */
+    @Override
+    public TransactionCursorPage getTransactionsAfter(String after, int size) {
+        if (forwarded() || size <= 0 || size > TransactionServiceImpl.MAX_CURSOR_PAGE_SIZE) {
+            return local.getTransactionsAfter(after, size);
+        }
+        List<TransactionCursorPage> pages = scatter(
+                service -> service.getTransactionsAfter(after, size),
+                node -> client.send(node, "GET", TRANSACTIONS + "/cursor"
+                        + ClusterClient.query("after", after, "size", size), null, TransactionCursorPage.class));
+        Iterator<TransactionResponse> merged = MergingIterator.merge(
+                pages.stream().map(page -> page.getContent().iterator()).toList(), TIME_ORDER);
+        List<TransactionResponse> content = new ArrayList<>(size);
+        while (merged.hasNext() && content.size() < size) {
+            content.add(merged.next());
+        }
+        boolean hasNext = merged.hasNext() || pages.stream().anyMatch(TransactionCursorPage::isHasNext);
+        String nextCursor = hasNext && !content.isEmpty()
+                ? new TransactionCursor(content.get(content.size() - 1).getCreatedAt(),
+                content.get(content.size() - 1).getId()).encode()
+                : null;
+        return new TransactionCursorPage(content, nextCursor, hasNext && nextCursor != null);
+    }
+
+    /**
+     * 按用户导出时读取所属节点的导出流；导出全部时同时读取所有节点的导出流，边读取边按创建时间归并
+     */
+    @Override
+    public Stream<TransactionResponse> exportTransactions(String userId, LocalDateTime from, LocalDateTime to) {
+        if (forwarded()) {
+            return local.exportTransactions(userId, from, to);
+        }
+        String path = TRANSACTIONS + "/export" + ClusterClient.query("userId", userId, "from", from, "to", to);
+        if (StringUtils.hasText(userId)) {
+            String owner = ring.owner(userId);
+            return owner.equals(self) ? local.exportTransactions(userId, from, to)
+                    : ClusterClient.join(client.stream(owner, path));
+        }
+        List<CompletableFuture<Stream<TransactionResponse>>> remote = peers.stream()
+                .map(node -> client.stream(node, path))
+                .toList();
+        List<Stream<TransactionResponse>> sources = new ArrayList<>();
+        try {
+            sources.add(local.exportTransactions(null, from, to));
+            for (CompletableFuture<Stream<TransactionResponse>> future : remote) {
+                sources.add(ClusterClient.join(future));
+            }
+        } catch (RuntimeException e) {
+            remote.forEach(future -> future.thenAccept(Stream::close));
+            sources.forEach(Stream::close);
+            throw e;
+        }
+        Iterator<TransactionResponse> merged = MergingIterator.merge(
+                sources.stream().map(Stream::iterator).toList(), TIME_ORDER);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                .onClose(() -> sources.forEach(Stream::close));
+    }
+
+    @Override
+    public UserSummaryResponse getUserSummary(String userId) {
+        String owner = owner(userId);
+        return owner.equals(self) ? local.getUserSummary(userId)
+                : call(owner, "GET", "/api/users/" + ClusterClient.encode(userId) + "/summary", null,
+                UserSummaryResponse.class);
+    }
+
+    @Override
+    public UserSummaryResponse.MonthlySummary getUserMonthlySummary(String userId, YearMonth month) {
+        String owner = owner(userId);
+        return owner.equals(self) ? local.getUserMonthlySummary(userId, month)
+                : call(owner, "GET", "/api/users/" + ClusterClient.encode(userId) + "/summary/" + month, null,
+                UserSummaryResponse.MonthlySummary.class);
+    }
+
+    /**
+     * 交易所在节点的账本记录了它的金额，只能在该节点上修改，目标用户也必须属于该节点
+     */
+    @Override
+    public TransactionResponse updateTransaction(String id, TransactionRequest request) {
+        if (forwarded()) {
+            return local.updateTransaction(id, request);
+        }
+        TransactionServiceImpl.validateTransactionRequest(request);
+        String holder = locate(id);
+        if (StringUtils.hasText(request.getUserId()) && !ring.owner(request.getUserId()).equals(holder)) {
+            throw new InvalidTransactionException("集群模式下不能把交易改到其他节点的用户: " + request.getUserId());
+        }
+        return holder.equals(self) ? local.updateTransaction(id, request)
+                : call(holder, "PUT", TRANSACTIONS + "/" + ClusterClient.encode(id), request,
+                TransactionResponse.class);
+    }
+
+    @Override
+    public TransactionResponse updateTransactionStatus(String id, TransactionStatusRequest request) {
+        if (forwarded()) {
+            return local.updateTransactionStatus(id, request);
+        }
+        String holder = locate(id);
+        return holder.equals(self) ? local.updateTransactionStatus(id, request)
+                : call(holder, "PATCH", TRANSACTIONS + "/" + ClusterClient.encode(id) + "/status", request,
+                TransactionResponse.class);
+    }
+
+    /**
+     * 各节点返回各自最新的 size 条，按创建时间归并后取前 size 条
+     */
+    @Override
+    public List<TransactionResponse> getTransactionsByStatus(String status, int size) {
+        if (forwarded() || size <= 0 || size > TransactionServiceImpl.MAX_CURSOR_PAGE_SIZE) {
+            return local.getTransactionsByStatus(status, size);
+        }
+        List<List<TransactionResponse>> results = scatter(
+                service -> service.getTransactionsByStatus(status, size),
+                node -> client.send(node, "GET", TRANSACTIONS + "/status/" + ClusterClient.encode(status)
+                        + ClusterClient.query("size", size), null, new TypeReference<List<TransactionResponse>>() {
+                }));
+        Iterator<TransactionResponse> merged = MergingIterator.merge(
+                results.stream().map(List::iterator).toList(), TIME_ORDER);
+        List<TransactionResponse> content = new ArrayList<>(size);
+        while (merged.hasNext() && content.size() < size) {
+            content.add(merged.next());
+        }
+        return content;
+    }
+
+    @Override
+    public void deleteTransaction(String id) {
+        if (forwarded()) {
+            local.deleteTransaction(id);
+            return;
+        }
+        String holder = locate(id);
+        if (holder.equals(self)) {
+            local.deleteTransaction(id);
+        } else {
+            call(holder, "DELETE", TRANSACTIONS + "/" + ClusterClient.encode(id), null, Void.class);
+        }
+    }
+
+    /**
+     * 用户所属的节点；转发来的请求和缺少用户ID的请求在本节点执行，由本地服务校验
+     */
+    private String owner(String userId) {
+        return forwarded() || !StringUtils.hasText(userId) ? self : ring.owner(userId);
+    }
+
+    /**
+     * 交易ID不携带用户信息，先查本节点，找不到时并行询问其他节点
+     */
+    private String locate(String id) {
+        try {
+            local.getTransactionById(id);
+            return self;
+        } catch (TransactionNotFoundException e) {
+            Map<String, CompletableFuture<TransactionResponse>> futures = new LinkedHashMap<>();
+            peers.forEach(node -> futures.put(node, findRemote(node, id)));
+            for (Map.Entry<String, CompletableFuture<TransactionResponse>> entry : futures.entrySet()) {
+                if (ClusterClient.join(entry.getValue()) != null) {
+                    return entry.getKey();
+                }
+            }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<TransactionResponse> findRemote(String node, String id) {
+        return client.send(node, "GET", TRANSACTIONS + "/" + ClusterClient.encode(id), null, TransactionResponse.class)
+                .exceptionally(error -> {
+                    if (error instanceof TransactionNotFoundException
+                            || error.getCause() instanceof TransactionNotFoundException) {
+                        return null;
+                    }
+                    throw error instanceof RuntimeException runtime ? runtime : new IllegalStateException(error);
+                });
+    }
+
+    /**
+     * 先发出所有远程请求，本节点的部分在当前线程执行，再依次等待远程结果
+     */
+    private <T> List<T> scatter(Function<TransactionService, T> onLocal, Function<String, CompletableFuture<T>> onRemote) {
+        List<CompletableFuture<T>> remote = peers.stream().map(onRemote).toList();
+        List<T> results = new ArrayList<>(remote.size() + 1);
+        results.add(onLocal.apply(local));
+        for (CompletableFuture<T> future : remote) {
+            results.add(ClusterClient.join(future));
+        }
+        return results;
+    }
+
+    private <T> T call(String node, String method, String path, Object body, Class<T> type) {
+        return ClusterClient.join(client.send(node, method, path, body, type));
+    }
+
+    private <T> T call(String node, String method, String path, Object body, TypeReference<T> type) {
+        return ClusterClient.join(client.send(node, method, path, body, type));
+    }
+
+    /**
+     * 每个节点需要返回的条数，过深的页码会让每个节点都返回大量数据
+     */
+    private static int keep(Pageable pageable) {
+        long keep = pageable.getOffset() + pageable.getPageSize();
+        if (keep > TransactionServiceImpl.MAX_CURSOR_PAGE_SIZE) {
+            throw new InvalidTransactionException("集群模式下页码分页最多访问前 "
+                    + TransactionServiceImpl.MAX_CURSOR_PAGE_SIZE + " 条，更深的翻页请使用游标分页");
+        }
+        return (int) keep;
+    }
+
+    private static Page<TransactionResponse> mergePages(List<RemotePage> pages, Pageable pageable,
+                                                        Comparator<TransactionResponse> order) {
+        Iterator<TransactionResponse> merged = MergingIterator.merge(
+                pages.stream().map(page -> page.content().iterator()).toList(), order);
+        for (long skipped = 0; skipped < pageable.getOffset() && merged.hasNext(); skipped++) {
+            merged.next();
+        }
+        List<TransactionResponse> content = new ArrayList<>(pageable.getPageSize());
+        while (merged.hasNext() && content.size() < pageable.getPageSize()) {
+            content.add(merged.next());
+        }
+        long total = pages.stream().mapToLong(RemotePage::totalElements).sum();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private static String searchQuery(TransactionSearchRequest request, int page, int size) {
+        TransactionSearchRequest r = request != null ? request : new TransactionSearchRequest();
+        return ClusterClient.query("userId", r.getUserId(), "type", r.getType(), "status", r.getStatus(),
+                "counterpartyAccountNumber", r.getCounterpartyAccountNumber(),
+                "minAmount", r.getMinAmount(), "maxAmount", r.getMaxAmount(),
+                "from", r.getFrom(), "to", r.getTo(), "page", page, "size", size);
+    }
+
+    /**
+     * 只在本线程正在处理其他节点转发来的请求时为真。外部客户端伪造的请求头与集群密钥不符，按普通请求路由
+     */
+    private boolean forwarded() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servlet && client.isForwarded(servlet.getRequest());
+    }
+
+    /**
+     * 分页响应中归并需要的部分
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record RemotePage(List<TransactionResponse> content, long totalElements) {
+        static RemotePage of(Page<TransactionResponse> page) {
+            return new RemotePage(page.getContent(), page.getTotalElements());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.config.CacheConfig;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 基于 Idempotency-Key 的请求去重。
+ * <p>
+ * 第一次请求执行时先放入一个未完成的结果，同一个键的并发请求等待它完成而不是重复执行；
+ * 时间窗口内的重试直接返回保存的结果，不访问仓库也不抛出重复异常。执行失败的结果不保存，客户端可以用同一个键重试。
+ * 存储是容量有界、按写入时间过期的 Caffeine 缓存，配置见 transaction.cache.idempotency。
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final ConcurrentMap<Object, Object> entries;
+
+    public IdempotencyStore(CacheManager cacheManager) {
+        Cache cache = cacheManager.getCache(CacheConfig.IDEMPOTENCY);
+        if (!(cache instanceof CaffeineCache caffeineCache)) {
+            throw new IllegalStateException("Idempotency store requires a Caffeine cache named " + CacheConfig.IDEMPOTENCY);
+        }
+        this.entries = caffeineCache.getNativeCache().asMap();
+    }
+
+    /**
+     * 按幂等键执行一次请求
+     * @param key 幂等键
+     * @param request 请求内容，同一个键携带不同的请求时拒绝
+     * @param action 首次请求时执行的操作
+     * @return 执行结果，以及是否为重放的结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Outcome<T> execute(String key, Object request, Supplier<T> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidTransactionException("Idempotency-Key 不能为空且长度不能超过 " + MAX_KEY_LENGTH);
+        }
+        Entry entry = new Entry(request, new CompletableFuture<>());
+        Entry existing = (Entry) entries.putIfAbsent(key, entry);
+        if (existing != null) {
+            if (!Objects.equals(existing.request(), request)) {
+                throw new InvalidTransactionException("Idempotency-Key 已用于不同的请求: " + key);
+            }
+            log.info("Replaying request with idempotency key: {}", key);
+            return new Outcome<>((T) await(existing.response()), true);
+        }
+        try {
+            T result = action.get();
+            entry.response().complete(result);
+            return new Outcome<>(result, false);
+        } catch (RuntimeException | Error e) {
+            // 失败的结果不保存，等待中的请求收到同样的异常
+            entries.remove(key, entry);
+            entry.response().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Entry(Object request, CompletableFuture<Object> response) {
+    }
+
+    public record Outcome<T>(T value, boolean replayed) {
+    }
+}
@@ -0,0 +1,308 @@
+package hsbc.hw.transaction.system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.config.TransactionReplicationProperties;
+import hsbc.hw.transaction.system.dto.ReplicationRecord;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 从节点：通过主节点的 /replication/changes 长连接接收变更日志，按序应用到本节点的仓库。
+ * <p>
+ * 每条变更和本节点的写操作一样同步维护用户汇总、缓存和事件推送，从节点上的查询、汇总和 SSE 订阅与主节点一致。
+ * 首次连接、主节点重启或落后超过主节点缓冲区容量时，主节点发送全量快照，快照结束时删除快照中没有的交易。
+ * 超过 idleTimeout 没有收到数据（主节点空闲时也会发送心跳）时断开连接，等待 reconnectDelay 后从已应用的
+ * 序号续传。所有变更由一个线程应用，应用顺序与主节点的记录顺序相同。
+ */
+@Slf4j
+public class ReplicationFollower implements AutoCloseable {
+
+    private final String primary;
+    private final TransactionRepository repository;
+    private final UserLedger ledger;
+    private final TransactionCacheInvalidator cacheInvalidator;
+    private final TransactionEventBus eventBus;
+    private final ObjectMapper objectMapper;
+    private final Duration idleTimeout;
+    private final Duration reconnectDelay;
+    private final HttpClient httpClient;
+    private final Counter applied;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile InputStream stream;
+    private Thread worker;
+    private Thread watchdog;
+
+    /**
+     * 已同步的日志ID，快照完整应用后才设置，中途断开的快照需要重新发送
+     */
+    private String logId;
+    /**
+     * 快照期间收到的交易ID，不在快照中时为 null
+     */
+    private Set<String> snapshotIds;
+    private volatile long appliedSequence = -1;
+    private volatile long primarySequence = -1;
+    /**
+     * 主节点记录最后一条已应用变更的时间
+     */
+    private volatile long appliedTimestamp;
+    private volatile long lastReceived;
+
+    public ReplicationFollower(TransactionReplicationProperties properties, TransactionRepository repository,
+                               UserLedger ledger, TransactionCacheInvalidator cacheInvalidator,
+                               TransactionEventBus eventBus, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.primary = properties.getPrimary();
+        this.repository = repository;
+        this.ledger = ledger;
+        this.cacheInvalidator = cacheInvalidator;
+        this.eventBus = eventBus;
+        this.objectMapper = objectMapper;
+        this.idleTimeout = properties.getIdleTimeout();
+        this.reconnectDelay = properties.getReconnectDelay();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(idleTimeout)
+                .build();
+        this.applied = Counter.builder("transaction.replication.applied")
+                .description("Changes applied from the primary")
+                .register(meterRegistry);
+        Gauge.builder("transaction.replication.lag", this, ReplicationFollower::lag)
+                .description("Changes recorded on the primary but not yet applied")
+                .register(meterRegistry);
+        Gauge.builder("transaction.replication.lag.seconds", this, ReplicationFollower::lagSeconds)
+                .description("Age of the oldest change not yet applied, or time since the primary was last heard from")
+                .register(meterRegistry);
+        Gauge.builder("transaction.replication.connected", this, follower -> follower.connected ? 1 : 0)
+                .description("Whether the follower is connected to the primary")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        running = true;
+        lastReceived = System.currentTimeMillis();
+        worker = Thread.ofPlatform().daemon().name("replication-follower").start(this::run);
+        watchdog = Thread.ofVirtual().name("replication-watchdog").start(this::watch);
+        log.info("Replicating from primary {}", primary);
+    }
+
+    /**
+     * 主节点已记录但本节点尚未应用的变更数
+     */
+    public long lag() {
+        return Math.max(0, primarySequence - appliedSequence);
+    }
+
+    /**
+     * 有未应用的变更时为最早一条未应用变更的大致等待时间（主从时钟需一致），已追上时为 0；
+     * 断开期间为距离最后一次收到主节点数据的时间
+     */
+    public double lagSeconds() {
+        long now = System.currentTimeMillis();
+        if (!connected) {
+            return (now - lastReceived) / 1000.0;
+        }
+        return lag() == 0 ? 0 : Math.max(0, now - appliedTimestamp) / 1000.0;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long appliedSequence() {
+        return appliedSequence;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closeStream();
+        if (worker != null) {
+            worker.interrupt();
+        }
+        if (watchdog != null) {
+            watchdog.interrupt();
+        }
+        httpClient.close();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                follow();
+            } catch (IOException | UncheckedIOException e) {
+                if (running) {
+                    log.warn("Replication from {} interrupted: {}", primary, e.toString());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to apply replication change", e);
+            }
+            connected = false;
+            snapshotIds = null;
+            try {
+                Thread.sleep(reconnectDelay);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow() throws IOException, InterruptedException {
+        URI uri = URI.create(primary + "/replication/changes"
+                + ClusterClient.query("logId", logId, "after", logId != null ? appliedSequence : null));
+        HttpResponse<InputStream> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body();
+             BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (response.statusCode() != 200) {
+                throw new IOException("主节点返回 " + response.statusCode());
+            }
+            stream = body;
+            lastReceived = System.currentTimeMillis();
+            connected = true;
+            log.info("Connected to primary {} - log: {}, after sequence: {}", primary, logId, appliedSequence);
+            for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                lastReceived = System.currentTimeMillis();
+                if (!line.isEmpty()) {
+                    apply(objectMapper.readValue(line, ReplicationRecord.class));
+                }
+            }
+        } finally {
+            stream = null;
+        }
+    }
+
+    /**
+     * 主节点空闲时每隔 heartbeat 发送一次心跳，超过 idleTimeout 没有数据说明连接已失效，关闭后由工作线程重连
+     */
+    private void watch() {
+        while (running) {
+            try {
+                Thread.sleep(idleTimeout.dividedBy(2));
+            } catch (InterruptedException e) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - lastReceived;
+            if (stream != null && idle > idleTimeout.toMillis()) {
+                log.warn("No data from primary {} for {} ms, reconnecting", primary, idle);
+                closeStream();
+            }
+        }
+    }
+
+    private void closeStream() {
+        InputStream current = stream;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.debug("Failed to close replication stream", e);
+            }
+        }
+    }
+
+    /**
+     * 应用一条变更，只由工作线程调用
+     */
+    void apply(ReplicationRecord record) {
+        switch (record.getType()) {
+            case SNAPSHOT_START -> {
+                logId = null;
+                snapshotIds = new HashSet<>();
+                appliedSequence = -1;
+                primarySequence = record.getSequence();
+                appliedTimestamp = record.getTimestamp();
+                log.info("Receiving snapshot from primary {} at sequence {}", primary, record.getSequence());
+            }
+            case SAVE -> {
+                save(record.getTransaction());
+                if (snapshotIds != null) {
+                    snapshotIds.add(record.getId());
+                } else {
+                    advance(record);
+                }
+            }
+            case DELETE -> {
+                delete(record.getId());
+                advance(record);
+            }
+            case SNAPSHOT_END -> {
+                List<String> missing;
+                try (Stream<Transaction> transactions = repository.streamByCreatedAt(null, null)) {
+                    missing = transactions.map(Transaction::getId)
+                            .filter(id -> !snapshotIds.contains(id))
+                            .collect(Collectors.toList());
+                }
+                missing.forEach(this::delete);
+                log.info("Snapshot applied - {} transactions, {} removed", snapshotIds.size(), missing.size());
+                snapshotIds = null;
+                logId = record.getId();
+                advance(record);
+            }
+            case HEARTBEAT -> primarySequence = Math.max(primarySequence, record.getSequence());
+        }
+    }
+
+    private void advance(ReplicationRecord record) {
+        appliedTimestamp = record.getTimestamp();
+        appliedSequence = record.getSequence();
+        primarySequence = Math.max(primarySequence, record.getSequence());
+        applied.increment();
+    }
+
+    private void save(Transaction transaction) {
+        Transaction previous = repository.findById(transaction.getId()).orElse(null);
+        if (transaction.equals(previous)) {
+            // 快照与已应用的变更重叠，或重新同步时数据没有变化
+            return;
+        }
+        repository.save(transaction);
+        if (previous == null) {
+            ledger.onCreated(transaction);
+            cacheInvalidator.onCreated(transaction.getUserId());
+            eventBus.publish(TransactionEvent.Type.CREATED, TransactionResponse.from(transaction));
+        } else {
+            ledger.onUpdated(previous, transaction);
+            cacheInvalidator.onUpdated(transaction.getId(), previous.getUserId(), transaction.getUserId());
+            eventBus.publish(TransactionEvent.Type.UPDATED, TransactionResponse.from(transaction));
+        }
+    }
+
+    private void delete(String id) {
+        Transaction previous = repository.findById(id).orElse(null);
+        if (previous == null) {
+            return;
+        }
+        repository.deleteById(id);
+        ledger.onDeleted(previous);
+        cacheInvalidator.onDeleted(id, previous.getUserId());
+        eventBus.publish(TransactionEvent.Type.DELETED, TransactionResponse.from(previous));
+    }
+}
@@ -0,0 +1,90 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.config.CacheConfig;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 交易缓存的精确失效。
+ * <p>
+ * 写操作只清理受影响的键：交易ID本身、涉及的用户列表，以及可能已过期的分页结果。
+ * 新增和删除会改变总数并使后续分页整体偏移，所有分页都要清理；
+ * 更新不改变创建时间和总数，只需清理包含该交易的分页。
+ */
+@Slf4j
+@Component
+public class TransactionCacheInvalidator {
+
+    private final CacheManager cacheManager;
+
+    public TransactionCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public void onCreated(String userId) {
+        evict(CacheConfig.TRANSACTIONS_BY_USER, userId);
+        clear(CacheConfig.TRANSACTION_PAGES);
+    }
+
+    public void onBatchCreated(Collection<String> userIds) {
+        userIds.forEach(userId -> evict(CacheConfig.TRANSACTIONS_BY_USER, userId));
+        clear(CacheConfig.TRANSACTION_PAGES);
+    }
+
+    public void onUpdated(String id, String previousUserId, String userId) {
+        evict(CacheConfig.TRANSACTION_BY_ID, id);
+        evict(CacheConfig.TRANSACTIONS_BY_USER, previousUserId);
+        if (!Objects.equals(previousUserId, userId)) {
+            evict(CacheConfig.TRANSACTIONS_BY_USER, userId);
+        }
+        evictPagesContaining(id);
+    }
+
+    public void onDeleted(String id, String userId) {
+        evict(CacheConfig.TRANSACTION_BY_ID, id);
+        evict(CacheConfig.TRANSACTIONS_BY_USER, userId);
+        clear(CacheConfig.TRANSACTION_PAGES);
+    }
+
+    private void evict(String cacheName, String key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 清理包含指定交易的分页缓存。底层不是 Caffeine 时无法遍历，退化为清空分页缓存。
+     */
+    @SuppressWarnings("unchecked")
+    private void evictPagesContaining(String id) {
+        Cache cache = cacheManager.getCache(CacheConfig.TRANSACTION_PAGES);
+        if (cache == null) {
+            return;
+        }
+        if (!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache)) {
+            log.warn("Cache {} does not support iteration, clearing all pages", cache.getName());
+            cache.clear();
+            return;
+        }
+        Map<Object, Object> entries = ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache).asMap();
+        entries.values().removeIf(value -> value instanceof Page<?> page
+                && page.getContent().stream().anyMatch(t -> t instanceof TransactionResponse response
+                        && id.equals(response.getId())));
+    }
+}
@@ -0,0 +1,43 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.model.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 游标分页的位置，由上一页最后一笔交易的 (createdAt, id) 组成。
+ * 对外以 URL 安全的 Base64 字符串传递，客户端不应解析其内容。
+ */
+record TransactionCursor(LocalDateTime createdAt, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    static TransactionCursor of(Transaction transaction) {
+        return new TransactionCursor(transaction.getCreatedAt(), transaction.getId());
+    }
+
+    String encode() {
+        // LocalDateTime 的字符串形式不含分隔符，解码时按第一个分隔符切分即可
+        String raw = (createdAt == null ? "" : createdAt.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static TransactionCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0 || separator == raw.length() - 1) {
+                throw new InvalidTransactionException("无效的分页游标: " + token);
+            }
+            String createdAt = raw.substring(0, separator);
+            return new TransactionCursor(createdAt.isEmpty() ? null : LocalDateTime.parse(createdAt),
+                    raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidTransactionException("无效的分页游标: " + token);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 交易事件的环形缓冲区，单个生产者、多个消费者。
+ * <p>
+ * 写操作在缓存失效之后发布事件，订阅方收到事件再查询时不会读到旧缓存。多个写线程通过一个很短的发布锁串行化
+ * （只包括分配序号和写入槽位），缓冲区任一时刻只有一个生产者。每个订阅者持有自己的读取位置，按序读取并按用户、
+ * 类型过滤；发布方从不等待订阅者，读得慢的订阅者只会落后，槽位被覆盖后无法再读取。
+ * 发布时订阅者已经落后超过 maxLag（不计本次发布的事件，一次大批量发布不会让跟得上的订阅者被判为过慢），
+ * 或者要读取的槽位已被覆盖时，DISCONNECT 策略关闭该订阅，SKIP 策略让订阅者下次读取时跳到最新事件。
+ * 同一交易的并发修改在缓存失效后才发布，事件顺序可能与写入顺序不同，以交易的 updatedAt 为准。
+ */
+@Slf4j
+public class TransactionEventBus implements AutoCloseable {
+
+    private final AtomicReferenceArray<TransactionEvent> ring;
+    private final int mask;
+    private final int maxLag;
+    private final TransactionEventProperties.SlowSubscriberPolicy policy;
+    private final Duration heartbeat;
+    private final ReentrantLock publishLock = new ReentrantLock();
+    /**
+     * 最后一个已发布事件的序号，槽位写入后才更新，读取方先读它再读槽位
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLong subscriberIds = new AtomicLong();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final MeterRegistry meterRegistry;
+    private final Counter published;
+    private final Counter dropped;
+    private final Counter skipped;
+
+    public TransactionEventBus(TransactionEventProperties properties, MeterRegistry meterRegistry) {
+        int capacity = Math.max(2, Integer.highestOneBit(Math.max(1, properties.getBufferSize() - 1)) << 1);
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.maxLag = Math.max(1, Math.min(properties.getMaxLag(), capacity));
+        this.policy = properties.getSlowSubscriberPolicy();
+        this.heartbeat = properties.getHeartbeat();
+        this.meterRegistry = meterRegistry;
+        this.published = Counter.builder("transaction.events.published")
+                .description("Transaction events published to the ring buffer")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("transaction.events.dropped")
+                .description("Subscribers disconnected for lagging behind")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("transaction.events.skipped")
+                .description("Events skipped by lagging subscribers")
+                .register(meterRegistry);
+        Gauge.builder("transaction.events.subscribers", subscriptions, Set::size)
+                .description("Open event subscriptions")
+                .register(meterRegistry);
+    }
+
+    public Duration heartbeat() {
+        return heartbeat;
+    }
+
+    public void publish(TransactionEvent.Type type, TransactionResponse transaction) {
+        publish(type, List.of(transaction));
+    }
+
+    /**
+     * 发布一组事件，整组只获取一次发布锁、只唤醒一次订阅者
+     * @param type 事件类型
+     * @param transactions 变更后的交易
+     */
+    public void publish(TransactionEvent.Type type, List<TransactionResponse> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long previous;
+        long last;
+        publishLock.lock();
+        try {
+            previous = cursor.get();
+            last = previous;
+            for (TransactionResponse transaction : transactions) {
+                last++;
+                ring.setRelease((int) last & mask, new TransactionEvent(last, type, now, transaction));
+            }
+            cursor.set(last);
+        } finally {
+            publishLock.unlock();
+        }
+        published.increment(transactions.size());
+
+        for (Subscription subscription : subscriptions) {
+            if (previous + 1 - subscription.position > maxLag) {
+                if (policy == TransactionEventProperties.SlowSubscriberPolicy.DISCONNECT) {
+                    subscription.drop();
+                    continue;
+                }
+                subscription.lagging = true;
+            }
+            Thread waiter = subscription.waiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * 创建订阅
+     * @param userId 只接收该用户的事件，为空时不过滤
+     * @param type 只接收该交易类型的事件，为空时不过滤
+     * @param lastEventId 客户端收到的最后一个事件序号，不为空时从下一个事件续传
+     * @return 订阅，使用完毕后需要关闭
+     */
+    public Subscription subscribe(String userId, String type, Long lastEventId) {
+        String transactionType = null;
+        if (StringUtils.hasText(type)) {
+            try {
+                transactionType = TransactionServiceImpl.parseType(type).name();
+            } catch (IllegalArgumentException e) {
+                throw new InvalidTransactionException(e.getMessage());
+            }
+        }
+        long next = cursor.get() + 1;
+        long start = lastEventId == null || lastEventId < -1 || lastEventId + 1 > next ? next : lastEventId + 1;
+        // 续传时最多补发 maxLag 的一半，留出余量，避免刚恢复的订阅立刻因落后过多被断开
+        long oldest = Math.max(0, next - maxLag / 2);
+        long missed = 0;
+        if (start < oldest) {
+            missed = oldest - start;
+            start = oldest;
+            skipped.increment(missed);
+        }
+        Subscription subscription = new Subscription(String.valueOf(subscriberIds.incrementAndGet()),
+                StringUtils.hasText(userId) ? userId : null, transactionType, start, missed);
+        subscriptions.add(subscription);
+        log.info("Event subscriber {} connected - userId: {}, type: {}, from sequence: {}",
+                subscription.id, subscription.userId, transactionType, start);
+        return subscription;
+    }
+
+    @Override
+    public void close() {
+        subscriptions.forEach(Subscription::close);
+    }
+
+    /**
+     * 单个订阅者的读取位置。poll 只能由一个线程调用，close 可以在任意线程调用。
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private final String id;
+        private final String userId;
+        private final String type;
+        private final Gauge lag;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+        /**
+         * 下一个要读取的序号，只由读取线程修改
+         */
+        private volatile long position;
+        private volatile Thread waiter;
+        /**
+         * SKIP 策略下由发布方标记，读取方下次读取时跳到最新事件
+         */
+        private volatile boolean lagging;
+        private long missed;
+
+        private Subscription(String id, String userId, String type, long position, long missed) {
+            this.id = id;
+            this.userId = userId;
+            this.type = type;
+            this.position = position;
+            this.missed = missed;
+            this.lag = Gauge.builder("transaction.events.subscriber.lag", this, Subscription::lag)
+                    .description("Events published but not yet read by the subscriber")
+                    .tag("subscriber", id)
+                    .register(meterRegistry);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        /**
+         * 已发布但尚未读取的事件数，包括会被过滤掉的事件
+         */
+        public long lag() {
+            return Math.max(0, cursor.get() + 1 - position);
+        }
+
+        /**
+         * 等待下一个符合条件的事件
+         * @param timeout 最长等待时间
+         * @return 事件；超时或订阅已关闭时返回 null
+         */
+        public TransactionEvent poll(Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (!closed.get()) {
+                long last = cursor.get();
+                while (position <= last) {
+                    if (lagging) {
+                        lagging = false;
+                        onLagging(last);
+                    }
+                    long next = position;
+                    TransactionEvent event = ring.get((int) next & mask);
+                    if (event.getSequence() != next) {
+                        // 读取期间槽位已被覆盖
+                        last = cursor.get();
+                        if (!onLagging(last)) {
+                            return null;
+                        }
+                        continue;
+                    }
+                    position = next + 1;
+                    if (matches(event)) {
+                        return event;
+                    }
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                waiter = Thread.currentThread();
+                // 登记后再检查一次，避免错过登记前发布的事件
+                if (cursor.get() < position && !closed.get()) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                waiter = null;
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 等待至少一个事件，然后一并取出已到达的事件
+         * @param timeout 等待第一个事件的最长时间
+         * @param maxEvents 最多取出的事件数
+         * @return 事件列表；超时或订阅已关闭时为空
+         */
+        public List<TransactionEvent> poll(Duration timeout, int maxEvents) throws InterruptedException {
+            List<TransactionEvent> events = new ArrayList<>();
+            for (TransactionEvent event = poll(timeout); event != null; event = poll(Duration.ZERO)) {
+                events.add(event);
+                if (events.size() >= maxEvents) {
+                    break;
+                }
+            }
+            return events;
+        }
+
+        /**
+         * 返回上次调用以来跳过的事件数并清零，只由读取线程调用
+         */
+        public long takeMissed() {
+            long count = missed;
+            missed = 0;
+            return count;
+        }
+
+        /**
+         * 订阅关闭时执行，订阅已关闭时立即执行
+         */
+        public void onClose(Runnable listener) {
+            closeListeners.add(listener);
+            if (closed.get() && closeListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (shutdown()) {
+                log.info("Event subscriber {} disconnected", id);
+            }
+        }
+
+        private void drop() {
+            long behind = lag();
+            if (shutdown()) {
+                dropped.increment();
+                log.warn("Dropped slow event subscriber {} - lag: {}, max lag: {}", id, behind, maxLag);
+            }
+        }
+
+        /**
+         * 关闭订阅并通知监听方，只有第一次调用返回 true
+         */
+        private boolean shutdown() {
+            if (!closed.compareAndSet(false, true)) {
+                return false;
+            }
+            subscriptions.remove(this);
+            meterRegistry.remove(lag);
+            Thread thread = waiter;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+            for (Runnable listener : closeListeners) {
+                if (closeListeners.remove(listener)) {
+                    listener.run();
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 落后超过上限时按策略处理
+         * @return 可以继续读取时返回 true
+         */
+        private boolean onLagging(long last) {
+            if (policy == TransactionEventProperties.SlowSubscriberPolicy.DISCONNECT) {
+                drop();
+                return false;
+            }
+            long count = last - position;
+            missed += count;
+            skipped.increment(count);
+            position = last;
+            return true;
+        }
+
+        private boolean matches(TransactionEvent event) {
+            TransactionResponse transaction = event.getTransaction();
+            return (userId == null || userId.equals(transaction.getUserId()))
+                    && (type == null || Objects.equals(type, transaction.getType()));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package hsbc.hw.transaction.system.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.enums.ImportFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量解析导入文件，每次只读取一条记录，内存占用与文件大小无关。
+ * <p>
+ * NDJSON 每行一个 TransactionRequest；CSV 首行为表头，列名与 TransactionRequest 字段名一致，
+ * 支持双引号包裹的字段（可包含逗号、换行，内部双引号写作两个双引号）。
+ */
+class TransactionImportReader {
+
+    /**
+     * 解析出的一行记录。解析失败时 request 为空，error 为失败原因。
+     */
+    record Row(long line, TransactionRequest request, String error) {
+    }
+
+    private final BufferedReader reader;
+    private final ImportFormat format;
+    private final ObjectReader jsonReader;
+    private String[] header;
+    private long line;
+
+    TransactionImportReader(Reader reader, ImportFormat format, ObjectReader jsonReader) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        this.format = format;
+        this.jsonReader = jsonReader.forType(TransactionRequest.class);
+    }
+
+    /**
+     * 读取下一条记录，空行会被跳过。
+     * @return 下一条记录，文件结束时返回 null
+     */
+    Row next() {
+        try {
+            return format == ImportFormat.NDJSON ? nextJson() : nextCsv();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Row nextJson() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            line++;
+            if (text == null) {
+                return null;
+            }
+        } while (text.isBlank());
+        try {
+            return new Row(line, jsonReader.readValue(text), null);
+        } catch (JsonProcessingException e) {
+            return new Row(line, null, "JSON 格式错误: " + e.getOriginalMessage());
+        }
+    }
+
+    private Row nextCsv() throws IOException {
+        if (header == null) {
+            List<String> columns = readCsvRecord();
+            if (columns == null) {
+                return null;
+            }
+            // 去掉部分编辑器导出 CSV 时写入的 BOM
+            header = columns.stream().map(c -> c.replace("\uFEFF", "").trim()).toArray(String[]::new);
+        }
+        long startLine;
+        List<String> values;
+        do {
+            startLine = line + 1;
+            values = readCsvRecord();
+            if (values == null) {
+                return null;
+            }
+        } while (values.size() == 1 && values.get(0).isBlank());
+        try {
+            return new Row(startLine, toRequest(values), null);
+        } catch (IllegalArgumentException e) {
+            return new Row(startLine, null, e.getMessage());
+        }
+    }
+
+    private TransactionRequest toRequest(List<String> values) {
+        if (values.size() != header.length) {
+            throw new IllegalArgumentException("列数与表头不一致: 期望 " + header.length + " 列，实际 " + values.size() + " 列");
+        }
+        TransactionRequest request = new TransactionRequest();
+        for (int i = 0; i < header.length; i++) {
+            String value = values.get(i).isEmpty() ? null : values.get(i);
+            switch (header[i]) {
+                case "id" -> request.setId(value);
+                case "userId" -> request.setUserId(value);
+                case "amount" -> request.setAmount(value == null ? null : parseAmount(value));
+                case "type" -> request.setType(value);
+                case "transactionSummary" -> request.setTransactionSummary(value);
+                case "counterpartyName" -> request.setCounterpartyName(value);
+                case "counterpartyAccountNumber" -> request.setCounterpartyAccountNumber(value);
+                case "description" -> request.setDescription(value);
+                default -> {
+                    // 忽略无法识别的列，便于直接导入其他系统带额外字段的文件
+                }
+            }
+        }
+        return request;
+    }
+
+    private static BigDecimal parseAmount(String value) {
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的金额: " + value);
+        }
+    }
+
+    /**
+     * 读取一条 CSV 记录，引号内的换行属于字段内容。
+     * @return 字段列表，文件结束时返回 null
+     */
+    private List<String> readCsvRecord() throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        line++;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int peek = reader.read();
+                    if (peek == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (peek != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
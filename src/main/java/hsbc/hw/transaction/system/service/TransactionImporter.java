@@ -0,0 +1,93 @@
+package hsbc.hw.transaction.system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.ImportResult;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.enums.ImportFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 从 NDJSON / CSV 流批量导入交易。
+ * <p>
+ * 边解析边按固定批次写入，每批复用 {@link TransactionService#createTransactions} 的校验和重复 ID 规则，
+ * 内存中最多只保留一个批次，与文件大小无关。
+ */
+@Slf4j
+@Service
+public class TransactionImporter {
+
+    /**
+     * 每批写入的条数
+     */
+    static final int BATCH_SIZE = 1000;
+
+    private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
+
+    public TransactionImporter(TransactionService transactionService, ObjectMapper objectMapper) {
+        this.transactionService = transactionService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 导入交易文件
+     * @param reader 文件内容，由调用方负责关闭
+     * @param format 文件格式
+     * @param progressListener 每写入一批回调一次进度快照
+     * @return 最终结果，包含前 {@value ImportResult#MAX_ERRORS} 条错误明细
+     */
+    public ImportResult importTransactions(Reader reader, ImportFormat format, Consumer<ImportResult> progressListener) {
+        log.info("Importing transactions in {} format", format);
+        long start = System.nanoTime();
+        ImportResult result = new ImportResult();
+        TransactionImportReader rows = new TransactionImportReader(reader, format, objectMapper.reader());
+        List<TransactionRequest> batch = new ArrayList<>(BATCH_SIZE);
+        long[] lines = new long[BATCH_SIZE];
+
+        TransactionImportReader.Row row;
+        while ((row = rows.next()) != null) {
+            result.setProcessed(result.getProcessed() + 1);
+            if (row.error() != null) {
+                result.addError(row.line(), null, row.error());
+                continue;
+            }
+            lines[batch.size()] = row.line();
+            batch.add(row.request());
+            if (batch.size() == BATCH_SIZE) {
+                flush(batch, lines, result);
+                result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                log.info("Import progress - processed: {}, imported: {}, failed: {}",
+                        result.getProcessed(), result.getImported(), result.getFailed());
+                progressListener.accept(result.progress());
+            }
+        }
+        flush(batch, lines, result);
+        result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        result.setDone(true);
+        log.info("Import finished - processed: {}, imported: {}, failed: {}, elapsed: {} ms",
+                result.getProcessed(), result.getImported(), result.getFailed(), result.getElapsedMillis());
+        return result;
+    }
+
+    private void flush(List<TransactionRequest> batch, long[] lines, ImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        BatchCreateResponse response = transactionService.createTransactions(batch);
+        result.setImported(result.getImported() + response.getSucceeded());
+        for (BatchCreateResponse.ItemResult item : response.getResults()) {
+            if (!item.isSuccess()) {
+                result.addError(lines[item.getIndex()], item.getId(), item.getMessage());
+            }
+        }
+        batch.clear();
+    }
+}
@@ -1,11 +1,21 @@
 package hsbc.hw.transaction.system.service;
 
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.TransactionCursorPage;
 import hsbc.hw.transaction.system.dto.TransactionRequest;
 import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.dto.TransactionSearchRequest;
+import hsbc.hw.transaction.system.dto.TransactionStatusRequest;
+import hsbc.hw.transaction.system.dto.TransferRequest;
+import hsbc.hw.transaction.system.dto.TransferResponse;
+import hsbc.hw.transaction.system.dto.UserSummaryResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TransactionService {
     /**
@@ -15,6 +25,20 @@ public interface TransactionService {
      */
     TransactionResponse createTransaction(TransactionRequest request);
 
+    /**
+     * 批量创建交易记录，一次完成全部校验和写入，只失效一次缓存
+     * @param requests 交易请求列表
+     * @return 每条请求的处理结果
+     */
+    BatchCreateResponse createTransactions(List<TransactionRequest> requests);
+
+    /**
+     * 在两个用户之间转账：检查转出方余额后原子地写入一笔转出和一笔转入交易
+     * @param request 转账请求
+     * @return 两笔交易及转出方余额
+     */
+    TransferResponse transfer(TransferRequest request);
+
     /**
      * 根据ID获取交易记录
      * @param id 交易ID
@@ -36,6 +60,54 @@ public interface TransactionService {
      */
     Page<TransactionResponse> getAllTransactions(Pageable pageable);
 
+    /**
+     * 按类型、状态、用户、对方账号、金额范围和创建时间范围多条件查询，按创建时间倒序分页
+     * @param request 查询条件
+     * @param pageable 分页参数
+     * @return 分页的交易记录列表，总数为满足条件的交易数
+     */
+    Page<TransactionResponse> searchTransactions(TransactionSearchRequest request, Pageable pageable);
+
+    /**
+     * 按关键字搜索对方户名、交易摘要和描述，支持中文片段，按相关度分页
+     * @param keyword 关键字，多个词用空格分隔，每个词都要命中
+     * @param pageable 分页参数
+     * @return 分页的交易记录列表，总数为命中的交易数
+     */
+    Page<TransactionResponse> searchTransactionsByKeyword(String keyword, Pageable pageable);
+
+    /**
+     * 按创建时间倒序游标分页获取交易记录，每页代价与翻页深度无关
+     * @param after 上一页返回的游标，为空时从第一页开始
+     * @param size 每页条数
+     * @return 当前页数据及下一页游标
+     */
+    TransactionCursorPage getTransactionsAfter(String after, int size);
+
+    /**
+     * 流式导出交易记录，调用方负责关闭返回的流
+     * @param userId 用户ID，为空表示所有用户
+     * @param from 创建时间下限（含），可为空
+     * @param to 创建时间上限（含），可为空
+     * @return 惰性求值的交易流，不按用户过滤时按创建时间倒序
+     */
+    Stream<TransactionResponse> exportTransactions(String userId, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * 获取用户汇总，由增量维护的账本直接返回，不扫描交易记录
+     * @param userId 用户ID
+     * @return 余额、按类型和按月份的合计
+     */
+    UserSummaryResponse getUserSummary(String userId);
+
+    /**
+     * 获取用户单月汇总
+     * @param userId 用户ID
+     * @param month 月份
+     * @return 当月净发生额和按类型的合计
+     */
+    UserSummaryResponse.MonthlySummary getUserMonthlySummary(String userId, YearMonth month);
+
     /**
      * 更新交易记录
      * @param id 交易ID
@@ -44,6 +116,23 @@ public interface TransactionService {
      */
     TransactionResponse updateTransaction(String id, TransactionRequest request);
 
+    /**
+     * 修改交易状态。只允许状态机定义的流转，比较当前状态和写入是原子的，
+     * 并发的多个请求把同一笔交易从同一个状态改走时只有一个成功
+     * @param id 交易ID
+     * @param request 目标状态及可选的期望当前状态
+     * @return 交易响应对象
+     */
+    TransactionResponse updateTransactionStatus(String id, TransactionStatusRequest request);
+
+    /**
+     * 查询某个状态最新的交易，代价与返回条数成正比，按创建时间倒序
+     * @param status 交易状态
+     * @param size 最多返回的条数
+     * @return 交易记录列表
+     */
+    List<TransactionResponse> getTransactionsByStatus(String status, int size);
+
     /**
      * 删除交易记录
      * @param id 交易ID
@@ -1,14 +1,27 @@
 package hsbc.hw.transaction.system.service;
 
+import hsbc.hw.transaction.system.config.CacheConfig;
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.TransactionCursorPage;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
 import hsbc.hw.transaction.system.dto.TransactionRequest;
 import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.dto.TransactionSearchRequest;
+import hsbc.hw.transaction.system.dto.TransactionStatusRequest;
+import hsbc.hw.transaction.system.dto.TransferRequest;
+import hsbc.hw.transaction.system.dto.TransferResponse;
+import hsbc.hw.transaction.system.dto.UserSummaryResponse;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
 import hsbc.hw.transaction.system.enums.TransactionType;
 import hsbc.hw.transaction.system.exception.DuplicateTransactionException;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
 import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import hsbc.hw.transaction.system.exception.TransactionStateException;
 import hsbc.hw.transaction.system.model.Transaction;
-import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionQuery;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionSearchResult;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -16,52 +29,198 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class TransactionServiceImpl implements TransactionService {
 
-    private final InMemoryTransactionRepository repository;
+    /**
+     * 游标分页单页最大条数
+     */
+    static final int MAX_CURSOR_PAGE_SIZE = 1000;
 
-    public TransactionServiceImpl(InMemoryTransactionRepository repository) {
+    /**
+     * 关键字搜索的最大长度
+     */
+    static final int MAX_KEYWORD_LENGTH = 100;
+
+    /**
+     * 单次批量创建的最大条数
+     */
+    static final int MAX_BATCH_SIZE = 10000;
+
+    /**
+     * 账户锁分段数
+     */
+    static final int ACCOUNT_LOCK_STRIPES = 1024;
+
+    /**
+     * 转入交易ID的后缀
+     */
+    static final String CREDIT_ID_SUFFIX = "-in";
+
+    private final TransactionRepository repository;
+    private final TransactionCacheInvalidator cacheInvalidator;
+    private final UserLedger userLedger;
+    private final TransactionEventBus eventBus;
+    /**
+     * 所有改变用户余额的写操作都持有相关用户的锁，转账的余额检查和扣款之间不会插入其他写入
+     */
+    private final AccountLocks accountLocks = new AccountLocks(ACCOUNT_LOCK_STRIPES);
+
+    public TransactionServiceImpl(TransactionRepository repository,
+                                  TransactionCacheInvalidator cacheInvalidator,
+                                  UserLedger userLedger,
+                                  TransactionEventBus eventBus) {
         this.repository = repository;
+        this.cacheInvalidator = cacheInvalidator;
+        this.userLedger = userLedger;
+        this.eventBus = eventBus;
     }
 
     @Override
-    @CacheEvict(value = "transactions", allEntries = true)
     public TransactionResponse createTransaction(TransactionRequest request) {
-        validateTransactionRequest(request);
-        
-        // 检查交易ID是否已存在
-        if (repository.findById(request.getId()).isPresent()) {
-            throw new DuplicateTransactionException("交易 ID 已存在: " + request.getId());
-        }
+        validateCreateRequest(request);
+        log.info("Creating new transaction for user: {} with ID: {}", request.getUserId(), request.getId());
 
-        Transaction transaction = new Transaction();
-        transaction.setId(request.getId());
-        transaction.setUserId(request.getUserId());
-        transaction.setAmount(request.getAmount());
-        transaction.setType(TransactionType.valueOf(request.getType()));
-        transaction.setTransactionSummary(request.getTransactionSummary());
-        transaction.setCounterpartyName(request.getCounterpartyName());
-        transaction.setCounterpartyAccountNumber(request.getCounterpartyAccountNumber());
-        transaction.setDescription(request.getDescription());
-        
         // 设置创建时间和更新时间
+        Transaction transaction = toTransaction(request, LocalDateTime.now());
+
+        // 检查交易ID是否已存在和写入在仓库内原子完成，并发创建同一ID时只有一个成功
+        try (AccountLocks.Held ignored = accountLocks.lock(transaction.getUserId())) {
+            if (!repository.saveIfAbsent(transaction)) {
+                throw new DuplicateTransactionException("交易 ID 已存在: " + request.getId());
+            }
+            userLedger.onCreated(transaction);
+        }
+        cacheInvalidator.onCreated(transaction.getUserId());
+        TransactionResponse response = convertToResponse(transaction);
+        eventBus.publish(TransactionEvent.Type.CREATED, response);
+        return response;
+    }
+
+    @Override
+    public BatchCreateResponse createTransactions(List<TransactionRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new InvalidTransactionException("批量创建的交易列表不能为空");
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new InvalidTransactionException("单次批量创建不能超过 " + MAX_BATCH_SIZE + " 笔交易");
+        }
+        log.info("Creating {} transactions in batch", requests.size());
+
+        // 一次遍历完成校验和批内去重，整批共用同一个创建时间
         LocalDateTime now = LocalDateTime.now();
-        transaction.setCreatedAt(now);
-        transaction.setUpdatedAt(now);
+        Set<String> batchIds = new HashSet<>();
+        Set<String> affectedUserIds = new HashSet<>();
+        List<Transaction> accepted = new ArrayList<>();
+        BatchCreateResponse.ItemResult[] results = new BatchCreateResponse.ItemResult[requests.size()];
+        int[] acceptedIndexes = new int[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i);
+            String id = request == null ? null : request.getId();
+            try {
+                validateCreateRequest(request);
+                if (!batchIds.add(id)) {
+                    results[i] = BatchCreateResponse.ItemResult.failure(i, id, "批次内交易 ID 重复: " + id);
+                    continue;
+                }
+                acceptedIndexes[accepted.size()] = i;
+                accepted.add(toTransaction(request, now));
+                affectedUserIds.add(request.getUserId());
+            } catch (IllegalArgumentException | InvalidTransactionException e) {
+                results[i] = BatchCreateResponse.ItemResult.failure(i, id, e.getMessage());
+            }
+        }
 
-        Transaction savedTransaction = repository.save(transaction);
-        return convertToResponse(savedTransaction);
+        // 存量去重和写入在仓库内逐条原子完成，与并发创建同一ID的请求只有一个成功，只有写入成功的计入余额
+        List<Transaction> saved = List.of();
+        if (!accepted.isEmpty()) {
+            try (AccountLocks.Held ignored = accountLocks.lock(affectedUserIds)) {
+                saved = repository.saveAllIfAbsent(accepted);
+                userLedger.onBatchCreated(saved);
+            }
+            cacheInvalidator.onBatchCreated(affectedUserIds);
+        }
+        List<TransactionResponse> created = new ArrayList<>(saved.size());
+        for (int j = 0, k = 0; j < accepted.size(); j++) {
+            int index = acceptedIndexes[j];
+            Transaction transaction = accepted.get(j);
+            if (k < saved.size() && saved.get(k) == transaction) {
+                k++;
+                TransactionResponse response = convertToResponse(transaction);
+                created.add(response);
+                results[index] = BatchCreateResponse.ItemResult.success(index, response);
+            } else {
+                results[index] = BatchCreateResponse.ItemResult.failure(index, transaction.getId(),
+                        "交易 ID 已存在: " + transaction.getId());
+            }
+        }
+        eventBus.publish(TransactionEvent.Type.CREATED, created);
+
+        int failed = requests.size() - created.size();
+        log.info("Batch create finished - succeeded: {}, failed: {}", created.size(), failed);
+        return new BatchCreateResponse(requests.size(), created.size(), failed, Arrays.asList(results));
     }
 
     @Override
-    @Cacheable(value = "transactions", key = "#id", unless = "#result == null")
+    public TransferResponse transfer(TransferRequest request) {
+        validateTransferRequest(request);
+        String fromUserId = request.getFromUserId();
+        String toUserId = request.getToUserId();
+        log.info("Transferring {} from user: {} to user: {} with ID: {}",
+                request.getAmount(), fromUserId, toUserId, request.getId());
+
+        LocalDateTime now = LocalDateTime.now();
+        Transaction debit = toTransferLeg(request.getId(), fromUserId, toUserId, TransactionType.TRANSFER, request, now);
+        Transaction credit = toTransferLeg(request.getId() + CREDIT_ID_SUFFIX, toUserId, fromUserId,
+                TransactionType.TRANSFER_IN, request, now);
+
+        // 按分段顺序锁定双方账户，只与涉及相同账户的写操作互斥
+        BigDecimal fromBalance;
+        try (AccountLocks.Held ignored = accountLocks.lock(fromUserId, toUserId)) {
+            BigDecimal balance = userLedger.balance(fromUserId);
+            if (balance.compareTo(request.getAmount()) < 0) {
+                log.warn("Insufficient balance for transfer {} - user: {}, balance: {}",
+                        request.getId(), fromUserId, balance);
+                throw new InvalidTransactionException("余额不足: " + fromUserId);
+            }
+            // 两个ID都先检查，任何一个已存在时两笔都不写入；转入交易的ID后缀不接受客户端创建，
+            // 只有抢到转出交易ID的转账会写入对应的转入交易，检查之后不会被并发占用
+            if (repository.existsById(credit.getId())) {
+                throw new DuplicateTransactionException("交易 ID 已存在: " + credit.getId());
+            }
+            if (!repository.saveIfAbsent(debit)) {
+                throw new DuplicateTransactionException("交易 ID 已存在: " + debit.getId());
+            }
+            if (!repository.saveIfAbsent(credit)) {
+                throw new IllegalStateException("Credit leg " + credit.getId() + " appeared after the check");
+            }
+            userLedger.onCreated(debit);
+            userLedger.onCreated(credit);
+            fromBalance = balance.subtract(request.getAmount());
+        }
+        cacheInvalidator.onBatchCreated(List.of(fromUserId, toUserId));
+        TransactionResponse debitResponse = convertToResponse(debit);
+        TransactionResponse creditResponse = convertToResponse(credit);
+        eventBus.publish(TransactionEvent.Type.CREATED, List.of(debitResponse, creditResponse));
+        return new TransferResponse(debitResponse, creditResponse, fromBalance);
+    }
+
+    @Override
+    @Cacheable(value = CacheConfig.TRANSACTION_BY_ID, key = "#id", unless = "#result == null")
     public TransactionResponse getTransactionById(String id) {
         log.info("Fetching transaction by ID: {}", id);
         Transaction tx = repository.findById(id)
@@ -75,7 +234,7 @@ public class TransactionServiceImpl implements TransactionService {
     }
 
     @Override
-    @Cacheable(value = "transactions", key = "'user:' + #userId", unless = "#result == null")
+    @Cacheable(value = CacheConfig.TRANSACTIONS_BY_USER, key = "#userId", unless = "#result == null")
     public List<TransactionResponse> getTransactionsByUserId(String userId) {
         log.info("Fetching all transactions for user: {}", userId);
         List<Transaction> transactions = repository.findByUserId(userId);
@@ -86,58 +245,129 @@ public class TransactionServiceImpl implements TransactionService {
     }
 
     @Override
-    @CacheEvict(value = "transactions", allEntries = true, beforeInvocation = true)
     public TransactionResponse updateTransaction(String id, TransactionRequest request) {
         validateTransactionRequest(request);
-        
-        Transaction existingTransaction = repository.findById(id)
-                .orElseThrow(() -> new TransactionNotFoundException("交易不存在: " + id));
-
-        // 更新交易信息
-        existingTransaction.setUserId(request.getUserId());
-        existingTransaction.setAmount(request.getAmount());
-        existingTransaction.setType(TransactionType.valueOf(request.getType()));
-        existingTransaction.setTransactionSummary(request.getTransactionSummary());
-        existingTransaction.setCounterpartyName(request.getCounterpartyName());
-        existingTransaction.setCounterpartyAccountNumber(request.getCounterpartyAccountNumber());
-        existingTransaction.setDescription(request.getDescription());
-        
-        // 更新更新时间
-        existingTransaction.setUpdatedAt(LocalDateTime.now());
 
-        Transaction updatedTransaction = repository.save(existingTransaction);
-        return convertToResponse(updatedTransaction);
+        Transaction existingTransaction;
+        Transaction updatedTransaction;
+        while (true) {
+            Transaction candidate = repository.findById(id)
+                    .orElseThrow(() -> new TransactionNotFoundException("交易不存在: " + id));
+            try (AccountLocks.Held ignored = accountLocks.lock(candidate.getUserId(), request.getUserId())) {
+                // 加锁前交易可能已被并发改到其他用户，此时释放锁按新的用户重试
+                existingTransaction = repository.findById(id)
+                        .orElseThrow(() -> new TransactionNotFoundException("交易不存在: " + id));
+                if (!Objects.equals(existingTransaction.getUserId(), candidate.getUserId())) {
+                    continue;
+                }
+                // 状态由仓库在写入时取当前值，不会把并发的状态变更改回读取时的旧状态
+                updatedTransaction = repository.updateKeepingStatus(toUpdatedTransaction(existingTransaction, request))
+                        .orElseThrow(() -> new TransactionNotFoundException("交易不存在: " + id));
+                userLedger.onUpdated(existingTransaction, updatedTransaction);
+                break;
+            }
+        }
+        cacheInvalidator.onUpdated(id, existingTransaction.getUserId(), updatedTransaction.getUserId());
+        TransactionResponse response = convertToResponse(updatedTransaction);
+        eventBus.publish(TransactionEvent.Type.UPDATED, response);
+        return response;
+    }
+
+    /**
+     * 取消和失败的交易不计入余额，状态变化要调整账本，因此与其他写操作一样在账户锁内完成；
+     * 锁内仍用仓库的比较并交换写入，expectedStatus 与当前状态不符时拒绝
+     */
+    @Override
+    public TransactionResponse updateTransactionStatus(String id, TransactionStatusRequest request) {
+        if (request == null || !StringUtils.hasText(request.getStatus())) {
+            throw new InvalidTransactionException("目标状态不能为空");
+        }
+        TransactionStatus target = parseStatus(request.getStatus());
+        TransactionStatus expected = StringUtils.hasText(request.getExpectedStatus())
+                ? parseStatus(request.getExpectedStatus())
+                : null;
+        log.info("Changing status of transaction {} to {}", id, target);
+
+        Transaction existingTransaction;
+        Transaction updatedTransaction;
+        while (true) {
+            Transaction candidate = repository.findById(id)
+                    .orElseThrow(() -> new TransactionNotFoundException("未找到交易记录: " + id));
+            try (AccountLocks.Held ignored = accountLocks.lock(candidate.getUserId())) {
+                existingTransaction = repository.findById(id)
+                        .orElseThrow(() -> new TransactionNotFoundException("未找到交易记录: " + id));
+                if (!Objects.equals(existingTransaction.getUserId(), candidate.getUserId())) {
+                    continue;
+                }
+                TransactionStatus from = expected != null ? expected : existingTransaction.getStatus();
+                if (from == null || !from.canTransitionTo(target)) {
+                    throw new TransactionStateException("交易状态不能从 " + from + " 变为 " + target);
+                }
+                Transaction current = existingTransaction;
+                updatedTransaction = repository.compareAndSetStatus(id, from, target, LocalDateTime.now())
+                        .orElseThrow(() -> {
+                            log.warn("Status change of transaction {} lost the race - expected: {}, actual: {}",
+                                    id, from, current.getStatus());
+                            return new TransactionStateException("交易当前状态为 " + current.getStatus() + "，不是 " + from);
+                        });
+                userLedger.onUpdated(existingTransaction, updatedTransaction);
+                break;
+            }
+        }
+        cacheInvalidator.onUpdated(id, updatedTransaction.getUserId(), updatedTransaction.getUserId());
+        TransactionResponse response = convertToResponse(updatedTransaction);
+        eventBus.publish(TransactionEvent.Type.UPDATED, response);
+        return response;
+    }
+
+    @Override
+    public List<TransactionResponse> getTransactionsByStatus(String status, int size) {
+        if (size <= 0 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new InvalidTransactionException("每页条数必须在 1 到 " + MAX_CURSOR_PAGE_SIZE + " 之间");
+        }
+        TransactionStatus transactionStatus = parseStatus(status);
+        log.info("Fetching up to {} transactions with status: {}", size, transactionStatus);
+        try (Stream<Transaction> transactions = repository.streamByStatus(transactionStatus)) {
+            return transactions.limit(size)
+                    .map(TransactionResponse::from)
+                    .collect(Collectors.toList());
+        }
     }
 
     @Override
-    @CacheEvict(value = "transactions", allEntries = true, beforeInvocation = true)
     public void deleteTransaction(String id) {
         log.info("Deleting transaction with ID: {}", id);
-        if (!repository.findById(id).isPresent()) {
-            log.error("Transaction not found for deletion - ID: {}", id);
-            throw new TransactionNotFoundException("未找到交易记录: " + id);
+        Transaction existingTransaction;
+        while (true) {
+            Transaction candidate = repository.findById(id)
+                    .orElseThrow(() -> {
+                        log.error("Transaction not found for deletion - ID: {}", id);
+                        return new TransactionNotFoundException("未找到交易记录: " + id);
+                    });
+            try (AccountLocks.Held ignored = accountLocks.lock(candidate.getUserId())) {
+                existingTransaction = repository.findById(id)
+                        .orElseThrow(() -> new TransactionNotFoundException("未找到交易记录: " + id));
+                if (!Objects.equals(existingTransaction.getUserId(), candidate.getUserId())) {
+                    continue;
+                }
+                repository.deleteById(id);
+                userLedger.onDeleted(existingTransaction);
+                break;
+            }
         }
-        repository.deleteById(id);
+        cacheInvalidator.onDeleted(id, existingTransaction.getUserId());
+        eventBus.publish(TransactionEvent.Type.DELETED, convertToResponse(existingTransaction));
         log.info("Transaction deleted successfully - ID: {}", id);
     }
 
     @Override
-    @Cacheable(value = "transactions", key = "'page:' + #pageable.pageNumber + ':' + #pageable.pageSize", unless = "#result == null")
+    @Cacheable(value = CacheConfig.TRANSACTION_PAGES, key = "#pageable.pageNumber + ':' + #pageable.pageSize", unless = "#result == null")
     public Page<TransactionResponse> getAllTransactions(Pageable pageable) {
         log.info("Fetching all transactions with pagination - page: {}, size: {}", 
                 pageable.getPageNumber(), pageable.getPageSize());
         
-        List<Transaction> allTransactions = repository.findAll();
-        
-        // 按时间戳排序
-        allTransactions.sort((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()));
-        
-        // 计算分页
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), allTransactions.size());
-        
-        // 获取当前页的数据
-        List<Transaction> pageContent = allTransactions.subList(start, end);
+        // 仓库按创建时间倒序维护索引，这里只取当前页
+        List<Transaction> pageContent = repository.findPage(pageable.getOffset(), pageable.getPageSize());
         
         // 转换为响应对象
         List<TransactionResponse> responseList = pageContent.stream()
@@ -146,7 +376,92 @@ public class TransactionServiceImpl implements TransactionService {
         
         log.debug("Found {} transactions for page {}", responseList.size(), pageable.getPageNumber());
         
-        return new PageImpl<>(responseList, pageable, allTransactions.size());
+        return new PageImpl<>(responseList, pageable, repository.count());
+    }
+
+    @Override
+    public Page<TransactionResponse> searchTransactions(TransactionSearchRequest request, Pageable pageable) {
+        if (pageable.getPageSize() > MAX_CURSOR_PAGE_SIZE) {
+            throw new InvalidTransactionException("每页条数必须在 1 到 " + MAX_CURSOR_PAGE_SIZE + " 之间");
+        }
+        TransactionQuery query = toQuery(request);
+        TransactionSearchResult result = repository.search(query, pageable.getOffset(), pageable.getPageSize());
+        log.info("Searched transactions - query: {}, plan: {}, matched: {}", query, result.plan(), result.total());
+
+        List<TransactionResponse> responseList = result.transactions().stream()
+                .map(TransactionResponse::from)
+                .collect(Collectors.toList());
+        return new PageImpl<>(responseList, pageable, result.total());
+    }
+
+    @Override
+    public Page<TransactionResponse> searchTransactionsByKeyword(String keyword, Pageable pageable) {
+        if (!StringUtils.hasText(keyword) || keyword.length() > MAX_KEYWORD_LENGTH) {
+            throw new InvalidTransactionException("关键字不能为空且长度不能超过 " + MAX_KEYWORD_LENGTH);
+        }
+        if (pageable.getPageSize() > MAX_CURSOR_PAGE_SIZE) {
+            throw new InvalidTransactionException("每页条数必须在 1 到 " + MAX_CURSOR_PAGE_SIZE + " 之间");
+        }
+        TransactionSearchResult result = repository.searchText(keyword, pageable.getOffset(), pageable.getPageSize());
+        log.info("Searched transactions by keyword: {}, plan: {}, matched: {}", keyword, result.plan(), result.total());
+
+        List<TransactionResponse> responseList = result.transactions().stream()
+                .map(TransactionResponse::from)
+                .collect(Collectors.toList());
+        return new PageImpl<>(responseList, pageable, result.total());
+    }
+
+    @Override
+    public TransactionCursorPage getTransactionsAfter(String after, int size) {
+        if (size <= 0 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new InvalidTransactionException("每页条数必须在 1 到 " + MAX_CURSOR_PAGE_SIZE + " 之间");
+        }
+        TransactionCursor cursor = StringUtils.hasText(after) ? TransactionCursor.decode(after) : null;
+        log.info("Fetching transactions after cursor: {}, size: {}", cursor, size);
+
+        // 多取一条用于判断是否还有下一页
+        List<Transaction> transactions = cursor == null
+                ? repository.findAfter(null, null, size + 1)
+                : repository.findAfter(cursor.createdAt(), cursor.id(), size + 1);
+        boolean hasNext = transactions.size() > size;
+        List<Transaction> pageContent = hasNext ? transactions.subList(0, size) : transactions;
+
+        List<TransactionResponse> responseList = pageContent.stream()
+                .map(TransactionResponse::from)
+                .collect(Collectors.toList());
+        String nextCursor = hasNext
+                ? TransactionCursor.of(pageContent.get(pageContent.size() - 1)).encode()
+                : null;
+        return new TransactionCursorPage(responseList, nextCursor, hasNext);
+    }
+
+    @Override
+    public Stream<TransactionResponse> exportTransactions(String userId, LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidTransactionException("开始时间不能晚于结束时间");
+        }
+        log.info("Exporting transactions - user: {}, from: {}, to: {}", userId, from, to);
+        Stream<Transaction> transactions = StringUtils.hasText(userId)
+                ? repository.streamByUserId(userId).filter(t -> withinRange(t.getCreatedAt(), from, to))
+                : repository.streamByCreatedAt(from, to);
+        return transactions.map(TransactionResponse::from);
+    }
+
+    @Override
+    public UserSummaryResponse getUserSummary(String userId) {
+        log.info("Fetching summary for user: {}", userId);
+        return userLedger.summary(userId);
+    }
+
+    @Override
+    public UserSummaryResponse.MonthlySummary getUserMonthlySummary(String userId, YearMonth month) {
+        log.info("Fetching {} summary for user: {}", month, userId);
+        return userLedger.monthly(userId, month);
+    }
+
+    private static boolean withinRange(LocalDateTime createdAt, LocalDateTime from, LocalDateTime to) {
+        return (from == null || (createdAt != null && !createdAt.isBefore(from)))
+                && (to == null || (createdAt != null && !createdAt.isAfter(to)));
     }
 
     private TransactionResponse convertToResponse(Transaction transaction) {
@@ -155,6 +470,10 @@ public class TransactionServiceImpl implements TransactionService {
         response.setUserId(transaction.getUserId());
         response.setAmount(transaction.getAmount());
         response.setType(transaction.getType().name());
+        if (transaction.getStatus() != null) {
+            response.setStatus(transaction.getStatus().name());
+            response.setStatusName(transaction.getStatus().getLabel());
+        }
         response.setTransactionSummary(transaction.getTransactionSummary());
         response.setCounterpartyName(transaction.getCounterpartyName());
         response.setCounterpartyAccountNumber(transaction.getCounterpartyAccountNumber());
@@ -164,17 +483,158 @@ public class TransactionServiceImpl implements TransactionService {
         return response;
     }
 
-    private void validateTransactionRequest(TransactionRequest request) {
+    private Transaction toTransaction(TransactionRequest request, LocalDateTime now) {
+        Transaction transaction = new Transaction();
+        transaction.setId(request.getId());
+        transaction.setUserId(request.getUserId());
+        transaction.setAmount(request.getAmount());
+        transaction.setType(parseType(request.getType()));
+        transaction.setTransactionSummary(request.getTransactionSummary());
+        transaction.setCounterpartyName(request.getCounterpartyName());
+        transaction.setCounterpartyAccountNumber(request.getCounterpartyAccountNumber());
+        transaction.setDescription(request.getDescription());
+        transaction.setCreatedAt(now);
+        transaction.setUpdatedAt(now);
+        return transaction;
+    }
+
+    /**
+     * 构造新对象而不是原地修改，仓库需要旧值来维护用户索引
+     */
+    private Transaction toUpdatedTransaction(Transaction existingTransaction, TransactionRequest request) {
+        Transaction transaction = new Transaction();
+        transaction.setId(existingTransaction.getId());
+        transaction.setUserId(request.getUserId());
+        transaction.setAmount(request.getAmount());
+        transaction.setType(parseType(request.getType()));
+        // 状态只能通过状态接口修改，仓库写入时会换成当时的状态
+        transaction.setStatus(existingTransaction.getStatus());
+        transaction.setTransactionSummary(request.getTransactionSummary());
+        transaction.setCounterpartyName(request.getCounterpartyName());
+        transaction.setCounterpartyAccountNumber(request.getCounterpartyAccountNumber());
+        transaction.setDescription(request.getDescription());
+        transaction.setCreatedAt(existingTransaction.getCreatedAt());
+        // 更新更新时间
+        transaction.setUpdatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    /**
+     * 转账的一方，对方用户ID记录在对方账号字段
+     */
+    private Transaction toTransferLeg(String id, String userId, String counterpartyUserId, TransactionType type,
+                                      TransferRequest request, LocalDateTime now) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(request.getAmount());
+        transaction.setType(type);
+        // 转账在账户锁内同步完成，创建即为已完成
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        transaction.setTransactionSummary(type.getLabel());
+        transaction.setCounterpartyAccountNumber(counterpartyUserId);
+        transaction.setDescription(request.getDescription());
+        transaction.setCreatedAt(now);
+        transaction.setUpdatedAt(now);
+        return transaction;
+    }
+
+    static TransactionType parseType(String type) {
+        try {
+            return TransactionType.valueOf(type);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的交易类型: " + type);
+        }
+    }
+
+    private static TransactionQuery toQuery(TransactionSearchRequest request) {
+        if (request.getMinAmount() != null && request.getMaxAmount() != null
+                && request.getMinAmount().compareTo(request.getMaxAmount()) > 0) {
+            throw new InvalidTransactionException("最小金额不能大于最大金额");
+        }
+        if (request.getFrom() != null && request.getTo() != null && request.getFrom().isAfter(request.getTo())) {
+            throw new InvalidTransactionException("开始时间不能晚于结束时间");
+        }
+        TransactionType type = null;
+        if (StringUtils.hasText(request.getType())) {
+            try {
+                type = parseType(request.getType());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidTransactionException(e.getMessage());
+            }
+        }
+        return new TransactionQuery(
+                StringUtils.hasText(request.getUserId()) ? request.getUserId() : null,
+                type,
+                StringUtils.hasText(request.getStatus()) ? parseStatus(request.getStatus()) : null,
+                StringUtils.hasText(request.getCounterpartyAccountNumber()) ? request.getCounterpartyAccountNumber() : null,
+                request.getMinAmount(),
+                request.getMaxAmount(),
+                request.getFrom(),
+                request.getTo());
+    }
+
+    private static TransactionStatus parseStatus(String status) {
+        try {
+            return TransactionStatus.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTransactionException("无效的交易状态: " + status);
+        }
+    }
+
+    private void validateTransferRequest(TransferRequest request) {
+        if (request == null) {
+            throw new InvalidTransactionException("转账请求不能为空");
+        }
+        if (!StringUtils.hasText(request.getId())) {
+            throw new InvalidTransactionException("交易ID不能为空");
+        }
+        if (!StringUtils.hasText(request.getFromUserId()) || !StringUtils.hasText(request.getToUserId())) {
+            throw new InvalidTransactionException("转出和转入用户不能为空");
+        }
+        if (request.getFromUserId().equals(request.getToUserId())) {
+            throw new InvalidTransactionException("转出和转入用户不能相同");
+        }
+        validateNewId(request.getId());
+        if (request.getAmount() == null || request.getAmount().signum() <= 0) {
+            throw new InvalidTransactionException("转账金额必须大于0");
+        }
+    }
+
+    /**
+     * 创建交易的请求校验：在通用校验之外，新交易的ID不能占用转入交易的ID后缀
+     */
+    static void validateCreateRequest(TransactionRequest request) {
+        validateTransactionRequest(request);
+        validateNewId(request.getId());
+    }
+
+    /**
+     * 以 {@value #CREDIT_ID_SUFFIX} 结尾的ID保留给转账的转入交易，客户端创建的交易和转账都不能使用
+     */
+    private static void validateNewId(String id) {
+        if (id.endsWith(CREDIT_ID_SUFFIX)) {
+            throw new InvalidTransactionException("交易ID不能以 " + CREDIT_ID_SUFFIX + " 结尾，该后缀保留给转账的转入交易");
+        }
+    }
+
+    /**
+     * 创建和更新共用的请求校验，异步写入在入队前调用，使校验错误仍在请求线程上返回
+     */
+    static void validateTransactionRequest(TransactionRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("交易请求不能为空");
+        }
         if (!StringUtils.hasText(request.getId())) {
             log.error("Transaction ID is required");
             throw new IllegalArgumentException("交易ID不能为空");
         }
 
-        log.info("Creating new transaction for user: {} with ID: {}", request.getUserId(), request.getId());
-
         if (request.getType() == null) {
             log.error("Transaction type is required");
             throw new IllegalArgumentException("交易类型不能为空");
         }
+        // 批量创建在校验通过后才登记批内ID，无效类型必须在这里拒绝，不能占用后面同ID的有效交易
+        parseType(request.getType());
     }
 } 
\ No newline at end of file
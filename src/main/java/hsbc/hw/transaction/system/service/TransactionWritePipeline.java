@@ -0,0 +1,208 @@
+package hsbc.hw.transaction.system.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hsbc.hw.transaction.system.config.TransactionWriteProperties;
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.dto.WriteStatusResponse;
+import hsbc.hw.transaction.system.exception.DuplicateTransactionException;
+import hsbc.hw.transaction.system.exception.WriteQueueFullException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建交易的写入通道。
+ * <p>
+ * SYNC 模式直接调用 {@link TransactionService#createTransaction}。ASYNC 模式下请求线程只做校验后放入有界队列，
+ * 单个写线程每次取出最多 maxBatchSize 个请求，通过 {@link TransactionService#createTransactions} 一次写入：
+ * 重复 ID 检查、账户锁和账本更新与批量创建一致，整批只失效一次缓存、只等待一次日志落盘，然后逐个完成调用方的 future。
+ * 调用方可以等待结果（组确认），也可以只拿受理凭证，稍后通过 {@link #status} 查询。
+ */
+@Slf4j
+public class TransactionWritePipeline implements AutoCloseable {
+
+    private final TransactionService transactionService;
+    private final TransactionWriteProperties properties;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final Cache<String, WriteStatusResponse> statuses;
+    private final DistributionSummary batchSizes;
+    private final Timer latency;
+    private volatile boolean running;
+    private Thread writer;
+
+    public TransactionWritePipeline(TransactionService transactionService, TransactionWriteProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.transactionService = transactionService;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.maxBatchSize = Math.min(properties.getMaxBatchSize(), TransactionServiceImpl.MAX_BATCH_SIZE);
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(properties.getQueueCapacity() * 2L)
+                .expireAfterWrite(properties.getStatusRetention())
+                .build();
+        Gauge.builder("transaction.write.queue.depth", queue, BlockingQueue::size)
+                .description("Create requests waiting for the batch writer")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("transaction.write.batch.size")
+                .description("Create requests written per batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.latency = Timer.builder("transaction.write.latency")
+                .description("Time from enqueue to batch write completion")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public boolean isAsync() {
+        return properties.getMode() == TransactionWriteProperties.WriteMode.ASYNC;
+    }
+
+    public void start() {
+        if (!isAsync()) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofPlatform().name("transaction-writer").daemon().start(this::run);
+        log.info("Async write pipeline started - queue capacity: {}, max batch size: {}",
+                properties.getQueueCapacity(), maxBatchSize);
+    }
+
+    /**
+     * 创建交易并等待写入完成
+     * @param request 交易请求
+     * @return 交易响应对象
+     */
+    public TransactionResponse create(TransactionRequest request) {
+        if (!isAsync()) {
+            return transactionService.createTransaction(request);
+        }
+        try {
+            return submit(request).future().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 校验后入队，不等待写入；队列满时最多等待 enqueueTimeout
+     * @param request 交易请求
+     * @return 受理凭证，可通过 {@link #status} 查询处理状态
+     * @throws WriteQueueFullException 等待超时队列仍然满
+     */
+    public PendingWrite submit(TransactionRequest request) {
+        if (!isAsync()) {
+            throw new IllegalStateException("Async write mode is not enabled");
+        }
+        TransactionServiceImpl.validateCreateRequest(request);
+        PendingWrite write = new PendingWrite(UUID.randomUUID().toString(), request, new CompletableFuture<>(),
+                System.nanoTime());
+        statuses.put(write.ticket(), new WriteStatusResponse(write.ticket(), request.getId(),
+                WriteStatusResponse.Status.PENDING, null, null));
+        boolean enqueued;
+        try {
+            enqueued = queue.offer(write, properties.getEnqueueTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            statuses.invalidate(write.ticket());
+            throw new IllegalStateException("Interrupted while enqueuing transaction " + request.getId(), e);
+        }
+        if (!enqueued) {
+            statuses.invalidate(write.ticket());
+            throw new WriteQueueFullException("写入队列已满，请稍后重试");
+        }
+        return write;
+    }
+
+    public Optional<WriteStatusResponse> status(String ticket) {
+        return Optional.ofNullable(statuses.getIfPresent(ticket));
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        // 停止后继续处理已入队的请求
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingWrite> batch) {
+        List<TransactionRequest> requests = new ArrayList<>(batch.size());
+        batch.forEach(w -> requests.add(w.request()));
+        try {
+            BatchCreateResponse response = transactionService.createTransactions(requests);
+            for (BatchCreateResponse.ItemResult item : response.getResults()) {
+                PendingWrite write = batch.get(item.getIndex());
+                if (item.isSuccess()) {
+                    complete(write, item.getTransaction());
+                } else {
+                    // 入队前已完成校验，批量写入中的失败只可能是重复 ID
+                    fail(write, new DuplicateTransactionException(item.getMessage()));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Batch write of {} transactions failed", batch.size(), e);
+            batch.forEach(w -> fail(w, e));
+        }
+        batchSizes.record(batch.size());
+    }
+
+    private void complete(PendingWrite write, TransactionResponse transaction) {
+        statuses.put(write.ticket(), new WriteStatusResponse(write.ticket(), transaction.getId(),
+                WriteStatusResponse.Status.COMPLETED, null, transaction));
+        latency.record(System.nanoTime() - write.enqueuedAt(), TimeUnit.NANOSECONDS);
+        write.future().complete(transaction);
+    }
+
+    private void fail(PendingWrite write, RuntimeException e) {
+        statuses.put(write.ticket(), new WriteStatusResponse(write.ticket(), write.request().getId(),
+                WriteStatusResponse.Status.FAILED, e.getMessage(), null));
+        latency.record(System.nanoTime() - write.enqueuedAt(), TimeUnit.NANOSECONDS);
+        write.future().completeExceptionally(e);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join();
+        log.info("Async write pipeline stopped");
+    }
+
+    public record PendingWrite(String ticket, TransactionRequest request,
+                               CompletableFuture<TransactionResponse> future, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,197 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.dto.UserSummaryResponse;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 按用户增量维护的交易汇总。
+ * <p>
+ * 每次创建、更新和删除只调整受影响用户的余额、类型合计和月份合计，
+ * 查询汇总的代价与用户交易数无关。启动时从仓库重建一次，覆盖持久化日志或映射文件恢复的数据。
+ * 已取消和失败的交易不计入（见 {@link hsbc.hw.transaction.system.enums.TransactionStatus#isEffective}），
+ * 状态变化通过 {@link #onUpdated} 撤销旧值、计入新值。
+ */
+@Slf4j
+@Component
+public class UserLedger {
+
+    private final TransactionRepository repository;
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+    public UserLedger(TransactionRepository repository) {
+        this.repository = repository;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        long start = System.nanoTime();
+        accounts.clear();
+        try (Stream<Transaction> transactions = repository.streamByCreatedAt(null, null)) {
+            transactions.forEach(t -> apply(t, 1));
+        }
+        log.info("User ledger rebuilt for {} users in {} ms", accounts.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public void onCreated(Transaction transaction) {
+        apply(transaction, 1);
+    }
+
+    public void onBatchCreated(List<Transaction> transactions) {
+        transactions.forEach(t -> apply(t, 1));
+    }
+
+    public void onUpdated(Transaction previous, Transaction transaction) {
+        apply(previous, -1);
+        apply(transaction, 1);
+    }
+
+    public void onDeleted(Transaction transaction) {
+        apply(transaction, -1);
+    }
+
+    /**
+     * @param userId 用户ID
+     * @return 用户余额，没有交易的用户为0
+     */
+    public BigDecimal balance(String userId) {
+        Account account = accounts.get(userId);
+        return account == null ? BigDecimal.ZERO : account.balance();
+    }
+
+    /**
+     * @param userId 用户ID
+     * @return 用户汇总，没有交易的用户余额为0
+     */
+    public UserSummaryResponse summary(String userId) {
+        Account account = accounts.get(userId);
+        if (account == null) {
+            return new UserSummaryResponse(userId, BigDecimal.ZERO, 0, new EnumMap<>(TransactionType.class), List.of());
+        }
+        return account.summary(userId);
+    }
+
+    /**
+     * @param userId 用户ID
+     * @param month 月份
+     * @return 用户当月汇总，没有交易时各项为0
+     */
+    public UserSummaryResponse.MonthlySummary monthly(String userId, YearMonth month) {
+        Account account = accounts.get(userId);
+        UserSummaryResponse.MonthlySummary summary = account == null ? null : account.monthly(month);
+        return summary != null ? summary
+                : new UserSummaryResponse.MonthlySummary(month, BigDecimal.ZERO, 0, new EnumMap<>(TransactionType.class));
+    }
+
+    /**
+     * @param direction 1 表示计入，-1 表示撤销
+     */
+    private void apply(Transaction transaction, int direction) {
+        if (transaction == null || transaction.getUserId() == null || transaction.getType() == null
+                || (transaction.getStatus() != null && !transaction.getStatus().isEffective())) {
+            return;
+        }
+        // 在 compute 中修改，账户清空时与移除原子完成，不会丢失并发计入的交易
+        accounts.compute(transaction.getUserId(), (userId, account) -> {
+            if (account == null) {
+                account = new Account();
+            }
+            account.apply(transaction, direction);
+            return account.isEmpty() ? null : account;
+        });
+    }
+
+    /**
+     * 单个用户的汇总，读写都在自身监视器内完成，临界区只有内存计算
+     */
+    private static final class Account {
+
+        private final Bucket total = new Bucket();
+        private final TreeMap<YearMonth, Bucket> months = new TreeMap<>();
+
+        synchronized void apply(Transaction transaction, int direction) {
+            TransactionType type = transaction.getType();
+            BigDecimal amount = transaction.getAmount() == null ? BigDecimal.ZERO : transaction.getAmount();
+            total.apply(type, amount, direction);
+            if (transaction.getCreatedAt() != null) {
+                YearMonth month = YearMonth.from(transaction.getCreatedAt());
+                Bucket bucket = months.computeIfAbsent(month, m -> new Bucket());
+                bucket.apply(type, amount, direction);
+                if (bucket.count == 0) {
+                    months.remove(month);
+                }
+            }
+        }
+
+        synchronized BigDecimal balance() {
+            return total.net;
+        }
+
+        synchronized boolean isEmpty() {
+            return total.count == 0;
+        }
+
+        synchronized UserSummaryResponse summary(String userId) {
+            List<UserSummaryResponse.MonthlySummary> monthly = new ArrayList<>(months.size());
+            months.forEach((month, bucket) -> monthly.add(bucket.toMonthly(month)));
+            return new UserSummaryResponse(userId, total.net, total.count, total.typeTotals(), monthly);
+        }
+
+        synchronized UserSummaryResponse.MonthlySummary monthly(YearMonth month) {
+            Bucket bucket = months.get(month);
+            return bucket == null ? null : bucket.toMonthly(month);
+        }
+    }
+
+    /**
+     * 一组交易的笔数、净发生额和按类型合计
+     */
+    private static final class Bucket {
+
+        private long count;
+        private BigDecimal net = BigDecimal.ZERO;
+        private final EnumMap<TransactionType, long[]> typeCounts = new EnumMap<>(TransactionType.class);
+        private final EnumMap<TransactionType, BigDecimal> typeAmounts = new EnumMap<>(TransactionType.class);
+
+        void apply(TransactionType type, BigDecimal amount, int direction) {
+            BigDecimal delta = direction > 0 ? amount : amount.negate();
+            count += direction;
+            net = net.add(type.signed(delta));
+            long[] typeCount = typeCounts.computeIfAbsent(type, t -> new long[1]);
+            typeCount[0] += direction;
+            if (typeCount[0] == 0) {
+                typeCounts.remove(type);
+                typeAmounts.remove(type);
+            } else {
+                typeAmounts.merge(type, delta, BigDecimal::add);
+            }
+        }
+
+        Map<TransactionType, UserSummaryResponse.TypeTotal> typeTotals() {
+            Map<TransactionType, UserSummaryResponse.TypeTotal> totals = new EnumMap<>(TransactionType.class);
+            typeCounts.forEach((type, typeCount) ->
+                    totals.put(type, new UserSummaryResponse.TypeTotal(typeCount[0], typeAmounts.get(type))));
+            return totals;
+        }
+
+        UserSummaryResponse.MonthlySummary toMonthly(YearMonth month) {
+            return new UserSummaryResponse.MonthlySummary(month, net, count, typeTotals());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import hsbc.hw.transaction.system.TransactionManagerApplication;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 集群模式的路由开销和数据分布。
+ * <p>
+ * 在同一进程内启动 1 个节点和 N 个节点的集群（端口随机选取，节点间通过 loopback HTTP 转发），
+ * 经随机节点批量写入相同的初始数据后，固定数量的并发客户端按固定种子向随机节点发送混合请求：
+ * 创建 40%，按用户查询 30%，按ID查询 20%，用户汇总 10%。统计吞吐量、p50/p99 和各节点保存的交易数。
+ * 所有节点共享同一个 JVM 和 CPU，结果反映的是转发开销而不是多机扩展能力。
+ * 参数为节点数、并发客户端数和持续秒数，运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.ClusterBenchmark -Dexec.args="3 32 20"
+ * </pre>
+ */
+public class ClusterBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int SEED_TRANSACTIONS = 20_000;
+    private static final int SEED_BATCH = 1_000;
+    private static final long SEED = 42;
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        System.out.printf("nodes=%d clients=%d duration=%ds cpus=%d%n", nodes, clients, seconds,
+                Runtime.getRuntime().availableProcessors());
+        for (int count : new int[]{1, nodes}) {
+            run(count, clients, seconds);
+        }
+    }
+
+    private static void run(int nodeCount, int clients, int seconds) throws Exception {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add("http://localhost:" + freePort());
+        }
+        List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+        try {
+            for (String node : nodes) {
+                // 集群配置以命令行参数传入，默认属性会被 application.yml 中的同名配置覆盖
+                contexts.add(new SpringApplicationBuilder(TransactionManagerApplication.class)
+                        .properties("server.port=" + URI.create(node).getPort(), "logging.level.root=WARN",
+                                "logging.level.hsbc.hw.transaction.system.service.TransactionServiceImpl=OFF")
+                        .run("--transaction.cluster.enabled=" + (nodeCount > 1),
+                                "--transaction.cluster.self=" + node,
+                                "--transaction.cluster.secret=benchmark",
+                                "--transaction.cluster.nodes=" + String.join(",", nodes)));
+            }
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            long seedStart = System.nanoTime();
+            seed(client, nodes);
+            long seedNanos = System.nanoTime() - seedStart;
+
+            AtomicLong ids = new AtomicLong();
+            load(client, nodes, clients, Math.max(3, seconds / 4), ids);
+            Load result = load(client, nodes, clients, seconds, ids);
+            String sizes = contexts.stream()
+                    .map(context -> String.valueOf(context.getBean(TransactionRepository.class).count()))
+                    .collect(Collectors.joining("/"));
+            System.out.printf("nodes=%d seed=%.0fms throughput=%.0f req/s p50=%.2fms p99=%.2fms errors=%d "
+                            + "stored=%s%n", nodeCount, seedNanos / 1e6, result.latencies.length / (double) seconds,
+                    percentile(result.latencies, 0.5), percentile(result.latencies, 0.99), result.errors, sizes);
+        } finally {
+            contexts.forEach(ConfigurableApplicationContext::close);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * 初始数据分批经随机节点写入，由接收的节点按用户拆分转发
+     */
+    private static void seed(HttpClient client, List<String> nodes) throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int start = 0; start < SEED_TRANSACTIONS; start += SEED_BATCH) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = start; i < start + SEED_BATCH; i++) {
+                body.append(i == start ? "" : ",").append(transactionJson("seed-" + i, "user" + (i % USERS)));
+            }
+            body.append(']');
+            HttpResponse<String> response = client.send(post(nodes.get(random.nextInt(nodes.size())),
+                    "/api/transactions/batch", body.toString()), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("seed returned " + response.statusCode() + ": " + response.body());
+            }
+        }
+    }
+
+    private record Load(long[] latencies, long errors) {
+    }
+
+    private static Load load(HttpClient client, List<String> nodes, int clients, int seconds, AtomicLong ids)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> perClient = new ArrayList<>();
+        int[] counts = new int[clients];
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                long[] latencies = new long[1 << 16];
+                perClient.add(latencies);
+                int index = c;
+                SplittableRandom random = new SplittableRandom(SEED + c);
+                executor.submit(() -> {
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = nextRequest(random, nodes, ids);
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request,
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        if (count < latencies.length) {
+                            latencies[count++] = System.nanoTime() - start;
+                        }
+                    }
+                    counts[index] = count;
+                });
+            }
+        }
+        long[] all = new long[Arrays.stream(counts).sum()];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(perClient.get(c), 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        return new Load(all, errors.get());
+    }
+
+    private static HttpRequest nextRequest(SplittableRandom random, List<String> nodes, AtomicLong ids) {
+        String node = nodes.get(random.nextInt(nodes.size()));
+        String user = "user" + random.nextInt(USERS);
+        int kind = random.nextInt(10);
+        if (kind < 4) {
+            return post(node, "/api/transactions", transactionJson("load-" + ids.incrementAndGet(), user));
+        }
+        String path = kind < 7 ? "/api/transactions/user/" + user
+                : kind < 9 ? "/api/transactions/seed-" + random.nextInt(SEED_TRANSACTIONS)
+                : "/api/users/" + user + "/summary";
+        return HttpRequest.newBuilder(URI.create(node + path)).build();
+    }
+
+    private static HttpRequest post(String node, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(node + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String transactionJson(String id, String userId) {
+        return "{\"id\":\"" + id + "\",\"userId\":\"" + userId + "\",\"amount\":10,\"type\":\"DEPOSIT\","
+                + "\"description\":\"cluster benchmark\"}";
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+}
@@ -0,0 +1,140 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.ImportResult;
+import hsbc.hw.transaction.system.enums.ImportFormat;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.service.TransactionCacheInvalidator;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionImporter;
+import hsbc.hw.transaction.system.service.TransactionServiceImpl;
+import hsbc.hw.transaction.system.service.UserLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * 批量导入吞吐量与峰值堆内存基准。
+ * <p>
+ * 数据由 {@link GeneratedReader} 边读边生成，不占用额外内存，测得的峰值堆只包含解析、批次和存储本身。
+ * 运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.ImportBenchmark -Dexec.args="1000000 csv"
+ * </pre>
+ */
+public class ImportBenchmark {
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        ImportFormat format = args.length > 1 ? ImportFormat.resolve(args[1]) : ImportFormat.NDJSON;
+
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository();
+        TransactionServiceImpl service = new TransactionServiceImpl(repository,
+                new TransactionCacheInvalidator(new NoOpCacheManager()), new UserLedger(repository),
+                new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry()));
+        TransactionImporter importer = new TransactionImporter(service, new ObjectMapper());
+
+        System.gc();
+        long baseline = usedHeap();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        ImportResult result = importer.importTransactions(new GeneratedReader(rows, format), format, progress -> { });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long peak = peakHeap();
+        System.gc();
+        long retained = usedHeap();
+
+        System.out.printf("format=%s rows=%d imported=%d failed=%d%n",
+                format, result.getProcessed(), result.getImported(), result.getFailed());
+        System.out.printf("elapsed=%.2fs throughput=%.0f rows/s%n", seconds, result.getProcessed() / seconds);
+        System.out.printf("heap baseline=%dMB peak=%dMB retained=%dMB (store %.0f bytes/row)%n",
+                baseline >> 20, peak >> 20, retained >> 20, (double) (retained - baseline) / rows);
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * 按需生成导入文件内容的 Reader。
+     */
+    static class GeneratedReader extends Reader {
+        private static final TransactionType[] TYPES = TransactionType.values();
+
+        private final int rows;
+        private final ImportFormat format;
+        private final StringBuilder buffer = new StringBuilder();
+        private int position;
+        private int next;
+
+        GeneratedReader(int rows, ImportFormat format) {
+            this.rows = rows;
+            this.format = format;
+            if (format == ImportFormat.CSV) {
+                buffer.append("id,userId,amount,type,transactionSummary,counterpartyName,counterpartyAccountNumber,description\n");
+            }
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            while (position == buffer.length()) {
+                if (next == rows) {
+                    return -1;
+                }
+                buffer.setLength(0);
+                position = 0;
+                appendRow(next++);
+            }
+            int count = Math.min(len, buffer.length() - position);
+            buffer.getChars(position, position + count, cbuf, off);
+            position += count;
+            return count;
+        }
+
+        private void appendRow(int i) {
+            String type = TYPES[i % TYPES.length].name();
+            String userId = "user" + (i % 10000);
+            String amount = (i % 100000) + ".25";
+            if (format == ImportFormat.CSV) {
+                buffer.append("import-").append(i).append(',').append(userId).append(',').append(amount).append(',')
+                        .append(type).append(",批量导入,\"张三, 李四\",6222000000").append(i % 1000)
+                        .append(",第").append(i).append("笔\n");
+            } else {
+                buffer.append("{\"id\":\"import-").append(i).append("\",\"userId\":\"").append(userId)
+                        .append("\",\"amount\":").append(amount).append(",\"type\":\"").append(type)
+                        .append("\",\"transactionSummary\":\"批量导入\",\"counterpartyName\":\"张三\"")
+                        .append(",\"counterpartyAccountNumber\":\"6222000000").append(i % 1000)
+                        .append("\",\"description\":\"第").append(i).append("笔\"}\n");
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
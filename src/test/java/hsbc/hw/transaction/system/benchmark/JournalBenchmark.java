@@ -0,0 +1,147 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import hsbc.hw.transaction.system.config.TransactionJournalProperties;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import hsbc.hw.transaction.system.repository.journal.FileTransactionJournal;
+import hsbc.hw.transaction.system.repository.journal.FsyncPolicy;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * 持久化日志的写入延迟与恢复时间基准。
+ * <p>
+ * 依次测量不开启日志以及 ALWAYS、INTERVAL、NEVER 三种落盘策略下 save 的平均延迟、p99 和吞吐量，
+ * 然后分别测量从纯日志和从快照加日志尾部恢复的耗时。运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.JournalBenchmark -Dexec.args="200000 8"
+ * </pre>
+ */
+public class JournalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        System.out.printf("operations=%d threads=%d%n", operations, threads);
+        // 第一轮用于 JIT 预热
+        measureWrites("warmup", TransactionJournal.NONE, operations, threads);
+        measureWrites("none", TransactionJournal.NONE, operations, threads);
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            Path directory = Files.createTempDirectory("journal-bench");
+            FileTransactionJournal journal = new FileTransactionJournal(properties(directory, policy));
+            measureWrites(policy.name(), journal, operations, threads);
+            journal.close();
+            delete(directory);
+        }
+
+        measureRecovery(operations, false);
+        measureRecovery(operations, true);
+    }
+
+    private static void measureWrites(String name, TransactionJournal journal, int operations, int threads)
+            throws InterruptedException {
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(journal);
+        repository.open();
+        long[] latencies = new long[operations];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            executor.submit(() -> {
+                for (int i = offset; i < operations; i += threads) {
+                    Transaction transaction = createTransaction(i);
+                    long begin = System.nanoTime();
+                    repository.save(transaction);
+                    latencies[i] = System.nanoTime() - begin;
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        double average = Arrays.stream(latencies).average().orElse(0) / 1000;
+        System.out.printf("%-8s avg=%8.1fus p50=%8.1fus p99=%8.1fus throughput=%9.0f ops/s%n", name, average,
+                latencies[operations / 2] / 1000.0, latencies[(int) (operations * 0.99)] / 1000.0,
+                operations / seconds);
+    }
+
+    private static void measureRecovery(int operations, boolean withSnapshot) throws IOException {
+        Path directory = Files.createTempDirectory("journal-bench");
+        FileTransactionJournal journal = new FileTransactionJournal(properties(directory, FsyncPolicy.NEVER));
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(journal);
+        repository.open();
+        for (int i = 0; i < operations; i++) {
+            repository.save(createTransaction(i));
+        }
+        if (withSnapshot) {
+            journal.snapshot();
+            // 快照之后再写入 10% 的数据作为日志尾部
+            for (int i = 0; i < operations / 10; i++) {
+                repository.save(createTransaction(operations + i));
+            }
+        }
+        journal.close();
+        long bytes;
+        try (Stream<Path> files = Files.list(directory)) {
+            bytes = files.mapToLong(f -> f.toFile().length()).sum();
+        }
+
+        long start = System.nanoTime();
+        FileTransactionJournal reopened = new FileTransactionJournal(properties(directory, FsyncPolicy.NEVER));
+        InMemoryTransactionRepository restored = new InMemoryTransactionRepository(reopened);
+        restored.open();
+        double millis = (System.nanoTime() - start) / 1e6;
+        reopened.close();
+        System.out.printf("recovery %-15s transactions=%d files=%dMB elapsed=%.0fms%n",
+                withSnapshot ? "snapshot+tail" : "log only", restored.count(), bytes >> 20, millis);
+        delete(directory);
+    }
+
+    private static TransactionJournalProperties properties(Path directory, FsyncPolicy policy) {
+        TransactionJournalProperties properties = new TransactionJournalProperties();
+        properties.setDirectory(directory);
+        properties.setFsyncPolicy(policy);
+        properties.setSnapshotInterval(Duration.ZERO);
+        return properties;
+    }
+
+    private static Transaction createTransaction(int i) {
+        Transaction transaction = new Transaction();
+        transaction.setId("bench-" + i);
+        transaction.setUserId("user" + (i % 10000));
+        transaction.setAmount(new BigDecimal((i % 100000) + ".25"));
+        transaction.setType(TransactionType.values()[i % TransactionType.values().length]);
+        transaction.setTransactionSummary("转账");
+        transaction.setCounterpartyName("张三");
+        transaction.setCounterpartyAccountNumber("6222000000" + (i % 1000));
+        transaction.setDescription("第" + i + "笔");
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(transaction.getCreatedAt());
+        return transaction;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+}
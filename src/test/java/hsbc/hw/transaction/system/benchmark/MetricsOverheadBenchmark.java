@@ -0,0 +1,198 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import hsbc.hw.transaction.system.TransactionManagerApplication;
+import hsbc.hw.transaction.system.config.CacheConfig;
+import hsbc.hw.transaction.system.config.MethodTimers;
+import hsbc.hw.transaction.system.config.TransactionCacheProperties;
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.service.TransactionCacheInvalidator;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionService;
+import hsbc.hw.transaction.system.service.TransactionServiceImpl;
+import hsbc.hw.transaction.system.service.UserLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.prometheus.client.CollectorRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * 服务层和仓库层耗时统计的开销。
+ * <p>
+ * 分别构建不带统计和带 {@link MethodTimers} 代理的两套服务和仓库，预先写入相同的交易，
+ * 交替运行相同的混合负载（80% 按ID查询、10% 分页查询、10% 创建），比较每次操作的平均耗时；
+ * 另外单独比较仓库 findById 这种最短的操作，作为单次记录开销的上限；
+ * 最后同时启动关闭和开启统计的两个应用，比较经过 HTTP 的完整请求耗时。运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.MetricsOverheadBenchmark -Dexec.args="100000 5"
+ * </pre>
+ */
+public class MetricsOverheadBenchmark {
+
+    private static final int HTTP_SEED = 10_000;
+
+    private static int sequence;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        // 每次调用都会输出日志，测量时关闭
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+
+        System.out.printf("rows=%d cpus=%d duration=%ds%n", rows,
+                Runtime.getRuntime().availableProcessors(), seconds);
+        System.out.printf("%-22s %12s %12s %10s%n", "workload", "plain(ns)", "timed(ns)", "overhead");
+        inProcess(rows, seconds);
+        // 进程内的两套存储不再引用，避免影响下面两个应用的 GC
+        System.gc();
+        http(seconds);
+    }
+
+    private static void inProcess(int rows, int seconds) {
+        CollectorRegistry collectorRegistry = new CollectorRegistry();
+        TransactionRepository plainRepository = new InMemoryTransactionRepository();
+        TransactionService plainService = service(plainRepository);
+        TransactionRepository timedRepository = MethodTimers.wrap(new InMemoryTransactionRepository(),
+                TransactionRepository.class,
+                MethodTimers.histogram("transaction_repository_seconds", "repository").register(collectorRegistry));
+        TransactionService timedService = MethodTimers.wrap(service(timedRepository), TransactionService.class,
+                MethodTimers.histogram("transaction_service_seconds", "service").register(collectorRegistry));
+        for (int i = 0; i < rows; i++) {
+            plainService.createTransaction(request("load-" + i, i));
+            timedService.createTransaction(request("load-" + i, i));
+        }
+        compare("service mix", seconds, 1000, mix(plainService, rows, "plain"), mix(timedService, rows, "timed"));
+        compare("repository findById", seconds, 1000,
+                i -> plainRepository.findById("load-" + (i % rows)),
+                i -> timedRepository.findById("load-" + (i % rows)));
+    }
+
+    /**
+     * 同时启动关闭和开启方法耗时统计的两个应用，用单个客户端交替请求，比较每个 HTTP 请求的耗时
+     */
+    private static void http(int seconds) {
+        ConfigurableApplicationContext plain = start(false);
+        ConfigurableApplicationContext timed = start(true);
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            compare("http get/page", seconds, 50, request(client, plain), request(client, timed));
+        } finally {
+            plain.close();
+            timed.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean methodTimers) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionManagerApplication.class)
+                .properties("server.port=0",
+                        "logging.level.root=WARN",
+                        "transaction.metrics.method-timers=" + methodTimers)
+                .run();
+        TransactionService service = context.getBean(TransactionService.class);
+        for (int i = 0; i < HTTP_SEED; i++) {
+            service.createTransaction(request("seed-" + i, i));
+        }
+        return context;
+    }
+
+    /**
+     * 80% 按ID查询、20% 分页查询，都是只读请求，两个应用的数据保持一致
+     */
+    private static IntConsumer request(HttpClient client, ConfigurableApplicationContext context) {
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                + "/api/transactions";
+        return i -> {
+            String path = i % 5 == 0 ? "?page=" + (i % 50) + "&size=20" : "/seed-" + (i * 31 % HTTP_SEED);
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException(path + " returned " + response.statusCode());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static IntConsumer mix(TransactionService service, int rows, String prefix) {
+        return i -> {
+            switch (i % 10) {
+                case 0 -> service.createTransaction(request(prefix + "-" + i, i));
+                case 1 -> service.getAllTransactions(PageRequest.of(i % 50, 20));
+                default -> service.getTransactionById("load-" + (i * 31 % rows));
+            }
+        };
+    }
+
+    /**
+     * 两种配置每 slice 次操作交替一次，GC 和调度抖动平均分摊到两边，取每段耗时的中位数；
+     * 前 1/4 的时间作为预热不计入结果
+     */
+    private static void compare(String name, int seconds, int slice, IntConsumer plain, IntConsumer timed) {
+        List<List<Long>> slices = List.of(new ArrayList<>(), new ArrayList<>());
+        IntConsumer[] operations = {plain, timed};
+        long warmup = System.nanoTime() + seconds * 250_000_000L;
+        long deadline = warmup + seconds * 2_000_000_000L;
+        for (int n = 0; System.nanoTime() < deadline; n++) {
+            int side = n & 1;
+            long start = System.nanoTime();
+            for (int i = 0; i < slice; i++) {
+                operations[side].accept(sequence++ & Integer.MAX_VALUE);
+            }
+            if (start > warmup) {
+                slices.get(side).add(System.nanoTime() - start);
+            }
+        }
+        double plainNanos = median(slices.get(0)) / slice;
+        double timedNanos = median(slices.get(1)) / slice;
+        System.out.printf("%-22s %12.0f %12.0f %9.1f%%%n", name, plainNanos, timedNanos,
+                (timedNanos - plainNanos) * 100 / plainNanos);
+    }
+
+    private static double median(List<Long> values) {
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    private static TransactionService service(TransactionRepository repository) {
+        return new TransactionServiceImpl(repository,
+                new TransactionCacheInvalidator(new CacheConfig().cacheManager(new TransactionCacheProperties())),
+                new UserLedger(repository), new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry()));
+    }
+
+    private static TransactionRequest request(String id, int i) {
+        TransactionRequest request = new TransactionRequest();
+        request.setId(id);
+        request.setUserId("user" + (i % 1000));
+        request.setAmount(BigDecimal.valueOf(i % 100_000 + 1, 2));
+        request.setType("DEPOSIT");
+        request.setTransactionSummary("工资");
+        request.setCounterpartyName("张三");
+        request.setCounterpartyAccountNumber("6222" + (i % 50_000));
+        request.setDescription("第" + i + "笔");
+        return request;
+    }
+}
@@ -0,0 +1,218 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import hsbc.hw.transaction.system.TransactionManagerApplication;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.service.ReplicationFollower;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 主从复制的写入开销和复制延迟。
+ * <p>
+ * 先只启动一个不复制的节点，再启动主节点和一个从节点（端口随机选取，从节点通过 loopback HTTP 拉取变更日志），
+ * 固定数量的并发客户端持续向主节点创建交易。复制模式下另有一个探测线程每隔 10ms 向主节点创建一笔交易，
+ * 收到响应后轮询从节点的仓库直到这笔交易出现，统计从确认写入到从节点可读的延迟 p50/p99/max，
+ * 同时采样从节点的 transaction.replication.lag 指标。两个节点共享同一个 JVM 和 CPU。
+ * 参数为并发客户端数和持续秒数，运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.ReplicationBenchmark -Dexec.args="16 20"
+ * </pre>
+ */
+public class ReplicationBenchmark {
+
+    private static final int USERS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        System.out.printf("clients=%d duration=%ds cpus=%d%n", clients, seconds,
+                Runtime.getRuntime().availableProcessors());
+        // 第一轮只用于 JVM 预热，不输出结果
+        run(false, clients, Math.max(3, seconds / 4), false);
+        run(false, clients, seconds, true);
+        run(true, clients, seconds, true);
+    }
+
+    private static void run(boolean replicated, int clients, int seconds, boolean report) throws Exception {
+        String primary = "http://localhost:" + freePort();
+        List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+        try {
+            contexts.add(start(primary, "--transaction.replication.role=" + (replicated ? "primary" : "none")));
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            long[] lagSamples = new long[4096];
+            long[] visibility = new long[1 << 16];
+            int[] counts = new int[2];
+            TransactionRepository replica = null;
+            Runnable probe = null;
+            Runnable sampler = null;
+            if (replicated) {
+                ConfigurableApplicationContext context = start("http://localhost:" + freePort(),
+                        "--transaction.replication.role=replica", "--transaction.replication.primary=" + primary);
+                contexts.add(context);
+                ReplicationFollower follower = context.getBean(ReplicationFollower.class);
+                TransactionRepository repository = context.getBean(TransactionRepository.class);
+                replica = repository;
+                probe = () -> probe(client, primary, repository, visibility, counts);
+                sampler = () -> sample(follower, lagSamples, counts);
+            }
+
+            AtomicLong ids = new AtomicLong();
+            load(client, primary, clients, Math.max(3, seconds / 4), ids, null, null);
+            long created = load(client, primary, clients, seconds, ids, probe, sampler);
+
+            if (!report) {
+                return;
+            }
+            if (!replicated) {
+                System.out.printf("replication=off throughput=%.0f writes/s%n", created / (double) seconds);
+                return;
+            }
+            long[] lags = Arrays.copyOf(visibility, counts[0]);
+            Arrays.sort(lags);
+            long maxLag = Arrays.stream(lagSamples, 0, counts[1]).max().orElse(0);
+            long primaryCount = contexts.get(0).getBean(TransactionRepository.class).count();
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (replica.count() != primaryCount && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            System.out.printf("replication=on throughput=%.0f writes/s visibility p50=%.2fms p99=%.2fms "
+                            + "max=%.2fms probes=%d max lag=%d changes primary=%d replica=%d%n",
+                    created / (double) seconds, percentile(lags, 0.5), percentile(lags, 0.99),
+                    lags.length == 0 ? 0 : lags[lags.length - 1] / 1e6, lags.length, maxLag, primaryCount,
+                    replica.count());
+        } finally {
+            for (int i = contexts.size() - 1; i >= 0; i--) {
+                contexts.get(i).close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String node, String... args) {
+        // 复制配置以命令行参数传入，默认属性会被 application.yml 中的同名配置覆盖
+        return new SpringApplicationBuilder(TransactionManagerApplication.class)
+                .properties("server.port=" + URI.create(node).getPort(), "logging.level.root=WARN",
+                        "logging.level.hsbc.hw.transaction.system.service.TransactionServiceImpl=OFF")
+                .run(args);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * 固定数量的客户端持续创建交易，返回成功创建的笔数
+     */
+    private static long load(HttpClient client, String primary, int clients, int seconds, AtomicLong ids,
+                             Runnable probe, Runnable sampler) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong created = new AtomicLong();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long id = ids.incrementAndGet();
+                        try {
+                            if (create(client, primary, "load-" + id, "user" + id % USERS)) {
+                                created.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            // 计入失败，不影响其他客户端
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+            for (Runnable task : new Runnable[]{probe, sampler}) {
+                if (task != null) {
+                    executor.submit(() -> {
+                        while (System.nanoTime() < deadline) {
+                            task.run();
+                        }
+                    });
+                }
+            }
+        }
+        return created.get();
+    }
+
+    /**
+     * 创建一笔交易，确认后轮询从节点直到可读
+     */
+    private static void probe(HttpClient client, String primary, TransactionRepository replica,
+                              long[] visibility, int[] counts) {
+        String id = "probe-" + counts[0];
+        try {
+            Thread.sleep(10);
+            if (!create(client, primary, id, "probe")) {
+                return;
+            }
+            long acknowledged = System.nanoTime();
+            while (!replica.existsById(id)) {
+                Thread.onSpinWait();
+                if (System.nanoTime() - acknowledged > Duration.ofSeconds(10).toNanos()) {
+                    return;
+                }
+            }
+            if (counts[0] < visibility.length) {
+                visibility[counts[0]++] = System.nanoTime() - acknowledged;
+            }
+        } catch (IOException e) {
+            // 探测失败时跳过本次
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sample(ReplicationFollower follower, long[] samples, int[] counts) {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (counts[1] < samples.length) {
+            samples[counts[1]++] = follower.lag();
+        }
+    }
+
+    private static boolean create(HttpClient client, String node, String id, String userId)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/api/transactions"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"id\":\"" + id + "\",\"userId\":\"" + userId
+                        + "\",\"amount\":10,\"type\":\"DEPOSIT\",\"description\":\"replication benchmark\"}"))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 300;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+}
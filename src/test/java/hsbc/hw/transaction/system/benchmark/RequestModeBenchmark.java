@@ -0,0 +1,186 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import hsbc.hw.transaction.system.TransactionManagerApplication;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 平台线程与虚拟线程两种请求执行模式的对比。
+ * <p>
+ * 在同一进程内先后以两种模式启动应用，用固定数量的并发客户端按读写混合比例持续请求，
+ * 统计吞吐量、p50、p99 和失败（含限流拒绝）的请求数。开启 journal 参数时使用 ALWAYS 落盘策略，
+ * 写请求会阻塞在 fsync 上，用于观察阻塞型请求下两种模式的差异。运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.RequestModeBenchmark -Dexec.args="400 20 true"
+ * </pre>
+ */
+public class RequestModeBenchmark {
+
+    private static final int SEED = 10_000;
+    private static final int USERS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        boolean journal = args.length <= 2 || Boolean.parseBoolean(args[2]);
+
+        System.out.printf("clients=%d duration=%ds journal=%s%n", clients, seconds, journal);
+        for (boolean virtualThreads : new boolean[] {false, true}) {
+            run(virtualThreads, clients, seconds, journal);
+        }
+    }
+
+    private static void run(boolean virtualThreads, int clients, int seconds, boolean journal) throws Exception {
+        Path directory = Files.createTempDirectory("request-mode");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionManagerApplication.class)
+                .properties("server.port=0",
+                        "logging.level.root=WARN",
+                        "transaction.concurrency.virtual-threads=" + virtualThreads,
+                        "transaction.journal.enabled=" + journal,
+                        "transaction.journal.fsync-policy=ALWAYS",
+                        "transaction.journal.directory=" + directory)
+                .run();
+        try {
+            TransactionRepository repository = context.getBean(TransactionRepository.class);
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < SEED; i++) {
+                repository.save(createTransaction("seed-" + i, now.minusSeconds(i)));
+            }
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/api/transactions";
+
+            // 预热后正式测量
+            load(baseUrl, clients, Math.max(3, seconds / 4));
+            Result result = load(baseUrl, clients, seconds);
+            System.out.printf("%-8s requests=%d throughput=%.0f req/s p50=%.1fms p99=%.1fms errors=%d%n",
+                    virtualThreads ? "virtual" : "platform", result.latencies.length,
+                    result.latencies.length / (double) seconds, percentile(result.latencies, 0.5),
+                    percentile(result.latencies, 0.99), result.errors);
+        } finally {
+            context.close();
+            try (var files = Files.walk(directory)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(f -> f.toFile().delete());
+            }
+        }
+    }
+
+    private record Result(long[] latencies, long errors) {
+    }
+
+    private static Result load(String baseUrl, int clients, int seconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicInteger sequence = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> perClient = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                long[] latencies = new long[1 << 16];
+                perClient.add(latencies);
+                counts.add(0);
+                int index = c;
+                executor.submit(() -> {
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = nextRequest(baseUrl, sequence);
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        if (count < latencies.length) {
+                            latencies[count++] = System.nanoTime() - start;
+                        }
+                    }
+                    synchronized (counts) {
+                        counts.set(index, count);
+                    }
+                });
+            }
+        }
+        int total = counts.stream().mapToInt(Integer::intValue).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(perClient.get(c), 0, all, offset, counts.get(c));
+            offset += counts.get(c);
+        }
+        Arrays.sort(all);
+        return new Result(all, errors.get());
+    }
+
+    /**
+     * 20% 创建交易，其余为按ID、按用户和分页查询
+     */
+    private static HttpRequest nextRequest(String baseUrl, AtomicInteger sequence) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int dice = random.nextInt(10);
+        if (dice < 2) {
+            String body = String.format("{\"id\":\"load-%d\",\"userId\":\"user%d\",\"amount\":100.00,\"type\":\"DEPOSIT\","
+                    + "\"transactionSummary\":\"存款\"}", sequence.incrementAndGet(), random.nextInt(USERS));
+            return HttpRequest.newBuilder(URI.create(baseUrl))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+        String path = switch (dice) {
+            case 2, 3, 4 -> "/seed-" + random.nextInt(SEED);
+            case 5, 6, 7 -> "/user/user" + random.nextInt(USERS);
+            default -> "?page=" + random.nextInt(50) + "&size=20";
+        };
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1e6;
+    }
+
+    private static Transaction createTransaction(String id, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId("user" + ThreadLocalRandom.current().nextInt(USERS));
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setTransactionSummary("存款");
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+}
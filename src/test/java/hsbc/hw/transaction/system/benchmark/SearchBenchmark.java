@@ -0,0 +1,120 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionQuery;
+import hsbc.hw.transaction.system.repository.TransactionSearchResult;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 多条件查询基准。
+ * <p>
+ * 向堆内存储写入给定条数的交易，对几种典型的条件组合分别测量查询计划选出的驱动索引、
+ * 第一页（20 条）的 p50/p99 耗时，并与对全部数据逐条过滤的全表扫描对比。运行方式（100 万条需要约 2GB 堆）：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.SearchBenchmark -Dexec.args="1000000 200"
+ * </pre>
+ */
+public class SearchBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int USERS = 100_000;
+    private static final int COUNTERPARTIES = 50_000;
+    private static final int DAYS = 365;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository();
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            repository.save(createTransaction(i, now, random));
+        }
+        System.out.printf("rows=%d load=%.1fs%n", rows, (System.nanoTime() - start) / 1e9);
+
+        Map<String, TransactionQuery> queries = new LinkedHashMap<>();
+        queries.put("type+counterparty", new TransactionQuery(null, TransactionType.PAYMENT, null,
+                counterparty(123), null, null, null, null));
+        queries.put("user+amount", new TransactionQuery("user42", null, null, null,
+                new BigDecimal("100.00"), new BigDecimal("5000.00"), null, null));
+        queries.put("amount narrow", new TransactionQuery(null, null, null, null,
+                new BigDecimal("1000.00"), new BigDecimal("1001.00"), null, null));
+        queries.put("type+one day", new TransactionQuery(null, TransactionType.DEPOSIT, null, null,
+                null, null, now.minusDays(30), now.minusDays(29)));
+        queries.put("status+type", new TransactionQuery(null, TransactionType.WITHDRAWAL, TransactionStatus.FAILED,
+                null, null, null, null, null));
+        queries.put("type+amount wide", new TransactionQuery(null, TransactionType.EXPENSE, null, null,
+                new BigDecimal("9000.00"), null, null, null));
+
+        System.out.printf("%-18s %-28s %8s %9s %9s %10s%n", "query", "plan", "total", "p50(ms)", "p99(ms)", "scan(ms)");
+        for (Map.Entry<String, TransactionQuery> entry : queries.entrySet()) {
+            run(repository, entry.getKey(), entry.getValue(), iterations);
+        }
+    }
+
+    private static void run(InMemoryTransactionRepository repository, String name, TransactionQuery query,
+                            int iterations) {
+        long[] nanos = new long[iterations];
+        TransactionSearchResult result = null;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            result = repository.search(query, 0, PAGE_SIZE);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        // 全表扫描的基准：按创建时间倒序遍历全部交易，逐条过滤
+        int scans = Math.max(1, iterations / 20);
+        long scanStart = System.nanoTime();
+        long scanned = 0;
+        for (int i = 0; i < scans; i++) {
+            scanned = repository.streamByCreatedAt(null, null).filter(query::matches).count();
+        }
+        double scanMillis = (System.nanoTime() - scanStart) / 1e6 / scans;
+        if (scanned != result.total()) {
+            throw new IllegalStateException(name + ": total " + result.total() + " != scan " + scanned);
+        }
+        System.out.printf("%-18s %-28s %8d %9.3f %9.3f %10.1f%n", name, result.plan(), result.total(),
+                nanos[iterations / 2] / 1e6, nanos[iterations * 99 / 100] / 1e6, scanMillis);
+    }
+
+    private static Transaction createTransaction(int i, LocalDateTime now, Random random) {
+        Transaction transaction = new Transaction();
+        transaction.setId("bench-" + i);
+        transaction.setUserId("user" + random.nextInt(USERS));
+        transaction.setAmount(BigDecimal.valueOf(random.nextInt(1, 1_000_000), 2));
+        transaction.setType(TransactionType.values()[random.nextInt(TransactionType.values().length)]);
+        // 大部分交易已完成，少量处于其他状态
+        int status = random.nextInt(100);
+        transaction.setStatus(status < 95 ? TransactionStatus.COMPLETED
+                : TransactionStatus.values()[status % TransactionStatus.values().length]);
+        transaction.setTransactionSummary("转账");
+        transaction.setCounterpartyName("张三");
+        transaction.setCounterpartyAccountNumber(counterparty(random.nextInt(COUNTERPARTIES)));
+        transaction.setDescription("第" + i + "笔");
+        LocalDateTime createdAt = now.minusSeconds(random.nextLong(DAYS * 86_400L));
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+
+    private static String counterparty(int n) {
+        return "6222" + String.format("%08d", n);
+    }
+}
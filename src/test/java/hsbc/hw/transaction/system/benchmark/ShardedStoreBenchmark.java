@@ -0,0 +1,120 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.ShardedTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import hsbc.hw.transaction.system.repository.TransactionQuery;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ * 分片存储的扫描和分页延迟随并行度的变化。
+ * <p>
+ * 先用单个堆内存储测量基准，再把同一批交易写入 16 个分片的 {@link ShardedTransactionRepository}，
+ * 并行查询线程数依次取 1、2、4……直到给定上限，测量全量读取、没有选择性索引的多条件查询（需要遍历大量候选）、
+ * 关键字搜索和深分页的 p50/p99。并行度超过可用核数后不会再有收益，需要在核数足够的机器上运行，运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.ShardedStoreBenchmark -Dexec.args="500000 16 20"
+ * </pre>
+ */
+public class ShardedStoreBenchmark {
+
+    private static final int SHARDS = 16;
+    private static final int PAGE_SIZE = 20;
+    private static final int USERS = 100_000;
+    private static final int DAYS = 365;
+    private static final String[] NAMES = {"张伟", "王芳", "李娜", "刘洋", "陈静", "杨磊"};
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int maxParallelism = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Random random = new Random(42);
+        List<Transaction> transactions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            transactions.add(createTransaction(i, now, random));
+        }
+        System.out.printf("rows=%d shards=%d cpus=%d iterations=%d%n", rows, SHARDS,
+                Runtime.getRuntime().availableProcessors(), iterations);
+
+        // 金额下限很低，驱动索引几乎覆盖全部交易，每个分片都要逐条过滤
+        TransactionQuery wide = new TransactionQuery(null, TransactionType.EXPENSE, null, null,
+                new BigDecimal("1.00"), null, null, null);
+        Map<String, ToLongFunction<TransactionRepository>> operations = new LinkedHashMap<>();
+        operations.put("findAll", repository -> repository.findAll().size());
+        operations.put("search(wide)", repository -> repository.search(wide, 0, PAGE_SIZE).total());
+        operations.put("searchText", repository -> repository.searchText("张", 0, PAGE_SIZE).total());
+        operations.put("page(offset 10000)", repository -> repository.findPage(10_000, PAGE_SIZE).size());
+
+        System.out.printf("%-12s %-20s %10s %10s %12s%n", "store", "operation", "p50(ms)", "p99(ms)", "result");
+        InMemoryTransactionRepository heap = new InMemoryTransactionRepository(TransactionJournal.NONE, true);
+        heap.saveAll(transactions);
+        run("heap", heap, operations, iterations);
+        heap = null;
+
+        for (int parallelism = 1; parallelism <= maxParallelism; parallelism *= 2) {
+            try (ShardedTransactionRepository sharded = new ShardedTransactionRepository(SHARDS, parallelism,
+                    TransactionJournal.NONE, true)) {
+                sharded.saveAll(transactions);
+                run("sharded/" + parallelism, sharded, operations, iterations);
+            }
+            System.gc();
+        }
+    }
+
+    private static void run(String store, TransactionRepository repository,
+                            Map<String, ToLongFunction<TransactionRepository>> operations, int iterations) {
+        for (Map.Entry<String, ToLongFunction<TransactionRepository>> operation : operations.entrySet()) {
+            // 预热
+            for (int i = 0; i < Math.max(3, iterations / 5); i++) {
+                operation.getValue().applyAsLong(repository);
+            }
+            long[] nanos = new long[iterations];
+            long result = 0;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                result = operation.getValue().applyAsLong(repository);
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("%-12s %-20s %10.2f %10.2f %12d%n", store, operation.getKey(),
+                    nanos[iterations / 2] / 1e6, nanos[Math.min(iterations - 1, iterations * 99 / 100)] / 1e6, result);
+        }
+    }
+
+    private static Transaction createTransaction(int i, LocalDateTime now, Random random) {
+        Transaction transaction = new Transaction();
+        transaction.setId("bench-" + i);
+        transaction.setUserId("user" + random.nextInt(USERS));
+        transaction.setAmount(BigDecimal.valueOf(random.nextInt(1, 1_000_000), 2));
+        transaction.setType(TransactionType.values()[random.nextInt(TransactionType.values().length)]);
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        transaction.setTransactionSummary("转账");
+        transaction.setCounterpartyName(NAMES[random.nextInt(NAMES.length)]);
+        transaction.setCounterpartyAccountNumber("6222" + String.format("%08d", random.nextInt(50_000)));
+        transaction.setDescription("第" + i + "笔");
+        LocalDateTime createdAt = now.minusSeconds(random.nextLong(DAYS * 86_400L));
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+}
@@ -0,0 +1,102 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.repository.mapped.MappedTransactionRepository;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * 堆内存储与内存映射存储的堆占用对比。
+ * <p>
+ * 分别向两种存储写入相同的数据，Full GC 后统计常驻堆内存，并测量按ID查询和分页查询的耗时。
+ * 运行方式（可用 -Xmx512m 验证 512MB 容器能容纳的数据量）：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.StoreFootprintBenchmark -Dexec.args="1000000 both"
+ * </pre>
+ */
+public class StoreFootprintBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String store = args.length > 1 ? args[1] : "both";
+
+        if (!store.equals("mapped")) {
+            measure("heap", rows, new InMemoryTransactionRepository());
+        }
+        if (!store.equals("heap")) {
+            Path directory = Files.createTempDirectory("mapped-store");
+            MappedTransactionRepository repository = new MappedTransactionRepository(directory, 64 << 20);
+            measure("mapped", rows, repository);
+            repository.close();
+            long fileBytes;
+            try (Stream<Path> files = Files.list(directory)) {
+                fileBytes = files.mapToLong(f -> f.toFile().length()).sum();
+            }
+            System.out.printf("mapped files=%dMB%n", fileBytes >> 20);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+            }
+        }
+    }
+
+    private static void measure(String name, int rows, TransactionRepository repository) {
+        System.gc();
+        long baseline = usedHeap();
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < rows; i++) {
+            repository.save(createTransaction(i, now.minusNanos((rows - i) * 1_000_000L)));
+        }
+        double loadSeconds = (System.nanoTime() - start) / 1e9;
+        System.gc();
+        long retained = usedHeap() - baseline;
+
+        int lookups = 200_000;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            repository.findById("bench-" + random.nextInt(rows));
+        }
+        double lookupMicros = (System.nanoTime() - start) / 1e3 / lookups;
+        int pages = 2_000;
+        start = System.nanoTime();
+        for (int i = 0; i < pages; i++) {
+            repository.findPage((long) random.nextInt(1000) * 20, 20);
+        }
+        double pageMicros = (System.nanoTime() - start) / 1e3 / pages;
+
+        System.out.printf("%-6s rows=%d load=%.1fs retained heap=%dMB (%.0f bytes/row) findById=%.2fus findPage=%.1fus%n",
+                name, repository.count(), loadSeconds, retained >> 20, (double) retained / rows, lookupMicros, pageMicros);
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static Transaction createTransaction(int i, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId("bench-" + i);
+        transaction.setUserId("user" + (i % 10000));
+        transaction.setAmount(new BigDecimal((i % 100000) + ".25"));
+        transaction.setType(TransactionType.values()[i % TransactionType.values().length]);
+        transaction.setTransactionSummary("转账");
+        transaction.setCounterpartyName("张三");
+        transaction.setCounterpartyAccountNumber("6222000000" + (i % 1000));
+        transaction.setDescription("第" + i + "笔");
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+}
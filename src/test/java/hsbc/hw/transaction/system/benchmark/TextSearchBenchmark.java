@@ -0,0 +1,135 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import hsbc.hw.transaction.system.repository.TransactionSearchResult;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 关键字搜索基准。
+ * <p>
+ * 向堆内存储写入给定条数的交易，户名、摘要和描述由常见姓名、摘要和商户词随机组合而成，
+ * 对几种不同命中规模的关键字测量第一页（20 条）的 p50/p99 耗时，并与遍历全部交易逐条匹配对比。
+ * 运行方式（100 万条需要约 2GB 堆）：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.TextSearchBenchmark -Dexec.args="1000000 200"
+ * </pre>
+ */
+public class TextSearchBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final String[] SURNAMES = {"张", "王", "李", "赵", "刘", "陈", "杨", "黄", "周", "吴",
+            "徐", "孙", "胡", "朱", "高", "林", "何", "郭", "马", "罗"};
+    private static final String GIVEN = "伟芳娜敏静丽强磊军洋勇艳杰娟涛明超秀霞平刚桂英华玉兰萍红鹏飞宇浩然欣怡子轩梓涵";
+    private static final String[] SUMMARIES = {"工资", "房租", "转账", "餐饮消费", "网购", "水电费", "话费充值",
+            "信用卡还款", "理财赎回", "退款", "红包", "医疗费用", "交通出行", "学费", "保险"};
+    private static final String[] MERCHANTS = {"星巴克", "麦当劳", "肯德基", "京东商城", "天猫超市", "美团外卖",
+            "滴滴出行", "中国移动", "国家电网", "沃尔玛", "盒马鲜生", "瑞幸咖啡", "携程旅行", "顺丰速运", "万达影城",
+            "海底捞", "屈臣氏", "优衣库", "宜家家居", "苹果商店"};
+    private static final String[] ACTIONS = {"消费", "支付", "退款", "充值", "缴费", "订单"};
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+
+        System.gc();
+        long baseline = usedHeap();
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(TransactionJournal.NONE, true);
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            repository.save(createTransaction(i, now, random));
+        }
+        double loadSeconds = (System.nanoTime() - start) / 1e9;
+        System.gc();
+        System.out.printf("rows=%d load=%.1fs retained heap=%dMB%n", rows, loadSeconds,
+                (usedHeap() - baseline) >> 20);
+
+        List<String> keywords = List.of("张伟", "星巴克", "瑞幸咖啡 退款", "王 房租", "订单12345", "工资", "李");
+        System.out.printf("%-14s %-30s %8s %9s %9s %10s%n", "keyword", "plan", "total", "p50(ms)", "p99(ms)", "scan(ms)");
+        for (String keyword : keywords) {
+            run(repository, keyword, iterations);
+        }
+    }
+
+    private static void run(InMemoryTransactionRepository repository, String keyword, int iterations) {
+        long[] nanos = new long[iterations];
+        TransactionSearchResult result = null;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            result = repository.searchText(keyword, 0, PAGE_SIZE);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        // 全表扫描的基准：遍历全部交易，检查每个词是否出现在某个字段中
+        String[] terms = keyword.toLowerCase(Locale.ROOT).split("\\s+");
+        int scans = Math.max(1, iterations / 50);
+        long scanStart = System.nanoTime();
+        long scanned = 0;
+        for (int i = 0; i < scans; i++) {
+            scanned = repository.streamByCreatedAt(null, null).filter(t -> matches(t, terms)).count();
+        }
+        double scanMillis = (System.nanoTime() - scanStart) / 1e6 / scans;
+        if (scanned != result.total()) {
+            throw new IllegalStateException(keyword + ": total " + result.total() + " != scan " + scanned);
+        }
+        System.out.printf("%-14s %-30s %8d %9.3f %9.3f %10.1f%n", keyword, result.plan(), result.total(),
+                nanos[iterations / 2] / 1e6, nanos[iterations * 99 / 100] / 1e6, scanMillis);
+    }
+
+    private static boolean matches(Transaction transaction, String[] terms) {
+        for (String term : terms) {
+            if (!contains(transaction.getCounterpartyName(), term)
+                    && !contains(transaction.getTransactionSummary(), term)
+                    && !contains(transaction.getDescription(), term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(String text, String term) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(term);
+    }
+
+    private static Transaction createTransaction(int i, LocalDateTime now, Random random) {
+        Transaction transaction = new Transaction();
+        transaction.setId("bench-" + i);
+        transaction.setUserId("user" + random.nextInt(100_000));
+        transaction.setAmount(BigDecimal.valueOf(random.nextInt(1, 1_000_000), 2));
+        transaction.setType(TransactionType.values()[random.nextInt(TransactionType.values().length)]);
+        String name = SURNAMES[random.nextInt(SURNAMES.length)] + GIVEN.charAt(random.nextInt(GIVEN.length()));
+        if (random.nextBoolean()) {
+            name += GIVEN.charAt(random.nextInt(GIVEN.length()));
+        }
+        transaction.setCounterpartyName(name);
+        transaction.setTransactionSummary(SUMMARIES[random.nextInt(SUMMARIES.length)]);
+        transaction.setDescription(MERCHANTS[random.nextInt(MERCHANTS.length)]
+                + ACTIONS[random.nextInt(ACTIONS.length)] + " 订单" + random.nextInt(10_000_000));
+        transaction.setCounterpartyAccountNumber("6222" + random.nextInt(100_000_000));
+        LocalDateTime createdAt = now.minusSeconds(random.nextLong(365 * 86_400L));
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
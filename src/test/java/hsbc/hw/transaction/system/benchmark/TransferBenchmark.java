@@ -0,0 +1,111 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.dto.TransferRequest;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.service.TransactionCacheInvalidator;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionServiceImpl;
+import hsbc.hw.transaction.system.service.UserLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 并发转账吞吐量基准。
+ * <p>
+ * 按给定的线程数依次运行，每轮使用新的存储和账户，随机选择两个账户转账，
+ * 输出每秒完成的转账数和因余额不足被拒绝的比例，并校验资金总额不变。运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.TransferBenchmark -Dexec.args="10000 1,2,4,8,16 5"
+ * </pre>
+ */
+public class TransferBenchmark {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("10000.00");
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        String[] threadCounts = (args.length > 1 ? args[1] : "1,2,4,8,16").split(",");
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        // 每笔转账和余额不足都会输出日志，测量时关闭
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+
+        System.out.printf("users=%d cpus=%d duration=%ds%n", users, Runtime.getRuntime().availableProcessors(), seconds);
+        for (String threadCount : threadCounts) {
+            run(users, Integer.parseInt(threadCount.trim()), seconds);
+        }
+    }
+
+    private static void run(int users, int threads, int seconds) throws Exception {
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository();
+        UserLedger ledger = new UserLedger(repository);
+        TransactionServiceImpl service = new TransactionServiceImpl(repository,
+                new TransactionCacheInvalidator(new NoOpCacheManager()), ledger,
+                new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry()));
+        for (int u = 0; u < users; u++) {
+            TransactionRequest deposit = new TransactionRequest();
+            deposit.setId("deposit-" + u);
+            deposit.setUserId("user" + u);
+            deposit.setAmount(INITIAL_BALANCE);
+            deposit.setType("DEPOSIT");
+            service.createTransaction(deposit);
+        }
+
+        AtomicInteger sequence = new AtomicInteger();
+        LongAdder succeeded = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                TransferRequest request = new TransferRequest();
+                while (System.nanoTime() < deadline) {
+                    int from = random.nextInt(users);
+                    request.setId("tr-" + sequence.incrementAndGet());
+                    request.setFromUserId("user" + from);
+                    request.setToUserId("user" + (from + 1 + random.nextInt(users - 1)) % users);
+                    request.setAmount(BigDecimal.valueOf(random.nextInt(1, 100_000), 2));
+                    try {
+                        service.transfer(request);
+                        succeeded.increment();
+                    } catch (InvalidTransactionException e) {
+                        rejected.increment();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int u = 0; u < users; u++) {
+            total = total.add(ledger.balance("user" + u));
+        }
+        boolean conserved = total.compareTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(users))) == 0;
+        System.out.printf("threads=%-3d transfers/s=%.0f rejected=%.1f%% conserved=%s%n", threads,
+                succeeded.sum() / elapsed, 100.0 * rejected.sum() / Math.max(1, succeeded.sum() + rejected.sum()),
+                conserved);
+    }
+}
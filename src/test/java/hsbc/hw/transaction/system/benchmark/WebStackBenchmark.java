@@ -0,0 +1,235 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import hsbc.hw.transaction.system.TransactionManagerApplication;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servlet（Tomcat）与 reactive profile（WebFlux + Reactor Netty）两种接口实现的对比。
+ * <p>
+ * 在同一进程内先后启动两种应用，写入相同的数据：一个有大量历史交易的用户和若干普通用户。
+ * 先测量读取该用户全部交易的首字节时间、总耗时、期间 JVM 分配的内存，以及客户端读到首字节后暂停读取时
+ * 服务端为这个响应保留的堆内存（servlet 返回 JSON 数组，reactive 分别以 JSON 数组和 NDJSON 输出），
+ * 再用固定数量的并发客户端持续发送按ID、按用户和分页查询，统计吞吐量和 p50/p99。两种应用运行在同一个 JVM 中，CPU 预算相同；需要限制核数时通过
+ * MAVEN_OPTS="-XX:ActiveProcessorCount=2" 设置，Netty 的事件循环线程数和 Tomcat 可用的核数随之变化。
+ * 参数为大用户的交易数、并发客户端数和持续秒数，运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.WebStackBenchmark -Dexec.args="200000 64 20"
+ * </pre>
+ */
+public class WebStackBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int PER_USER = 20;
+    private static final String HEAVY_USER = "heavy";
+    private static final long PAUSE_MILLIS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int history = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        System.out.printf("history=%d clients=%d duration=%ds cpus=%d%n", history, clients, seconds,
+                Runtime.getRuntime().availableProcessors());
+        for (boolean reactive : new boolean[]{false, true}) {
+            run(reactive, history, clients, seconds);
+        }
+    }
+
+    private static void run(boolean reactive, int history, int clients, int seconds) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionManagerApplication.class)
+                .profiles(reactive ? "reactive" : "default")
+                .properties("server.port=0", "logging.level.root=WARN")
+                .run();
+        String stack = reactive ? "reactive" : "servlet";
+        try {
+            seed(context.getBean(TransactionRepository.class), history);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/api/transactions";
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            List<String> accepts = reactive ? List.of("application/json", "application/x-ndjson")
+                    : List.of("application/json");
+            for (String accept : accepts) {
+                // 第一次用于预热
+                fetchHistory(client, baseUrl, accept);
+                History result = fetchHistory(client, baseUrl, accept);
+                System.out.printf("%-8s history %-20s ttfb=%.1fms total=%.1fms bytes=%dMB allocated=%dMB "
+                                + "retained=%dMB%n", stack, accept, result.ttfbNanos / 1e6, result.totalNanos / 1e6,
+                        result.bytes >> 20, result.allocated >> 20, result.retained >> 20);
+            }
+
+            load(client, baseUrl, clients, Math.max(3, seconds / 4));
+            Load result = load(client, baseUrl, clients, seconds);
+            System.out.printf("%-8s load    requests=%d throughput=%.0f req/s p50=%.2fms p99=%.2fms errors=%d%n",
+                    stack, result.latencies.length, result.latencies.length / (double) seconds,
+                    percentile(result.latencies, 0.5), percentile(result.latencies, 0.99), result.errors);
+        } finally {
+            context.close();
+        }
+    }
+
+    private record History(long ttfbNanos, long totalNanos, long bytes, long allocated, long retained) {
+    }
+
+    private static History fetchHistory(HttpClient client, String baseUrl, String accept)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/user/" + HEAVY_USER))
+                .header("Accept", accept)
+                .build();
+        long baseline = usedHeapAfterGc();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        long bytes = 0;
+        long ttfb = 0;
+        long retained = 0;
+        long paused = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream body = response.body()) {
+            for (int n; (n = body.read(buffer)) >= 0; ) {
+                if (bytes == 0 && n > 0) {
+                    ttfb = System.nanoTime() - start;
+                    // 读到首字节后暂停读取，模拟慢客户端，测量此时服务端为这个响应保留的堆内存
+                    long pauseStart = System.nanoTime();
+                    Thread.sleep(PAUSE_MILLIS);
+                    retained = usedHeapAfterGc() - baseline;
+                    paused = System.nanoTime() - pauseStart;
+                }
+                bytes += n;
+            }
+        }
+        long total = System.nanoTime() - start - paused;
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("history returned " + response.statusCode());
+        }
+        return new History(ttfb, total, bytes, allocatedBytes() - allocatedBefore, retained);
+    }
+
+    private record Load(long[] latencies, long errors) {
+    }
+
+    private static Load load(HttpClient client, String baseUrl, int clients, int seconds)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> perClient = new ArrayList<>();
+        int[] counts = new int[clients];
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                long[] latencies = new long[1 << 16];
+                perClient.add(latencies);
+                int index = c;
+                executor.submit(() -> {
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + nextPath())).build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request,
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        if (count < latencies.length) {
+                            latencies[count++] = System.nanoTime() - start;
+                        }
+                    }
+                    counts[index] = count;
+                });
+            }
+        }
+        long[] all = new long[Arrays.stream(counts).sum()];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(perClient.get(c), 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        return new Load(all, errors.get());
+    }
+
+    /**
+     * 按ID、按普通用户和分页查询各占三分之一
+     */
+    private static String nextPath() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (random.nextInt(3)) {
+            case 0 -> "/seed-" + random.nextInt(USERS * PER_USER);
+            case 1 -> "/user/user" + random.nextInt(USERS);
+            default -> "?page=" + random.nextInt(50) + "&size=20";
+        };
+    }
+
+    private static void seed(TransactionRepository repository, int history) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < USERS * PER_USER; i++) {
+            repository.save(createTransaction("seed-" + i, "user" + (i % USERS), now.minusSeconds(i)));
+        }
+        for (int i = 0; i < history; i++) {
+            repository.save(createTransaction("heavy-" + i, HEAVY_USER, now.minusSeconds(i)));
+        }
+    }
+
+    private static Transaction createTransaction(String id, String userId, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setTransactionSummary("存款");
+        transaction.setCounterpartyName("张三");
+        transaction.setDescription("第" + id + "笔");
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1e6;
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,138 @@
+package hsbc.hw.transaction.system.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import hsbc.hw.transaction.system.config.CacheConfig;
+import hsbc.hw.transaction.system.config.TransactionCacheProperties;
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.config.TransactionJournalProperties;
+import hsbc.hw.transaction.system.config.TransactionWriteProperties;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import hsbc.hw.transaction.system.repository.journal.FileTransactionJournal;
+import hsbc.hw.transaction.system.repository.journal.FsyncPolicy;
+import hsbc.hw.transaction.system.service.TransactionCacheInvalidator;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionServiceImpl;
+import hsbc.hw.transaction.system.service.TransactionWritePipeline;
+import hsbc.hw.transaction.system.service.UserLedger;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 同步写入与异步批量写入的持续创建吞吐量对比。
+ * <p>
+ * 多个生产者线程在给定时间内不断创建交易并等待写入完成，分别在不开启日志和 ALWAYS 落盘两种存储上
+ * 比较 SYNC 和 ASYNC 模式的每秒创建数，ASYNC 模式同时输出平均批大小。缓存使用与应用相同的 Caffeine 配置。运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=hsbc.hw.transaction.system.benchmark.WritePipelineBenchmark -Dexec.args="64 5"
+ * </pre>
+ */
+public class WritePipelineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        // 每次创建都会输出日志，测量时关闭
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+
+        System.out.printf("producers=%d cpus=%d duration=%ds%n", producers,
+                Runtime.getRuntime().availableProcessors(), seconds);
+        // 第一轮用于 JIT 预热
+        run("warmup", TransactionWriteProperties.WriteMode.ASYNC, null, producers, seconds);
+        for (FsyncPolicy policy : new FsyncPolicy[]{null, FsyncPolicy.ALWAYS}) {
+            for (TransactionWriteProperties.WriteMode mode : TransactionWriteProperties.WriteMode.values()) {
+                run(policy == null ? "none" : policy.name(), mode, policy, producers, seconds);
+            }
+        }
+    }
+
+    private static void run(String name, TransactionWriteProperties.WriteMode mode, FsyncPolicy policy,
+                            int producers, int seconds) throws Exception {
+        Path directory = policy == null ? null : Files.createTempDirectory("write-bench");
+        TransactionJournal journal = directory == null ? TransactionJournal.NONE
+                : new FileTransactionJournal(journalProperties(directory, policy));
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(journal);
+        repository.open();
+        TransactionServiceImpl service = new TransactionServiceImpl(repository,
+                new TransactionCacheInvalidator(new CacheConfig().cacheManager(new TransactionCacheProperties())),
+                new UserLedger(repository), new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry()));
+        TransactionWriteProperties properties = new TransactionWriteProperties();
+        properties.setMode(mode);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TransactionWritePipeline pipeline = new TransactionWritePipeline(service, properties, meterRegistry);
+        pipeline.start();
+
+        AtomicInteger sequence = new AtomicInteger();
+        LongAdder created = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < producers; t++) {
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    pipeline.create(createRequest(sequence.incrementAndGet()));
+                    created.increment();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+        pipeline.close();
+
+        DistributionSummary batches = meterRegistry.get("transaction.write.batch.size").summary();
+        System.out.printf("%-7s %-5s creates/s=%9.0f avg batch=%6.1f%n", name, mode, created.sum() / elapsed,
+                batches.count() == 0 ? 1.0 : batches.mean());
+        if (journal instanceof FileTransactionJournal fileJournal) {
+            fileJournal.close();
+            delete(directory);
+        }
+    }
+
+    private static TransactionRequest createRequest(int i) {
+        TransactionRequest request = new TransactionRequest();
+        request.setId("bench-" + i);
+        request.setUserId("user" + (i % 10000));
+        request.setAmount(new BigDecimal((i % 100000) + ".25"));
+        request.setType("DEPOSIT");
+        request.setTransactionSummary("存款");
+        request.setDescription("第" + i + "笔");
+        return request;
+    }
+
+    private static TransactionJournalProperties journalProperties(Path directory, FsyncPolicy policy) {
+        TransactionJournalProperties properties = new TransactionJournalProperties();
+        properties.setDirectory(directory);
+        properties.setFsyncPolicy(policy);
+        properties.setSnapshotInterval(Duration.ZERO);
+        return properties;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+}
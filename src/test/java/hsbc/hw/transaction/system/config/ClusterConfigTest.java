@@ -0,0 +1,30 @@
+package hsbc.hw.transaction.system.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterConfigTest {
+
+    private final ReactiveWebApplicationContextRunner reactive = new ReactiveWebApplicationContextRunner()
+            .withUserConfiguration(ClusterConfig.class);
+
+    @Test
+    void reactiveStack_ShouldRefuseToStart_WhenClusterIsEnabled() {
+        reactive.withPropertyValues("transaction.cluster.enabled=true").run(context -> {
+            Throwable failure = context.getStartupFailure();
+            assertNotNull(failure);
+            Throwable cause = failure;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertInstanceOf(IllegalStateException.class, cause);
+        });
+    }
+
+    @Test
+    void reactiveStack_ShouldStart_WhenClusterIsDisabled() {
+        reactive.run(context -> assertNull(context.getStartupFailure()));
+    }
+}
@@ -0,0 +1,134 @@
+package hsbc.hw.transaction.system.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        TransactionConcurrencyProperties properties = new TransactionConcurrencyProperties();
+        properties.setMaxConcurrent(1);
+        properties.setMaxQueued(1);
+        properties.setQueueTimeout(Duration.ofSeconds(5));
+        filter = new ConcurrencyLimitFilter(properties, new ObjectMapper(), meterRegistry,
+                request -> "secret".equals(request.getHeader("X-Cluster-Forwarded")));
+    }
+
+    @Test
+    void doFilter_ShouldQueueThenRejectBeyondLimits() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain blocking = (request, response) -> {
+            entered.countDown();
+            await(release);
+        };
+
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> call(blocking));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MockHttpServletResponse> second = CompletableFuture.supplyAsync(() -> call((q, r) -> { }));
+        waitUntil(() -> filter.queued() == 1);
+
+        // 并发和排队都已满，第三个请求立即被拒绝
+        MockHttpServletResponse third = call((q, r) -> { });
+        assertEquals(503, third.getStatus());
+        assertEquals("1", third.getHeader("Retry-After"));
+        assertTrue(third.getContentAsString().contains("服务繁忙"));
+        assertEquals(1, filter.active());
+        assertEquals(1.0, meterRegistry.get("transaction.requests.queued").gauge().value());
+
+        release.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(200, second.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(0, filter.active());
+        assertEquals(0, filter.queued());
+        assertEquals(1.0, meterRegistry.get("transaction.requests.rejected").counter().count());
+    }
+
+    @Test
+    void doFilter_ShouldBypassLimit_ForStreamingAndForwardedRequests() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<MockHttpServletResponse> export = CompletableFuture.supplyAsync(() ->
+                call(new MockHttpServletRequest("GET", "/api/transactions/export"), (q, r) -> {
+                    entered.countDown();
+                    await(release);
+                }));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // 导出不占用许可，普通请求仍可进入
+        assertEquals(200, call((q, r) -> { }).getStatus());
+        assertEquals(0, filter.active());
+
+        CountDownLatch holding = new CountDownLatch(1);
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> call((q, r) -> {
+            holding.countDown();
+            await(release);
+        }));
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MockHttpServletResponse> queued = CompletableFuture.supplyAsync(() ->
+                call(withForwardedHeader("true"), (q, r) -> { }));
+        waitUntil(() -> filter.queued() == 1);
+
+        // 许可和排队都已满，转发请求直接进入，伪造的请求头不能绕过限制
+        assertEquals(200, call(withForwardedHeader("secret"), (q, r) -> { }).getStatus());
+        assertEquals(503, call(withForwardedHeader("true"), (q, r) -> { }).getStatus());
+
+        release.countDown();
+        assertEquals(200, export.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(200, queued.get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    private static MockHttpServletRequest withForwardedHeader(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/transactions");
+        request.addHeader("X-Cluster-Forwarded", value);
+        return request;
+    }
+
+    private MockHttpServletResponse call(FilterChain chain) {
+        return call(new MockHttpServletRequest("GET", "/api/transactions"), chain);
+    }
+
+    private MockHttpServletResponse call(MockHttpServletRequest request, FilterChain chain) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
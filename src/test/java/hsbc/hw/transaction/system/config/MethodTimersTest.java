@@ -0,0 +1,69 @@
+package hsbc.hw.transaction.system.config;
+
+import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.service.TransactionService;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MethodTimersTest {
+
+    private final CollectorRegistry collectorRegistry = new CollectorRegistry();
+
+    @Test
+    void wrap_ShouldRecordEachMethodAndExceptionSeparately() {
+        TransactionRepository repository = MethodTimers.wrap(new InMemoryTransactionRepository(),
+                TransactionRepository.class,
+                MethodTimers.histogram("transaction_repository_seconds", "test").register(collectorRegistry));
+        TransactionService target = mock(TransactionService.class);
+        when(target.getTransactionById("missing")).thenThrow(new TransactionNotFoundException("missing"));
+        TransactionService service = MethodTimers.wrap(target, TransactionService.class,
+                MethodTimers.histogram("transaction_service_seconds", "test").register(collectorRegistry));
+
+        repository.save(transaction("t1"));
+        assertTrue(repository.findById("t1").isPresent());
+        assertTrue(repository.findById("t2").isEmpty());
+        assertThrows(TransactionNotFoundException.class, () -> service.getTransactionById("missing"));
+
+        assertEquals(1.0, count("transaction_repository_seconds", "save", "none"));
+        assertEquals(2.0, count("transaction_repository_seconds", "findById", "none"));
+        assertEquals(1.0, count("transaction_service_seconds", "getTransactionById", "TransactionNotFoundException"));
+        assertNull(count("transaction_service_seconds", "getTransactionById", "none"));
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void wrap_ShouldKeepAutoCloseableForDestroyMethod() throws Exception {
+        TransactionRepository target = mock(TransactionRepository.class,
+                withSettings().extraInterfaces(AutoCloseable.class));
+        TransactionRepository repository = MethodTimers.wrap(target, TransactionRepository.class,
+                MethodTimers.histogram("transaction_repository_seconds", "test").register(collectorRegistry));
+
+        ((AutoCloseable) repository).close();
+
+        verify((AutoCloseable) target).close();
+    }
+
+    private Double count(String name, String method, String exception) {
+        return collectorRegistry.getSampleValue(name + "_count", new String[]{"method", "exception"},
+                new String[]{method, exception});
+    }
+
+    private Transaction transaction(String id) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId("user1");
+        transaction.setAmount(new BigDecimal("10.00"));
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(transaction.getCreatedAt());
+        return transaction;
+    }
+}
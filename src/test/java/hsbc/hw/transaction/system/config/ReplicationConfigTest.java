@@ -0,0 +1,32 @@
+package hsbc.hw.transaction.system.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationConfigTest {
+
+    private final ReactiveWebApplicationContextRunner reactive = new ReactiveWebApplicationContextRunner()
+            .withUserConfiguration(ReplicationConfig.class);
+
+    @Test
+    void reactiveStack_ShouldRefuseToStart_WhenRoleIsSet() {
+        for (String role : new String[]{"primary", "replica"}) {
+            reactive.withPropertyValues("transaction.replication.role=" + role).run(context -> {
+                Throwable failure = context.getStartupFailure();
+                assertNotNull(failure, role);
+                Throwable cause = failure;
+                while (cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                assertInstanceOf(IllegalStateException.class, cause);
+            });
+        }
+    }
+
+    @Test
+    void reactiveStack_ShouldStart_WhenRoleIsNone() {
+        reactive.run(context -> assertNull(context.getStartupFailure()));
+    }
+}
@@ -0,0 +1,149 @@
+package hsbc.hw.transaction.system.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.exception.GlobalExceptionHandler;
+import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.service.IdempotencyStore;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionImporter;
+import hsbc.hw.transaction.system.service.TransactionService;
+import hsbc.hw.transaction.system.service.TransactionWritePipeline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReactiveTransactionControllerTest {
+
+    private final TransactionService service = mock(TransactionService.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final TransactionEventBus eventBus =
+            new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry());
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        ReactiveTransactionController controller = new ReactiveTransactionController(service,
+                mock(TransactionImporter.class), mock(IdempotencyStore.class), mock(TransactionWritePipeline.class),
+                objectMapper, eventBus);
+        client = WebTestClient.bindToController(controller)
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void getByUserId_ShouldStreamWholeHistoryAsJsonArrayNdjsonAndEvents() throws Exception {
+        // 超过一批的条数，验证批与批之间的分隔符
+        List<TransactionResponse> history = responses("u1", 600);
+        when(service.exportTransactions("u1", null, null)).thenAnswer(invocation -> history.stream());
+
+        String json = client.get().uri("/api/transactions/user/u1").accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody(String.class).returnResult().getResponseBody();
+        TransactionResponse[] array = objectMapper.readValue(json, TransactionResponse[].class);
+        assertEquals(ids(history), Arrays.stream(array).map(TransactionResponse::getId).toList());
+
+        String ndjson = client.get().uri("/api/transactions/user/u1")
+                .accept(MediaType.parseMediaType(TransactionController.NDJSON))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        List<String> lines = ndjson.lines().toList();
+        assertEquals(600, lines.size());
+        assertEquals("t599", objectMapper.readValue(lines.get(599), TransactionResponse.class).getId());
+
+        List<TransactionResponse> events = client.get().uri("/api/transactions/user/u1")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(TransactionResponse.class).getResponseBody().collectList().block();
+        assertEquals(ids(history), events.stream().map(TransactionResponse::getId).toList());
+
+        String empty = client.get().uri("/api/transactions/user/u2").accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody(String.class).returnResult().getResponseBody();
+        assertEquals("[]", empty);
+    }
+
+    @Test
+    void streamPage_ShouldEmitOnlyRequestedPage() {
+        List<TransactionResponse> all = responses("u1", 50);
+        when(service.exportTransactions(null, null, null)).thenAnswer(invocation -> all.stream());
+
+        List<TransactionResponse> page = client.get().uri("/api/transactions?page=1&size=20")
+                .accept(MediaType.parseMediaType(TransactionController.NDJSON))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(TransactionResponse.class).getResponseBody().collectList().block();
+
+        assertEquals(ids(all).subList(20, 40), page.stream().map(TransactionResponse::getId).toList());
+    }
+
+    @Test
+    void events_ShouldPushMatchingEventsWithSequenceAsId() {
+        Flux<TransactionEvent> events = client.get().uri("/api/transactions/events?userId=u1")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(TransactionEvent.class).getResponseBody();
+
+        List<TransactionResponse> u1 = responses("u1", 2);
+        eventBus.publish(TransactionEvent.Type.CREATED, u1.get(0));
+        eventBus.publish(TransactionEvent.Type.CREATED, responses("u2", 1));
+        eventBus.publish(TransactionEvent.Type.DELETED, u1.get(1));
+
+        List<TransactionEvent> received = events.take(2).collectList().block(Duration.ofSeconds(5));
+        assertEquals(List.of(TransactionEvent.Type.CREATED, TransactionEvent.Type.DELETED),
+                received.stream().map(TransactionEvent::getType).toList());
+        assertEquals(List.of(0L, 2L), received.stream().map(TransactionEvent::getSequence).toList());
+        assertEquals("t1", received.get(1).getTransaction().getId());
+    }
+
+    @Test
+    void getById_ShouldMapNotFoundTo404() {
+        when(service.getTransactionById("missing")).thenThrow(new TransactionNotFoundException("未找到交易记录: missing"));
+
+        client.get().uri("/api/transactions/missing")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.message").isEqualTo("未找到交易记录: missing");
+    }
+
+    private static List<TransactionResponse> responses(String userId, int count) {
+        LocalDateTime now = LocalDateTime.now();
+        return IntStream.range(0, count).mapToObj(i -> {
+            Transaction transaction = new Transaction();
+            transaction.setId("t" + i);
+            transaction.setUserId(userId);
+            transaction.setAmount(new BigDecimal("10.00"));
+            transaction.setType(TransactionType.DEPOSIT);
+            transaction.setCreatedAt(now.minusSeconds(i));
+            transaction.setUpdatedAt(transaction.getCreatedAt());
+            return TransactionResponse.from(transaction);
+        }).toList();
+    }
+
+    private static List<String> ids(List<TransactionResponse> responses) {
+        return responses.stream().map(TransactionResponse::getId).toList();
+    }
+}
@@ -0,0 +1,129 @@
+package hsbc.hw.transaction.system.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.config.CacheConfig;
+import hsbc.hw.transaction.system.config.TransactionCacheProperties;
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.exception.GlobalExceptionHandler;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.exception.WriteQueueFullException;
+import hsbc.hw.transaction.system.service.IdempotencyStore;
+import hsbc.hw.transaction.system.service.TransactionEventBus;
+import hsbc.hw.transaction.system.service.TransactionImporter;
+import hsbc.hw.transaction.system.service.TransactionService;
+import hsbc.hw.transaction.system.service.TransactionWritePipeline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class TransactionControllerTest {
+
+    private final TransactionService service = mock(TransactionService.class);
+    private final TransactionWritePipeline writePipeline = mock(TransactionWritePipeline.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        TransactionController controller = new TransactionController(service, mock(TransactionImporter.class),
+                objectMapper, new IdempotencyStore(new CacheConfig().cacheManager(new TransactionCacheProperties())),
+                writePipeline,
+                new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry()));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void export_ShouldWriteOneJsonObjectPerLine() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 12, 31, 0, 0);
+        when(service.exportTransactions("u1", from, to)).thenAnswer(invocation -> IntStream.range(0, 3)
+                .mapToObj(i -> response("tx-" + i)));
+
+        mockMvc.perform(get("/api/transactions/export")
+                        .param("userId", "u1")
+                        .param("from", "2025-01-01T00:00:00")
+                        .param("to", "2025-12-31T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(TransactionController.NDJSON))
+                .andExpect(content().string(org.hamcrest.Matchers.matchesPattern(
+                        "(\\{\"id\":\"tx-\\d\"[^\\n]*}\\n){3}")));
+    }
+
+    @Test
+    void export_ShouldReturnBadRequest_WhenFromIsAfterTo() throws Exception {
+        when(service.exportTransactions(any(), any(), any()))
+                .thenThrow(new InvalidTransactionException("开始时间不能晚于结束时间"));
+
+        mockMvc.perform(get("/api/transactions/export")
+                        .param("from", "2030-01-01T00:00:00")
+                        .param("to", "2020-01-01T00:00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("开始时间不能晚于结束时间"));
+        verify(service).exportTransactions(eq(null), eq(LocalDateTime.of(2030, 1, 1, 0, 0)),
+                eq(LocalDateTime.of(2020, 1, 1, 0, 0)));
+    }
+
+    @Test
+    void create_ShouldReplaySameTicket_WhenAsyncRequestIsRetriedWithIdempotencyKey() throws Exception {
+        when(writePipeline.isAsync()).thenReturn(true);
+        when(writePipeline.submit(any())).thenReturn(new TransactionWritePipeline.PendingWrite("ticket-1",
+                new TransactionRequest(), new CompletableFuture<>(), System.nanoTime()));
+        String body = "{\"id\":\"tx-1\",\"userId\":\"u1\",\"amount\":10,\"type\":\"DEPOSIT\"}";
+
+        for (String replayed : new String[]{"false", "true"}) {
+            mockMvc.perform(post("/api/transactions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header(TransactionController.IDEMPOTENCY_KEY, "key-1")
+                            .header(TransactionController.PREFER, TransactionController.RESPOND_ASYNC)
+                            .content(body))
+                    .andExpect(status().isAccepted())
+                    .andExpect(header().string(HttpHeaders.LOCATION, "/api/transactions/writes/ticket-1"))
+                    .andExpect(header().string(TransactionController.IDEMPOTENT_REPLAYED, replayed));
+        }
+        verify(writePipeline, times(1)).submit(any());
+    }
+
+    @Test
+    void create_ShouldReturnServiceUnavailable_WhenWriteQueueIsFull() throws Exception {
+        when(writePipeline.isAsync()).thenReturn(true);
+        when(writePipeline.submit(any())).thenThrow(new WriteQueueFullException("写入队列已满，请稍后重试"));
+
+        mockMvc.perform(post("/api/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(TransactionController.PREFER, TransactionController.RESPOND_ASYNC)
+                        .content("{\"id\":\"tx-1\",\"userId\":\"u1\",\"amount\":10,\"type\":\"DEPOSIT\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    private static TransactionResponse response(String id) {
+        TransactionResponse response = new TransactionResponse();
+        response.setId(id);
+        response.setUserId("u1");
+        response.setAmount(BigDecimal.TEN);
+        response.setType("DEPOSIT");
+        return response;
+    }
+}
@@ -0,0 +1,430 @@
+package hsbc.hw.transaction.system.repository;
+
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryTransactionRepositoryTest {
+
+    private InMemoryTransactionRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryTransactionRepository();
+    }
+
+    @Test
+    void findByUserId_ShouldReturnOnlyUserTransactions() {
+        repository.save(createTransaction("tx-1", "user1", LocalDateTime.now()));
+        repository.save(createTransaction("tx-2", "user1", LocalDateTime.now()));
+        repository.save(createTransaction("tx-3", "user2", LocalDateTime.now()));
+
+        List<String> ids = ids(repository.findByUserId("user1"));
+
+        assertEquals(2, ids.size());
+        assertTrue(ids.containsAll(List.of("tx-1", "tx-2")));
+        assertTrue(repository.findByUserId("unknown").isEmpty());
+    }
+
+    @Test
+    void findByUserId_ShouldFollowUserIdChange() {
+        repository.save(createTransaction("tx-1", "user1", LocalDateTime.now()));
+
+        // 更新时传入新对象，交易转移到另一个用户
+        repository.save(createTransaction("tx-1", "user2", LocalDateTime.now()));
+
+        assertTrue(repository.findByUserId("user1").isEmpty());
+        assertEquals(List.of("tx-1"), ids(repository.findByUserId("user2")));
+    }
+
+    @Test
+    void findByUserId_ShouldNotReturnDeletedTransactions() {
+        repository.save(createTransaction("tx-1", "user1", LocalDateTime.now()));
+        repository.save(createTransaction("tx-2", "user1", LocalDateTime.now()));
+
+        repository.deleteById("tx-1");
+        repository.deleteById("not-exists");
+
+        assertEquals(List.of("tx-2"), ids(repository.findByUserId("user1")));
+    }
+
+    @Test
+    void findPage_ShouldReturnNewestFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createTransaction("tx-1", "user1", now.minusDays(2)));
+        repository.save(createTransaction("tx-2", "user1", now));
+        repository.save(createTransaction("tx-3", "user2", now.minusDays(1)));
+        repository.save(createTransaction("tx-4", "user2", now));
+
+        // 创建时间相同的按交易ID升序
+        assertEquals(List.of("tx-2", "tx-4"), ids(repository.findPage(0, 2)));
+        assertEquals(List.of("tx-3", "tx-1"), ids(repository.findPage(2, 2)));
+        assertTrue(repository.findPage(4, 2).isEmpty());
+        assertEquals(4, repository.count());
+    }
+
+    @Test
+    void findPage_ShouldReflectUpdatesAndDeletes() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createTransaction("tx-1", "user1", now.minusDays(1)));
+        repository.save(createTransaction("tx-2", "user1", now));
+
+        Transaction updated = createTransaction("tx-1", "user2", now.minusDays(1));
+        updated.setAmount(new BigDecimal("200.00"));
+        repository.save(updated);
+        repository.deleteById("tx-2");
+
+        List<Transaction> page = repository.findPage(0, 10);
+        assertEquals(1, page.size());
+        assertEquals(new BigDecimal("200.00"), page.get(0).getAmount());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void findAfter_ShouldContinueFromCursor() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createTransaction("tx-1", "user1", now.minusDays(2)));
+        repository.save(createTransaction("tx-2", "user1", now));
+        repository.save(createTransaction("tx-3", "user2", now.minusDays(1)));
+        repository.save(createTransaction("tx-4", "user2", now));
+
+        assertEquals(List.of("tx-2", "tx-4"), ids(repository.findAfter(null, null, 2)));
+        assertEquals(List.of("tx-4", "tx-3"), ids(repository.findAfter(now, "tx-2", 2)));
+        assertEquals(List.of("tx-1"), ids(repository.findAfter(now.minusDays(1), "tx-3", 2)));
+
+        // 游标对应的交易被删除后仍能从原位置继续
+        repository.deleteById("tx-3");
+        assertEquals(List.of("tx-1"), ids(repository.findAfter(now.minusDays(1), "tx-3", 2)));
+    }
+
+    @Test
+    void streamByCreatedAt_ShouldApplyInclusiveRange() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createTransaction("tx-1", "user1", now.minusDays(3)));
+        repository.save(createTransaction("tx-2", "user1", now.minusDays(2)));
+        repository.save(createTransaction("tx-3", "user2", now.minusDays(1)));
+        repository.save(createTransaction("tx-4", "user2", now));
+
+        assertEquals(List.of("tx-4", "tx-3", "tx-2", "tx-1"), ids(repository.streamByCreatedAt(null, null).toList()));
+        assertEquals(List.of("tx-3", "tx-2"),
+                ids(repository.streamByCreatedAt(now.minusDays(2), now.minusDays(1)).toList()));
+        assertEquals(List.of("tx-2", "tx-1"), ids(repository.streamByCreatedAt(null, now.minusDays(2)).toList()));
+        assertEquals(List.of("tx-4"), ids(repository.streamByCreatedAt(now, null).toList()));
+    }
+
+    @Test
+    void userIndex_ShouldStayConsistentUnderConcurrentWrites() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2000; i++) {
+            String id = "tx-" + (i % 200);
+            String userId = "user" + (i % 7);
+            boolean delete = i % 11 == 0;
+            executor.submit(() -> {
+                if (delete) {
+                    repository.deleteById(id);
+                } else {
+                    repository.save(createTransaction(id, userId, LocalDateTime.now()));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // 每笔交易都应且只应出现在其当前所属用户的查询结果中
+        long indexed = 0;
+        for (int u = 0; u < 7; u++) {
+            String userId = "user" + u;
+            List<Transaction> userTransactions = repository.findByUserId(userId);
+            assertTrue(userTransactions.stream().allMatch(t -> t.getUserId().equals(userId)));
+            indexed += userTransactions.size();
+        }
+        assertEquals(repository.findAll().size(), indexed);
+        assertEquals(repository.count(), repository.findPage(0, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void compareAndSetStatus_ShouldLetOnlyOneWorkerClaimEachTransaction() throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            repository.save(createTransaction("tx-" + i, "user" + (i % 5), LocalDateTime.now()));
+        }
+        AtomicInteger claimed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int w = 0; w < 8; w++) {
+            executor.submit(() -> repository.streamByStatus(TransactionStatus.CREATED).toList().forEach(t -> {
+                if (repository.compareAndSetStatus(t.getId(), TransactionStatus.CREATED,
+                        TransactionStatus.PROCESSING, LocalDateTime.now()).isPresent()) {
+                    claimed.incrementAndGet();
+                }
+            }));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(500, claimed.get());
+        assertEquals(0, repository.countByStatus(TransactionStatus.CREATED));
+        assertEquals(500, repository.countByStatus(TransactionStatus.PROCESSING));
+        assertTrue(repository.compareAndSetStatus("tx-0", TransactionStatus.CREATED,
+                TransactionStatus.PROCESSING, LocalDateTime.now()).isEmpty());
+        // 时间索引中的对象同步更新
+        assertEquals(TransactionStatus.PROCESSING, repository.findPage(0, 1).get(0).getStatus());
+    }
+
+    @Test
+    void streamByStatus_ShouldFollowSavesAndDeletes() {
+        repository.save(createTransaction("tx-1", "user1", LocalDateTime.now()));
+        repository.save(createTransaction("tx-2", "user1", LocalDateTime.now()));
+        Transaction completed = createTransaction("tx-1", "user1", LocalDateTime.now());
+        completed.setStatus(TransactionStatus.COMPLETED);
+        repository.save(completed);
+        repository.deleteById("tx-2");
+
+        assertEquals(0, repository.countByStatus(TransactionStatus.CREATED));
+        assertEquals(List.of("tx-1"), ids(repository.streamByStatus(TransactionStatus.COMPLETED).toList()));
+    }
+
+    @Test
+    void search_ShouldDriveFromMostSelectiveIndexAndMatchFullScan() {
+        LocalDateTime now = LocalDateTime.now();
+        TransactionType[] types = TransactionType.values();
+        for (int i = 0; i < 2000; i++) {
+            Transaction transaction = createTransaction(String.format("tx-%04d", i), "user" + (i % 10), now.minusMinutes(i));
+            transaction.setType(types[i % types.length]);
+            transaction.setAmount(new BigDecimal(i % 500).movePointLeft(i % 3));
+            transaction.setCounterpartyAccountNumber("acct-" + (i % 50));
+            repository.save(transaction);
+        }
+        repository.deleteById("tx-0040");
+
+        List<TransactionQuery> queries = List.of(
+                new TransactionQuery(null, TransactionType.DEPOSIT, null, "acct-0", null, null, null, null),
+                new TransactionQuery("user3", null, null, null, new BigDecimal("1"), new BigDecimal("10.00"), null, null),
+                new TransactionQuery(null, null, null, null, null, new BigDecimal("2"), now.minusMinutes(1500), null),
+                new TransactionQuery(null, TransactionType.REFUND, TransactionStatus.CREATED, null, null, null,
+                        now.minusMinutes(30), now.minusMinutes(10)));
+        for (TransactionQuery query : queries) {
+            List<String> expected = ids(repository.streamByCreatedAt(null, null).filter(query::matches).toList());
+            TransactionSearchResult result = repository.search(query, 0, Integer.MAX_VALUE);
+            assertEquals(expected, ids(result.transactions()), result.plan());
+            assertEquals(expected.size(), result.total());
+            if (expected.size() > 3) {
+                assertEquals(expected.subList(2, 4), ids(repository.search(query, 2, 2).transactions()));
+            }
+        }
+
+        // 对方账号（40 笔）比类型（250 笔）更有选择性
+        assertTrue(repository.search(queries.get(0), 0, 10).plan().startsWith("counterparty"));
+        // 20 分钟的时间范围比类型和状态都小
+        assertTrue(repository.search(queries.get(3), 0, 10).plan().startsWith("createdAt"));
+    }
+
+    @Test
+    void searchText_ShouldMatchScanAfterUpdatesDeletesAndCompaction() {
+        repository = new InMemoryTransactionRepository(TransactionJournal.NONE, true);
+        String[] names = {"张伟", "王芳", "李伟", "张三丰", "Alice Wang"};
+        String[] summaries = {"工资", "房租", "转账", "餐饮消费"};
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 3000; i++) {
+            Transaction transaction = createTransaction("tx-" + i, "user" + (i % 10), now.plusMinutes(i));
+            transaction.setCounterpartyName(names[i % names.length]);
+            transaction.setTransactionSummary(summaries[i % summaries.length]);
+            transaction.setDescription("第" + i + "笔，付给" + names[(i + 1) % names.length]);
+            repository.save(transaction);
+        }
+        // 创建时间与写入顺序一致，索引与逐条扫描在相关度相同时的顺序相同。每笔交易改两次文本，失效文档超过有效文档数后触发压缩
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 3000; i++) {
+                Transaction transaction = createTransaction("tx-" + i, "user" + (i % 10), now.plusMinutes(i));
+                transaction.setCounterpartyName(names[(i + round) % names.length]);
+                transaction.setTransactionSummary(summaries[(i + round) % summaries.length]);
+                transaction.setDescription(round == 1 && i % 7 == 0 ? null : "第" + i + "笔备注" + round);
+                repository.save(transaction);
+            }
+        }
+        for (int i = 0; i < 3000; i += 11) {
+            repository.deleteById("tx-" + i);
+        }
+
+        for (String keyword : List.of("张", "张伟", "伟张", "张三丰", "工资 张伟", "alice", "笔备注1", "不存在")) {
+            List<String> terms = TextIndex.terms(keyword);
+            TransactionSearchResult expected = TextIndex.rank(
+                    repository.streamByCreatedAt(null, null)::iterator, terms, 0, Integer.MAX_VALUE, "scan");
+            TransactionSearchResult result = repository.searchText(keyword, 0, Integer.MAX_VALUE);
+            assertEquals(ids(expected.transactions()), ids(result.transactions()), keyword + " " + result.plan());
+            assertEquals(expected.total(), result.total());
+            if (result.total() > 5) {
+                assertEquals(ids(result.transactions()).subList(3, 5),
+                        ids(repository.searchText(keyword, 3, 2).transactions()));
+            }
+        }
+        // “伟张”的两个字都出现过，但不相邻
+        assertEquals(0, repository.searchText("伟张", 0, 10).total());
+        // 户名完全相同的排在只有描述提到的前面
+        Transaction first = repository.searchText("王芳", 0, 1).transactions().get(0);
+        assertEquals("王芳", first.getCounterpartyName());
+    }
+
+    @Test
+    void searchText_ShouldScanAllTransactions_WhenTextIndexIsDisabled() {
+        Transaction transaction = createTransaction("tx-1", "user1", LocalDateTime.now());
+        transaction.setCounterpartyName("张三");
+        repository.save(transaction);
+        repository.save(createTransaction("tx-2", "user1", LocalDateTime.now()));
+
+        TransactionSearchResult result = repository.searchText("张三", 0, 10);
+
+        assertEquals(List.of("tx-1"), ids(result.transactions()));
+        assertEquals("scan(text)", result.plan());
+    }
+
+    @Test
+    void searchText_ShouldMatchScanAfterConcurrentWritesAndSearches() throws InterruptedException {
+        repository = new InMemoryTransactionRepository(TransactionJournal.NONE, true);
+        String[] names = {"张伟", "王芳", "李伟", "张三丰"};
+        LocalDateTime now = LocalDateTime.now();
+        AtomicInteger searches = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int w = 0; w < 3; w++) {
+            int writer = w;
+            executor.execute(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    Transaction transaction = createTransaction("tx-" + writer + "-" + (i % 500), "user" + writer,
+                            now.plusSeconds(i));
+                    transaction.setCounterpartyName(names[(i + writer) % names.length]);
+                    repository.save(transaction);
+                }
+            });
+        }
+        executor.execute(() -> {
+            for (int i = 0; i < 200; i++) {
+                repository.searchText(names[i % names.length], 0, 20);
+                searches.incrementAndGet();
+            }
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertEquals(200, searches.get());
+        for (String keyword : names) {
+            List<String> terms = TextIndex.terms(keyword);
+            TransactionSearchResult expected = TextIndex.rank(
+                    repository.streamByCreatedAt(null, null)::iterator, terms, 0, Integer.MAX_VALUE, "scan");
+            TransactionSearchResult result = repository.searchText(keyword, 0, Integer.MAX_VALUE);
+            assertEquals(expected.total(), result.total(), keyword);
+            assertEquals(ids(expected.transactions()).stream().sorted().toList(),
+                    ids(result.transactions()).stream().sorted().toList(), keyword);
+        }
+    }
+
+    @Test
+    void failedJournalWrite_ShouldLeaveEveryIndexUnchanged() {
+        boolean[] failing = {false};
+        TransactionJournal journal = new TransactionJournal() {
+            @Override
+            public long logSave(Transaction transaction) {
+                if (failing[0]) {
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }
+                return 0;
+            }
+
+            @Override
+            public long logDelete(String id) {
+                return logSave(null);
+            }
+        };
+        repository = new InMemoryTransactionRepository(journal, true);
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createTransaction("tx-1", "user1", now));
+        repository.save(createTransaction("tx-2", "user1", now.minusMinutes(1)));
+
+        failing[0] = true;
+        Transaction moved = createTransaction("tx-1", "user2", now.minusDays(1));
+        moved.setType(TransactionType.WITHDRAWAL);
+        moved.setAmount(new BigDecimal("5.00"));
+        moved.setCounterpartyAccountNumber("other-account");
+        moved.setCounterpartyName("新户名");
+        assertThrows(UncheckedIOException.class, () -> repository.save(moved));
+        assertThrows(UncheckedIOException.class, () -> repository.saveIfAbsent(createTransaction("tx-3", "user3", now)));
+        assertThrows(UncheckedIOException.class, () -> repository.saveAllIfAbsent(
+                List.of(createTransaction("tx-4", "user3", now))));
+        assertThrows(UncheckedIOException.class, () -> repository.updateKeepingStatus(moved));
+        assertThrows(UncheckedIOException.class, () -> repository.compareAndSetStatus("tx-2",
+                TransactionStatus.CREATED, TransactionStatus.PROCESSING, now));
+        assertThrows(UncheckedIOException.class, () -> repository.deleteById("tx-2"));
+
+        // 主表和每个索引都与失败前相同
+        assertEquals(2, repository.count());
+        assertEquals(List.of("tx-1", "tx-2"), ids(repository.findPage(0, 10)));
+        assertEquals(List.of("tx-1", "tx-2"), ids(repository.streamByCreatedAt(null, null).toList()));
+        assertEquals(List.of("tx-1", "tx-2"), ids(repository.findByUserId("user1").stream()
+                .sorted(Comparator.comparing(Transaction::getId)).toList()));
+        assertTrue(repository.findByUserId("user2").isEmpty());
+        assertTrue(repository.findByUserId("user3").isEmpty());
+        assertEquals(2, repository.countByStatus(TransactionStatus.CREATED));
+        assertEquals(0, repository.countByStatus(TransactionStatus.PROCESSING));
+        assertEquals(0, repository.search(new TransactionQuery(null, TransactionType.WITHDRAWAL, null, null,
+                null, null, null, null), 0, 10).total());
+        assertEquals(0, repository.search(new TransactionQuery(null, null, null, "other-account",
+                null, null, null, null), 0, 10).total());
+        assertEquals(0, repository.search(new TransactionQuery(null, null, null, null,
+                null, new BigDecimal("10"), null, null), 0, 10).total());
+        assertEquals(2, repository.search(new TransactionQuery(null, null, null, null,
+                null, null, now.minusMinutes(5), null), 0, 10).total());
+        assertEquals(0, repository.searchText("新户名", 0, 10).total());
+        assertEquals(2, repository.searchText("Counterparty", 0, 10).total());
+    }
+
+    @Test
+    void streamByStatus_ShouldReturnNewestFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createTransaction("tx-b", "user1", now.minusMinutes(1)));
+        repository.save(createTransaction("tx-c", "user1", now));
+        repository.save(createTransaction("tx-a", "user2", now.minusMinutes(1)));
+        repository.save(createTransaction("tx-d", "user2", now.minusMinutes(2)));
+        // 状态变更后按创建时间排入新状态
+        repository.compareAndSetStatus("tx-d", TransactionStatus.CREATED, TransactionStatus.PROCESSING, now);
+        repository.compareAndSetStatus("tx-c", TransactionStatus.CREATED, TransactionStatus.PROCESSING, now);
+
+        assertEquals(List.of("tx-a", "tx-b"), ids(repository.streamByStatus(TransactionStatus.CREATED).toList()));
+        assertEquals(List.of("tx-c", "tx-d"), ids(repository.streamByStatus(TransactionStatus.PROCESSING).toList()));
+        assertEquals(2, repository.countByStatus(TransactionStatus.PROCESSING));
+        assertEquals("status=PROCESSING candidates=2",
+                repository.search(new TransactionQuery(null, null, TransactionStatus.PROCESSING, null, null, null,
+                        null, null), 0, 10).plan());
+    }
+
+    private static List<String> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+    }
+
+    private static Transaction createTransaction(String id, String userId, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setTransactionSummary("Test transaction");
+        transaction.setCounterpartyName("Test Counterparty");
+        transaction.setCounterpartyAccountNumber("1234567890");
+        transaction.setDescription("Test description");
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+}
@@ -0,0 +1,235 @@
+package hsbc.hw.transaction.system.repository;
+
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedTransactionRepositoryTest {
+
+    private ShardedTransactionRepository repository;
+
+    /**
+     * 写入相同数据的单分片存储，作为结果的参照
+     */
+    private InMemoryTransactionRepository reference;
+
+    @BeforeEach
+    void setUp() {
+        repository = new ShardedTransactionRepository(8, 4, TransactionJournal.NONE, true);
+        reference = new InMemoryTransactionRepository(TransactionJournal.NONE, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void pagesAndStreams_ShouldMergeShardsInCreatedAtOrder() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 1000; i++) {
+            // 每 7 笔的创建时间相同，验证跨分片时仍按交易ID排序
+            save(createTransaction(String.format("tx-%04d", i), "user" + (i % 37), now.minusMinutes(i / 7)));
+        }
+
+        assertEquals(ids(reference.findPage(0, 1000)), ids(repository.findPage(0, 1000)));
+        assertEquals(ids(reference.findPage(95, 20)), ids(repository.findPage(95, 20)));
+        Transaction cursor = reference.findPage(300, 1).get(0);
+        assertEquals(ids(reference.findAfter(cursor.getCreatedAt(), cursor.getId(), 50)),
+                ids(repository.findAfter(cursor.getCreatedAt(), cursor.getId(), 50)));
+        assertEquals(ids(reference.streamByCreatedAt(now.minusMinutes(100), now.minusMinutes(20)).toList()),
+                ids(repository.streamByCreatedAt(now.minusMinutes(100), now.minusMinutes(20)).toList()));
+        assertEquals(ids(reference.streamByStatus(TransactionStatus.CREATED).toList()),
+                ids(repository.streamByStatus(TransactionStatus.CREATED).toList()));
+        assertEquals(1000, repository.findAll().size());
+        assertEquals(1000, repository.count());
+        // 按用户查询只访问一个分片
+        assertEquals(ids(reference.findByUserId("user5")).stream().sorted().toList(),
+                ids(repository.findByUserId("user5")).stream().sorted().toList());
+    }
+
+    @Test
+    void save_ShouldMoveTransactionBetweenShardsWhenUserChanges() {
+        LocalDateTime now = LocalDateTime.now();
+        String from = "user1";
+        String to = IntStream.range(2, 100).mapToObj(i -> "user" + i)
+                .filter(user -> repository.shardOf(user) != repository.shardOf(from))
+                .findFirst().orElseThrow();
+        repository.save(createTransaction("tx-1", from, now));
+
+        Transaction moved = createTransaction("tx-1", to, now);
+        moved.setStatus(TransactionStatus.PROCESSING);
+        repository.save(moved);
+
+        assertTrue(repository.findByUserId(from).isEmpty());
+        assertEquals(List.of("tx-1"), ids(repository.findByUserId(to)));
+        assertEquals(to, repository.findById("tx-1").orElseThrow().getUserId());
+        assertEquals(1, repository.count());
+        assertEquals(1, repository.countByStatus(TransactionStatus.PROCESSING));
+        assertEquals(0, repository.countByStatus(TransactionStatus.CREATED));
+
+        // ID 已存在于另一个分片时同样拒绝
+        assertFalse(repository.saveIfAbsent(createTransaction("tx-1", from, now)));
+        assertTrue(repository.compareAndSetStatus("tx-1", TransactionStatus.PROCESSING,
+                TransactionStatus.COMPLETED, now).isPresent());
+        assertEquals(TransactionStatus.COMPLETED, repository.findById("tx-1").orElseThrow().getStatus());
+
+        repository.deleteById("tx-1");
+        assertFalse(repository.existsById("tx-1"));
+        assertTrue(repository.findByUserId(to).isEmpty());
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void saveIfAbsent_ShouldAcceptOnlyOneWriterPerIdAcrossShards() throws InterruptedException {
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            // 同一ID由不同用户并发创建，这些用户落在不同分片
+            String id = "tx-" + (i / 8);
+            String userId = "user" + i;
+            executor.submit(() -> {
+                if (repository.saveIfAbsent(createTransaction(id, userId, LocalDateTime.now()))) {
+                    accepted.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(1000, accepted.get());
+        assertEquals(1000, repository.count());
+        assertEquals(1000, repository.findAll().stream().map(Transaction::getId).distinct().count());
+    }
+
+    @Test
+    void search_ShouldScatterAcrossShardsAndMatchSingleStore() {
+        LocalDateTime now = LocalDateTime.now();
+        TransactionType[] types = TransactionType.values();
+        String[] names = {"张伟", "王芳", "李伟", "张三丰"};
+        for (int i = 0; i < 2000; i++) {
+            // 创建时间与写入顺序一致，相关度相同时分片内外的顺序相同
+            Transaction transaction = createTransaction(String.format("tx-%04d", i), "user" + (i % 53),
+                    now.plusMinutes(i));
+            transaction.setType(types[i % types.length]);
+            transaction.setAmount(new BigDecimal(i % 500).movePointLeft(i % 3));
+            transaction.setCounterpartyAccountNumber("acct-" + (i % 50));
+            transaction.setCounterpartyName(names[i % names.length]);
+            transaction.setDescription("付给" + names[(i + 1) % names.length]);
+            save(transaction);
+        }
+
+        List<TransactionQuery> queries = List.of(
+                new TransactionQuery(null, TransactionType.DEPOSIT, null, "acct-0", null, null, null, null),
+                new TransactionQuery("user3", null, null, null, new BigDecimal("1"), new BigDecimal("10.00"), null, null),
+                new TransactionQuery(null, null, null, null, null, new BigDecimal("2"), now.plusMinutes(500), null),
+                new TransactionQuery(null, null, null, null, null, null, null, null));
+        for (TransactionQuery query : queries) {
+            TransactionSearchResult expected = reference.search(query, 0, Integer.MAX_VALUE);
+            TransactionSearchResult result = repository.search(query, 0, Integer.MAX_VALUE);
+            assertEquals(ids(expected.transactions()), ids(result.transactions()), result.plan());
+            assertEquals(expected.total(), result.total());
+            assertEquals(ids(reference.search(query, 7, 5).transactions()),
+                    ids(repository.search(query, 7, 5).transactions()));
+        }
+        assertTrue(repository.search(queries.get(0), 0, 10).plan().startsWith("scatter(8) counterparty"));
+
+        for (String keyword : List.of("张", "张伟", "李伟 张")) {
+            TransactionSearchResult expected = reference.searchText(keyword, 0, Integer.MAX_VALUE);
+            assertEquals(ids(expected.transactions()),
+                    ids(repository.searchText(keyword, 0, Integer.MAX_VALUE).transactions()), keyword);
+            assertEquals(expected.total(), repository.searchText(keyword, 0, 10).total());
+            assertEquals(ids(reference.searchText(keyword, 3, 4).transactions()),
+                    ids(repository.searchText(keyword, 3, 4).transactions()));
+        }
+    }
+
+    @Test
+    void failedJournalWrite_ShouldNotLeaveUnroutedTransactionsInShards() {
+        boolean[] failing = {false};
+        TransactionJournal journal = new TransactionJournal() {
+            @Override
+            public long logSave(Transaction transaction) {
+                if (failing[0]) {
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }
+                return 0;
+            }
+
+            @Override
+            public long logDelete(String id) {
+                return logSave(null);
+            }
+        };
+        repository.close();
+        repository = new ShardedTransactionRepository(8, 4, journal);
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createTransaction("tx-1", "user1", now));
+
+        failing[0] = true;
+        // 找一个与 user1 不在同一分片的用户，覆盖跨分片迁移
+        String otherUser = IntStream.range(2, 100).mapToObj(i -> "user" + i)
+                .filter(userId -> repository.shardOf(userId) != repository.shardOf("user1"))
+                .findFirst().orElseThrow();
+        assertThrows(UncheckedIOException.class, () -> repository.save(createTransaction("tx-1", otherUser, now)));
+        assertThrows(UncheckedIOException.class, () -> repository.saveIfAbsent(createTransaction("tx-2", "user2", now)));
+        assertThrows(UncheckedIOException.class, () -> repository.saveAllIfAbsent(
+                List.of(createTransaction("tx-3", "user3", now))));
+        assertThrows(UncheckedIOException.class, () -> repository.updateKeepingStatus(
+                createTransaction("tx-1", otherUser, now)));
+        assertThrows(UncheckedIOException.class, () -> repository.compareAndSetStatus("tx-1",
+                TransactionStatus.CREATED, TransactionStatus.PROCESSING, now));
+        assertThrows(UncheckedIOException.class, () -> repository.deleteById("tx-1"));
+
+        // 分散查询看到的与路由表一致
+        assertEquals(List.of("tx-1"), ids(repository.findAll()));
+        assertEquals(List.of("tx-1"), ids(repository.findPage(0, 10)));
+        assertEquals(List.of("tx-1"), ids(repository.findByUserId("user1")));
+        assertTrue(repository.findByUserId(otherUser).isEmpty());
+        assertEquals(1, repository.countByStatus(TransactionStatus.CREATED));
+        assertEquals(TransactionStatus.CREATED, repository.findById("tx-1").orElseThrow().getStatus());
+        assertTrue(repository.findById("tx-2").isEmpty());
+    }
+
+    private void save(Transaction transaction) {
+        repository.save(transaction);
+        reference.save(transaction);
+    }
+
+    private static List<String> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+    }
+
+    private static Transaction createTransaction(String id, String userId, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setStatus(TransactionStatus.CREATED);
+        transaction.setTransactionSummary("Test transaction");
+        transaction.setCounterpartyName("Test Counterparty");
+        transaction.setCounterpartyAccountNumber("1234567890");
+        transaction.setDescription("Test description");
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+}
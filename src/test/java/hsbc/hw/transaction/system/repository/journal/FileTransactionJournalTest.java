@@ -0,0 +1,212 @@
+package hsbc.hw.transaction.system.repository.journal;
+
+import hsbc.hw.transaction.system.config.TransactionJournalProperties;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileTransactionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<FileTransactionJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        journals.forEach(FileTransactionJournal::close);
+    }
+
+    @Test
+    void reopen_ShouldRestoreSavesUpdatesAndDeletes() {
+        InMemoryTransactionRepository repository = open(FsyncPolicy.ALWAYS);
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(createTransaction("tx-1", "user1", now));
+        repository.save(createTransaction("tx-2", "user1", now.minusDays(1)));
+        repository.saveAll(List.of(createTransaction("tx-3", "user2", now), createTransaction("tx-4", "用户4", now)));
+        Transaction updated = createTransaction("tx-1", "user2", now);
+        updated.setAmount(new BigDecimal("123.45"));
+        repository.save(updated);
+        repository.deleteById("tx-2");
+        repository.compareAndSetStatus("tx-3", TransactionStatus.CREATED, TransactionStatus.PROCESSING, now);
+        closeAll();
+
+        InMemoryTransactionRepository restored = open(FsyncPolicy.ALWAYS);
+
+        assertEquals(3, restored.count());
+        assertEquals(TransactionStatus.PROCESSING, restored.findById("tx-3").orElseThrow().getStatus());
+        assertEquals(2, restored.countByStatus(TransactionStatus.CREATED));
+        assertFalse(restored.existsById("tx-2"));
+        Transaction tx1 = restored.findById("tx-1").orElseThrow();
+        assertEquals(new BigDecimal("123.45"), tx1.getAmount());
+        assertEquals(now, tx1.getCreatedAt());
+        assertEquals(2, restored.findByUserId("user2").size());
+        assertEquals("用户4", restored.findById("tx-4").orElseThrow().getUserId());
+    }
+
+    @Test
+    void snapshot_ShouldCompactSegmentsAndKeepLaterWrites() throws IOException {
+        InMemoryTransactionRepository repository = open(FsyncPolicy.ALWAYS);
+        for (int i = 0; i < 100; i++) {
+            repository.save(createTransaction("tx-" + i, "user" + (i % 5), LocalDateTime.now()));
+        }
+        journals.get(0).snapshot();
+        repository.deleteById("tx-0");
+        repository.save(createTransaction("tx-100", "user0", LocalDateTime.now()));
+        // 第二次快照后，第一个日志段应被删除
+        journals.get(0).snapshot();
+        repository.save(createTransaction("tx-101", "user0", LocalDateTime.now()));
+        closeAll();
+
+        assertEquals(1, count("snapshot-"));
+        assertFalse(Files.exists(directory.resolve(String.format("wal-%020d.log", 1))));
+
+        InMemoryTransactionRepository restored = open(FsyncPolicy.ALWAYS);
+        assertEquals(101, restored.count());
+        assertFalse(restored.existsById("tx-0"));
+        assertTrue(restored.existsById("tx-101"));
+    }
+
+    @Test
+    void recovery_ShouldTruncateTornTail() throws IOException {
+        InMemoryTransactionRepository repository = open(FsyncPolicy.ALWAYS);
+        repository.save(createTransaction("tx-1", "user1", LocalDateTime.now()));
+        repository.save(createTransaction("tx-2", "user1", LocalDateTime.now()));
+        closeAll();
+
+        // 模拟写到一半宕机：最后一帧缺少末尾字节
+        Path segment = directory.resolve(String.format("wal-%020d.log", 1));
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        InMemoryTransactionRepository restored = open(FsyncPolicy.ALWAYS);
+        assertTrue(restored.existsById("tx-1"));
+        assertFalse(restored.existsById("tx-2"));
+
+        restored.save(createTransaction("tx-3", "user1", LocalDateTime.now()));
+        closeAll();
+        assertEquals(2, open(FsyncPolicy.ALWAYS).count());
+    }
+
+    @Test
+    void intervalPolicy_ShouldPersistOnClose() {
+        InMemoryTransactionRepository repository = open(FsyncPolicy.INTERVAL);
+        for (int i = 0; i < 1000; i++) {
+            repository.save(createTransaction("tx-" + i, "user1", LocalDateTime.now()));
+        }
+        closeAll();
+
+        assertEquals(1000, open(FsyncPolicy.NEVER).count());
+    }
+
+    @Test
+    void logSave_ShouldNotBlockInsideCriticalSection_WhenBacklogExceedsCapacity() {
+        TransactionJournalProperties properties = properties(FsyncPolicy.NEVER);
+        properties.setQueueCapacity(2);
+        // 不启动写线程，积压只会增加
+        FileTransactionJournal journal = new FileTransactionJournal(properties);
+
+        long sequence = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            long last = 0;
+            for (int i = 0; i < 10; i++) {
+                last = journal.logSave(createTransaction("tx-" + i, "user1", LocalDateTime.now()));
+            }
+            return last;
+        });
+        assertEquals(10, sequence);
+        // 积压在容量以内时不等待
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> journal.awaitDurable(2));
+    }
+
+    @Test
+    void awaitDurable_ShouldThrottleWritersWithoutLosingRecords() throws InterruptedException {
+        TransactionJournalProperties properties = properties(FsyncPolicy.NEVER);
+        properties.setQueueCapacity(1);
+        FileTransactionJournal journal = new FileTransactionJournal(properties);
+        journals.add(journal);
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(journal);
+        repository.open();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 8; w++) {
+            int writer = w;
+            writers.add(Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    repository.save(createTransaction("tx-" + writer + "-" + i, "user" + writer, LocalDateTime.now()));
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(writer.isAlive());
+        }
+        closeAll();
+
+        assertEquals(4000, open(FsyncPolicy.NEVER).count());
+    }
+
+    private InMemoryTransactionRepository open(FsyncPolicy policy) {
+        FileTransactionJournal journal = new FileTransactionJournal(properties(policy));
+        journals.add(journal);
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(journal);
+        repository.open();
+        return repository;
+    }
+
+    private TransactionJournalProperties properties(FsyncPolicy policy) {
+        TransactionJournalProperties properties = new TransactionJournalProperties();
+        properties.setDirectory(directory);
+        properties.setFsyncPolicy(policy);
+        properties.setFsyncInterval(Duration.ofMillis(10));
+        // 测试中手动触发快照
+        properties.setSnapshotInterval(Duration.ZERO);
+        return properties;
+    }
+
+    private void closeAll() {
+        journals.forEach(FileTransactionJournal::close);
+        journals.clear();
+    }
+
+    private long count(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+
+    private static Transaction createTransaction(String id, String userId, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setTransactionSummary("Test transaction");
+        transaction.setCounterpartyName("Test Counterparty");
+        transaction.setCounterpartyAccountNumber("1234567890");
+        transaction.setDescription(null);
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+}
@@ -0,0 +1,190 @@
+package hsbc.hw.transaction.system.repository.mapped;
+
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.TransactionQuery;
+import hsbc.hw.transaction.system.repository.TransactionSearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTransactionRepositoryTest {
+
+    /**
+     * 用较小的映射块覆盖跨块增长
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private MappedTransactionRepository repository;
+
+    /**
+     * 取整到毫秒，与存储精度一致
+     */
+    private final LocalDateTime now = LocalDateTime.of(2025, 5, 17, 10, 30, 15, 123_000_000);
+
+    @BeforeEach
+    void setUp() {
+        repository = new MappedTransactionRepository(directory, CHUNK_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void save_ShouldRoundTripAllFields() {
+        Transaction transaction = createTransaction("tx-1", "用户1", now);
+        transaction.setAmount(new BigDecimal("-1234.5600"));
+        transaction.setDescription(null);
+        repository.save(transaction);
+
+        assertEquals(transaction, repository.findById("tx-1").orElseThrow());
+        assertTrue(repository.findById("tx-2").isEmpty());
+    }
+
+    @Test
+    void saveAndDelete_ShouldMaintainIndexes() {
+        repository.save(createTransaction("tx-1", "user1", now.minusDays(2)));
+        repository.save(createTransaction("tx-2", "user1", now));
+        repository.save(createTransaction("tx-3", "user2", now.minusDays(1)));
+        repository.save(createTransaction("tx-4", "user2", now));
+
+        // 更新时转移用户，删除后槽位被复用
+        repository.save(createTransaction("tx-1", "user2", now.minusDays(2)));
+        repository.deleteById("tx-3");
+        repository.save(createTransaction("tx-5", "user1", now.minusDays(3)));
+
+        assertEquals(List.of("tx-2", "tx-5"), sorted(repository.findByUserId("user1")));
+        assertEquals(List.of("tx-1", "tx-4"), sorted(repository.findByUserId("user2")));
+        assertEquals(List.of("tx-2", "tx-4", "tx-1", "tx-5"), ids(repository.findPage(0, 10)));
+        assertEquals(List.of("tx-1"), ids(repository.findPage(2, 1)));
+        assertEquals(List.of("tx-1", "tx-5"), ids(repository.findAfter(now, "tx-4", 10)));
+        assertEquals(4, repository.count());
+    }
+
+    @Test
+    void streamByCreatedAt_ShouldApplyRangeAcrossBatches() {
+        for (int i = 0; i < 2000; i++) {
+            repository.save(createTransaction(String.format("tx-%04d", i), "user" + (i % 10), now.minusSeconds(i)));
+        }
+
+        List<Transaction> range = repository.streamByCreatedAt(now.minusSeconds(1500), now.minusSeconds(100)).toList();
+
+        assertEquals(1401, range.size());
+        assertEquals("tx-0100", range.get(0).getId());
+        assertEquals("tx-1500", range.get(range.size() - 1).getId());
+        assertEquals(2000, repository.streamByCreatedAt(null, null).count());
+    }
+
+    @Test
+    void reopen_ShouldReloadRecordsAndIndexes() {
+        for (int i = 0; i < 3000; i++) {
+            repository.save(createTransaction("tx-" + i, "user" + (i % 7), now.minusSeconds(i)));
+        }
+        repository.deleteById("tx-0");
+        repository.close();
+
+        repository = new MappedTransactionRepository(directory, CHUNK_SIZE);
+
+        assertEquals(2999, repository.count());
+        assertFalse(repository.existsById("tx-0"));
+        assertEquals(List.of("tx-1", "tx-2"), ids(repository.findPage(0, 2)));
+        assertEquals(428, repository.findByUserId("user0").size());
+        repository.save(createTransaction("tx-0", "user0", now));
+        assertEquals("tx-0", repository.findPage(0, 1).get(0).getId());
+    }
+
+    @Test
+    void compareAndSetStatus_ShouldMaintainStatusIndexAcrossReopen() {
+        for (int i = 0; i < 100; i++) {
+            repository.save(createTransaction("tx-" + i, "user1", now.minusSeconds(i)));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(repository.compareAndSetStatus("tx-" + i, TransactionStatus.CREATED,
+                    TransactionStatus.PROCESSING, now).isPresent());
+        }
+        assertTrue(repository.compareAndSetStatus("tx-0", TransactionStatus.CREATED,
+                TransactionStatus.CANCELLED, now).isEmpty());
+        repository.deleteById("tx-2");
+        repository.close();
+
+        repository = new MappedTransactionRepository(directory, CHUNK_SIZE);
+
+        assertEquals(49, repository.countByStatus(TransactionStatus.PROCESSING));
+        assertEquals(50, repository.streamByStatus(TransactionStatus.CREATED).count());
+        assertTrue(repository.streamByStatus(TransactionStatus.PROCESSING)
+                .allMatch(t -> t.getStatus() == TransactionStatus.PROCESSING && t.getUpdatedAt().equals(now)));
+        assertEquals(TransactionStatus.PROCESSING, repository.findById("tx-0").orElseThrow().getStatus());
+    }
+
+    @Test
+    void search_ShouldFilterByScanningTimeRange() {
+        for (int i = 0; i < 100; i++) {
+            Transaction transaction = createTransaction(String.format("tx-%03d", i), "user" + (i % 4), now.minusSeconds(i));
+            transaction.setAmount(new BigDecimal(i));
+            repository.save(transaction);
+        }
+
+        TransactionSearchResult result = repository.search(new TransactionQuery("user1", null, null, null,
+                new BigDecimal("10"), null, null, now.minusSeconds(20)), 1, 3);
+
+        assertEquals(List.of("tx-025", "tx-029", "tx-033"), ids(result.transactions()));
+        assertEquals(20, result.total());
+    }
+
+    @Test
+    void searchText_ShouldRankByScanningAllTransactions() {
+        for (int i = 0; i < 10; i++) {
+            repository.save(createTransaction("tx-" + i, "user1", now.minusSeconds(i)));
+        }
+        Transaction named = createTransaction("tx-7", "user1", now.minusSeconds(7));
+        named.setCounterpartyName("李四");
+        repository.save(named);
+        Transaction mentioned = createTransaction("tx-2", "user1", now.minusSeconds(2));
+        mentioned.setDescription("付给李四的房租");
+        repository.save(mentioned);
+
+        TransactionSearchResult result = repository.searchText("李四", 0, 10);
+
+        // 户名完全相同的得分高于描述中提到
+        assertEquals(List.of("tx-7", "tx-2"), ids(result.transactions()));
+        assertEquals(List.of("tx-1"), ids(repository.searchText("DESCRIPTION tx-1", 0, 10).transactions()));
+    }
+
+    private static List<String> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> sorted(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static Transaction createTransaction(String id, String userId, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setType(TransactionType.TRANSFER);
+        transaction.setTransactionSummary("转账");
+        transaction.setCounterpartyName("张三");
+        transaction.setCounterpartyAccountNumber("1234567890");
+        transaction.setDescription("Test description " + id);
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+}
@@ -0,0 +1,175 @@
+package hsbc.hw.transaction.system.repository.replication;
+
+import hsbc.hw.transaction.system.dto.ReplicationRecord;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationLogTest {
+
+    private static final Duration NO_WAIT = Duration.ZERO;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void subscribe_ShouldSendSnapshotThenFollowingChangesInOrder() throws Exception {
+        ReplicationLog replicationLog = new ReplicationLog(TransactionJournal.NONE, 16, meterRegistry);
+        InMemoryTransactionRepository repository = repository(replicationLog);
+        repository.save(createTransaction("tx-1", "user1"));
+        repository.save(createTransaction("tx-2", "user2"));
+
+        ReplicationLog.Reader reader = replicationLog.subscribe(null, -1);
+        List<ReplicationRecord> snapshot;
+        try (Stream<ReplicationRecord> records = reader.snapshot()) {
+            snapshot = records.collect(Collectors.toList());
+        }
+        assertEquals(List.of(ReplicationRecord.Type.SNAPSHOT_START, ReplicationRecord.Type.SAVE,
+                        ReplicationRecord.Type.SAVE, ReplicationRecord.Type.SNAPSHOT_END),
+                snapshot.stream().map(ReplicationRecord::getType).toList());
+        assertTrue(snapshot.stream().allMatch(record -> record.getSequence() == 1));
+        assertEquals(replicationLog.logId(), snapshot.get(3).getId());
+        assertTrue(reader.poll(NO_WAIT, 10).isEmpty());
+
+        repository.save(createTransaction("tx-3", "user1"));
+        repository.deleteById("tx-1");
+        assertEquals(2.0, meterRegistry.get("transaction.replication.follower.lag").gauge().value());
+        List<ReplicationRecord> changes = reader.poll(NO_WAIT, 10);
+        assertEquals(List.of(2L, 3L), changes.stream().map(ReplicationRecord::getSequence).toList());
+        assertEquals("tx-3", changes.get(0).getTransaction().getId());
+        assertEquals(ReplicationRecord.Type.DELETE, changes.get(1).getType());
+        assertEquals("tx-1", changes.get(1).getId());
+
+        CompletableFuture<List<ReplicationRecord>> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return reader.poll(Duration.ofSeconds(10), 10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        repository.save(createTransaction("tx-4", "user2"));
+        assertEquals("tx-4", waiting.get(5, TimeUnit.SECONDS).get(0).getId());
+
+        reader.close();
+        assertEquals(0.0, meterRegistry.get("transaction.replication.followers").gauge().value());
+    }
+
+    @Test
+    void subscribe_ShouldResumeOnlyWithinTheSameLogAndRetainedWindow() throws Exception {
+        ReplicationLog replicationLog = new ReplicationLog(TransactionJournal.NONE, 4, meterRegistry);
+        InMemoryTransactionRepository repository = repository(replicationLog);
+        for (int i = 0; i < 3; i++) {
+            repository.save(createTransaction("tx-" + i, "user1"));
+        }
+
+        try (ReplicationLog.Reader reader = replicationLog.subscribe(replicationLog.logId(), 0);
+             Stream<ReplicationRecord> snapshot = reader.snapshot()) {
+            assertEquals(0, snapshot.count());
+            assertEquals(List.of(1L, 2L), reader.poll(NO_WAIT, 10).stream()
+                    .map(ReplicationRecord::getSequence).toList());
+        }
+        // 其他日志的序号没有意义
+        try (ReplicationLog.Reader reader = replicationLog.subscribe("another-log", 0);
+             Stream<ReplicationRecord> snapshot = reader.snapshot()) {
+            assertEquals(5, snapshot.count());
+        }
+
+        for (int i = 3; i < 8; i++) {
+            repository.save(createTransaction("tx-" + i, "user1"));
+        }
+        // 序号 1 之后的变更已被覆盖
+        try (ReplicationLog.Reader reader = replicationLog.subscribe(replicationLog.logId(), 1);
+             Stream<ReplicationRecord> snapshot = reader.snapshot()) {
+            assertEquals(10, snapshot.count());
+            assertTrue(reader.poll(NO_WAIT, 10).isEmpty());
+        }
+    }
+
+    @Test
+    void poll_ShouldCloseReader_WhenUnreadChangesAreOverwritten() throws Exception {
+        ReplicationLog replicationLog = new ReplicationLog(TransactionJournal.NONE, 4, meterRegistry);
+        InMemoryTransactionRepository repository = repository(replicationLog);
+        ReplicationLog.Reader slow = replicationLog.subscribe(null, -1);
+        ReplicationLog.Reader fast = replicationLog.subscribe(null, -1);
+
+        for (int i = 0; i < 3; i++) {
+            repository.save(createTransaction("tx-" + i, "user1"));
+        }
+        assertEquals(3, fast.poll(NO_WAIT, 10).size());
+        for (int i = 3; i < 6; i++) {
+            repository.save(createTransaction("tx-" + i, "user1"));
+        }
+
+        // 主节点不等待从节点，slow 要读取的槽位已被覆盖
+        assertTrue(slow.poll(NO_WAIT, 10).isEmpty());
+        assertTrue(slow.isClosed());
+        assertEquals(3, fast.poll(NO_WAIT, 10).size());
+        assertFalse(fast.isClosed());
+    }
+
+    @Test
+    void logSave_ShouldNotReplicateWriteRejectedByJournal() throws Exception {
+        boolean[] failing = {false};
+        TransactionJournal journal = new TransactionJournal() {
+            @Override
+            public long logSave(Transaction transaction) {
+                if (failing[0]) {
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }
+                return 0;
+            }
+
+            @Override
+            public long logDelete(String id) {
+                return logSave(null);
+            }
+        };
+        ReplicationLog replicationLog = new ReplicationLog(journal, 16, meterRegistry);
+        InMemoryTransactionRepository repository = repository(replicationLog);
+        repository.save(createTransaction("tx-1", "user1"));
+        ReplicationLog.Reader reader = replicationLog.subscribe(replicationLog.logId(), replicationLog.head());
+
+        failing[0] = true;
+        assertThrows(UncheckedIOException.class, () -> repository.save(createTransaction("tx-2", "user1")));
+        assertThrows(UncheckedIOException.class, () -> repository.deleteById("tx-1"));
+
+        // 主节点拒绝的写入不会推送给从节点
+        assertEquals(0, replicationLog.head());
+        assertTrue(reader.poll(NO_WAIT, 10).isEmpty());
+        assertEquals(1, repository.count());
+        reader.close();
+    }
+
+    private static InMemoryTransactionRepository repository(ReplicationLog replicationLog) {
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(replicationLog);
+        repository.open();
+        return repository;
+    }
+
+    private static Transaction createTransaction(String id, String userId) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setCreatedAt(LocalDateTime.now());
+        transaction.setUpdatedAt(transaction.getCreatedAt());
+        return transaction;
+    }
+}
@@ -0,0 +1,41 @@
+package hsbc.hw.transaction.system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterClientTest {
+
+    private final ClusterClient client = new ClusterClient(new ObjectMapper(), "s3cret",
+            Duration.ofSeconds(1), Duration.ofSeconds(1));
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void isForwarded_ShouldAcceptOnlyMatchingSecret() {
+        assertTrue(client.isForwarded(request("s3cret")));
+        assertFalse(client.isForwarded(request("true")));
+        assertFalse(client.isForwarded(request("")));
+        assertFalse(client.isForwarded(new MockHttpServletRequest()));
+    }
+
+    @Test
+    void constructor_ShouldReject_WhenSecretIsBlank() {
+        assertThrows(IllegalStateException.class,
+                () -> new ClusterClient(new ObjectMapper(), " ", Duration.ofSeconds(1), Duration.ofSeconds(1)));
+    }
+
+    private static MockHttpServletRequest request(String forwarded) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(ClusterClient.FORWARDED_HEADER, forwarded);
+        return request;
+    }
+}
@@ -0,0 +1,222 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.TransactionCursorPage;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.dto.TransferRequest;
+import hsbc.hw.transaction.system.exception.ClusterNodeUnavailableException;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusteredTransactionServiceTest {
+
+    private static final String SELF = "http://localhost:8081";
+    private static final String PEER = "http://localhost:8082";
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Mock
+    private TransactionService local;
+
+    @Mock
+    private ClusterClient client;
+
+    private ConsistentHashRing ring;
+    private ClusteredTransactionService service;
+    private String localUser;
+    private String remoteUser;
+
+    @BeforeEach
+    void setUp() {
+        ring = new ConsistentHashRing(List.of(SELF, PEER), 128);
+        service = new ClusteredTransactionService(local, client, ring, SELF);
+        localUser = user(SELF, 0);
+        remoteUser = user(PEER, 0);
+    }
+
+    @Test
+    void createTransaction_ShouldRunLocally_WhenUserBelongsToSelf() {
+        TransactionRequest request = request("1", localUser);
+        TransactionResponse response = response("1", localUser, NOW);
+        when(local.createTransaction(request)).thenReturn(response);
+
+        assertSame(response, service.createTransaction(request));
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    void createTransaction_ShouldForwardToOwner_WhenUserBelongsToOtherNode() {
+        TransactionRequest request = request("1", remoteUser);
+        TransactionResponse response = response("1", remoteUser, NOW);
+        when(client.send(PEER, "POST", "/api/transactions", request, TransactionResponse.class))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        assertSame(response, service.createTransaction(request));
+        verify(local, never()).createTransaction(any());
+    }
+
+    @Test
+    void createTransactions_ShouldSplitByOwnerAndRestoreIndexes() {
+        TransactionRequest first = request("1", remoteUser);
+        TransactionRequest second = request("2", localUser);
+        TransactionRequest third = request("3", user(PEER, 1));
+        when(local.createTransactions(List.of(second))).thenReturn(new BatchCreateResponse(1, 1, 0,
+                List.of(BatchCreateResponse.ItemResult.success(0, response("2", localUser, NOW)))));
+        when(client.send(eq(PEER), eq("POST"), eq("/api/transactions/batch"), eq(List.of(first, third)),
+                eq(BatchCreateResponse.class)))
+                .thenReturn(CompletableFuture.completedFuture(new BatchCreateResponse(2, 1, 1, List.of(
+                        BatchCreateResponse.ItemResult.success(0, response("1", remoteUser, NOW)),
+                        BatchCreateResponse.ItemResult.failure(1, "3", "交易 ID 已存在: 3")))));
+
+        BatchCreateResponse result = service.createTransactions(List.of(first, second, third));
+
+        assertEquals(3, result.getTotal());
+        assertEquals(2, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals(List.of(0, 1, 2), result.getResults().stream().map(BatchCreateResponse.ItemResult::getIndex).toList());
+        assertEquals(List.of("1", "2", "3"), result.getResults().stream().map(BatchCreateResponse.ItemResult::getId).toList());
+        assertFalse(result.getResults().get(2).isSuccess());
+    }
+
+    @Test
+    void createTransactions_ShouldReportPeerRowsAsFailed_WhenPeerIsUnavailable() {
+        TransactionRequest first = request("1", remoteUser);
+        TransactionRequest second = request("2", localUser);
+        when(local.createTransactions(List.of(second))).thenReturn(new BatchCreateResponse(1, 1, 0,
+                List.of(BatchCreateResponse.ItemResult.success(0, response("2", localUser, NOW)))));
+        when(client.send(eq(PEER), eq("POST"), eq("/api/transactions/batch"), eq(List.of(first)),
+                eq(BatchCreateResponse.class)))
+                .thenReturn(CompletableFuture.failedFuture(new ClusterNodeUnavailableException("节点不可用: " + PEER, null)));
+
+        BatchCreateResponse result = service.createTransactions(List.of(first, second));
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        BatchCreateResponse.ItemResult failed = result.getResults().get(0);
+        assertEquals(0, failed.getIndex());
+        assertEquals("1", failed.getId());
+        assertFalse(failed.isSuccess());
+        assertEquals("节点不可用: " + PEER, failed.getMessage());
+        assertTrue(result.getResults().get(1).isSuccess());
+    }
+
+    @Test
+    void transfer_ShouldReject_WhenUsersBelongToDifferentNodes() {
+        TransferRequest request = new TransferRequest();
+        request.setId("t1");
+        request.setFromUserId(localUser);
+        request.setToUserId(remoteUser);
+        request.setAmount(BigDecimal.TEN);
+
+        assertThrows(InvalidTransactionException.class, () -> service.transfer(request));
+        verifyNoInteractions(local, client);
+    }
+
+    @Test
+    void getAllTransactions_ShouldMergeNodesByCreatedAt() {
+        when(local.getAllTransactions(any())).thenReturn(new PageImpl<>(List.of(
+                response("a", localUser, NOW.plusMinutes(3)), response("c", localUser, NOW.plusMinutes(1))),
+                PageRequest.of(0, 4), 5));
+        when(client.send(PEER, "GET", "/api/transactions?page=0&size=4", null, ClusteredTransactionService.RemotePage.class))
+                .thenReturn(CompletableFuture.completedFuture(new ClusteredTransactionService.RemotePage(List.of(
+                        response("b", remoteUser, NOW.plusMinutes(2)), response("d", remoteUser, NOW)), 7)));
+
+        Page<TransactionResponse> page = service.getAllTransactions(PageRequest.of(1, 2));
+
+        assertEquals(List.of("c", "d"), page.getContent().stream().map(TransactionResponse::getId).toList());
+        assertEquals(12, page.getTotalElements());
+    }
+
+    @Test
+    void getAllTransactions_ShouldReject_WhenPageTooDeep() {
+        assertThrows(InvalidTransactionException.class,
+                () -> service.getAllTransactions(PageRequest.of(50, 20)));
+        verifyNoInteractions(local, client);
+    }
+
+    @Test
+    void getTransactionsAfter_ShouldMergeAndContinueFromLastMergedTransaction() {
+        when(local.getTransactionsAfter(null, 2)).thenReturn(new TransactionCursorPage(List.of(
+                response("a", localUser, NOW.plusMinutes(3)), response("c", localUser, NOW.plusMinutes(1))),
+                "local", true));
+        when(client.send(PEER, "GET", "/api/transactions/cursor?size=2", null, TransactionCursorPage.class))
+                .thenReturn(CompletableFuture.completedFuture(new TransactionCursorPage(List.of(
+                        response("b", remoteUser, NOW.plusMinutes(2))), null, false)));
+
+        TransactionCursorPage page = service.getTransactionsAfter(null, 2);
+
+        assertEquals(List.of("a", "b"), page.getContent().stream().map(TransactionResponse::getId).toList());
+        assertTrue(page.isHasNext());
+        assertEquals(new TransactionCursor(NOW.plusMinutes(2), "b"), TransactionCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void deleteTransaction_ShouldForwardToNodeHoldingTransaction() {
+        when(local.getTransactionById("t1")).thenThrow(new TransactionNotFoundException("未找到交易记录: t1"));
+        when(client.send(PEER, "GET", "/api/transactions/t1", null, TransactionResponse.class))
+                .thenReturn(CompletableFuture.completedFuture(response("t1", remoteUser, NOW)));
+        when(client.send(PEER, "DELETE", "/api/transactions/t1", null, Void.class))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        service.deleteTransaction("t1");
+
+        verify(client).send(PEER, "DELETE", "/api/transactions/t1", null, Void.class);
+        verify(local, never()).deleteTransaction(any());
+    }
+
+    @Test
+    void getTransactionById_ShouldThrowNotFound_WhenNoNodeHasTransaction() {
+        when(local.getTransactionById("t1")).thenThrow(new TransactionNotFoundException("未找到交易记录: t1"));
+        when(client.send(PEER, "GET", "/api/transactions/t1", null, TransactionResponse.class))
+                .thenReturn(CompletableFuture.failedFuture(new TransactionNotFoundException("未找到交易记录: t1")));
+
+        assertThrows(TransactionNotFoundException.class, () -> service.getTransactionById("t1"));
+    }
+
+    /**
+     * 第 n 个属于 node 的用户ID
+     */
+    private String user(String node, int n) {
+        for (int i = 0; ; i++) {
+            if (ring.owner("user" + i).equals(node) && n-- == 0) {
+                return "user" + i;
+            }
+        }
+    }
+
+    private static TransactionRequest request(String id, String userId) {
+        TransactionRequest request = new TransactionRequest();
+        request.setId(id);
+        request.setUserId(userId);
+        request.setAmount(BigDecimal.TEN);
+        request.setType("DEPOSIT");
+        return request;
+    }
+
+    private static TransactionResponse response(String id, String userId, LocalDateTime createdAt) {
+        TransactionResponse response = new TransactionResponse();
+        response.setId(id);
+        response.setUserId(userId);
+        response.setCreatedAt(createdAt);
+        return response;
+    }
+}
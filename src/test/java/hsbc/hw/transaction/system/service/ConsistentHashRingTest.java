@@ -0,0 +1,55 @@
+package hsbc.hw.transaction.system.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> NODES = List.of("http://localhost:8081", "http://localhost:8082",
+            "http://localhost:8083");
+
+    @Test
+    void owner_ShouldBeStableAndSpreadAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+        ConsistentHashRing same = new ConsistentHashRing(NODES, 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 30000; i++) {
+            String owner = ring.owner("user" + i);
+            assertEquals(owner, same.owner("user" + i));
+            counts.merge(owner, 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        // 128 个虚拟节点时每个节点分到的键与平均值相差不超过 20%
+        counts.values().forEach(count -> assertTrue(Math.abs(count - 10000) < 2000, "count: " + count));
+    }
+
+    @Test
+    void owner_ShouldOnlyMoveKeysToNewNode_WhenNodeAdded() {
+        ConsistentHashRing before = new ConsistentHashRing(NODES, 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("http://localhost:8081", "http://localhost:8082",
+                "http://localhost:8083", "http://localhost:8084"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < 20000; i++) {
+            String key = "user" + i;
+            String owner = after.owner(key);
+            if (!owner.equals(before.owner(key))) {
+                assertEquals("http://localhost:8084", owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > 3000 && moved < 7000, "moved: " + moved);
+    }
+
+    @Test
+    void constructor_ShouldReject_WhenNoNodes() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 128));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(NODES, 0));
+    }
+}
@@ -0,0 +1,83 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.config.CacheConfig;
+import hsbc.hw.transaction.system.config.TransactionCacheProperties;
+import hsbc.hw.transaction.system.exception.DuplicateTransactionException;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore(new CacheConfig().cacheManager(new TransactionCacheProperties()));
+    }
+
+    @Test
+    void execute_ShouldReplayStoredResultWithoutRunningAgain() {
+        AtomicInteger calls = new AtomicInteger();
+
+        IdempotencyStore.Outcome<String> first = store.execute("key-1", "request", () -> "tx-" + calls.incrementAndGet());
+        IdempotencyStore.Outcome<String> retry = store.execute("key-1", "request", () -> "tx-" + calls.incrementAndGet());
+
+        assertEquals(new IdempotencyStore.Outcome<>("tx-1", false), first);
+        assertEquals(new IdempotencyStore.Outcome<>("tx-1", true), retry);
+        assertEquals(1, calls.get());
+        assertThrows(InvalidTransactionException.class, () -> store.execute("key-1", "other request", () -> "tx"));
+    }
+
+    @Test
+    void execute_ShouldCollapseConcurrentRequestsWithSameKey() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<IdempotencyStore.Outcome<String>> first = CompletableFuture.supplyAsync(() ->
+                store.execute("key-1", "request", () -> {
+                    calls.incrementAndGet();
+                    entered.countDown();
+                    await(release);
+                    return "tx-1";
+                }));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<IdempotencyStore.Outcome<String>> second = CompletableFuture.supplyAsync(() ->
+                store.execute("key-1", "request", () -> "tx-" + calls.incrementAndGet()));
+
+        // 第二个请求在等待第一个完成，不会自己执行
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+        release.countDown();
+
+        assertEquals("tx-1", first.get(5, TimeUnit.SECONDS).value());
+        assertEquals(new IdempotencyStore.Outcome<>("tx-1", true), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_ShouldNotStoreFailures() {
+        assertThrows(DuplicateTransactionException.class, () -> store.execute("key-1", "request", () -> {
+            throw new DuplicateTransactionException("交易 ID 已存在: tx-1");
+        }));
+
+        assertEquals(new IdempotencyStore.Outcome<>("tx-1", false), store.execute("key-1", "request", () -> "tx-1"));
+        assertThrows(InvalidTransactionException.class, () -> store.execute(" ", "request", () -> "tx"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package hsbc.hw.transaction.system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.config.TransactionReplicationProperties;
+import hsbc.hw.transaction.system.dto.ReplicationRecord;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReplicationFollowerTest {
+
+    private static final String LOG_ID = "log-1";
+
+    private InMemoryTransactionRepository repository;
+    private UserLedger ledger;
+    private TransactionCacheInvalidator cacheInvalidator;
+    private TransactionEventBus eventBus;
+    private ReplicationFollower follower;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryTransactionRepository();
+        ledger = new UserLedger(repository);
+        cacheInvalidator = mock(TransactionCacheInvalidator.class);
+        eventBus = mock(TransactionEventBus.class);
+        TransactionReplicationProperties properties = new TransactionReplicationProperties();
+        properties.setPrimary("http://localhost:8081");
+        follower = new ReplicationFollower(properties, repository, ledger, cacheInvalidator, eventBus,
+                new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void apply_ShouldReplaceLocalDataWithSnapshot() {
+        Transaction stale = createTransaction("tx-old", "user1", "50.00");
+        repository.save(stale);
+        ledger.onCreated(stale);
+
+        follower.apply(record(4, ReplicationRecord.Type.SNAPSHOT_START, LOG_ID, null));
+        follower.apply(record(4, ReplicationRecord.Type.SAVE, "tx-1", createTransaction("tx-1", "user1", "100.00")));
+        follower.apply(record(4, ReplicationRecord.Type.SAVE, "tx-2", createTransaction("tx-2", "user2", "30.00")));
+        assertEquals(5, follower.lag());
+        follower.apply(record(4, ReplicationRecord.Type.SNAPSHOT_END, LOG_ID, null));
+
+        assertFalse(repository.existsById("tx-old"));
+        assertEquals(2, repository.count());
+        assertEquals(new BigDecimal("100.00"), ledger.summary("user1").getBalance());
+        assertEquals(4, follower.appliedSequence());
+        assertEquals(0, follower.lag());
+        verify(cacheInvalidator).onDeleted("tx-old", "user1");
+        verify(eventBus, times(2)).publish(eq(TransactionEvent.Type.CREATED), any(TransactionResponse.class));
+    }
+
+    @Test
+    void apply_ShouldApplyChangesInOrderAndTrackLag() {
+        follower.apply(record(-1, ReplicationRecord.Type.SNAPSHOT_START, LOG_ID, null));
+        follower.apply(record(-1, ReplicationRecord.Type.SNAPSHOT_END, LOG_ID, null));
+
+        Transaction created = createTransaction("tx-1", "user1", "100.00");
+        follower.apply(record(0, ReplicationRecord.Type.SAVE, "tx-1", created));
+        // 心跳说明主节点已记录到序号 3
+        follower.apply(record(3, ReplicationRecord.Type.HEARTBEAT, null, null));
+        assertEquals(3, follower.lag());
+
+        Transaction completed = createTransaction("tx-1", "user1", "100.00");
+        completed.setStatus(TransactionStatus.PROCESSING);
+        follower.apply(record(1, ReplicationRecord.Type.SAVE, "tx-1", completed));
+        // 重复应用相同的变更不会重复计入汇总
+        follower.apply(record(2, ReplicationRecord.Type.SAVE, "tx-1", createCopy(completed)));
+        assertEquals(TransactionStatus.PROCESSING, repository.findById("tx-1").orElseThrow().getStatus());
+        assertEquals(new BigDecimal("100.00"), ledger.summary("user1").getBalance());
+        verify(cacheInvalidator).onUpdated("tx-1", "user1", "user1");
+
+        follower.apply(record(3, ReplicationRecord.Type.DELETE, "tx-1", null));
+        assertFalse(repository.existsById("tx-1"));
+        assertEquals(0, ledger.summary("user1").getTransactionCount());
+        assertEquals(0, follower.lag());
+        assertEquals(3, follower.appliedSequence());
+        verify(eventBus).publish(eq(TransactionEvent.Type.DELETED), any(TransactionResponse.class));
+    }
+
+    private static ReplicationRecord record(long sequence, ReplicationRecord.Type type, String id,
+                                            Transaction transaction) {
+        return new ReplicationRecord(sequence, type, id, transaction, System.currentTimeMillis());
+    }
+
+    private static Transaction createCopy(Transaction source) {
+        Transaction copy = createTransaction(source.getId(), source.getUserId(), source.getAmount().toPlainString());
+        copy.setStatus(source.getStatus());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+
+    private static Transaction createTransaction(String id, String userId, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setCreatedAt(LocalDateTime.of(2025, 5, 17, 10, 30));
+        transaction.setUpdatedAt(transaction.getCreatedAt());
+        return transaction;
+    }
+}
@@ -0,0 +1,131 @@
+package hsbc.hw.transaction.system.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hsbc.hw.transaction.system.config.CacheConfig;
+import hsbc.hw.transaction.system.config.EventConfig;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 混合读写负载下的缓存命中率测试，对比精确失效与每次写入清空整个缓存两种策略。
+ */
+@SpringJUnitConfig(classes = {CacheConfig.class, InMemoryTransactionRepository.class,
+        TransactionServiceImpl.class, TransactionCacheInvalidator.class, UserLedger.class,
+        EventConfig.class, SimpleMeterRegistry.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TransactionCacheHitRateTest {
+
+    private static final int USERS = 50;
+    private static final int TRANSACTIONS_PER_USER = 20;
+    private static final int OPERATIONS = 10000;
+    private static final int PAGE_SIZE = 20;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private int nextId;
+
+    @BeforeEach
+    void setUp() {
+        for (int u = 0; u < USERS; u++) {
+            for (int i = 0; i < TRANSACTIONS_PER_USER; i++) {
+                transactionService.createTransaction(createRequest("user" + u));
+            }
+        }
+        clearCaches();
+    }
+
+    @Test
+    void targetedInvalidation_ShouldKeepHitRateUnderMixedLoad() {
+        double targeted = runMixedWorkload(false);
+        clearCaches();
+        double clearAll = runMixedWorkload(true);
+
+        System.out.printf("Mixed workload hit rate - targeted eviction: %.3f, clear all on write: %.3f%n",
+                targeted, clearAll);
+        assertTrue(targeted > 0.5, "targeted eviction hit rate too low: " + targeted);
+        assertTrue(targeted > clearAll * 3, "targeted eviction should clearly beat clearing all entries");
+    }
+
+    /**
+     * 90% 读（按ID、按用户、前几页分页），10% 写（一半更新、一半新增），返回本轮的命中率。
+     * @param clearAllOnWrite 为 true 时每次写入后清空整个缓存，模拟 allEntries = true 的旧策略
+     */
+    private double runMixedWorkload(boolean clearAllOnWrite) {
+        CacheStats before = stats();
+        Random random = new Random(42);
+        for (int op = 0; op < OPERATIONS; op++) {
+            int dice = random.nextInt(100);
+            String userId = "user" + random.nextInt(USERS);
+            if (dice < 45) {
+                transactionService.getTransactionById("tx-" + random.nextInt(nextId));
+            } else if (dice < 75) {
+                transactionService.getTransactionsByUserId(userId);
+            } else if (dice < 90) {
+                transactionService.getAllTransactions(PageRequest.of(random.nextInt(5), PAGE_SIZE));
+            } else {
+                if (dice < 95) {
+                    String id = "tx-" + random.nextInt(nextId);
+                    transactionService.updateTransaction(id, createRequest(id, userId));
+                } else {
+                    transactionService.createTransaction(createRequest(userId));
+                }
+                if (clearAllOnWrite) {
+                    clearCaches();
+                }
+            }
+        }
+        return stats().minus(before).hitRate();
+    }
+
+    /**
+     * 汇总所有交易缓存的统计数据。
+     */
+    private CacheStats stats() {
+        CacheStats total = CacheStats.empty();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            total = total.plus(((com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache()).stats());
+        }
+        return total;
+    }
+
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    private TransactionRequest createRequest(String userId) {
+        return createRequest("tx-" + nextId++, userId);
+    }
+
+    private TransactionRequest createRequest(String id, String userId) {
+        TransactionRequest request = new TransactionRequest();
+        request.setId(id);
+        request.setUserId(userId);
+        request.setAmount(new BigDecimal("100.00"));
+        request.setType(TransactionType.EXPENSE.name());
+        request.setTransactionSummary("消费");
+        request.setCounterpartyName("Test Counterparty");
+        request.setCounterpartyAccountNumber("1234567890");
+        request.setDescription("Test description");
+        return request;
+    }
+}
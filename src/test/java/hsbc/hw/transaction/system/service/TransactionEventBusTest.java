@@ -0,0 +1,149 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
+import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionEventBusTest {
+
+    private static final Duration NO_WAIT = Duration.ZERO;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void poll_ShouldReturnMatchingEventsInOrderAndWakeUpOnPublish() throws Exception {
+        TransactionEventBus bus = bus(16, 16, TransactionEventProperties.SlowSubscriberPolicy.DISCONNECT);
+        TransactionEventBus.Subscription all = bus.subscribe(null, null, null);
+        TransactionEventBus.Subscription deposits = bus.subscribe("user1", "DEPOSIT", null);
+
+        bus.publish(TransactionEvent.Type.CREATED, transaction("t1", "user1", "DEPOSIT"));
+        bus.publish(TransactionEvent.Type.CREATED, transaction("t2", "user2", "DEPOSIT"));
+        bus.publish(TransactionEvent.Type.UPDATED, transaction("t3", "user1", "WITHDRAWAL"));
+        bus.publish(TransactionEvent.Type.DELETED, transaction("t1", "user1", "DEPOSIT"));
+
+        for (String id : new String[]{"t1", "t2", "t3", "t1"}) {
+            assertEquals(id, all.poll(NO_WAIT).getTransaction().getId());
+        }
+        assertNull(all.poll(NO_WAIT));
+        TransactionEvent created = deposits.poll(NO_WAIT);
+        TransactionEvent deleted = deposits.poll(NO_WAIT);
+        assertEquals(0, created.getSequence());
+        assertEquals(TransactionEvent.Type.DELETED, deleted.getType());
+        assertEquals(3, deleted.getSequence());
+        assertNull(deposits.poll(NO_WAIT));
+
+        CompletableFuture<TransactionEvent> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return all.poll(Duration.ofSeconds(10));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        bus.publish(TransactionEvent.Type.CREATED, transaction("t4", "user3", "DEPOSIT"));
+        assertEquals("t4", waiting.get(5, TimeUnit.SECONDS).getTransaction().getId());
+
+        assertThrows(InvalidTransactionException.class, () -> bus.subscribe(null, "UNKNOWN", null));
+    }
+
+    @Test
+    void publish_ShouldDropOnlyTheSubscriberThatFallsBehind_WhenPolicyIsDisconnect() throws Exception {
+        TransactionEventBus bus = bus(8, 4, TransactionEventProperties.SlowSubscriberPolicy.DISCONNECT);
+        TransactionEventBus.Subscription slow = bus.subscribe(null, null, null);
+        TransactionEventBus.Subscription fast = bus.subscribe(null, null, null);
+        AtomicBoolean notified = new AtomicBoolean();
+        slow.onClose(() -> notified.set(true));
+
+        // 一次发布超过 maxLag 条，发布前两者都没有落后，都不会被断开
+        bus.publish(TransactionEvent.Type.CREATED, List.of(transaction("t0", "user1", "DEPOSIT"),
+                transaction("t1", "user1", "DEPOSIT"), transaction("t2", "user1", "DEPOSIT"),
+                transaction("t3", "user1", "DEPOSIT"), transaction("t4", "user1", "DEPOSIT")));
+        assertFalse(slow.isClosed());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(fast.poll(NO_WAIT));
+        }
+        assertEquals(5.0, lag(slow));
+
+        // 下一次发布时慢订阅者已落后超过上限，发布方不等待它，直接断开
+        bus.publish(TransactionEvent.Type.CREATED, transaction("t5", "user1", "DEPOSIT"));
+
+        assertTrue(slow.isClosed());
+        assertTrue(notified.get());
+        assertNull(slow.poll(NO_WAIT));
+        assertEquals(1.0, meterRegistry.get("transaction.events.dropped").counter().count());
+        assertNull(meterRegistry.find("transaction.events.subscriber.lag").tag("subscriber", slow.getId()).gauge());
+        assertEquals("t5", fast.poll(NO_WAIT).getTransaction().getId());
+        assertEquals(1.0, meterRegistry.get("transaction.events.subscribers").gauge().value());
+    }
+
+    @Test
+    void poll_ShouldSkipToNewestEvent_WhenPolicyIsSkip() throws Exception {
+        TransactionEventBus bus = bus(8, 4, TransactionEventProperties.SlowSubscriberPolicy.SKIP);
+        TransactionEventBus.Subscription subscription = bus.subscribe(null, null, null);
+
+        // 超过缓冲区容量，最早的事件已被覆盖
+        for (int i = 0; i < 10; i++) {
+            bus.publish(TransactionEvent.Type.CREATED, transaction("t" + i, "user1", "DEPOSIT"));
+        }
+
+        assertFalse(subscription.isClosed());
+        assertEquals("t9", subscription.poll(NO_WAIT).getTransaction().getId());
+        assertEquals(9, subscription.takeMissed());
+        assertEquals(0, subscription.takeMissed());
+        assertEquals(9.0, meterRegistry.get("transaction.events.skipped").counter().count());
+    }
+
+    @Test
+    void subscribe_ShouldResumeAfterLastEventId() throws Exception {
+        TransactionEventBus bus = bus(16, 8, TransactionEventProperties.SlowSubscriberPolicy.DISCONNECT);
+        for (int i = 0; i < 10; i++) {
+            bus.publish(TransactionEvent.Type.CREATED, transaction("t" + i, "user1", "DEPOSIT"));
+        }
+
+        TransactionEventBus.Subscription resumed = bus.subscribe(null, null, 7L);
+        assertEquals(8, resumed.poll(NO_WAIT).getSequence());
+        assertEquals(9, resumed.poll(NO_WAIT).getSequence());
+        assertEquals(0, resumed.takeMissed());
+
+        // 太旧的 id 最多补发 maxLag 的一半，其余计为跳过
+        TransactionEventBus.Subscription stale = bus.subscribe(null, null, 0L);
+        assertEquals(6, stale.poll(NO_WAIT).getSequence());
+        assertEquals(5, stale.takeMissed());
+
+        // 其他进程实例的 id 从最新位置开始
+        assertNull(bus.subscribe(null, null, 100L).poll(NO_WAIT));
+    }
+
+    private TransactionEventBus bus(int bufferSize, int maxLag, TransactionEventProperties.SlowSubscriberPolicy policy) {
+        TransactionEventProperties properties = new TransactionEventProperties();
+        properties.setBufferSize(bufferSize);
+        properties.setMaxLag(maxLag);
+        properties.setSlowSubscriberPolicy(policy);
+        return new TransactionEventBus(properties, meterRegistry);
+    }
+
+    private double lag(TransactionEventBus.Subscription subscription) {
+        return meterRegistry.get("transaction.events.subscriber.lag")
+                .tag("subscriber", subscription.getId())
+                .gauge().value();
+    }
+
+    private static TransactionResponse transaction(String id, String userId, String type) {
+        TransactionResponse transaction = new TransactionResponse();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setType(type);
+        return transaction;
+    }
+}
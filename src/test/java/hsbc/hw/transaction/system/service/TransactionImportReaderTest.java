@@ -0,0 +1,75 @@
+package hsbc.hw.transaction.system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hsbc.hw.transaction.system.enums.ImportFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionImportReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void next_ShouldParseNdjsonAndReportBadLines() {
+        String content = """
+                {"id":"tx-1","userId":"user1","amount":100.50,"type":"DEPOSIT"}
+
+                {"id":"tx-2","userId":
+                {"id":"tx-3","userId":"user2","amount":1,"type":"EXPENSE","description":"午餐"}
+                """;
+        TransactionImportReader reader = reader(content, ImportFormat.NDJSON);
+
+        TransactionImportReader.Row first = reader.next();
+        assertEquals(1, first.line());
+        assertEquals("tx-1", first.request().getId());
+        assertEquals(new BigDecimal("100.50"), first.request().getAmount());
+
+        // 空行被跳过，行号仍按文件计算
+        TransactionImportReader.Row broken = reader.next();
+        assertEquals(3, broken.line());
+        assertNull(broken.request());
+        assertNotNull(broken.error());
+
+        TransactionImportReader.Row third = reader.next();
+        assertEquals(4, third.line());
+        assertEquals("午餐", third.request().getDescription());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void next_ShouldParseQuotedCsvFields() {
+        String content = "\uFEFFid,userId,amount,type,description,extra\r\n"
+                + "tx-1,user1,100.00,DEPOSIT,\"工资, 十月\",x\r\n"
+                + "tx-2,user1,20,EXPENSE,\"多行\n备注，含\"\"引号\"\"\",\n"
+                + "tx-3,user2,abc,EXPENSE,,\n"
+                + "tx-4,user2,5\n";
+        TransactionImportReader reader = reader(content, ImportFormat.CSV);
+
+        TransactionImportReader.Row first = reader.next();
+        assertEquals(2, first.line());
+        assertEquals("tx-1", first.request().getId());
+        assertEquals("工资, 十月", first.request().getDescription());
+
+        TransactionImportReader.Row second = reader.next();
+        assertEquals(3, second.line());
+        assertEquals("多行\n备注，含\"引号\"", second.request().getDescription());
+        assertEquals(new BigDecimal("20"), second.request().getAmount());
+
+        TransactionImportReader.Row invalidAmount = reader.next();
+        assertEquals(5, invalidAmount.line());
+        assertTrue(invalidAmount.error().contains("abc"));
+
+        TransactionImportReader.Row missingColumns = reader.next();
+        assertEquals(6, missingColumns.line());
+        assertNotNull(missingColumns.error());
+        assertNull(reader.next());
+    }
+
+    private TransactionImportReader reader(String content, ImportFormat format) {
+        return new TransactionImportReader(new StringReader(content), format, objectMapper.reader());
+    }
+}
@@ -1,14 +1,24 @@
 package hsbc.hw.transaction.system.service;
 
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.TransactionCursorPage;
+import hsbc.hw.transaction.system.dto.TransactionEvent;
 import hsbc.hw.transaction.system.dto.TransactionRequest;
 import hsbc.hw.transaction.system.dto.TransactionResponse;
+import hsbc.hw.transaction.system.dto.TransactionStatusRequest;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
 import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.exception.DuplicateTransactionException;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
 import hsbc.hw.transaction.system.exception.TransactionNotFoundException;
+import hsbc.hw.transaction.system.exception.TransactionStateException;
 import hsbc.hw.transaction.system.model.Transaction;
-import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionRepository;
+import hsbc.hw.transaction.system.repository.TransactionSearchResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -21,16 +31,31 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class TransactionServiceTest {
 
     @Mock
-    private InMemoryTransactionRepository repository;
+    private TransactionRepository repository;
+
+    @Mock
+    private TransactionCacheInvalidator cacheInvalidator;
+
+    @Mock
+    private UserLedger userLedger;
+
+    @Mock
+    private TransactionEventBus eventBus;
 
     @InjectMocks
     private TransactionServiceImpl transactionService;
@@ -44,7 +69,7 @@ class TransactionServiceTest {
     @BeforeEach
     void setUp() {
         // 重置所有mock
-        reset(repository);
+        reset(repository, cacheInvalidator);
         
         sampleRequest = createSampleTransactionRequest();
         sampleTransaction = createSampleTransaction();
@@ -57,15 +82,28 @@ class TransactionServiceTest {
 
     @Test
     void createTransaction_ShouldSucceed() {
-        when(repository.findById(anyString())).thenReturn(Optional.empty());
-        when(repository.save(any(Transaction.class))).thenReturn(sampleTransaction);
+        when(repository.saveIfAbsent(any(Transaction.class))).thenReturn(true);
 
         TransactionResponse response = transactionService.createTransaction(sampleRequest);
         
         assertNotNull(response);
-        assertEquals(sampleTransaction.getId(), response.getId());
-        assertEquals(sampleTransaction.getAmount(), response.getAmount());
-        verify(repository, times(1)).save(any(Transaction.class));
+        assertEquals(sampleRequest.getId(), response.getId());
+        assertEquals(sampleRequest.getAmount(), response.getAmount());
+        verify(repository, times(1)).saveIfAbsent(any(Transaction.class));
+        verify(userLedger, times(1)).onCreated(any(Transaction.class));
+        verify(eventBus).publish(TransactionEvent.Type.CREATED, response);
+    }
+
+    @Test
+    void createTransaction_ShouldThrowException_WhenIdExists() {
+        when(repository.saveIfAbsent(any(Transaction.class))).thenReturn(false);
+
+        assertThrows(DuplicateTransactionException.class, () ->
+            transactionService.createTransaction(sampleRequest)
+        );
+        verify(userLedger, never()).onCreated(any(Transaction.class));
+        verify(cacheInvalidator, never()).onCreated(anyString());
+        verifyNoInteractions(eventBus);
     }
 
     @Test
@@ -88,6 +126,85 @@ class TransactionServiceTest {
         verify(repository, never()).save(any(Transaction.class));
     }
 
+    @Test
+    void createTransactions_ShouldReportEachItemAndSaveOnce() {
+        TransactionRequest valid = createSampleTransactionRequest();
+        TransactionRequest duplicateInBatch = createSampleTransactionRequest();
+        TransactionRequest existing = createSampleTransactionRequest();
+        existing.setId("existing-id");
+        TransactionRequest invalidType = createSampleTransactionRequest();
+        invalidType.setId("invalid-type");
+        invalidType.setType("UNKNOWN");
+        TransactionRequest another = createSampleTransactionRequest();
+        another.setId("another-id");
+        another.setUserId("user456");
+        // 仓库跳过已存在的ID，只返回实际写入的交易
+        when(repository.saveAllIfAbsent(anyList())).thenAnswer(invocation -> {
+            List<Transaction> batch = invocation.getArgument(0);
+            return batch.stream().filter(t -> !"existing-id".equals(t.getId())).collect(Collectors.toList());
+        });
+
+        BatchCreateResponse response = transactionService.createTransactions(
+                Arrays.asList(valid, duplicateInBatch, existing, invalidType, another));
+
+        assertEquals(5, response.getTotal());
+        assertEquals(2, response.getSucceeded());
+        assertEquals(3, response.getFailed());
+        List<Boolean> outcomes = response.getResults().stream()
+                .map(BatchCreateResponse.ItemResult::isSuccess)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(true, false, false, false, true), outcomes);
+        assertEquals("交易 ID 已存在: existing-id", response.getResults().get(2).getMessage());
+        assertEquals("another-id", response.getResults().get(4).getTransaction().getId());
+
+        // 整批只写入一次仓库、只失效一次缓存，且同一批次共用创建时间
+        ArgumentCaptor<List<Transaction>> saved = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(1)).saveAllIfAbsent(saved.capture());
+        assertEquals(3, saved.getValue().size());
+        assertEquals(saved.getValue().get(0).getCreatedAt(), saved.getValue().get(2).getCreatedAt());
+        verify(repository, never()).save(any(Transaction.class));
+        // 已存在的ID不计入余额
+        ArgumentCaptor<List<Transaction>> ledger = ArgumentCaptor.forClass(List.class);
+        verify(userLedger, times(1)).onBatchCreated(ledger.capture());
+        assertEquals(Arrays.asList("test-id", "another-id"),
+                ledger.getValue().stream().map(Transaction::getId).collect(Collectors.toList()));
+        verify(cacheInvalidator, times(1)).onBatchCreated(Set.of("user123", "user456"));
+    }
+
+    @Test
+    void createTransactions_ShouldNotReserveIdOfItemWithInvalidType() {
+        TransactionRequest invalidType = createSampleTransactionRequest();
+        invalidType.setType("UNKNOWN");
+        TransactionRequest valid = createSampleTransactionRequest();
+        when(repository.saveAllIfAbsent(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BatchCreateResponse response = transactionService.createTransactions(Arrays.asList(invalidType, valid));
+
+        assertEquals(1, response.getSucceeded());
+        assertFalse(response.getResults().get(0).isSuccess());
+        assertEquals("无效的交易类型: UNKNOWN", response.getResults().get(0).getMessage());
+        assertTrue(response.getResults().get(1).isSuccess());
+    }
+
+    @Test
+    void exportTransactions_ShouldRejectRangeWhereFromIsAfterTo() {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+        assertThrows(InvalidTransactionException.class, () -> transactionService.exportTransactions(null, from, to));
+        assertThrows(InvalidTransactionException.class, () -> transactionService.exportTransactions("user1", from, to));
+        verify(repository, never()).streamByCreatedAt(any(), any());
+        verify(repository, never()).streamByUserId(anyString());
+    }
+
+    @Test
+    void createTransactions_ShouldRejectEmptyBatch() {
+        assertThrows(InvalidTransactionException.class, () ->
+            transactionService.createTransactions(new ArrayList<>())
+        );
+        verify(repository, never()).saveAllIfAbsent(any());
+    }
+
     @Test
     void getTransactionById_ShouldReturnTransaction() {
         when(repository.findById(anyString())).thenReturn(Optional.of(sampleTransaction));
@@ -127,8 +244,7 @@ class TransactionServiceTest {
 
     @Test
     void getAllTransactions_ShouldReturnFirstPage() {
-        List<Transaction> allTransactions = Arrays.asList(transaction1, transaction2, transaction3);
-        when(repository.findAll()).thenReturn(allTransactions);
+        stubTimeOrderedStore(transaction3, transaction2, transaction1);
 
         PageRequest pageRequest = PageRequest.of(0, 2, Sort.by("timestamp").descending());
         Page<TransactionResponse> result = transactionService.getAllTransactions(pageRequest);
@@ -138,13 +254,12 @@ class TransactionServiceTest {
         assertEquals(3, result.getTotalElements());
         assertEquals(2, result.getTotalPages());
         
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findPage(anyLong(), anyInt());
     }
 
     @Test
     void getAllTransactions_ShouldReturnLastPage() {
-        List<Transaction> allTransactions = Arrays.asList(transaction1, transaction2, transaction3);
-        when(repository.findAll()).thenReturn(allTransactions);
+        stubTimeOrderedStore(transaction3, transaction2, transaction1);
 
         PageRequest pageRequest = PageRequest.of(1, 2, Sort.by("timestamp").descending());
         Page<TransactionResponse> result = transactionService.getAllTransactions(pageRequest);
@@ -154,12 +269,12 @@ class TransactionServiceTest {
         assertEquals(3, result.getTotalElements());
         assertEquals(2, result.getTotalPages());
         
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findPage(anyLong(), anyInt());
     }
 
     @Test
     void getAllTransactions_ShouldReturnEmptyPage() {
-        when(repository.findAll()).thenReturn(new ArrayList<>());
+        stubTimeOrderedStore();
         
         PageRequest pageRequest = PageRequest.of(0, 2, Sort.by("timestamp").descending());
         Page<TransactionResponse> result = transactionService.getAllTransactions(pageRequest);
@@ -169,13 +284,12 @@ class TransactionServiceTest {
         assertEquals(0, result.getTotalElements());
         assertEquals(0, result.getTotalPages());
         
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findPage(anyLong(), anyInt());
     }
 
     @Test
     void getAllTransactions_ShouldHandlePageSizeLargerThanTotal() {
-        List<Transaction> allTransactions = Arrays.asList(transaction1, transaction2, transaction3);
-        when(repository.findAll()).thenReturn(allTransactions);
+        stubTimeOrderedStore(transaction3, transaction2, transaction1);
 
         PageRequest pageRequest = PageRequest.of(0, 5, Sort.by("timestamp").descending());
         Page<TransactionResponse> result = transactionService.getAllTransactions(pageRequest);
@@ -185,13 +299,12 @@ class TransactionServiceTest {
         assertEquals(3, result.getTotalElements());
         assertEquals(1, result.getTotalPages());
         
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findPage(anyLong(), anyInt());
     }
 
     @Test
     void getAllTransactions_ShouldMaintainSortOrder() {
-        List<Transaction> allTransactions = Arrays.asList(transaction1, transaction2, transaction3);
-        when(repository.findAll()).thenReturn(allTransactions);
+        stubTimeOrderedStore(transaction3, transaction2, transaction1);
 
         PageRequest pageRequest = PageRequest.of(0, 5, Sort.by("timestamp").descending());
         Page<TransactionResponse> result = transactionService.getAllTransactions(pageRequest);
@@ -205,13 +318,12 @@ class TransactionServiceTest {
                     content.get(i).getCreatedAt().isEqual(content.get(i + 1).getCreatedAt()));
         }
         
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findPage(anyLong(), anyInt());
     }
 
     @Test
     void getAllTransactions_ShouldUseCache() {
-        List<Transaction> allTransactions = Arrays.asList(transaction1, transaction2, transaction3);
-        when(repository.findAll()).thenReturn(allTransactions);
+        stubTimeOrderedStore(transaction3, transaction2, transaction1);
 
         // 第一次调用
         Page<TransactionResponse> firstCall = transactionService.getAllTransactions(
@@ -226,7 +338,37 @@ class TransactionServiceTest {
         // 验证结果相同
         assertEquals(firstCall.getContent(), secondCall.getContent());
         // 验证数据库被调用了两次（因为缓存被禁用）
-        verify(repository, times(2)).findAll();
+        verify(repository, times(2)).findPage(anyLong(), anyInt());
+    }
+
+    @Test
+    void getTransactionsAfter_ShouldReturnNextCursorUntilLastPage() {
+        when(repository.findAfter(isNull(), isNull(), eq(3)))
+                .thenReturn(Arrays.asList(transaction3, transaction2, transaction1));
+        when(repository.findAfter(transaction2.getCreatedAt(), transaction2.getId(), 3))
+                .thenReturn(List.of(transaction1));
+
+        TransactionCursorPage firstPage = transactionService.getTransactionsAfter(null, 2);
+        assertEquals(2, firstPage.getContent().size());
+        assertTrue(firstPage.isHasNext());
+        assertNotNull(firstPage.getNextCursor());
+
+        // 游标中携带上一页最后一笔交易的创建时间和ID
+        TransactionCursorPage secondPage = transactionService.getTransactionsAfter(firstPage.getNextCursor(), 2);
+        assertEquals(1, secondPage.getContent().size());
+        assertFalse(secondPage.isHasNext());
+        assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    void getTransactionsAfter_ShouldRejectInvalidCursor() {
+        assertThrows(InvalidTransactionException.class, () ->
+            transactionService.getTransactionsAfter("not-a-cursor", 20)
+        );
+        assertThrows(InvalidTransactionException.class, () ->
+            transactionService.getTransactionsAfter(null, 0)
+        );
+        verify(repository, never()).findAfter(any(), any(), anyInt());
     }
 
     @Test
@@ -269,7 +411,7 @@ class TransactionServiceTest {
     @Test
     void updateTransaction_ShouldEvictCache() {
         when(repository.findById(anyString())).thenReturn(Optional.of(sampleTransaction));
-        when(repository.save(any(Transaction.class))).thenReturn(sampleTransaction);
+        when(repository.updateKeepingStatus(any(Transaction.class))).thenReturn(Optional.of(sampleTransaction));
 
         // 先获取一次数据
         TransactionResponse firstCall = transactionService.getTransactionById(sampleTransaction.getId());
@@ -292,8 +434,22 @@ class TransactionServiceTest {
         assertEquals(firstCall.getCounterpartyAccountNumber(), secondCall.getCounterpartyAccountNumber());
         assertEquals(firstCall.getDescription(), secondCall.getDescription());
         
-        // 验证数据库被调用了三次
-        verify(repository, times(3)).findById(sampleTransaction.getId());
+        // 两次查询各一次，更新和删除在加锁后会重新读取一次
+        verify(repository, times(4)).findById(sampleTransaction.getId());
+    }
+
+    @Test
+    void updateTransaction_ShouldInvalidatePreviousAndNewUser() {
+        when(repository.findById(anyString())).thenReturn(Optional.of(sampleTransaction));
+        when(repository.updateKeepingStatus(any(Transaction.class)))
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+        sampleRequest.setUserId("user456");
+
+        transactionService.updateTransaction(sampleTransaction.getId(), sampleRequest);
+
+        verify(cacheInvalidator, times(1)).onUpdated(sampleTransaction.getId(), "user123", "user456");
+        verify(cacheInvalidator, never()).onCreated(anyString());
+        verify(cacheInvalidator, never()).onDeleted(anyString(), anyString());
     }
 
     @Test
@@ -313,8 +469,80 @@ class TransactionServiceTest {
             transactionService.getTransactionById(sampleTransaction.getId())
         );
         
-        // 验证数据库被调用了三次
-        verify(repository, times(3)).findById(sampleTransaction.getId());
+        // 两次查询各一次，更新和删除在加锁后会重新读取一次
+        verify(repository, times(4)).findById(sampleTransaction.getId());
+        ArgumentCaptor<TransactionResponse> deleted = ArgumentCaptor.forClass(TransactionResponse.class);
+        verify(eventBus).publish(eq(TransactionEvent.Type.DELETED), deleted.capture());
+        assertEquals(sampleTransaction.getId(), deleted.getValue().getId());
+    }
+
+    @Test
+    void updateTransactionStatus_ShouldCompareAndSetFromCurrentStatus() {
+        Transaction processing = createSampleTransaction();
+        processing.setStatus(TransactionStatus.PROCESSING);
+        when(repository.findById(sampleTransaction.getId())).thenReturn(Optional.of(sampleTransaction));
+        when(repository.compareAndSetStatus(eq(sampleTransaction.getId()), eq(TransactionStatus.CREATED),
+                eq(TransactionStatus.PROCESSING), any(LocalDateTime.class))).thenReturn(Optional.of(processing));
+
+        TransactionResponse response = transactionService.updateTransactionStatus(sampleTransaction.getId(),
+                statusRequest("PROCESSING", null));
+
+        assertEquals("PROCESSING", response.getStatus());
+        verify(cacheInvalidator, times(1)).onUpdated(sampleTransaction.getId(), "user123", "user123");
+        verify(userLedger).onUpdated(sampleTransaction, processing);
+    }
+
+    @Test
+    void updateTransactionStatus_ShouldRejectIllegalTransitionAndLostRace() {
+        when(repository.findById(sampleTransaction.getId())).thenReturn(Optional.of(sampleTransaction));
+        when(repository.compareAndSetStatus(anyString(), any(), any(), any())).thenReturn(Optional.empty());
+
+        // CREATED 不能直接完成
+        assertThrows(TransactionStateException.class, () -> transactionService.updateTransactionStatus(
+                sampleTransaction.getId(), statusRequest("COMPLETED", null)));
+        // 期望的状态已被其他处理方改走
+        assertThrows(TransactionStateException.class, () -> transactionService.updateTransactionStatus(
+                sampleTransaction.getId(), statusRequest("COMPLETED", "PROCESSING")));
+        assertThrows(InvalidTransactionException.class, () -> transactionService.updateTransactionStatus(
+                sampleTransaction.getId(), statusRequest("DONE", null)));
+        verify(repository, times(1)).compareAndSetStatus(anyString(), any(), any(), any());
+        verify(cacheInvalidator, never()).onUpdated(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void searchTransactionsByKeyword_ShouldValidateKeywordAndReturnRankedPage() {
+        when(repository.searchText("张三", 20, 10))
+                .thenReturn(new TransactionSearchResult(List.of(sampleTransaction), 21, "text(index) candidates=21"));
+
+        Page<TransactionResponse> page = transactionService.searchTransactionsByKeyword("张三", PageRequest.of(2, 10));
+
+        assertEquals(21, page.getTotalElements());
+        assertEquals(sampleTransaction.getId(), page.getContent().get(0).getId());
+        assertThrows(InvalidTransactionException.class, () ->
+                transactionService.searchTransactionsByKeyword(" ", PageRequest.of(0, 10)));
+        assertThrows(InvalidTransactionException.class, () ->
+                transactionService.searchTransactionsByKeyword("张".repeat(101), PageRequest.of(0, 10)));
+        verify(repository, times(1)).searchText(anyString(), anyLong(), anyInt());
+    }
+
+    private static TransactionStatusRequest statusRequest(String status, String expectedStatus) {
+        TransactionStatusRequest request = new TransactionStatusRequest();
+        request.setStatus(status);
+        request.setExpectedStatus(expectedStatus);
+        return request;
+    }
+
+    /**
+     * 模拟仓库的时间索引：传入的交易已按创建时间倒序排列，findPage 按偏移量截取。
+     */
+    private void stubTimeOrderedStore(Transaction... sortedTransactions) {
+        List<Transaction> store = Arrays.asList(sortedTransactions);
+        when(repository.findPage(anyLong(), anyInt())).thenAnswer(invocation -> {
+            int offset = (int) Math.min(invocation.<Long>getArgument(0), store.size());
+            int end = Math.min(offset + invocation.<Integer>getArgument(1), store.size());
+            return new ArrayList<>(store.subList(offset, end));
+        });
+        when(repository.count()).thenReturn((long) store.size());
     }
 
     private TransactionRequest createSampleTransactionRequest() {
@@ -0,0 +1,135 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.config.TransactionWriteProperties;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.dto.WriteStatusResponse;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.exception.DuplicateTransactionException;
+import hsbc.hw.transaction.system.exception.WriteQueueFullException;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionWritePipelineTest {
+
+    private InMemoryTransactionRepository repository;
+    private UserLedger ledger;
+    private TransactionServiceImpl service;
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionWritePipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryTransactionRepository();
+        ledger = new UserLedger(repository);
+        service = new TransactionServiceImpl(repository,
+                new TransactionCacheInvalidator(new NoOpCacheManager()), ledger,
+                new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry()));
+        TransactionWriteProperties properties = new TransactionWriteProperties();
+        properties.setMode(TransactionWriteProperties.WriteMode.ASYNC);
+        meterRegistry = new SimpleMeterRegistry();
+        pipeline = new TransactionWritePipeline(service, properties, meterRegistry);
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.close();
+    }
+
+    @Test
+    void create_ShouldBatchConcurrentRequests() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    pipeline.create(createRequest("tx-" + thread + "-" + i, "user" + thread));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(threads * perThread, repository.count());
+        assertEquals(new BigDecimal(perThread * 10), ledger.balance("user0"));
+        double batches = meterRegistry.get("transaction.write.batch.size").summary().count();
+        assertTrue(batches < threads * perThread, "请求没有合并成批: " + batches);
+    }
+
+    @Test
+    void submit_ShouldReportDuplicateAsFailed() {
+        pipeline.create(createRequest("tx-1", "user1"));
+
+        TransactionWritePipeline.PendingWrite duplicate = pipeline.submit(createRequest("tx-1", "user2"));
+        Exception e = assertThrows(Exception.class, () -> duplicate.future().get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(DuplicateTransactionException.class, e.getCause());
+        assertThrows(DuplicateTransactionException.class, () -> pipeline.create(createRequest("tx-1", "user3")));
+        WriteStatusResponse status = pipeline.status(duplicate.ticket()).orElseThrow();
+        assertEquals(WriteStatusResponse.Status.FAILED, status.getStatus());
+        assertEquals("tx-1", status.getTransactionId());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void close_ShouldDrainQueuedWrites() throws InterruptedException {
+        List<TransactionWritePipeline.PendingWrite> writes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            writes.add(pipeline.submit(createRequest("tx-" + i, "user1")));
+        }
+
+        pipeline.close();
+
+        assertEquals(1000, repository.count());
+        assertTrue(writes.stream().allMatch(w -> w.future().isDone() && !w.future().isCompletedExceptionally()));
+        assertEquals(WriteStatusResponse.Status.COMPLETED,
+                pipeline.status(writes.get(999).ticket()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void submit_ShouldRejectAfterTimeout_WhenQueueIsFull() throws InterruptedException {
+        TransactionWriteProperties properties = new TransactionWriteProperties();
+        properties.setMode(TransactionWriteProperties.WriteMode.ASYNC);
+        properties.setQueueCapacity(1);
+        properties.setEnqueueTimeout(Duration.ofMillis(50));
+        // 不启动写线程，第一个请求占满队列
+        TransactionWritePipeline stalled = new TransactionWritePipeline(service, properties, new SimpleMeterRegistry());
+        stalled.submit(createRequest("tx-1", "user1"));
+
+        long started = System.nanoTime();
+        assertThrows(WriteQueueFullException.class, () -> stalled.submit(createRequest("tx-2", "user1")));
+
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        stalled.close();
+    }
+
+    private static TransactionRequest createRequest(String id, String userId) {
+        TransactionRequest request = new TransactionRequest();
+        request.setId(id);
+        request.setUserId(userId);
+        request.setAmount(BigDecimal.TEN);
+        request.setType(TransactionType.DEPOSIT.name());
+        return request;
+    }
+}
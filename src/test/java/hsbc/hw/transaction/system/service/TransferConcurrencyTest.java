@@ -0,0 +1,359 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.config.TransactionEventProperties;
+import hsbc.hw.transaction.system.dto.BatchCreateResponse;
+import hsbc.hw.transaction.system.dto.TransactionRequest;
+import hsbc.hw.transaction.system.dto.TransactionStatusRequest;
+import hsbc.hw.transaction.system.dto.TransferRequest;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.exception.DuplicateTransactionException;
+import hsbc.hw.transaction.system.exception.InvalidTransactionException;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多线程转账压力测试：随机账户之间并发转账，校验资金守恒、余额不为负，以及账本与存储一致。
+ * 同时覆盖并发创建同一ID、并发更新内容和状态等写入竞争。
+ */
+class TransferConcurrencyTest {
+
+    private static final int USERS = 20;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 2000;
+
+    private InMemoryTransactionRepository repository;
+    private UserLedger ledger;
+    private TransactionServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryTransactionRepository();
+        ledger = new UserLedger(repository);
+        service = new TransactionServiceImpl(repository, new TransactionCacheInvalidator(new NoOpCacheManager()), ledger,
+                new TransactionEventBus(new TransactionEventProperties(), new SimpleMeterRegistry()));
+        for (int u = 0; u < USERS; u++) {
+            TransactionRequest deposit = new TransactionRequest();
+            deposit.setId("deposit-" + u);
+            deposit.setUserId("user" + u);
+            deposit.setAmount(INITIAL_BALANCE);
+            deposit.setType(TransactionType.DEPOSIT.name());
+            deposit.setTransactionSummary("存款");
+            service.createTransaction(deposit);
+        }
+    }
+
+    @Test
+    void transfer_ShouldConserveMoneyUnderContention() throws Exception {
+        AtomicInteger sequence = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(USERS);
+                    int to = (from + 1 + random.nextInt(USERS - 1)) % USERS;
+                    try {
+                        service.transfer(createTransfer("tr-" + sequence.incrementAndGet(), from, to,
+                                BigDecimal.valueOf(random.nextInt(1, 30000), 2)));
+                        succeeded.incrementAndGet();
+                    } catch (InvalidTransactionException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, succeeded.get() + rejected.get());
+        assertEquals(USERS + 2L * succeeded.get(), repository.count());
+        BigDecimal total = BigDecimal.ZERO;
+        for (int u = 0; u < USERS; u++) {
+            BigDecimal balance = ledger.balance("user" + u);
+            assertTrue(balance.signum() >= 0, "余额为负: user" + u);
+            BigDecimal stored = repository.findByUserId("user" + u).stream()
+                    .map(tx -> tx.getType().signed(tx.getAmount()))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(stored, balance);
+            total = total.add(balance);
+        }
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(USERS)), total);
+    }
+
+    @Test
+    void transfer_ShouldRejectInsufficientBalanceAndDuplicateId() {
+        assertThrows(InvalidTransactionException.class, () ->
+                service.transfer(createTransfer("tr-1", 0, 1, new BigDecimal("1000.01"))));
+        service.transfer(createTransfer("tr-1", 0, 1, new BigDecimal("1000.00")));
+        assertThrows(DuplicateTransactionException.class, () ->
+                service.transfer(createTransfer("tr-1", 1, 0, BigDecimal.ONE)));
+
+        assertEquals(BigDecimal.ZERO.setScale(2), ledger.balance("user0"));
+        assertEquals(new BigDecimal("2000.00"), ledger.balance("user1"));
+        Transaction credit = repository.findById("tr-1" + TransactionServiceImpl.CREDIT_ID_SUFFIX).orElseThrow();
+        assertEquals(TransactionType.TRANSFER_IN, credit.getType());
+        assertEquals("user0", credit.getCounterpartyAccountNumber());
+    }
+
+    @Test
+    void transfer_ShouldWriteNeitherLeg_WhenCreditIdExists() {
+        // 保留后缀之前写入的数据可能已占用转入交易的ID
+        Transaction legacy = new Transaction();
+        legacy.setId("tr-1" + TransactionServiceImpl.CREDIT_ID_SUFFIX);
+        legacy.setUserId("user5");
+        legacy.setAmount(BigDecimal.ONE);
+        legacy.setType(TransactionType.DEPOSIT);
+        legacy.setStatus(TransactionStatus.COMPLETED);
+        repository.save(legacy);
+
+        assertThrows(DuplicateTransactionException.class, () ->
+                service.transfer(createTransfer("tr-1", 0, 1, BigDecimal.TEN)));
+
+        assertFalse(repository.existsById("tr-1"));
+        assertEquals(INITIAL_BALANCE, ledger.balance("user0"));
+        assertEquals("user5", repository.findById(legacy.getId()).orElseThrow().getUserId());
+    }
+
+    @Test
+    void createAndTransfer_ShouldRejectReservedCreditSuffix() {
+        String reserved = "tx-1" + TransactionServiceImpl.CREDIT_ID_SUFFIX;
+        assertThrows(InvalidTransactionException.class, () -> service.createTransaction(createDeposit(reserved, "user0")));
+        assertThrows(InvalidTransactionException.class, () ->
+                service.transfer(createTransfer(reserved, 0, 1, BigDecimal.ONE)));
+        BatchCreateResponse batch = service.createTransactions(List.of(createDeposit(reserved, "user0"),
+                createDeposit("tx-2", "user0")));
+
+        assertEquals(1, batch.getSucceeded());
+        assertFalse(batch.getResults().get(0).isSuccess());
+        assertFalse(repository.existsById(reserved));
+    }
+
+    @Test
+    void transfer_ShouldNotSpendCancelledDeposit() {
+        service.updateTransactionStatus("deposit-0", statusRequest(TransactionStatus.CANCELLED));
+
+        assertEquals(BigDecimal.ZERO, ledger.balance("user0"));
+        assertThrows(InvalidTransactionException.class, () ->
+                service.transfer(createTransfer("tr-1", 0, 1, BigDecimal.ONE)));
+    }
+
+    @Test
+    void updateTransactionStatus_ShouldKeepLedgerConsistentWithConcurrentTransfers() throws Exception {
+        int rounds = 300;
+        for (int r = 0; r < rounds; r++) {
+            service.createTransaction(createDeposit("pending-" + r, "user" + (r % USERS)));
+        }
+        AtomicInteger sequence = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS - 1; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD / 4; i++) {
+                    int from = random.nextInt(USERS);
+                    int to = (from + 1 + random.nextInt(USERS - 1)) % USERS;
+                    try {
+                        service.transfer(createTransfer("tr-" + sequence.incrementAndGet(), from, to,
+                                BigDecimal.valueOf(random.nextInt(1, 30000), 2)));
+                    } catch (InvalidTransactionException e) {
+                        // 余额不足
+                    }
+                }
+            }));
+        }
+        // 存款依次经过 处理中 -> 失败 -> 处理中（重试）-> 取消，每一步都调整账本
+        futures.add(executor.submit(() -> {
+            for (int r = 0; r < rounds; r++) {
+                String id = "pending-" + r;
+                service.updateTransactionStatus(id, statusRequest(TransactionStatus.PROCESSING));
+                service.updateTransactionStatus(id, statusRequest(TransactionStatus.FAILED));
+                service.updateTransactionStatus(id, statusRequest(TransactionStatus.PROCESSING));
+                service.updateTransactionStatus(id, statusRequest(TransactionStatus.CANCELLED));
+            }
+        }));
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(rounds, repository.countByStatus(TransactionStatus.CANCELLED));
+        for (int u = 0; u < USERS; u++) {
+            BigDecimal stored = repository.findByUserId("user" + u).stream()
+                    .filter(tx -> tx.getStatus().isEffective())
+                    .map(tx -> tx.getType().signed(tx.getAmount()))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(stored, ledger.balance("user" + u));
+        }
+    }
+
+    @Test
+    void createTransaction_ShouldAcceptOnlyOneOfConcurrentDuplicates() throws Exception {
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int user = t;
+            futures.add(executor.submit(() -> {
+                TransactionRequest request = new TransactionRequest();
+                request.setId("same-id");
+                request.setUserId("user" + user);
+                request.setAmount(BigDecimal.TEN);
+                request.setType(TransactionType.DEPOSIT.name());
+                start.await();
+                try {
+                    service.createTransaction(request);
+                    created.incrementAndGet();
+                } catch (DuplicateTransactionException e) {
+                    duplicates.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(1, created.get());
+        assertEquals(threads - 1, duplicates.get());
+        assertEquals(USERS + 1, repository.count());
+    }
+
+    @Test
+    void createTransactions_ShouldNotDoubleCountIdCreatedConcurrentlyBySingleCreate() throws Exception {
+        int rounds = 500;
+        AtomicInteger batchWins = new AtomicInteger();
+        AtomicInteger singleWins = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (int r = 0; r < rounds; r++) {
+            String id = "race-" + r;
+            CountDownLatch start = new CountDownLatch(1);
+            // 批量和单笔使用不同用户，两边持有的账户锁互不覆盖，只能靠仓库的原子写入去重
+            Future<?> batch = executor.submit(() -> {
+                start.await();
+                BatchCreateResponse response = service.createTransactions(List.of(createDeposit(id, "user0")));
+                if (response.getSucceeded() == 1) {
+                    batchWins.incrementAndGet();
+                } else {
+                    assertEquals("交易 ID 已存在: " + id, response.getResults().get(0).getMessage());
+                }
+                return null;
+            });
+            Future<?> single = executor.submit(() -> {
+                start.await();
+                try {
+                    service.createTransaction(createDeposit(id, "user1"));
+                    singleWins.incrementAndGet();
+                } catch (DuplicateTransactionException e) {
+                    // 批量先写入
+                }
+                return null;
+            });
+            start.countDown();
+            batch.get(10, TimeUnit.SECONDS);
+            single.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(rounds, batchWins.get() + singleWins.get());
+        assertEquals(USERS + rounds, repository.count());
+        for (String userId : List.of("user0", "user1")) {
+            BigDecimal stored = repository.findByUserId(userId).stream()
+                    .map(tx -> tx.getType().signed(tx.getAmount()))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(stored, ledger.balance(userId));
+        }
+        BigDecimal total = ledger.balance("user0").add(ledger.balance("user1"));
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(2)).add(BigDecimal.TEN.multiply(BigDecimal.valueOf(rounds))),
+                total);
+    }
+
+    @Test
+    void updateTransaction_ShouldNotRevertConcurrentStatusChange() throws Exception {
+        int rounds = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (int r = 0; r < rounds; r++) {
+            String id = "status-" + r;
+            service.createTransaction(createDeposit(id, "user0"));
+            TransactionRequest update = createDeposit(id, "user0");
+            update.setAmount(BigDecimal.ONE);
+            update.setDescription("修改后的描述");
+            TransactionStatusRequest claim = new TransactionStatusRequest();
+            claim.setStatus(TransactionStatus.PROCESSING.name());
+            claim.setExpectedStatus(TransactionStatus.CREATED.name());
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> put = executor.submit(() -> {
+                start.await();
+                return service.updateTransaction(id, update);
+            });
+            Future<?> patch = executor.submit(() -> {
+                start.await();
+                return service.updateTransactionStatus(id, claim);
+            });
+            start.countDown();
+            put.get(10, TimeUnit.SECONDS);
+            patch.get(10, TimeUnit.SECONDS);
+
+            // 两个写入都要生效：内容来自更新，状态来自状态变更
+            Transaction stored = repository.findById(id).orElseThrow();
+            assertEquals(TransactionStatus.PROCESSING, stored.getStatus(), "状态变更被覆盖: " + id);
+            assertEquals(BigDecimal.ONE, stored.getAmount());
+            assertEquals("修改后的描述", stored.getDescription());
+        }
+        executor.shutdown();
+
+        assertEquals(rounds, repository.countByStatus(TransactionStatus.PROCESSING));
+    }
+
+    private static TransactionRequest createDeposit(String id, String userId) {
+        TransactionRequest request = new TransactionRequest();
+        request.setId(id);
+        request.setUserId(userId);
+        request.setAmount(BigDecimal.TEN);
+        request.setType(TransactionType.DEPOSIT.name());
+        return request;
+    }
+
+    private static TransactionStatusRequest statusRequest(TransactionStatus status) {
+        TransactionStatusRequest request = new TransactionStatusRequest();
+        request.setStatus(status.name());
+        return request;
+    }
+
+    private static TransferRequest createTransfer(String id, int from, int to, BigDecimal amount) {
+        TransferRequest request = new TransferRequest();
+        request.setId(id);
+        request.setFromUserId("user" + from);
+        request.setToUserId("user" + to);
+        request.setAmount(amount);
+        return request;
+    }
+}
@@ -0,0 +1,132 @@
+package hsbc.hw.transaction.system.service;
+
+import hsbc.hw.transaction.system.dto.UserSummaryResponse;
+import hsbc.hw.transaction.system.enums.TransactionStatus;
+import hsbc.hw.transaction.system.enums.TransactionType;
+import hsbc.hw.transaction.system.model.Transaction;
+import hsbc.hw.transaction.system.repository.InMemoryTransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserLedgerTest {
+
+    private final LocalDateTime may = LocalDateTime.of(2025, 5, 17, 10, 30);
+    private final LocalDateTime june = LocalDateTime.of(2025, 6, 1, 9, 0);
+
+    private InMemoryTransactionRepository repository;
+    private UserLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryTransactionRepository();
+        ledger = new UserLedger(repository);
+    }
+
+    @Test
+    void summary_ShouldTrackBalanceByTypeAndMonth() {
+        ledger.onCreated(createTransaction("tx-1", "user1", "1000.00", TransactionType.DEPOSIT, may));
+        ledger.onCreated(createTransaction("tx-2", "user1", "200.50", TransactionType.EXPENSE, may));
+        ledger.onCreated(createTransaction("tx-3", "user1", "300.00", TransactionType.TRANSFER, june));
+        ledger.onCreated(createTransaction("tx-4", "user1", "50.00", TransactionType.REFUND, june));
+
+        UserSummaryResponse summary = ledger.summary("user1");
+
+        assertEquals(new BigDecimal("549.50"), summary.getBalance());
+        assertEquals(4, summary.getTransactionCount());
+        assertEquals(new UserSummaryResponse.TypeTotal(1, new BigDecimal("200.50")),
+                summary.getByType().get(TransactionType.EXPENSE));
+        assertEquals(List.of(YearMonth.of(2025, 5), YearMonth.of(2025, 6)),
+                summary.getMonths().stream().map(UserSummaryResponse.MonthlySummary::getMonth).toList());
+        assertEquals(new BigDecimal("799.50"), summary.getMonths().get(0).getNet());
+        assertEquals(new BigDecimal("-250.00"), ledger.monthly("user1", YearMonth.of(2025, 6)).getNet());
+    }
+
+    @Test
+    void updateAndDelete_ShouldReverseOriginalContribution() {
+        Transaction original = createTransaction("tx-1", "user1", "100.00", TransactionType.DEPOSIT, may);
+        ledger.onCreated(original);
+        ledger.onCreated(createTransaction("tx-2", "user2", "30.00", TransactionType.INCOME, may));
+
+        // 更新时改变用户、类型和金额
+        Transaction updated = createTransaction("tx-1", "user2", "40.00", TransactionType.PAYMENT, may);
+        ledger.onUpdated(original, updated);
+
+        assertEquals(0, ledger.summary("user1").getTransactionCount());
+        assertEquals(BigDecimal.ZERO, ledger.summary("user1").getBalance());
+        assertTrue(ledger.summary("user1").getMonths().isEmpty());
+        assertEquals(new BigDecimal("-10.00"), ledger.summary("user2").getBalance());
+
+        ledger.onDeleted(updated);
+
+        UserSummaryResponse user2 = ledger.summary("user2");
+        assertEquals(new BigDecimal("30.00"), user2.getBalance());
+        assertEquals(1, user2.getTransactionCount());
+        assertNull(user2.getByType().get(TransactionType.PAYMENT));
+        assertEquals(0, ledger.monthly("user2", YearMonth.of(2025, 6)).getTransactionCount());
+    }
+
+    @Test
+    void onUpdated_ShouldExcludeCancelledAndFailedTransactions() {
+        Transaction created = createTransaction("tx-1", "user1", "100.00", TransactionType.DEPOSIT, may);
+        ledger.onCreated(created);
+        ledger.onCreated(createTransaction("tx-2", "user1", "30.00", TransactionType.DEPOSIT, may));
+
+        Transaction cancelled = createTransaction("tx-1", "user1", "100.00", TransactionType.DEPOSIT, may);
+        cancelled.setStatus(TransactionStatus.CANCELLED);
+        ledger.onUpdated(created, cancelled);
+
+        assertEquals(new BigDecimal("30.00"), ledger.balance("user1"));
+        assertEquals(1, ledger.summary("user1").getTransactionCount());
+
+        Transaction failed = createTransaction("tx-2", "user1", "30.00", TransactionType.DEPOSIT, may);
+        failed.setStatus(TransactionStatus.FAILED);
+        repository.save(cancelled);
+        repository.save(failed);
+        UserLedger rebuilt = new UserLedger(repository);
+        rebuilt.rebuild();
+
+        assertEquals(BigDecimal.ZERO, rebuilt.balance("user1"));
+        assertEquals(0, rebuilt.summary("user1").getTransactionCount());
+    }
+
+    @Test
+    void rebuild_ShouldMatchIncrementalState() {
+        for (int i = 0; i < 500; i++) {
+            TransactionType type = TransactionType.values()[i % TransactionType.values().length];
+            Transaction transaction = createTransaction("tx-" + i, "user" + (i % 5), (i + 1) + ".25", type,
+                    may.plusDays(i % 60));
+            repository.save(transaction);
+            ledger.onCreated(transaction);
+        }
+        UserSummaryResponse incremental = ledger.summary("user3");
+
+        UserLedger rebuilt = new UserLedger(repository);
+        rebuilt.rebuild();
+
+        assertEquals(incremental, rebuilt.summary("user3"));
+        BigDecimal expected = repository.findByUserId("user3").stream()
+                .map(t -> t.getType().signed(t.getAmount()))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(expected, rebuilt.summary("user3").getBalance());
+    }
+
+    private static Transaction createTransaction(String id, String userId, String amount,
+                                                 TransactionType type, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setType(type);
+        transaction.setTransactionSummary(type.getLabel());
+        transaction.setCreatedAt(createdAt);
+        transaction.setUpdatedAt(createdAt);
+        return transaction;
+    }
+}